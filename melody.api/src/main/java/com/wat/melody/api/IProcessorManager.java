@@ -1,8 +1,14 @@
 package com.wat.melody.api;
 
+import java.util.concurrent.Executor;
+
+import com.wat.melody.api.event.AsyncProcessorListener;
+import com.wat.melody.api.event.BackPressurePolicy;
 import com.wat.melody.api.exception.PlugInConfigurationException;
 import com.wat.melody.api.exception.ProcessorManagerConfigurationException;
 import com.wat.melody.common.files.exception.IllegalDirectoryException;
+import com.wat.melody.common.files.exception.IllegalFileException;
+import com.wat.melody.common.threads.ConcurrencyGovernor;
 import com.wat.melody.common.timeout.GenericTimeout;
 import com.wat.melody.common.xpath.XPathResolver;
 
@@ -35,6 +41,46 @@ public interface IProcessorManager {
 	public int setMaxSimultaneousStep(int v)
 			throws ProcessorManagerConfigurationException;
 
+	/**
+	 * <p>
+	 * Get the pool of permits which limits the number of steps which run
+	 * simultaneously in this processing and in all its sub-processing. Its size
+	 * is {@link #getMaxSimultaneousStep()}. It is created when the processing
+	 * starts, and is shared by all sub-ProcessorManagers.
+	 * </p>
+	 * 
+	 * <p>
+	 * Every construct which runs steps in parallel (e.g. foreach, call,
+	 * multi-threaded transfer) must acquire a permit for each step, except for
+	 * the first one, which inherits the slot of the waiting parent.
+	 * </p>
+	 * 
+	 * @return the {@link ConcurrencyGovernor} of this processing.
+	 */
+	public ConcurrencyGovernor getConcurrencyGovernor();
+
+	/**
+	 * <p>
+	 * Get the pool of threads which runs the steps this processing runs in
+	 * parallel (e.g. the targets of a foreach). Threads are reused from one
+	 * step to the other, and belong to the thread group of this processing,
+	 * so that they are interrupted when the processing is stopped. The pool is
+	 * created on demand and shut down when the processing ends.
+	 * </p>
+	 * 
+	 * <p>
+	 * The threads of this pool don't hold any {@link ITaskContext} : submitted
+	 * work must be wrapped with
+	 * {@link Melody#propagateContext(ITaskContext, Runnable)}. The number of
+	 * threads is not limited : the number of steps which run simultaneously is
+	 * limited by the {@link ConcurrencyGovernor} (see
+	 * {@link #getConcurrencyGovernor()}).
+	 * </p>
+	 * 
+	 * @return the pool of threads of this processing.
+	 */
+	public Executor getTaskExecutor();
+
 	public GenericTimeout getHardKillTimeout();
 
 	public GenericTimeout setHardKillTimeout(GenericTimeout v);
@@ -63,6 +109,149 @@ public interface IProcessorManager {
 
 	public boolean isRunDryModeEnable();
 
+	/**
+	 * @return the path of the file where the execution report of the
+	 *         processing will be written, or <tt>null</tt> if no execution
+	 *         report will be produced.
+	 */
+	public String getTaskReportPath();
+
+	/**
+	 * <p>
+	 * Set the path of the file where the execution report of the processing
+	 * will be written, in JSON, at the end of the processing. The report
+	 * records the wall time, the CPU time, the wait time, the amount of bytes
+	 * transferred, the number of retries, the activity reported (see
+	 * {@link ITaskContext#reportActivity(com.wat.melody.api.report.ITaskReport)}
+	 * ) and the final state of each task of the processing and of all its
+	 * sub-processing. A summary of the slowest tasks and orders is logged too.
+	 * </p>
+	 * 
+	 * @param v
+	 *            is the path of the report file, or <tt>null</tt> to disable
+	 *            the execution report (default).
+	 * 
+	 * @return the previous path.
+	 * 
+	 * @throws IllegalFileException
+	 *             if the given path points to a directory, or to a non
+	 *             readable or non writable file.
+	 * @throws IllegalDirectoryException
+	 *             if the parent directory of the given path is not a readable
+	 *             and writable directory.
+	 */
+	public String setTaskReportPath(String v) throws IllegalFileException,
+			IllegalDirectoryException;
+
+	/**
+	 * @return the path of the checkpoint journal of the processing, or
+	 *         <tt>null</tt> if no checkpoint journal will be written.
+	 */
+	public String getCheckpointJournalPath();
+
+	/**
+	 * <p>
+	 * Set the path of the checkpoint journal of the processing. During the
+	 * processing, the orders, the foreach items and the call refs which
+	 * complete successfully are appended to this journal, so that a failed
+	 * processing can be resumed without redoing them (see
+	 * {@link #enableResumeMode()}).
+	 * </p>
+	 * 
+	 * <p>
+	 * The journal must be located outside of the working folder, which is
+	 * removed at the end of the processing.
+	 * </p>
+	 * 
+	 * @param v
+	 *            is the path of the checkpoint journal, or <tt>null</tt> to
+	 *            disable the checkpoint journal (default).
+	 * 
+	 * @return the previous path.
+	 * 
+	 * @throws IllegalFileException
+	 *             if the given path points to a directory, or to a non
+	 *             readable or non writable file.
+	 * @throws IllegalDirectoryException
+	 *             if the parent directory of the given path is not a readable
+	 *             and writable directory.
+	 */
+	public String setCheckpointJournalPath(String v)
+			throws IllegalFileException, IllegalDirectoryException;
+
+	/**
+	 * <p>
+	 * When the 'Resume Mode' is enabled, the units of work recorded in the
+	 * checkpoint journal (see {@link #setCheckpointJournalPath(String)}) by a
+	 * previous processing are skipped, and the units of work which complete
+	 * successfully are appended to this journal. When disabled, the
+	 * checkpoint journal is truncated when the processing starts.
+	 * </p>
+	 * 
+	 * @param v
+	 *            is <tt>true</tt> to enable the 'Resume Mode'.
+	 * 
+	 * @return the previous value.
+	 */
+	public boolean setResumeMode(boolean v);
+
+	public boolean enableResumeMode();
+
+	public boolean disableResumeMode();
+
+	public boolean isResumeModeEnable();
+
+	/**
+	 * <p>
+	 * When the 'Resources Journal Mode' is enabled, each modification of the
+	 * resources (see {@link #getResourcesDescriptor()}) is recorded in a
+	 * journal, next to each resources file, as soon as it is done. The
+	 * journals are regularly compacted into the resources files, and deleted
+	 * once the resources files are stored, at the end of the processing. When
+	 * the processing is killed before, the modifications recorded in the
+	 * journals are replayed the next time the resources files are loaded.
+	 * When disabled (default), the modifications are only stored at the end
+	 * of the processing.
+	 * </p>
+	 * 
+	 * @param v
+	 *            is <tt>true</tt> to enable the 'Resources Journal Mode'.
+	 * 
+	 * @return the previous value.
+	 */
+	public boolean setResourcesJournalMode(boolean v);
+
+	public boolean enableResourcesJournalMode();
+
+	public boolean disableResourcesJournalMode();
+
+	public boolean isResourcesJournalModeEnable();
+
+	/**
+	 * <p>
+	 * When the 'Shared Plug-In Configurations Mode' is enabled, the plug-in
+	 * configurations (see {@link #getPluginConfigurations()}) are shared with
+	 * other processing (e.g. by a daemon, which serves multiple processing
+	 * with the same plug-in configurations) : the resources they hold (e.g.
+	 * pooled connections) are not released at the end of the processing. When
+	 * disabled (default), the plug-in configurations which implement
+	 * {@link java.io.Closeable} are closed at the end of the processing.
+	 * </p>
+	 * 
+	 * @param v
+	 *            is <tt>true</tt> to enable the 'Shared Plug-In Configurations
+	 *            Mode'.
+	 * 
+	 * @return the previous value.
+	 */
+	public boolean setSharedPlugInConfigurationsMode(boolean v);
+
+	public boolean enableSharedPlugInConfigurationsMode();
+
+	public boolean disableSharedPlugInConfigurationsMode();
+
+	public boolean isSharedPlugInConfigurationsModeEnable();
+
 	public ISequenceDescriptor getSequenceDescriptor();
 
 	public IResourcesDescriptor getResourcesDescriptor();
@@ -245,6 +434,29 @@ public interface IProcessorManager {
 	 */
 	public void waitTillProcessingIsDone() throws InterruptedException;
 
+	/**
+	 * <p>
+	 * Register a callback, which will be called once, as soon as the
+	 * processing ends.
+	 * </p>
+	 * 
+	 * <p>
+	 * <i> * The callback is called by the engine's thread, once
+	 * {@link #isRunning()} returns <tt>false</tt>. It must not block. <BR/>
+	 * * The callback must be registered before the processing is started.
+	 * <BR/>
+	 * * Once called, the callback is unregistered. <BR/>
+	 * </i>
+	 * </p>
+	 * 
+	 * @param callback
+	 *            is the callback to register.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given callback is <tt>null</tt>.
+	 */
+	public void addProcessingDoneCallback(Runnable callback);
+
 	/**
 	 * <p>
 	 * Retrieve informations about the processing state.
@@ -257,8 +469,41 @@ public interface IProcessorManager {
 	 */
 	public Throwable getProcessingFinalError();
 
+	/**
+	 * <p>
+	 * Add a listener. When a 'Listeners Back-Pressure Policy' is set (see
+	 * {@link #setListenersBackPressurePolicy(BackPressurePolicy)}), the given
+	 * listener is called asynchronously (see {@link AsyncProcessorListener}).
+	 * </p>
+	 * 
+	 * @param l
+	 *            is the listener to add.
+	 * 
+	 * @return <tt>true</tt> if the listener was added.
+	 */
 	public boolean addListener(IProcessorListener l);
 
 	public boolean removeListener(IProcessorListener l);
 
+	/**
+	 * <p>
+	 * When a 'Listeners Back-Pressure Policy' is set, the listeners added
+	 * afterward (see {@link #addListener(IProcessorListener)}) are called by a
+	 * dispatcher thread (see {@link AsyncProcessorListener}), so that a slow
+	 * listener doesn't slow down the processing, and the given policy applies
+	 * when too many events are pending. Pending events are delivered before
+	 * the end of the processing. When <tt>null</tt> (default), listeners are
+	 * called by the thread which generates the event.
+	 * </p>
+	 * 
+	 * @param policy
+	 *            is the 'Listeners Back-Pressure Policy', or <tt>null</tt>.
+	 * 
+	 * @return the previous value.
+	 */
+	public BackPressurePolicy setListenersBackPressurePolicy(
+			BackPressurePolicy policy);
+
+	public BackPressurePolicy getListenersBackPressurePolicy();
+
 }
\ No newline at end of file
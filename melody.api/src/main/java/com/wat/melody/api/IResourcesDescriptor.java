@@ -1,6 +1,7 @@
 package com.wat.melody.api;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 
 import javax.xml.xpath.XPathExpressionException;
@@ -56,6 +57,42 @@ public interface IResourcesDescriptor {
 			IllegalFileException, IllegalTargetsFilterException,
 			IllegalResourcesFilterException, IOException;
 
+	/**
+	 * <p>
+	 * Add the given xml files to the resources managed by this object, in the
+	 * given order. Much faster than calling {@link #add(String)} for each
+	 * file : the files are loaded in parallel, and the resources are only
+	 * merged and filtered once.
+	 * </p>
+	 * 
+	 * <p>
+	 * If one of the given files can't be loaded, none of them is added.
+	 * </p>
+	 * 
+	 * @return <tt>true</tt> if at least one of the given files was
+	 *         successfully added to the resources managed by this object, or
+	 *         <tt>false</tt> if all of them were already managed by this
+	 *         object.
+	 * 
+	 * @throws IllegalFileException
+	 *             if one of the given xml files is not a valid file.
+	 * @throws IllegalDocException
+	 *             if the resources are not valid (ex : dunid_attr already
+	 *             present, herit_attr linkage err).
+	 * @throws IllegalResourcesFilterException
+	 *             if a filter is not valid (no nodes match, invalid XPath
+	 *             Expression).
+	 * @throws IllegalTargetsFilterException
+	 *             if a target filter is not valid (no nodes match, invalid
+	 *             XPath Expression).
+	 * @throws IOException
+	 *             if I/O error occurred.
+	 */
+	public boolean addAll(Collection<String> sPaths)
+			throws IllegalDocException, IllegalFileException,
+			IllegalTargetsFilterException, IllegalResourcesFilterException,
+			IOException;
+
 	/**
 	 * @param sPath
 	 *            is the path of a previously added (see {@link #add(String)})
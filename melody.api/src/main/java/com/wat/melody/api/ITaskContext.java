@@ -234,4 +234,74 @@ public interface ITaskContext {
 	 */
 	public IProcessorManager createSubProcessorManager();
 
+	/**
+	 * <p>
+	 * Tell if the given unit of work of the {@link ITask} associated to this
+	 * object was successfully completed by the processing which is being
+	 * resumed (see {@link IProcessorManager#enableResumeMode()}).
+	 * </p>
+	 * 
+	 * <p>
+	 * A unit of work is identified by the {@link ITask}, by the given unit
+	 * and by the {@link PropertySet} associated to this object.
+	 * </p>
+	 * 
+	 * @param unit
+	 *            identifies the unit of work in the {@link ITask} (e.g. the
+	 *            item of a foreach).
+	 * 
+	 * @return <tt>true</tt> if the given unit of work can be skipped.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given unit is <tt>null</tt>.
+	 */
+	public boolean isCheckpointed(String unit);
+
+	/**
+	 * <p>
+	 * Record the successful completion of the given unit of work of the
+	 * {@link ITask} associated to this object in the checkpoint journal (see
+	 * {@link IProcessorManager#setCheckpointJournalPath(String)}). Does
+	 * nothing if the checkpoint journal is disabled.
+	 * </p>
+	 * 
+	 * @param unit
+	 *            identifies the unit of work in the {@link ITask} (see
+	 *            {@link #isCheckpointed(String)}).
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given unit is <tt>null</tt>.
+	 */
+	public void checkpoint(String unit);
+
+	/**
+	 * @param scope
+	 *            is a {@link TaskScope}.
+	 * 
+	 * @return an object which identifies the given {@link TaskScope}, as seen
+	 *         by the {@link ITask} associated to this object. All
+	 *         {@link ITask} which belong to the same scope get the same
+	 *         object. Objects must be compared by reference.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given {@link TaskScope} is <tt>null</tt>.
+	 */
+	public Object getScope(TaskScope scope);
+
+	/**
+	 * <p>
+	 * Duplicate this object into a new {@link ITaskContext}, which opens a new
+	 * {@link TaskScope#CURRENT} scope.
+	 * </p>
+	 * 
+	 * <p>
+	 * <i> A parallel {@link ITask} (e.g. foreach) should create one branch
+	 * {@link ITaskContext}, and associate it to all the threads it starts.
+	 * </i>
+	 * </p>
+	 * 
+	 * @return the duplicated {@link ITaskContext}.
+	 */
+	public ITaskContext createBranchContext();
+
 }
\ No newline at end of file
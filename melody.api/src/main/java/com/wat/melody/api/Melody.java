@@ -1,16 +1,45 @@
 package com.wat.melody.api;
 
 import java.util.EmptyStackException;
+import java.util.Stack;
+import java.util.concurrent.Callable;
 
+import com.wat.melody.common.report.TaskMetrics;
+import com.wat.melody.common.threads.ConcurrencyGovernor;
 import com.wat.melody.common.threads.MelodyThreadFactory;
 
 /**
+ * <p>
+ * Gives access to the {@link ITaskContext} of the task which is being processed
+ * by the current thread.
+ * </p>
+ * 
+ * <p>
+ * A {@link MelodyThread} holds its own stack of {@link ITaskContext}. Any other
+ * thread (e.g. a thread of a pool) holds its stack of {@link ITaskContext} in a
+ * thread local variable. Such a thread can process tasks as soon as an
+ * {@link ITaskContext} has been pushed (see {@link #pushContext(ITaskContext)}
+ * ). Work submitted to a pool should be wrapped with
+ * {@link #propagateContext(ITaskContext, Runnable)}, so that the
+ * {@link ITaskContext} is restored before and removed after its execution.
+ * The current {@link TaskMetrics} are propagated the same way, so that the
+ * metrics of the work are added to the metrics of the submitting task.
+ * </p>
  * 
  * @author Guillaume Cornet
  * 
  */
 public abstract class Melody {
 
+	private static final ThreadLocal<Stack<ITaskContext>> CONTEXTS = new ThreadLocal<Stack<ITaskContext>>() {
+
+		@Override
+		protected Stack<ITaskContext> initialValue() {
+			return new Stack<ITaskContext>();
+		}
+
+	};
+
 	public static MelodyThreadFactory getThreadFactory() {
 		return new MelodyThreadFactory() {
 
@@ -21,6 +50,12 @@ public abstract class Melody {
 				return (Thread) mt;
 			}
 
+			@Override
+			public ConcurrencyGovernor getConcurrencyGovernor() {
+				return getContext().getProcessorManager()
+						.getConcurrencyGovernor();
+			}
+
 		};
 	}
 
@@ -31,51 +66,189 @@ public abstract class Melody {
 	 * 
 	 * @return the {@link ITaskContext} associated the current {@link Thread}.
 	 * 
-	 * @throws IllegalStateException
-	 *             if the current {@link Thread} is not a {@link MelodyThread}.
 	 * @throws EmptyStackException
 	 *             if no {@link ITaskContext} have been associated yet.
 	 */
-	public static ITaskContext getContext() throws IllegalStateException,
-			EmptyStackException {
-		return currentMelodyThread().getContext();
+	public static ITaskContext getContext() throws EmptyStackException {
+		Thread t = Thread.currentThread();
+		if (t instanceof MelodyThread) {
+			return ((MelodyThread) t).getContext();
+		}
+		return CONTEXTS.get().peek();
 	}
 
 	/**
 	 * <p>
-	 * Push the {@link ITaskContext} into the current {@link MelodyThread}.
+	 * Push the {@link ITaskContext} into the current {@link Thread}.
 	 * </p>
-	 * 
-	 * @throws IllegalStateException
-	 *             if the current {@link Thread} is not a {@link MelodyThread}.
 	 */
-	public static void pushContext(ITaskContext taskContext)
-			throws IllegalStateException {
-		MelodyThread t = currentMelodyThread();
-		if (t != null) {
-			t.pushContext(taskContext);
+	public static void pushContext(ITaskContext taskContext) {
+		Thread t = Thread.currentThread();
+		if (t instanceof MelodyThread) {
+			((MelodyThread) t).pushContext(taskContext);
+		} else {
+			CONTEXTS.get().push(taskContext);
 		}
 	}
 
 	/**
 	 * <p>
-	 * Pop the last {@link ITaskContext} associated the current
-	 * {@link MelodyThread}.
+	 * Pop the last {@link ITaskContext} associated the current {@link Thread}.
 	 * </p>
 	 * 
-	 * @throws IllegalStateException
-	 *             if the current {@link Thread} is not a {@link MelodyThread}.
 	 * @throws EmptyStackException
 	 *             if no {@link ITaskContext} have been associated yet.
 	 */
-	public static void popContext() throws IllegalStateException,
-			EmptyStackException {
-		MelodyThread t = currentMelodyThread();
-		if (t != null) {
-			t.popContext();
+	public static void popContext() throws EmptyStackException {
+		Thread t = Thread.currentThread();
+		if (t instanceof MelodyThread) {
+			((MelodyThread) t).popContext();
+			return;
+		}
+		Stack<ITaskContext> contexts = CONTEXTS.get();
+		contexts.pop();
+		if (contexts.isEmpty()) {
+			// don't retain anything in pooled threads
+			CONTEXTS.remove();
 		}
 	}
 
+	/**
+	 * <p>
+	 * Wrap the given {@link Runnable}, so that it runs with the
+	 * {@link ITaskContext} of the current {@link Thread}, whatever the thread
+	 * which executes it.
+	 * </p>
+	 * 
+	 * @param runnable
+	 *            is the {@link Runnable} to wrap.
+	 * 
+	 * @return a {@link Runnable}, which pushes the captured {@link ITaskContext}
+	 *         , runs the given {@link Runnable} and pops the captured
+	 *         {@link ITaskContext}.
+	 * 
+	 * @throws EmptyStackException
+	 *             if no {@link ITaskContext} have been associated to the
+	 *             current {@link Thread} yet.
+	 */
+	public static Runnable propagateContext(Runnable runnable)
+			throws EmptyStackException {
+		return propagateContext(getContext(), runnable);
+	}
+
+	/**
+	 * <p>
+	 * Wrap the given {@link Runnable}, so that it runs with the given
+	 * {@link ITaskContext}, whatever the thread which executes it.
+	 * </p>
+	 * 
+	 * @param taskContext
+	 *            is the {@link ITaskContext} to propagate.
+	 * @param runnable
+	 *            is the {@link Runnable} to wrap.
+	 * 
+	 * @return a {@link Runnable}, which pushes the given {@link ITaskContext},
+	 *         runs the given {@link Runnable} and pops the given
+	 *         {@link ITaskContext}.
+	 */
+	public static Runnable propagateContext(final ITaskContext taskContext,
+			final Runnable runnable) {
+		if (taskContext == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + ITaskContext.class.getCanonicalName()
+					+ ".");
+		}
+		if (runnable == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Runnable.class.getCanonicalName()
+					+ ".");
+		}
+		final TaskMetrics metrics = TaskMetrics.current();
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				TaskMetrics previous = TaskMetrics.setCurrent(metrics);
+				pushContext(taskContext);
+				try {
+					runnable.run();
+				} finally {
+					popContext();
+					TaskMetrics.setCurrent(previous);
+				}
+			}
+
+		};
+	}
+
+	/**
+	 * <p>
+	 * Wrap the given {@link Callable}, so that it runs with the
+	 * {@link ITaskContext} of the current {@link Thread}, whatever the thread
+	 * which executes it.
+	 * </p>
+	 * 
+	 * @param callable
+	 *            is the {@link Callable} to wrap.
+	 * 
+	 * @return a {@link Callable}, which pushes the captured {@link ITaskContext}
+	 *         , calls the given {@link Callable} and pops the captured
+	 *         {@link ITaskContext}.
+	 * 
+	 * @throws EmptyStackException
+	 *             if no {@link ITaskContext} have been associated to the
+	 *             current {@link Thread} yet.
+	 */
+	public static <T> Callable<T> propagateContext(Callable<T> callable)
+			throws EmptyStackException {
+		return propagateContext(getContext(), callable);
+	}
+
+	/**
+	 * <p>
+	 * Wrap the given {@link Callable}, so that it runs with the given
+	 * {@link ITaskContext}, whatever the thread which executes it.
+	 * </p>
+	 * 
+	 * @param taskContext
+	 *            is the {@link ITaskContext} to propagate.
+	 * @param callable
+	 *            is the {@link Callable} to wrap.
+	 * 
+	 * @return a {@link Callable}, which pushes the given {@link ITaskContext},
+	 *         calls the given {@link Callable} and pops the given
+	 *         {@link ITaskContext}.
+	 */
+	public static <T> Callable<T> propagateContext(
+			final ITaskContext taskContext, final Callable<T> callable) {
+		if (taskContext == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + ITaskContext.class.getCanonicalName()
+					+ ".");
+		}
+		if (callable == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Callable.class.getCanonicalName()
+					+ ".");
+		}
+		final TaskMetrics metrics = TaskMetrics.current();
+		return new Callable<T>() {
+
+			@Override
+			public T call() throws Exception {
+				TaskMetrics previous = TaskMetrics.setCurrent(metrics);
+				pushContext(taskContext);
+				try {
+					return callable.call();
+				} finally {
+					popContext();
+					TaskMetrics.setCurrent(previous);
+				}
+			}
+
+		};
+	}
+
 	/**
 	 * <p>
 	 * Create a new {@link MelodyThread}.
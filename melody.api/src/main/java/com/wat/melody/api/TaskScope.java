@@ -0,0 +1,39 @@
+package com.wat.melody.api;
+
+/**
+ * <p>
+ * A part of the processing, which is shared by multiple {@link ITask} (see
+ * {@link ITaskContext#getScope(TaskScope)}).
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public enum TaskScope {
+
+	/**
+	 * <p>
+	 * Shared by all {@link ITask} processed in the same thread, or in sibling
+	 * threads of the same parallel {@link ITask} (e.g. all the threads of the
+	 * same foreach).
+	 * </p>
+	 */
+	CURRENT,
+
+	/**
+	 * <p>
+	 * Shared by all {@link ITask} processed by the orders of the same call,
+	 * or by the whole processing if the {@link ITask} is not processed by a
+	 * call.
+	 * </p>
+	 */
+	CALL,
+
+	/**
+	 * <p>
+	 * Shared by all {@link ITask} of the whole processing.
+	 * </p>
+	 */
+	GLOBAL;
+
+}
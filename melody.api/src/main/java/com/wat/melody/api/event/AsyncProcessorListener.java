@@ -0,0 +1,381 @@
+package com.wat.melody.api.event;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wat.melody.api.IProcessorListener;
+import com.wat.melody.common.threads.RingBuffer;
+
+/**
+ * <p>
+ * An {@link IProcessorListener} which dispatches events asynchronously to
+ * another {@link IProcessorListener}.
+ * </p>
+ * 
+ * <p>
+ * Events are published in a bounded, lock-free {@link RingBuffer}, and
+ * delivered to the wrapped {@link IProcessorListener} by a dispatcher thread,
+ * so that a slow listener (e.g. which writes to a file or a socket) doesn't
+ * stall the processing. The dispatcher thread is started by the first
+ * publication, and stops once no event was published for a while. When the
+ * buffer is full, the given {@link BackPressurePolicy} applies to task events
+ * ; processing events (e.g. {@link ProcessingFinishedEvent},
+ * {@link RequestProcessingToStopEvent}) are never dropped.
+ * </p>
+ * 
+ * <p>
+ * Events are delivered in the order they were published, one at a time. As a
+ * result, the events of a given {@link com.wat.melody.api.IProcessorManager}
+ * are delivered in the order the {@link com.wat.melody.api.IProcessorManager}
+ * generated them.
+ * </p>
+ * 
+ * <p>
+ * {@link #flush()} delivers the pending events (e.g. at the end of the
+ * processing). Once {@link #close()} is called, events are delivered by the
+ * thread which publishes them.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class AsyncProcessorListener implements IProcessorListener {
+
+	private static Logger log = LoggerFactory
+			.getLogger(AsyncProcessorListener.class);
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	public static final int SAMPLE_RATE = 16;
+
+	private static final long PARK_TIMEOUT = TimeUnit.MILLISECONDS
+			.toNanos(100);
+
+	private static final long IDLE_TIMEOUT = TimeUnit.SECONDS.toNanos(1);
+
+	private static final long BLOCK_PAUSE = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private IProcessorListener _delegate;
+	private BackPressurePolicy _policy;
+	private RingBuffer<AbstractEvent> _buffer;
+	// held while an event is delivered, so that events are delivered one at a
+	// time, in order, whatever the thread which delivers them
+	private Object _dispatchLock = new Object();
+	private volatile Thread _dispatcher;
+	private AtomicBoolean _dispatching = new AtomicBoolean(false);
+	private volatile boolean _dispatcherParked;
+	private volatile boolean _closed;
+	private AtomicLong _published = new AtomicLong();
+	private AtomicLong _dropped = new AtomicLong();
+
+	public AsyncProcessorListener(IProcessorListener delegate,
+			BackPressurePolicy policy) {
+		this(delegate, policy, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param delegate
+	 *            is the {@link IProcessorListener} to dispatch events to.
+	 * @param policy
+	 *            is what to do when the buffer is full.
+	 * @param capacity
+	 *            is the size of the buffer of pending events.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given {@link IProcessorListener} or
+	 *             {@link BackPressurePolicy} is <tt>null</tt>, or if the given
+	 *             capacity is lower than 1.
+	 */
+	public AsyncProcessorListener(IProcessorListener delegate,
+			BackPressurePolicy policy, int capacity) {
+		if (delegate == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid "
+					+ IProcessorListener.class.getCanonicalName() + ".");
+		}
+		if (policy == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid "
+					+ BackPressurePolicy.class.getCanonicalName() + ".");
+		}
+		_delegate = delegate;
+		_policy = policy;
+		_buffer = new RingBuffer<AbstractEvent>(capacity);
+	}
+
+	public IProcessorListener getDelegate() {
+		return _delegate;
+	}
+
+	public BackPressurePolicy getBackPressurePolicy() {
+		return _policy;
+	}
+
+	/**
+	 * @return the number of events published to this object.
+	 */
+	public long getPublishedCount() {
+		return _published.get();
+	}
+
+	/**
+	 * @return the number of events which were dropped, according to the
+	 *         {@link BackPressurePolicy}.
+	 */
+	public long getDroppedCount() {
+		return _dropped.get();
+	}
+
+	/**
+	 * <p>
+	 * Deliver all pending events, in the current thread.
+	 * </p>
+	 */
+	public void flush() {
+		synchronized (_dispatchLock) {
+			AbstractEvent evt;
+			while ((evt = _buffer.poll()) != null) {
+				dispatch(evt);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Deliver all pending events, and stop the dispatcher thread. Events
+	 * published after this call are delivered synchronously, after the events
+	 * which were pending.
+	 * </p>
+	 * 
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting for the
+	 *             dispatcher thread to stop.
+	 */
+	public void close() throws InterruptedException {
+		_closed = true;
+		flush();
+		Thread dispatcher = _dispatcher;
+		if (dispatcher != null && dispatcher != Thread.currentThread()) {
+			LockSupport.unpark(dispatcher);
+			dispatcher.join();
+		}
+	}
+
+	private void publish(AbstractEvent evt) {
+		_published.incrementAndGet();
+		if (_closed) {
+			flushAndDispatch(evt);
+			return;
+		}
+		// processing events are never dropped
+		BackPressurePolicy policy = isTaskEvent(evt) ? _policy
+				: BackPressurePolicy.BLOCK;
+		switch (policy) {
+		case BLOCK:
+			while (!_buffer.offer(evt)) {
+				if (_closed) {
+					flushAndDispatch(evt);
+					return;
+				}
+				wakeDispatcher();
+				LockSupport.parkNanos(this, BLOCK_PAUSE);
+			}
+			break;
+		case DROP_OLDEST:
+			while (!_buffer.offer(evt)) {
+				dropOldest();
+			}
+			break;
+		case SAMPLE:
+			if ((_buffer.size() >= _buffer.capacity() / 2 && _published
+					.get() % SAMPLE_RATE != 0) || !_buffer.offer(evt)) {
+				_dropped.incrementAndGet();
+				return;
+			}
+			break;
+		}
+		if (_closed) {
+			// close may have flushed before the event was published
+			flush();
+			return;
+		}
+		wakeDispatcher();
+	}
+
+	private static boolean isTaskEvent(AbstractEvent evt) {
+		return evt instanceof TaskStartedEvent
+				|| evt instanceof TaskFinishedEvent
+				|| evt instanceof TaskCreatedEvent;
+	}
+
+	/**
+	 * <p>
+	 * Remove the oldest pending event. A processing event is delivered
+	 * instead of being dropped.
+	 * </p>
+	 */
+	private void dropOldest() {
+		synchronized (_dispatchLock) {
+			AbstractEvent evt = _buffer.poll();
+			if (evt == null) {
+				return;
+			}
+			if (isTaskEvent(evt)) {
+				_dropped.incrementAndGet();
+			} else {
+				dispatch(evt);
+			}
+		}
+	}
+
+	private void flushAndDispatch(AbstractEvent evt) {
+		synchronized (_dispatchLock) {
+			flush();
+			dispatch(evt);
+		}
+	}
+
+	private void wakeDispatcher() {
+		if (_dispatching.compareAndSet(false, true)) {
+			Thread dispatcher = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					dispatchEvents();
+				}
+
+			}, "event-dispatcher-" + _delegate.getClass().getSimpleName());
+			dispatcher.setDaemon(true);
+			_dispatcher = dispatcher;
+			dispatcher.start();
+		} else if (_dispatcherParked) {
+			LockSupport.unpark(_dispatcher);
+		}
+	}
+
+	private boolean dispatchNext() {
+		synchronized (_dispatchLock) {
+			AbstractEvent evt = _buffer.poll();
+			if (evt == null) {
+				return false;
+			}
+			dispatch(evt);
+			return true;
+		}
+	}
+
+	private void dispatchEvents() {
+		long idleSince = System.nanoTime();
+		while (true) {
+			if (dispatchNext()) {
+				idleSince = System.nanoTime();
+				continue;
+			}
+			if (_closed || System.nanoTime() - idleSince >= IDLE_TIMEOUT) {
+				_dispatching.set(false);
+				// a producer may have published after the last poll, and
+				// have seen this thread running
+				if (_buffer.isEmpty()
+						|| !_dispatching.compareAndSet(false, true)) {
+					return;
+				}
+				idleSince = System.nanoTime();
+				continue;
+			}
+			_dispatcherParked = true;
+			// double check, so that a publication is never missed
+			if (_buffer.isEmpty() && !_closed) {
+				LockSupport.parkNanos(this, PARK_TIMEOUT);
+			}
+			_dispatcherParked = false;
+		}
+	}
+
+	private void dispatch(AbstractEvent evt) {
+		try {
+			if (evt instanceof TaskStartedEvent) {
+				_delegate.taskStarted((TaskStartedEvent) evt);
+			} else if (evt instanceof TaskFinishedEvent) {
+				_delegate.taskFinished((TaskFinishedEvent) evt);
+			} else if (evt instanceof TaskCreatedEvent) {
+				_delegate.taskCreated((TaskCreatedEvent) evt);
+			} else if (evt instanceof ProcessingStartedEvent) {
+				_delegate.processingStarted((ProcessingStartedEvent) evt);
+			} else if (evt instanceof ProcessingFinishedEvent) {
+				_delegate.processingFinished((ProcessingFinishedEvent) evt);
+			} else if (evt instanceof RequestProcessingToStartEvent) {
+				_delegate
+						.processingStartRequested((RequestProcessingToStartEvent) evt);
+			} else if (evt instanceof RequestProcessingToStopEvent) {
+				_delegate
+						.processingStopRequested((RequestProcessingToStopEvent) evt);
+			} else if (evt instanceof RequestProcessingToPauseEvent) {
+				_delegate
+						.processingPauseRequested((RequestProcessingToPauseEvent) evt);
+			} else if (evt instanceof RequestProcessingToResumeEvent) {
+				_delegate
+						.processingResumeRequested((RequestProcessingToResumeEvent) evt);
+			} else {
+				throw new RuntimeException("Unexpected event type '"
+						+ evt.getClass().getCanonicalName() + "'. "
+						+ "Source code has certainly been modified and "
+						+ "a bug have been introduced.");
+			}
+		} catch (Throwable Ex) {
+			log.warn("Listener '" + _delegate.getClass().getCanonicalName()
+					+ "' failed to handle the event '"
+					+ evt.getClass().getSimpleName() + "'.", Ex);
+		}
+	}
+
+	@Override
+	public void processingStartRequested(RequestProcessingToStartEvent evt) {
+		publish(evt);
+	}
+
+	@Override
+	public void processingStopRequested(RequestProcessingToStopEvent evt) {
+		publish(evt);
+	}
+
+	@Override
+	public void processingPauseRequested(RequestProcessingToPauseEvent evt) {
+		publish(evt);
+	}
+
+	@Override
+	public void processingResumeRequested(RequestProcessingToResumeEvent evt) {
+		publish(evt);
+	}
+
+	@Override
+	public void processingStarted(ProcessingStartedEvent evt) {
+		publish(evt);
+	}
+
+	@Override
+	public void processingFinished(ProcessingFinishedEvent evt) {
+		publish(evt);
+	}
+
+	@Override
+	public void taskCreated(TaskCreatedEvent evt) {
+		publish(evt);
+	}
+
+	@Override
+	public void taskStarted(TaskStartedEvent evt) {
+		publish(evt);
+	}
+
+	@Override
+	public void taskFinished(TaskFinishedEvent evt) {
+		publish(evt);
+	}
+
+}
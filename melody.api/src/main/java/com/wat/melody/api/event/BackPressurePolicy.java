@@ -0,0 +1,48 @@
+package com.wat.melody.api.event;
+
+/**
+ * <p>
+ * What an {@link AsyncProcessorListener} does when its buffer of pending
+ * events is full.
+ * </p>
+ * 
+ * <p>
+ * Only task events ({@link TaskCreatedEvent}, {@link TaskStartedEvent},
+ * {@link TaskFinishedEvent}) can be dropped. Processing events (e.g.
+ * {@link ProcessingFinishedEvent}) are always delivered, as with
+ * {@link #BLOCK}.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public enum BackPressurePolicy {
+
+	/**
+	 * <p>
+	 * The thread which publishes the event waits until there is a free place
+	 * in the buffer. No event is lost, but a slow listener slows down the
+	 * processing.
+	 * </p>
+	 */
+	BLOCK,
+
+	/**
+	 * <p>
+	 * The oldest pending event is dropped, to make room for the new one (or
+	 * delivered by the publishing thread, if it is a processing event). The
+	 * listener always receives the most recent events.
+	 * </p>
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * <p>
+	 * As soon as the buffer is half full, only one task event out of
+	 * {@link AsyncProcessorListener#SAMPLE_RATE} is kept. The other task
+	 * events, and the task events which don't fit in the buffer, are dropped.
+	 * </p>
+	 */
+	SAMPLE;
+
+}
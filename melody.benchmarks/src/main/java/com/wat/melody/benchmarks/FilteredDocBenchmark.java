@@ -0,0 +1,80 @@
+package com.wat.melody.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wat.melody.benchmarks.generator.ResourcesDescriptorGenerator;
+import com.wat.melody.common.filter.Filter;
+import com.wat.melody.common.filter.FilterSet;
+import com.wat.melody.common.xml.FilteredDoc;
+
+/**
+ * <p>
+ * Measures the application of filters (see {@link FilteredDoc#applyFilters()})
+ * and the merge of herited content (see
+ * {@link FilteredDoc#mergeHeritedContent()}) on a synthetic Resources
+ * Descriptor.
+ * </p>
+ * 
+ * <p>
+ * The document is reloaded before each invocation, because both operations
+ * modify it.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class FilteredDocBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	public int elements;
+
+	private String _xml;
+	private FilterSet _filters;
+	private FilteredDoc _doc;
+
+	@Setup
+	public void setup() throws Exception {
+		_xml = ResourcesDescriptorGenerator.generateLoaded(elements);
+		_filters = new FilterSet();
+		_filters.add(new Filter("//instance[@region='eu-west-1']"));
+		_filters.add(new Filter("//model"));
+	}
+
+	@Setup(Level.Invocation)
+	public void reload() throws Exception {
+		_doc = new FilteredDoc();
+		_doc.loadFromXML(_xml);
+	}
+
+	@Benchmark
+	public FilteredDoc applyFilters() throws Exception {
+		_doc.setFilterSet(_filters);
+		return _doc;
+	}
+
+	@Benchmark
+	public FilteredDoc mergeHeritedContent() throws Exception {
+		_doc.mergeHeritedContent();
+		return _doc;
+	}
+
+}
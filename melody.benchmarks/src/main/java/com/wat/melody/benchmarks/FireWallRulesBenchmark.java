@@ -0,0 +1,91 @@
+package com.wat.melody.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wat.melody.common.firewall.Access;
+import com.wat.melody.common.firewall.ComplexTcpFireWallRule;
+import com.wat.melody.common.firewall.Directions;
+import com.wat.melody.common.firewall.FireWallRules;
+import com.wat.melody.common.network.Addresses;
+import com.wat.melody.common.network.IpRange;
+import com.wat.melody.common.network.PortRanges;
+
+/**
+ * <p>
+ * Measures the decomposition of complex firewall rules into simple firewall
+ * rules (see {@link ComplexTcpFireWallRule#decompose()}) and the computation
+ * of the difference between two sets of simple firewall rules (see
+ * {@link FireWallRules#delta(FireWallRules)}), as done when the firewall of an
+ * instance is updated.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class FireWallRulesBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int rules;
+
+	private ComplexTcpFireWallRule[] _complexRules;
+	private FireWallRules _current;
+	private FireWallRules _target;
+
+	@Setup
+	public void setup() throws Exception {
+		PortRanges ports = PortRanges.parseString("22,80,443,8000-8010");
+		Addresses to = new Addresses(IpRange.parseString("10.0.0.0/16"));
+		_complexRules = new ComplexTcpFireWallRule[rules];
+		for (int i = 0; i < rules; i++) {
+			Addresses from = new Addresses(IpRange.parseString("192.168."
+					+ (i / 256) + "." + (i % 256) + "/32"));
+			_complexRules[i] = new ComplexTcpFireWallRule(from, PortRanges.ALL,
+					to, ports, Directions.ALL, Access.ALLOW);
+		}
+
+		// the target shares half of its rules with the current rules
+		_current = new FireWallRules();
+		_target = new FireWallRules();
+		for (int i = 0; i < rules; i++) {
+			if (i < rules * 3 / 4) {
+				_current.addAll(_complexRules[i].decompose());
+			}
+			if (i >= rules / 4) {
+				_target.addAll(_complexRules[i].decompose());
+			}
+		}
+	}
+
+	@Benchmark
+	public int decompose() {
+		int count = 0;
+		for (ComplexTcpFireWallRule rule : _complexRules) {
+			count += rule.decompose().size();
+		}
+		return count;
+	}
+
+	@Benchmark
+	public FireWallRules delta() {
+		return _current.delta(_target);
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.wat.melody.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wat.melody.benchmarks.generator.PropertiesGenerator;
+import com.wat.melody.common.properties.Property;
+import com.wat.melody.common.properties.PropertySet;
+
+/**
+ * <p>
+ * Measures the loading (see {@link PropertySet#load(String)}) and the
+ * duplication (see {@link PropertySet#clone()}) of a {@link PropertySet}. Each
+ * task works with its own copy of the {@link PropertySet} of its parent.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class PropertySetBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	public int properties;
+
+	private File _dir;
+	private String _path;
+	private PropertySet _loaded;
+	private Property _property;
+
+	@Setup
+	public void setup() throws Exception {
+		_dir = Files.createTempDirectory("melody-benchmark").toFile();
+		_path = PropertiesGenerator.write(properties, _dir).getPath();
+		_loaded = new PropertySet(_path);
+		_property = new Property("task.local", "value");
+	}
+
+	@TearDown
+	public void tearDown() {
+		new File(_path).delete();
+		_dir.delete();
+	}
+
+	@Benchmark
+	public PropertySet load() throws Exception {
+		PropertySet ps = new PropertySet();
+		ps.load(_path);
+		return ps;
+	}
+
+	@Benchmark
+	public PropertySet cloneOnly() {
+		return _loaded.clone();
+	}
+
+	@Benchmark
+	public String cloneThenPutAndGet() {
+		PropertySet ps = _loaded.clone();
+		ps.put(_property);
+		return ps.get("prop.0");
+	}
+
+}
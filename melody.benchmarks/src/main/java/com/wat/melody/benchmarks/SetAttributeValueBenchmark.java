@@ -0,0 +1,119 @@
+package com.wat.melody.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wat.melody.api.ITaskContext;
+import com.wat.melody.api.Melody;
+import com.wat.melody.benchmarks.generator.ResourcesDescriptorGenerator;
+import com.wat.melody.common.filter.Filter;
+import com.wat.melody.common.properties.PropertySet;
+import com.wat.melody.common.xml.AttributeName;
+import com.wat.melody.core.internal.ProcessorManager;
+import com.wat.melody.core.internal.TaskContext;
+import com.wat.melody.core.nativeplugin.attributes.SetAttributeValue;
+
+/**
+ * <p>
+ * Measures the modification of the Resources Descriptor through the
+ * {@link SetAttributeValue} task : the resolution of the targeted XML Element
+ * (see {@link SetAttributeValue#setTarget(String)}) and the modification
+ * itself (see {@link SetAttributeValue#doProcessing()}), with or without a
+ * filter applied on the Resources Descriptor.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class SetAttributeValueBenchmark {
+
+	private static final int BATCH = 100;
+
+	@Param({ "1000", "10000", "100000" })
+	public int elements;
+
+	@Param({ "false", "true" })
+	public boolean filtered;
+
+	private File _dir;
+	private File _rd;
+	private String[] _targets;
+	private AttributeName _status;
+	private ITaskContext _context;
+	private int _round;
+
+	@Setup
+	public void setup() throws Exception {
+		_dir = Files.createTempDirectory("melody-benchmark").toFile();
+		_rd = ResourcesDescriptorGenerator.write(elements, _dir);
+		ProcessorManager pm = new ProcessorManager();
+		pm.getResourcesDescriptor().add(_rd.getPath());
+		if (filtered) {
+			pm.getResourcesDescriptor().addFilter(
+					new Filter("//instance[@region='eu-west-1']"));
+		}
+
+		/*
+		 * Only target instances which are not filtered out : one instance
+		 * out of REGIONS.length is in the first region.
+		 */
+		int step = ResourcesDescriptorGenerator.REGIONS.length;
+		int candidates = ResourcesDescriptorGenerator.countInstances(elements)
+				/ step;
+		_targets = new String[BATCH];
+		for (int i = 0; i < BATCH; i++) {
+			_targets[i] = "//instance[@name='instance-"
+					+ (i % candidates * step) + "']";
+		}
+		_status = new AttributeName("status");
+		_context = new TaskContext(pm.getResourcesDescriptor().getDocument()
+				.getDocumentElement(), new PropertySet(), pm, null);
+	}
+
+	@TearDown
+	public void tearDown() {
+		_rd.delete();
+		_dir.delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public int setAttributeValue() throws Exception {
+		String value = "status-" + _round++;
+		Melody.pushContext(_context);
+		try {
+			for (String target : _targets) {
+				SetAttributeValue task = new SetAttributeValue();
+				task.setTarget(target);
+				task.setTargetAttributeName(_status);
+				task.setNewValue(value);
+				task.doProcessing();
+			}
+			return _targets.length;
+		} finally {
+			Melody.popContext();
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package com.wat.melody.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.wat.melody.api.ITask;
+import com.wat.melody.api.ITaskContext;
+import com.wat.melody.api.Melody;
+import com.wat.melody.benchmarks.generator.ResourcesDescriptorGenerator;
+import com.wat.melody.common.properties.Property;
+import com.wat.melody.common.properties.PropertySet;
+import com.wat.melody.common.xml.Doc;
+import com.wat.melody.core.internal.ProcessorManager;
+import com.wat.melody.core.internal.TaskContext;
+import com.wat.melody.core.internal.TaskFactory;
+
+/**
+ * <p>
+ * Measures the identification (see
+ * {@link TaskFactory#identifyTask(Element, PropertySet)}) and the creation
+ * (see {@link TaskFactory#newTask(com.wat.melody.api.ITaskBuilder, Element)})
+ * of tasks, as done by the engine for each XML Element of a Sequence
+ * Descriptor.
+ * </p>
+ * 
+ * <p>
+ * Creating a task requires a current {@link ITaskContext} (e.g. to expand
+ * attributes), which is pushed in the benchmark thread around each batch.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class TaskFactoryBenchmark {
+
+	private static final int BATCH = 100;
+
+	private File _dir;
+	private File _rd;
+	private TaskFactory _factory;
+	private PropertySet _vars;
+	private List<Element> _tasks;
+	private ITaskContext _context;
+
+	@Setup
+	public void setup() throws Exception {
+		_dir = Files.createTempDirectory("melody-benchmark").toFile();
+		_rd = ResourcesDescriptorGenerator.write(1000, _dir);
+		ProcessorManager pm = new ProcessorManager();
+		pm.getResourcesDescriptor().add(_rd.getPath());
+
+		StringBuilder sd = new StringBuilder("<sequence><order name=\"main\">");
+		for (int i = 0; i < BATCH / 2; i++) {
+			sd.append("<property name=\"p").append(i);
+			sd.append("\" value=\"instance-§[index]§\"/>");
+			sd.append("<set-attribute-value target-element=\"");
+			sd.append("//instance[@name='instance-").append(i).append("']\"");
+			sd.append(" target-attribute=\"status\" new-value=\"stopped\"/>");
+		}
+		sd.append("</order></sequence>");
+		Doc doc = new Doc();
+		doc.loadFromXML(sd.toString());
+		Element order = (Element) doc.getDocument().getDocumentElement()
+				.getFirstChild();
+		_tasks = new ArrayList<Element>();
+		for (Node n = order.getFirstChild(); n != null; n = n.getNextSibling()) {
+			if (n.getNodeType() == Node.ELEMENT_NODE) {
+				_tasks.add((Element) n);
+			}
+		}
+
+		_factory = new TaskFactory();
+		_vars = new PropertySet();
+		_vars.put(new Property("index", "42"));
+		_context = new TaskContext(order, _vars, pm, null);
+	}
+
+	@TearDown
+	public void tearDown() {
+		_rd.delete();
+		_dir.delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public int identifyAndNewTask() throws Exception {
+		Melody.pushContext(_context);
+		try {
+			int created = 0;
+			for (Element n : _tasks) {
+				ITask t = _factory.newTask(_factory.identifyTask(n, _vars), n);
+				if (t != null) {
+					created++;
+				}
+			}
+			return created;
+		} finally {
+			Melody.popContext();
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.wat.melody.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wat.melody.benchmarks.generator.LocalTreeGenerator;
+import com.wat.melody.common.files.LocalFileSystem;
+import com.wat.melody.common.transfer.finder.TransferablesFinder;
+import com.wat.melody.common.transfer.resources.ResourcesSpecification;
+
+/**
+ * <p>
+ * Measures the search of the files to transfer (see
+ * {@link TransferablesFinder#find(com.wat.melody.common.files.FileSystem, List)}
+ * ) in a synthetic local tree, with includes and excludes.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class TransferablesFinderBenchmark {
+
+	/**
+	 * The depth of the generated tree. Each directory contains 4 directories
+	 * and 10 files.
+	 */
+	@Param({ "2", "4" })
+	public int depth;
+
+	private Path _root;
+	private List<ResourcesSpecification> _specs;
+
+	@Setup
+	public void setup() throws Exception {
+		_root = Files.createTempDirectory("melody-benchmark");
+		LocalTreeGenerator.generate(_root, depth, 4, 10);
+
+		ResourcesSpecification rs = new ResourcesSpecification(
+				_root.toString(), "/dest");
+		rs.setMatch("**");
+		rs.createInclude().setMatch("**/*.tmpl");
+		rs.createExclude().setMatch("**/.gitignore");
+		_specs = new ArrayList<ResourcesSpecification>();
+		_specs.add(rs);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		LocalTreeGenerator.delete(_root);
+	}
+
+	@Benchmark
+	public int find() throws Exception {
+		LocalFileSystem fs = new LocalFileSystem();
+		try {
+			return TransferablesFinder.find(fs, _specs).countAllFiles();
+		} finally {
+			fs.release();
+		}
+	}
+
+}
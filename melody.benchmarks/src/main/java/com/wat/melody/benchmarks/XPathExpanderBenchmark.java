@@ -0,0 +1,100 @@
+package com.wat.melody.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Node;
+
+import com.wat.melody.benchmarks.generator.ResourcesDescriptorGenerator;
+import com.wat.melody.common.properties.Property;
+import com.wat.melody.common.properties.PropertySet;
+import com.wat.melody.common.xml.FilteredDoc;
+import com.wat.melody.common.xpath.XPathExpander;
+
+/**
+ * <p>
+ * Measures the expansion of Melody Expressions (see
+ * {@link XPathExpander#expand(String, Node, PropertySet)}) and the evaluation
+ * of XPath Expressions (see {@link XPathExpander#evaluateAsString(String, Node)}
+ * and {@link XPathExpander#evaluateAsNodeList(String, Node)}) against a
+ * synthetic Resources Descriptor.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class XPathExpanderBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	public int elements;
+
+	private Node _ctx;
+	private PropertySet _vars;
+	private String _lastInstance;
+
+	@Setup
+	public void setup() throws Exception {
+		FilteredDoc doc = new FilteredDoc();
+		doc.loadFromXML(ResourcesDescriptorGenerator.generateLoaded(elements));
+		_ctx = doc.getDocument().getFirstChild();
+		_vars = new PropertySet();
+		_vars.put(new Property("region", "eu-west-1"));
+		_vars.put(new Property("index", "42"));
+		_lastInstance = "instance-"
+				+ (ResourcesDescriptorGenerator.countInstances(elements) - 1);
+	}
+
+	@Benchmark
+	public String expandConstant() throws Exception {
+		return XPathExpander.expand("a string without any expression", _ctx,
+				_vars);
+	}
+
+	@Benchmark
+	public String expandProperties() throws Exception {
+		return XPathExpander.expand("instance-§[index]§ in §[ region ]§",
+				_ctx, _vars);
+	}
+
+	@Benchmark
+	public String expandNestedXPath() throws Exception {
+		return XPathExpander.expand(
+				"§[ //instance[@name='instance-§[index]§']/@region ]§", _ctx,
+				_vars);
+	}
+
+	@Benchmark
+	public String evaluateAsStringFirst() throws Exception {
+		return XPathExpander.evaluateAsString(
+				"//instance[@name='instance-0']/@region", _ctx);
+	}
+
+	@Benchmark
+	public String evaluateAsStringLast() throws Exception {
+		return XPathExpander.evaluateAsString("//instance[@name='"
+				+ _lastInstance + "']/@region", _ctx);
+	}
+
+	@Benchmark
+	public int evaluateAsNodeList() throws Exception {
+		return XPathExpander.evaluateAsNodeList(
+				"//instance[@region='eu-west-1']", _ctx).getLength();
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.wat.melody.benchmarks.generator;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * <p>
+ * Generates synthetic local directory trees, so that benchmarks are
+ * reproducible.
+ * </p>
+ * 
+ * <p>
+ * A generated tree has the given depth. Each directory contains the given
+ * number of sub-directories (except the deepest ones) and of small files. One
+ * file out of four is a '.tmpl' file, and each directory contains a
+ * '.gitignore' file, which are the kind of files includes and excludes
+ * usually select.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public abstract class LocalTreeGenerator {
+
+	/**
+	 * <p>
+	 * Generate a synthetic directory tree.
+	 * </p>
+	 * 
+	 * @param root
+	 *            is the directory where the tree will be created. It must
+	 *            exist.
+	 * @param depth
+	 *            is the depth of the tree.
+	 * @param dirsPerDir
+	 *            is the number of sub-directories of each directory.
+	 * @param filesPerDir
+	 *            is the number of files of each directory.
+	 * 
+	 * @return the number of files created.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurred while creating the tree.
+	 */
+	public static int generate(Path root, int depth, int dirsPerDir,
+			int filesPerDir) throws IOException {
+		int count = 0;
+		for (int f = 0; f < filesPerDir; f++) {
+			String name = "file-" + f + (f % 4 == 0 ? ".tmpl" : ".txt");
+			Files.write(root.resolve(name), name.getBytes());
+			count++;
+		}
+		Files.write(root.resolve(".gitignore"), "*.bak\n".getBytes());
+		count++;
+		if (depth > 1) {
+			for (int d = 0; d < dirsPerDir; d++) {
+				Path dir = Files.createDirectory(root.resolve("dir-" + d));
+				count += generate(dir, depth - 1, dirsPerDir, filesPerDir);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * <p>
+	 * Delete the given directory tree.
+	 * </p>
+	 * 
+	 * @param root
+	 *            is the directory to delete.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurred while deleting the tree.
+	 */
+	public static void delete(Path root) throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult visitFile(Path file,
+					BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc)
+					throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+
+		});
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.wat.melody.benchmarks.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+/**
+ * <p>
+ * Generates synthetic Configuration Files (e.g. a set of properties), so that
+ * benchmarks are reproducible.
+ * </p>
+ * 
+ * <p>
+ * One property out of four refers to the previous property, so that loading
+ * the generated file involves property expansion. One property out of eight is
+ * commented.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public abstract class PropertiesGenerator {
+
+	/**
+	 * @param properties
+	 *            is the number of properties to generate.
+	 * 
+	 * @return a synthetic Configuration File, which contains the given number
+	 *         of properties.
+	 */
+	public static String generate(int properties) {
+		StringBuilder str = new StringBuilder(properties * 48);
+		for (int i = 0; i < properties; i++) {
+			if (i % 8 == 0) {
+				str.append("# property number ").append(i).append('\n');
+			}
+			str.append("prop.").append(i).append('=');
+			if (i % 4 == 3) {
+				str.append("${prop.").append(i - 1).append("}/");
+			}
+			str.append("value-").append(i).append('\n');
+		}
+		return str.toString();
+	}
+
+	/**
+	 * <p>
+	 * Write a synthetic Configuration File in a new file of the given
+	 * directory.
+	 * </p>
+	 * 
+	 * @param properties
+	 *            is the number of properties to generate.
+	 * @param dir
+	 *            is the directory where the file will be created.
+	 * 
+	 * @return the created file.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurred while writing the file.
+	 */
+	public static File write(int properties, File dir) throws IOException {
+		File f = new File(dir, "properties-" + properties + ".properties");
+		Files.write(f.toPath(), generate(properties).getBytes(
+				Charset.forName("UTF-8")));
+		return f;
+	}
+
+}
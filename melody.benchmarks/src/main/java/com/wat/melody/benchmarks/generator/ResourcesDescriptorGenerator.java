@@ -0,0 +1,159 @@
+package com.wat.melody.benchmarks.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+/**
+ * <p>
+ * Generates synthetic Resources Descriptors, so that benchmarks are
+ * reproducible.
+ * </p>
+ * 
+ * <p>
+ * A generated Resources Descriptor contains {@link #MODELS} models and as many
+ * instances as needed to reach the requested number of XML Elements. Each
+ * instance herits from a model, belongs to a region (see {@link #REGIONS}) and
+ * contains network interfaces and tags. The content only depends on the
+ * requested number of XML Elements.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public abstract class ResourcesDescriptorGenerator {
+
+	public static final int MODELS = 10;
+	public static final String[] REGIONS = { "eu-west-1", "us-east-1",
+			"ap-southeast-1" };
+
+	/**
+	 * Number of XML Elements generated for each instance.
+	 */
+	public static final int ELEMENTS_PER_INSTANCE = 6;
+
+	/**
+	 * @param elements
+	 *            is the approximate number of XML Elements to generate.
+	 * 
+	 * @return the number of instances the generated Resources Descriptor will
+	 *         contain.
+	 */
+	public static int countInstances(int elements) {
+		return Math.max(1, elements / ELEMENTS_PER_INSTANCE);
+	}
+
+	/**
+	 * @param elements
+	 *            is the approximate number of XML Elements to generate.
+	 * 
+	 * @return a synthetic Resources Descriptor, which contains the given number
+	 *         of XML Elements.
+	 */
+	public static String generate(int elements) {
+		int instances = countInstances(elements);
+		StringBuilder str = new StringBuilder(instances * 400);
+		str.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		appendEnvironment(str, instances);
+		return str.toString();
+	}
+
+	/**
+	 * <p>
+	 * Herit attributes are relative to the root XML Element of the Resources
+	 * Descriptors, as loaded by the engine : the content of each file is
+	 * appended to a common '&lt;resources/&gt;' root XML Element. A document
+	 * which is not loaded by the engine must have the same layout to be valid.
+	 * </p>
+	 * 
+	 * @param elements
+	 *            is the approximate number of XML Elements to generate.
+	 * 
+	 * @return a synthetic Resources Descriptor, which contains the given number
+	 *         of XML Elements, as loaded by the engine.
+	 */
+	public static String generateLoaded(int elements) {
+		int instances = countInstances(elements);
+		StringBuilder str = new StringBuilder(instances * 400);
+		str.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		str.append("<resources>\n");
+		appendEnvironment(str, instances);
+		str.append("</resources>\n");
+		return str.toString();
+	}
+
+	private static void appendEnvironment(StringBuilder str, int instances) {
+		str.append("<environment>\n");
+		str.append("  <models>\n");
+		for (int m = 0; m < MODELS; m++) {
+			str.append("    <model name=\"model-").append(m);
+			str.append("\" instance-type=\"m1.");
+			str.append(m % 2 == 0 ? "small" : "large");
+			str.append("\" image-id=\"ami-").append(1000 + m).append("\">\n");
+			str.append("      <tags><tag name=\"model\" value=\"").append(m);
+			str.append("\"/></tags>\n");
+			str.append("    </model>\n");
+		}
+		str.append("  </models>\n");
+		str.append("  <instances>\n");
+		for (int i = 0; i < instances; i++) {
+			str.append("    <instance name=\"instance-").append(i);
+			str.append("\" region=\"").append(REGIONS[i % REGIONS.length]);
+			str.append("\" herit=\"./environment/models/model[@name='model-");
+			str.append(i % MODELS).append("']\" status=\"running\">\n");
+			str.append("      <network-interfaces>\n");
+			str.append("        <interface device=\"eth0\" ip=\"10.");
+			str.append((i >> 16) & 255).append('.').append((i >> 8) & 255);
+			str.append('.').append(i & 255).append("\"/>\n");
+			str.append("        <interface device=\"eth1\" ip=\"192.168.");
+			str.append((i >> 8) & 255).append('.').append(i & 255);
+			str.append("\"/>\n");
+			str.append("      </network-interfaces>\n");
+			str.append("      <tags><tag name=\"index\" value=\"").append(i);
+			str.append("\"/></tags>\n");
+			str.append("    </instance>\n");
+		}
+		str.append("  </instances>\n");
+		str.append("</environment>\n");
+	}
+
+	/**
+	 * <p>
+	 * Write a synthetic Resources Descriptor in a new file of the given
+	 * directory.
+	 * </p>
+	 * 
+	 * @param elements
+	 *            is the approximate number of XML Elements to generate.
+	 * @param dir
+	 *            is the directory where the file will be created.
+	 * 
+	 * @return the created file.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurred while writing the file.
+	 */
+	public static File write(int elements, File dir) throws IOException {
+		File f = new File(dir, "resources-descriptor-" + elements + ".xml");
+		Files.write(f.toPath(), generate(elements).getBytes(
+				Charset.forName("UTF-8")));
+		return f;
+	}
+
+	/**
+	 * <p>
+	 * Write synthetic Resources Descriptors of 1k, 10k and 100k XML Elements
+	 * (or of the given numbers of XML Elements) in the current directory.
+	 * </p>
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			args = new String[] { "1000", "10000", "100000" };
+		}
+		for (String elements : args) {
+			System.out.println(write(Integer.parseInt(elements), new File(".")));
+		}
+	}
+
+}
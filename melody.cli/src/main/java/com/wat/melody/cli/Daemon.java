@@ -0,0 +1,683 @@
+package com.wat.melody.cli;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.varia.LevelRangeFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wat.melody.api.IProcessorManager;
+import com.wat.melody.cli.exception.CommandLineParsingException;
+import com.wat.melody.common.ex.MelodyException;
+import com.wat.melody.common.messages.Msg;
+import com.wat.melody.common.utils.ReturnCode;
+import com.wat.melody.common.xml.ParsedDocumentCache;
+
+/**
+ * <p>
+ * A long-lived process, which launches processing sequences on behalf of
+ * {@link DaemonClient}s, so that they don't pay the JVM startup, the loading
+ * of the Global Configuration File, of the plug-in configurations and of the
+ * descriptors each time.
+ * </p>
+ * 
+ * <p>
+ * The daemon listens on a TCP port of the loopback interface. Each connection
+ * carries one processing : the {@link DaemonClient} sends the token of the
+ * daemon (see {@link DaemonToken}), which proves it runs under the same user
+ * as the daemon, its current working directory, which relative paths are
+ * resolved from (see {@link ProcessorManagerLoader#setWorkingDirectory(File)}),
+ * then its Command Line
+ * (see {@link ProcessorManagerLoader#parseCommandLine(String[])}), the daemon
+ * streams back the logs of the processing, then its return code. When the
+ * {@link DaemonClient} closes the connection (e.g. CTRL-C), the processing is
+ * stopped.
+ * </p>
+ * 
+ * <p>
+ * Each processing has its own {@link IProcessorManager}, loaded from the
+ * Global Configuration File it specifies (so each processing has its own
+ * working folder, properties, filters, ...). The following state is warmed
+ * once and reused by all processing :
+ * <ul>
+ * <li>Loaded classes, compiled XPath expressions, task bindings and parsed
+ * Sequence Descriptors, which are already cached process-wide ;</li>
+ * <li>The logging configuration and the plug-in configurations, with the
+ * resources they hold (e.g. pooled ssh sessions) (see
+ * {@link SharedConfigurations}) ;</li>
+ * <li>Parsed Resources Descriptors (see {@link ParsedDocumentCache}) ;</li>
+ * </ul>
+ * </p>
+ * 
+ * <p>
+ * The logs and the standard output of a processing are routed to its client
+ * by {@link ThreadGroup} : each processing runs in its own {@link ThreadGroup},
+ * to which the threads it creates belong. A thread created by a shared
+ * resource (e.g. the threads a pooled ssh session starts when it connects)
+ * belongs to the {@link ThreadGroup} of the processing which created the
+ * resource, even when another processing reuses it : what this thread logs
+ * goes to the client of the processing which created the resource while this
+ * processing runs, and to the log of the daemon once it is done.
+ * </p>
+ * 
+ * <p>
+ * Because there is no terminal to answer questions, processing run in 'Batch
+ * Mode' (see {@link IProcessorManager#enableBatchMode()}).
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class Daemon {
+
+	private static Logger log = LoggerFactory.getLogger(Daemon.class);
+
+	/**
+	 * The first Command Line argument which launches a {@link Daemon}.
+	 */
+	public static final String DAEMON_OPTION = "--daemon";
+
+	/**
+	 * Identifies the protocol spoken by {@link Daemon} and
+	 * {@link DaemonClient}.
+	 */
+	static final String PROTOCOL = "melody-daemon/3";
+
+	/**
+	 * A frame which holds text to write on the standard output.
+	 */
+	static final byte OUT = 'O';
+
+	/**
+	 * A frame which holds text to write on the standard error.
+	 */
+	static final byte ERR = 'E';
+
+	/**
+	 * The last frame, which holds the return code of the processing.
+	 */
+	static final byte EXIT = 'X';
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String CONSOLE_APPENDER = "console";
+
+	/**
+	 * <p>
+	 * Launch a {@link Daemon}, which runs until the JVM terminates.
+	 * </p>
+	 * 
+	 * @param args
+	 *            is <tt>&lt;port&gt; [-C &lt;Global Configuration File
+	 *            Path&gt;]</tt>. The given Global Configuration File (or the
+	 *            default one) is loaded when the daemon starts, in order to
+	 *            configure the logging and to warm the plug-in
+	 *            configurations.
+	 * 
+	 * @return nothing but exit (i.e. call to System.exit) with 1 if the
+	 *         {@link Daemon} can't start, or 130 when the JVM terminates.
+	 */
+	public static void launch(String[] args) {
+		Daemon daemon = null;
+		try {
+			daemon = new Daemon(parsePort(args));
+			daemon.warm(args);
+		} catch (MelodyException Ex) {
+			System.err.println(Ex.getUserFriendlyStackTrace());
+			System.exit(ReturnCode.KO.getValue());
+		} catch (Throwable Ex) {
+			MelodyException e = new MelodyException("Something bad happend. "
+					+ "Please report this bug at Wat-Org.", Ex);
+			System.err.println(e.getUserFriendlyStackTrace());
+			System.exit(ReturnCode.ERRGEN.getValue());
+		}
+		daemon.serve();
+	}
+
+	private static int parsePort(String[] args)
+			throws CommandLineParsingException {
+		if (args.length == 0) {
+			throw new CommandLineParsingException(Msg.bind(
+					Messages.CmdEx_MISSING_OPTION_VALUE, DAEMON_OPTION
+							.substring(1)));
+		}
+		try {
+			int port = Integer.parseInt(args[0]);
+			if (port < 1 || port > 65535) {
+				throw new NumberFormatException();
+			}
+			return port;
+		} catch (NumberFormatException Ex) {
+			throw new CommandLineParsingException(Msg.bind(
+					Messages.CmdEx_INVALID_OPTION_VALUE, DAEMON_OPTION
+							.substring(1)), new CommandLineParsingException(
+					Msg.bind(Messages.CmdEx_INVALID_PORT, args[0])));
+		}
+	}
+
+	private int _port;
+	private ServerSocket _serverSocket;
+	private String _token;
+	private SharedConfigurations _sharedConfigurations;
+	private Set<Session> _sessions;
+	private AtomicInteger _sessionCount;
+	private volatile boolean _stopped;
+
+	/**
+	 * @param port
+	 *            is the TCP port of the loopback interface to listen on.
+	 */
+	public Daemon(int port) {
+		_port = port;
+		_sharedConfigurations = new SharedConfigurations();
+		_sessions = new HashSet<Session>();
+		_sessionCount = new AtomicInteger();
+		_stopped = false;
+	}
+
+	public int getPort() {
+		return _port;
+	}
+
+	public SharedConfigurations getSharedConfigurations() {
+		return _sharedConfigurations;
+	}
+
+	/**
+	 * <p>
+	 * Load the Global Configuration File specified in the given Command Line
+	 * (or the default one), in order to configure the logging and to warm the
+	 * plug-in configurations.
+	 * </p>
+	 */
+	private void warm(String[] args) throws MelodyException, IOException {
+		ProcessorManagerLoader pml = new ProcessorManagerLoader(
+				getSharedConfigurations());
+		String gcf = pml.retrieveUserDefinedGlobalConfigurationFilePath(args);
+		if (gcf == null) {
+			gcf = System.getProperty(
+					ProcessorManagerLoader.DEFAULT_CONFIGURATION_FILE_PROPERTY,
+					ProcessorManagerLoader.DEFAULT_CONFIGURATION_FILE);
+		}
+		try {
+			pml.loadGlobalConfigurationFile(gcf);
+		} finally {
+			pml.releaseSharedPlugInConfigurations();
+		}
+		pml.deleteTemporaryResources();
+		ParsedDocumentCache.setEnabled(true);
+	}
+
+	/**
+	 * <p>
+	 * Accept connections until the JVM terminates. On JVM termination, running
+	 * processing are stopped, and the resources held by the shared plug-in
+	 * configurations are released.
+	 * </p>
+	 */
+	private void serve() {
+		try {
+			_serverSocket = new ServerSocket(getPort(), 50,
+					InetAddress.getByName(null));
+		} catch (IOException Ex) {
+			MelodyException e = new MelodyException("Fail to listen on port "
+					+ getPort() + ".", Ex);
+			log.error(e.getUserFriendlyStackTrace());
+			System.exit(ReturnCode.KO.getValue());
+		}
+		try {
+			// written once listening, not to replace the token of another
+			// daemon which would listen on the same port
+			_token = DaemonToken.create(getPort());
+		} catch (IOException Ex) {
+			MelodyException e = new MelodyException("Fail to write the "
+					+ "daemon token file '" + DaemonToken.getPath(getPort())
+					+ "'.", Ex);
+			log.error(e.getUserFriendlyStackTrace());
+			System.exit(ReturnCode.KO.getValue());
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread("daemon-shutdown") {
+
+			@Override
+			public void run() {
+				shutdown();
+			}
+
+		});
+		redirectStandardStreams();
+		log.info("Daemon listening on " + _serverSocket.getLocalSocketAddress()
+				+ ".");
+		while (!_stopped) {
+			Socket s;
+			try {
+				s = _serverSocket.accept();
+			} catch (SocketException Ex) {
+				// the server socket was closed by the shutdown hook
+				break;
+			} catch (IOException Ex) {
+				log.warn(new MelodyException("Fail to accept a connection.",
+						Ex).getUserFriendlyStackTrace());
+				continue;
+			}
+			String name = "session-" + _sessionCount.incrementAndGet();
+			// All threads of the processing belong to this thread group, so
+			// that their logs can be streamed to the client. It is destroyed
+			// as soon as its last thread ends.
+			ThreadGroup tg = new ThreadGroup(name);
+			tg.setDaemon(true);
+			Session session = new Session(s, tg);
+			Thread t = new Thread(tg, session, name);
+			t.setDaemon(true);
+			synchronized (_sessions) {
+				if (_stopped) {
+					session.close();
+					break;
+				}
+				_sessions.add(session);
+			}
+			t.start();
+		}
+	}
+
+	private void shutdown() {
+		log.info(Messages.ShutdownHookMsg_EXITING);
+		Set<Session> sessions;
+		synchronized (_sessions) {
+			_stopped = true;
+			sessions = new HashSet<Session>(_sessions);
+		}
+		try {
+			_serverSocket.close();
+		} catch (IOException ignored) {
+		}
+		DaemonToken.delete(getPort(), _token);
+		for (Session session : sessions) {
+			session.stop();
+		}
+		for (Session session : sessions) {
+			session.waitTillDone();
+		}
+		getSharedConfigurations().close();
+	}
+
+	private void removeSession(Session session) {
+		synchronized (_sessions) {
+			_sessions.remove(session);
+		}
+	}
+
+	/**
+	 * @return the {@link Session} whose processing runs in the given
+	 *         {@link ThreadGroup}, or <tt>null</tt> if the given
+	 *         {@link ThreadGroup} doesn't belong to any {@link Session}.
+	 */
+	private Session findSession(ThreadGroup tg) {
+		synchronized (_sessions) {
+			for (Session session : _sessions) {
+				if (session.getThreadGroup().parentOf(tg)) {
+					return session;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Redirect what the threads of a processing write on the standard output
+	 * and on the standard error (e.g. the task 'echo') to its client.
+	 * </p>
+	 */
+	private void redirectStandardStreams() {
+		System.setOut(newPrintStream(OUT, System.out));
+		System.setErr(newPrintStream(ERR, System.err));
+	}
+
+	private PrintStream newPrintStream(byte type, PrintStream defaultStream) {
+		try {
+			return new PrintStream(new SessionOutputStream(type, defaultStream),
+					true, UTF8.name());
+		} catch (UnsupportedEncodingException Ex) {
+			throw new RuntimeException("Unexpected error while creating a "
+					+ "PrintStream. Because the encoding is hardcoded, "
+					+ "such error cannot happened. "
+					+ "Source code has certainly been modified and "
+					+ "a bug have been introduced.", Ex);
+		}
+	}
+
+	/**
+	 * <p>
+	 * One connection, which carries one processing.
+	 * </p>
+	 */
+	private class Session implements Runnable {
+
+		private Socket _socket;
+		private ThreadGroup _threadGroup;
+		private DataOutputStream _out;
+		private File _workingDirectory;
+		private volatile IProcessorManager _processorManager;
+		private volatile boolean _stopRequested;
+		private boolean _done;
+
+		public Session(Socket s, ThreadGroup tg) {
+			_socket = s;
+			_threadGroup = tg;
+			_stopRequested = false;
+			_done = false;
+		}
+
+		public ThreadGroup getThreadGroup() {
+			return _threadGroup;
+		}
+
+		@Override
+		public void run() {
+			StreamingAppender appender = null;
+			ReturnCode rc = ReturnCode.ERRGEN;
+			try {
+				_out = new DataOutputStream(_socket.getOutputStream());
+				DataInputStream in = new DataInputStream(
+						_socket.getInputStream());
+				String[] args = readRequest(in);
+				if (args == null) {
+					return;
+				}
+				appender = new StreamingAppender(this, getThreadGroup());
+				org.apache.log4j.Logger.getRootLogger().addAppender(appender);
+				rc = process(args, appender);
+			} catch (IOException Ex) {
+				log.debug("Session closed by the client (" + Ex + ").");
+			} finally {
+				if (appender != null) {
+					org.apache.log4j.Logger.getRootLogger().removeAppender(
+							appender);
+				}
+				write(EXIT, String.valueOf(rc.getValue()));
+				close();
+				removeSession(this);
+				synchronized (this) {
+					_done = true;
+					notifyAll();
+				}
+			}
+		}
+
+		private String[] readRequest(DataInputStream in) throws IOException {
+			String protocol = in.readUTF();
+			if (!protocol.equals(PROTOCOL)) {
+				writeln(ERR, "'" + protocol + "': Not accepted. The daemon "
+						+ "speaks '" + PROTOCOL + "'. Client and daemon "
+						+ "must be the same version.");
+				return null;
+			}
+			if (!DaemonToken.matches(_token, in.readUTF())) {
+				log.warn("Connection from " + _socket.getRemoteSocketAddress()
+						+ " rejected : invalid daemon token.");
+				writeln(ERR, "Invalid daemon token. The client must run "
+						+ "under the same user as the daemon.");
+				return null;
+			}
+			_workingDirectory = new File(in.readUTF());
+			if (!_workingDirectory.isAbsolute()) {
+				writeln(ERR, "'" + _workingDirectory + "': Not accepted. "
+						+ "The working directory of the client must be an "
+						+ "absolute path.");
+				return null;
+			}
+			String[] args = new String[in.readInt()];
+			for (int i = 0; i < args.length; i++) {
+				args[i] = in.readUTF();
+			}
+			return args;
+		}
+
+		private ReturnCode process(String[] args, StreamingAppender appender)
+				throws IOException {
+			ProcessorManagerLoader pml = new ProcessorManagerLoader(
+					getSharedConfigurations());
+			pml.setConsoleFilter(appender.getLevelFilter());
+			pml.setWorkingDirectory(_workingDirectory);
+			try {
+				return process(pml, args);
+			} finally {
+				// retired plug-in configurations are closed once no more
+				// processing uses them
+				pml.releaseSharedPlugInConfigurations();
+			}
+		}
+
+		private ReturnCode process(ProcessorManagerLoader pml, String[] args)
+				throws IOException {
+			IProcessorManager pm;
+			try {
+				pm = pml.parseCommandLine(args);
+			} catch (MelodyException Ex) {
+				writeln(ERR, Ex.getUserFriendlyStackTrace());
+				return ReturnCode.KO;
+			} catch (Throwable Ex) {
+				MelodyException e = new MelodyException(
+						"Something bad happend. "
+								+ "Please report this bug at Wat-Org.", Ex);
+				writeln(ERR, e.getUserFriendlyStackTrace());
+				return ReturnCode.ERRGEN;
+			}
+			pm.enableBatchMode();
+			_processorManager = pm;
+			if (_stopRequested) {
+				return ReturnCode.INTERRUPTED;
+			}
+			watchClient();
+			return Launcher.process(pml, pm);
+		}
+
+		/**
+		 * <p>
+		 * Stop the processing when the client closes the connection.
+		 * </p>
+		 */
+		private void watchClient() {
+			Thread t = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						while (_socket.getInputStream().read() != -1) {
+							// the client sends nothing else
+						}
+					} catch (IOException ignored) {
+					}
+					stop();
+				}
+
+			}, Thread.currentThread().getName() + "-watcher");
+			t.setDaemon(true);
+			t.start();
+		}
+
+		public void stop() {
+			_stopRequested = true;
+			IProcessorManager pm = _processorManager;
+			if (pm != null) {
+				pm.stopProcessing();
+			}
+		}
+
+		public synchronized void waitTillDone() {
+			try {
+				while (!_done) {
+					wait();
+				}
+			} catch (InterruptedException Ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * <p>
+		 * Send a frame to the client. Errors are ignored : the client may
+		 * have gone.
+		 * </p>
+		 */
+		public synchronized void write(byte type, String text) {
+			if (_out == null) {
+				return;
+			}
+			try {
+				byte[] b = text.getBytes(UTF8);
+				_out.writeByte(type);
+				_out.writeInt(b.length);
+				_out.write(b);
+				_out.flush();
+			} catch (IOException Ex) {
+				_out = null;
+			}
+		}
+
+		public void writeln(byte type, String text) {
+			write(type, text + Layout.LINE_SEP);
+		}
+
+		public void close() {
+			try {
+				_socket.close();
+			} catch (IOException ignored) {
+			}
+		}
+
+	}
+
+	/**
+	 * <p>
+	 * Send what the threads of a processing write to its client, and what the
+	 * other threads write to the given default stream.
+	 * </p>
+	 */
+	private class SessionOutputStream extends OutputStream {
+
+		private byte _type;
+		private PrintStream _defaultStream;
+
+		public SessionOutputStream(byte type, PrintStream defaultStream) {
+			_type = type;
+			_defaultStream = defaultStream;
+		}
+
+		@Override
+		public void write(int b) {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			Session session = findSession(Thread.currentThread()
+					.getThreadGroup());
+			if (session == null) {
+				_defaultStream.write(b, off, len);
+			} else {
+				session.write(_type, new String(b, off, len, UTF8));
+			}
+		}
+
+		@Override
+		public void flush() {
+			_defaultStream.flush();
+		}
+
+	}
+
+	/**
+	 * <p>
+	 * Stream the logs of the threads of a {@link ThreadGroup} (and of its
+	 * sub-groups) to a client, with the layout and the threshold of the
+	 * console appender.
+	 * </p>
+	 */
+	private static class StreamingAppender extends AppenderSkeleton {
+
+		private Session _session;
+		private ThreadGroup _threadGroup;
+		private LevelRangeFilter _levelFilter;
+
+		public StreamingAppender(Session session, ThreadGroup tg) {
+			_session = session;
+			_threadGroup = tg;
+			_levelFilter = new LevelRangeFilter();
+			Appender console = org.apache.log4j.Logger.getRootLogger()
+					.getAppender(CONSOLE_APPENDER);
+			Layout layout = null;
+			Level levelMin = null;
+			if (console != null) {
+				layout = console.getLayout();
+				Filter filter = console.getFilter();
+				if (filter instanceof LevelRangeFilter) {
+					levelMin = ((LevelRangeFilter) filter).getLevelMin();
+				}
+			}
+			setLayout(layout != null ? layout : new PatternLayout());
+			_levelFilter.setLevelMin(levelMin);
+			addFilter(_levelFilter);
+		}
+
+		/**
+		 * @return the filter which holds the threshold of the logs, which the
+		 *         Options <tt>-q</tt> and <tt>-v</tt> modify.
+		 */
+		public LevelRangeFilter getLevelFilter() {
+			return _levelFilter;
+		}
+
+		@Override
+		protected void append(LoggingEvent event) {
+			ThreadGroup tg = Thread.currentThread().getThreadGroup();
+			if (!_threadGroup.parentOf(tg)) {
+				return;
+			}
+			StringBuilder str = new StringBuilder(getLayout().format(event));
+			if (getLayout().ignoresThrowable()) {
+				String[] lines = event.getThrowableStrRep();
+				if (lines != null) {
+					for (String line : lines) {
+						str.append(line);
+						str.append(Layout.LINE_SEP);
+					}
+				}
+			}
+			_session.write(OUT, str.toString());
+		}
+
+		@Override
+		public boolean requiresLayout() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+
+	}
+
+}
@@ -0,0 +1,225 @@
+package com.wat.melody.cli;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.wat.melody.cli.exception.CommandLineParsingException;
+import com.wat.melody.common.ex.MelodyException;
+import com.wat.melody.common.messages.Msg;
+import com.wat.melody.common.utils.ReturnCode;
+
+/**
+ * <p>
+ * A thin client, which asks a {@link Daemon} to launch a processing sequence,
+ * writes the logs the {@link Daemon} streams back on the standard output and
+ * exits with the return code of the processing.
+ * </p>
+ * 
+ * <p>
+ * The Command Line is the one of {@link Launcher} (see
+ * {@link ProcessorManagerLoader#parseCommandLine(String[])}). Because the
+ * {@link Daemon} doesn't run in the current working directory of the client,
+ * the current working directory of the client is sent with the Command Line :
+ * the {@link Daemon} resolves relative paths (of the Command Line, of the
+ * Global Configuration File, of the plug-in configuration directives and of
+ * the included files) from it. When the Option <tt>-C</tt> is not given, the
+ * default Global Configuration File of the client is sent.
+ * </p>
+ * 
+ * <p>
+ * On JVM termination (e.g. CTRL-C), the connection is closed, which stops the
+ * processing.
+ * </p>
+ * 
+ * <p>
+ * The client authenticates itself with the token the {@link Daemon} wrote in
+ * a file only their common owner can read (see {@link DaemonToken}).
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class DaemonClient {
+
+	/**
+	 * The first Command Line argument which launches a {@link DaemonClient}.
+	 */
+	public static final String CLIENT_OPTION = "--client";
+
+	/**
+	 * <p>
+	 * Ask the {@link Daemon} which listens on the given port to launch the
+	 * processing sequence described by the given Command Line.
+	 * </p>
+	 * 
+	 * @param args
+	 *            is <tt>&lt;port&gt; &lt;Command Line&gt;</tt>.
+	 * 
+	 * @return nothing but exit (i.e. call to System.exit) with the return code
+	 *         of the processing, 1 if the {@link Daemon} can't be reached, or
+	 *         130 if interrupted.
+	 */
+	public static void launch(String[] args) {
+		final Socket s;
+		final String token;
+		final List<String> cmdLine;
+		try {
+			int port = parsePort(args);
+			cmdLine = completeCommandLine(args, 1);
+			token = readToken(port);
+			s = new Socket(InetAddress.getByName(null), port);
+		} catch (MelodyException Ex) {
+			System.err.println(Ex.getUserFriendlyStackTrace());
+			System.exit(ReturnCode.KO.getValue());
+			return;
+		} catch (IOException Ex) {
+			MelodyException e = new MelodyException("Fail to connect to the "
+					+ "daemon. Start it with '" + Daemon.DAEMON_OPTION
+					+ " <port>'.", Ex);
+			System.err.println(e.getUserFriendlyStackTrace());
+			System.exit(ReturnCode.KO.getValue());
+			return;
+		}
+		// On JVM termination, closing the connection stops the processing
+		Thread sdh = new Thread("client-shutdown") {
+
+			@Override
+			public void run() {
+				try {
+					s.close();
+				} catch (IOException ignored) {
+				}
+			}
+
+		};
+		Runtime.getRuntime().addShutdownHook(sdh);
+		int rc;
+		try {
+			rc = send(s, token, cmdLine);
+		} catch (IOException Ex) {
+			// the connection was closed by the shutdown hook, or the daemon
+			// was stopped
+			rc = ReturnCode.INTERRUPTED.getValue();
+		}
+		// If we call System.exit while the shutdownHook is started, it will
+		// block indefinitely. (See Runtine.getRuntime().exit)
+		try {
+			Runtime.getRuntime().removeShutdownHook(sdh);
+			System.exit(rc);
+		} catch (IllegalStateException ignored) {
+		}
+	}
+
+	private static int parsePort(String[] args)
+			throws CommandLineParsingException {
+		if (args.length == 0) {
+			throw new CommandLineParsingException(Msg.bind(
+					Messages.CmdEx_MISSING_OPTION_VALUE, CLIENT_OPTION
+							.substring(1)));
+		}
+		try {
+			int port = Integer.parseInt(args[0]);
+			if (port < 1 || port > 65535) {
+				throw new NumberFormatException();
+			}
+			return port;
+		} catch (NumberFormatException Ex) {
+			throw new CommandLineParsingException(Msg.bind(
+					Messages.CmdEx_INVALID_OPTION_VALUE, CLIENT_OPTION
+							.substring(1)), new CommandLineParsingException(
+					Msg.bind(Messages.CmdEx_INVALID_PORT, args[0])));
+		}
+	}
+
+	private static String readToken(int port) throws MelodyException {
+		try {
+			return DaemonToken.read(port);
+		} catch (IOException Ex) {
+			throw new MelodyException("Fail to read the daemon token file '"
+					+ DaemonToken.getPath(port) + "'. Start the daemon with '"
+					+ Daemon.DAEMON_OPTION + " " + port + "' under the "
+					+ "current user.", Ex);
+		}
+	}
+
+	/**
+	 * @return the given Command Line (starting at the given index), which
+	 *         holds the Option <tt>-C</tt>.
+	 */
+	private static List<String> completeCommandLine(String[] args, int start)
+			throws CommandLineParsingException {
+		List<String> cmdLine = new ArrayList<String>(Arrays.asList(args)
+				.subList(start, args.length));
+		String[] a = cmdLine.toArray(new String[cmdLine.size()]);
+		if (new ProcessorManagerLoader()
+				.retrieveUserDefinedGlobalConfigurationFilePath(a) == null) {
+			cmdLine.add(0, "-C");
+			cmdLine.add(1, System.getProperty(
+					ProcessorManagerLoader.DEFAULT_CONFIGURATION_FILE_PROPERTY,
+					ProcessorManagerLoader.DEFAULT_CONFIGURATION_FILE));
+		}
+		return cmdLine;
+	}
+
+	/**
+	 * <p>
+	 * Send the given token, the current working directory and the given
+	 * Command Line to the {@link Daemon}, and write the frames it sends back
+	 * until the last one.
+	 * </p>
+	 * 
+	 * @return the return code of the processing.
+	 * 
+	 * @throws IOException
+	 *             if the connection was closed before the last frame.
+	 */
+	private static int send(Socket s, String token, List<String> cmdLine)
+			throws IOException {
+		DataOutputStream out = new DataOutputStream(s.getOutputStream());
+		out.writeUTF(Daemon.PROTOCOL);
+		out.writeUTF(token);
+		out.writeUTF(new File("").getAbsolutePath());
+		out.writeInt(cmdLine.size());
+		for (String arg : cmdLine) {
+			out.writeUTF(arg);
+		}
+		out.flush();
+		DataInputStream in = new DataInputStream(s.getInputStream());
+		while (true) {
+			byte type;
+			try {
+				type = in.readByte();
+			} catch (EOFException Ex) {
+				throw new IOException("Connection closed by the daemon.", Ex);
+			}
+			byte[] b = new byte[in.readInt()];
+			in.readFully(b);
+			String text = new String(b, Daemon.UTF8);
+			switch (type) {
+			case Daemon.EXIT:
+				return Integer.parseInt(text);
+			case Daemon.ERR:
+				print(System.err, text);
+				break;
+			default:
+				print(System.out, text);
+				break;
+			}
+		}
+	}
+
+	private static void print(PrintStream ps, String text) {
+		ps.print(text);
+		ps.flush();
+	}
+
+}
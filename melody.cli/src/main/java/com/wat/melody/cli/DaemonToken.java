@@ -0,0 +1,144 @@
+package com.wat.melody.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Set;
+
+/**
+ * <p>
+ * The shared secret, which a {@link DaemonClient} must send to be served by a
+ * {@link Daemon}.
+ * </p>
+ * 
+ * <p>
+ * When it starts, the {@link Daemon} generates a random token and writes it in
+ * a file, which only its owner can read (mode <tt>0600</tt>, in a directory of
+ * mode <tt>0700</tt>) : <tt>~/.melody/daemon-&lt;port&gt;.token</tt>. The
+ * {@link DaemonClient} reads it from the same location. Other local users can't
+ * read the token, and can't make the {@link Daemon} run sequences with the
+ * credentials of its owner.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+final class DaemonToken {
+
+	private static final int TOKEN_LENGTH = 32;
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private DaemonToken() {
+	}
+
+	/**
+	 * @return the path of the token file of the {@link Daemon} which listens
+	 *         on the given port.
+	 */
+	public static Path getPath(int port) {
+		return Paths.get(System.getProperty("user.home"), ".melody", "daemon-"
+				+ port + ".token");
+	}
+
+	/**
+	 * <p>
+	 * Generate a new token and write it in the token file of the given port,
+	 * which is readable by its owner only.
+	 * </p>
+	 * 
+	 * @return the generated token.
+	 * 
+	 * @throws IOException
+	 *             if the token file can't be written.
+	 */
+	public static String create(int port) throws IOException {
+		byte[] b = new byte[TOKEN_LENGTH];
+		new SecureRandom().nextBytes(b);
+		StringBuilder token = new StringBuilder(TOKEN_LENGTH * 2);
+		for (byte x : b) {
+			token.append(HEX[(x >> 4) & 0xF]);
+			token.append(HEX[x & 0xF]);
+		}
+		Path f = getPath(port);
+		createPrivate(f.getParent(), true);
+		Files.deleteIfExists(f);
+		createPrivate(f, false);
+		Files.write(f, token.toString().getBytes(Daemon.UTF8),
+				StandardOpenOption.TRUNCATE_EXISTING);
+		return token.toString();
+	}
+
+	/**
+	 * @return the token written in the token file of the given port.
+	 * 
+	 * @throws IOException
+	 *             if the token file can't be read (e.g. no daemon listens on
+	 *             the given port, or it is owned by another user).
+	 */
+	public static String read(int port) throws IOException {
+		return new String(Files.readAllBytes(getPath(port)), Daemon.UTF8)
+				.trim();
+	}
+
+	/**
+	 * <p>
+	 * Delete the token file of the given port, if it holds the given token.
+	 * </p>
+	 */
+	public static void delete(int port, String token) {
+		try {
+			if (matches(token, read(port))) {
+				Files.deleteIfExists(getPath(port));
+			}
+		} catch (IOException ignored) {
+		}
+	}
+
+	/**
+	 * @return <tt>true</tt> if the given tokens are equal. The time taken
+	 *         doesn't depend on the number of equal characters.
+	 */
+	public static boolean matches(String expected, String actual) {
+		if (expected == null || actual == null) {
+			return false;
+		}
+		return MessageDigest.isEqual(expected.getBytes(Daemon.UTF8),
+				actual.getBytes(Daemon.UTF8));
+	}
+
+	private static void createPrivate(Path p, boolean dir) throws IOException {
+		Set<PosixFilePermission> perms = PosixFilePermissions
+				.fromString(dir ? "rwx------" : "rw-------");
+		try {
+			if (dir) {
+				Files.createDirectories(p,
+						PosixFilePermissions.asFileAttribute(perms));
+				Files.setPosixFilePermissions(p, perms);
+			} else {
+				Files.createFile(p, PosixFilePermissions.asFileAttribute(perms));
+			}
+		} catch (UnsupportedOperationException Ex) {
+			// not a POSIX file system
+			if (dir) {
+				Files.createDirectories(p);
+			} else {
+				Files.createFile(p);
+			}
+			p.toFile().setReadable(false, false);
+			p.toFile().setWritable(false, false);
+			p.toFile().setReadable(true, true);
+			p.toFile().setWritable(true, true);
+			if (dir) {
+				p.toFile().setExecutable(false, false);
+				p.toFile().setExecutable(true, true);
+			}
+		}
+	}
+
+}
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.wat.melody.cli;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,6 +25,14 @@ public class Launcher {
 	 * taken in the Global Configuration File. Then, launch the processing
 	 * sequence.
 	 * 
+	 * <p>
+	 * When the first argument is {@link Daemon#DAEMON_OPTION}, start a
+	 * {@link Daemon} instead (see {@link Daemon#launch(String[])}). When the
+	 * first argument is {@link DaemonClient#CLIENT_OPTION}, ask a
+	 * {@link Daemon} to launch the processing sequence (see
+	 * {@link DaemonClient#launch(String[])}).
+	 * </p>
+	 * 
 	 * @param args
 	 *            is a string array, which should match the specifications of
 	 *            {@link ProcessorManagerLoader#parseCommandLine(String[])}.
@@ -33,6 +42,14 @@ public class Launcher {
 	 *         - 130) if an unexpected error occurred.
 	 */
 	public static void main(String[] args) {
+		if (args.length != 0 && args[0].equals(Daemon.DAEMON_OPTION)) {
+			Daemon.launch(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length != 0 && args[0].equals(DaemonClient.CLIENT_OPTION)) {
+			DaemonClient.launch(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
 
 		ProcessorManagerLoader pml = new ProcessorManagerLoader();
 		IProcessorManager pm = null;
@@ -50,11 +67,43 @@ public class Launcher {
 			System.exit(ReturnCode.ERRGEN.getValue());
 		}
 
+		ShutdownHook sdh = new ShutdownHook(pm, Thread.currentThread());
+		ReturnCode iReturnCode = process(pml, pm);
+		// If we call System.exit while the processing has already been
+		// stopped by user (i.e. the shutdownHook is started), it will block
+		// indefinitely. (See Runtine.getRuntime().exit)
+		// removeShutdownHook will throw IllegalStateException if the
+		// shutdownHook is running.
+		try {
+			Runtime.getRuntime().removeShutdownHook(sdh);
+			System.exit(iReturnCode.getValue());
+		} catch (IllegalStateException ignored) {
+		}
+	}
+
+	/**
+	 * <p>
+	 * Process the given {@link IProcessorManager}, log its final error, then
+	 * delete the temporary resources of the given
+	 * {@link ProcessorManagerLoader}.
+	 * </p>
+	 * 
+	 * @param pml
+	 *            is the {@link ProcessorManagerLoader} which created the given
+	 *            {@link IProcessorManager}.
+	 * @param pm
+	 *            is the {@link IProcessorManager} to process.
+	 * 
+	 * @return {@link ReturnCode#OK} if succeed, {@link ReturnCode#KO} if
+	 *         failed, {@link ReturnCode#INTERRUPTED} if interrupted, or
+	 *         {@link ReturnCode#ERRGEN} if an unexpected error occurred.
+	 */
+	public static ReturnCode process(ProcessorManagerLoader pml,
+			IProcessorManager pm) {
 		// The logger can only be created after log4j's initialization
 		Logger log = LoggerFactory.getLogger(Launcher.class);
 		Logger ex = LoggerFactory.getLogger("exception."
 				+ Launcher.class.getName());
-		ShutdownHook sdh = new ShutdownHook(pm, Thread.currentThread());
 		// DefaultProcessingListener dpl = new DefaultProcessingListener(pm);
 		ReturnCode iReturnCode = ReturnCode.ERRGEN;
 
@@ -92,17 +141,8 @@ public class Launcher {
 				log.warn(e.getUserFriendlyStackTrace());
 				ex.warn(e.getFullStackTrace());
 			}
-			// If we call System.exit while the processing has already been
-			// stopped by user (i.e. the shutdownHook is started), it will block
-			// indefinitely. (See Runtine.getRuntime().exit)
-			// removeShutdownHook will throw IllegalStateException if the
-			// shutdownHook is running.
-			try {
-				Runtime.getRuntime().removeShutdownHook(sdh);
-				System.exit(iReturnCode.getValue());
-			} catch (IllegalStateException ignored) {
-			}
 		}
+		return iReturnCode;
 	}
 
 }
\ No newline at end of file
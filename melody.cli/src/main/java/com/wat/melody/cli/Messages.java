@@ -11,15 +11,19 @@ public class Messages extends NLS {
 	public static String CmdEx_UNKNOWN_OPTION_SPECIFIER;
 	public static String CmdEx_MISSING_OPTION_VALUE;
 	public static String CmdEx_INVALID_OPTION_VALUE;
+	public static String CmdEx_MISSING_LONG_OPTION_VALUE;
+	public static String CmdEx_INVALID_LONG_OPTION_VALUE;
 	public static String CmdEx_TOOMUCH_LOG_THRESHOLD;
 	public static String CmdEx_UNKNOWN_ARGUMENT_ERROR;
 	public static String CmdEx_MISSING_SD;
 	public static String CmdEx_GENERIC_PARSE;
+	public static String CmdEx_INVALID_PORT;
 
 	public static String ConfEx_MISSING_DIRECTIVE;
 	public static String ConfEx_INVALID_DIRECTIVE;
 	public static String ConfEx_EMPTY_DIRECTIVE;
 	public static String ConfEx_INVALID_INTEGER_FORMAT;
+	public static String ConfEx_INVALID_BACK_PRESSURE_POLICY;
 	public static String ConfEx_GENERIC_GLOBAL_CONF_LOAD;
 
 	public static String ConfEx_MISSING_TASKS_DIRECTIVE;
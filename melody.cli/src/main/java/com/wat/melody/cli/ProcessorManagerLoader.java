@@ -3,7 +3,9 @@ package com.wat.melody.cli;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -20,6 +22,7 @@ import com.wat.melody.api.IResourcesDescriptor;
 import com.wat.melody.api.ISequenceDescriptor;
 import com.wat.melody.api.ITask;
 import com.wat.melody.api.ProcessorManagerFactory;
+import com.wat.melody.api.event.BackPressurePolicy;
 import com.wat.melody.api.exception.IllegalOrderException;
 import com.wat.melody.api.exception.IllegalResourcesFilterException;
 import com.wat.melody.api.exception.IllegalTargetsFilterException;
@@ -94,6 +97,10 @@ public class ProcessorManagerLoader {
 	public static final String BATCH_MODE = "batchMode";
 	public static final String PRESERVE_TEMPORARY_FILES_MODE = "preserveTemporaryFilesMode";
 	public static final String RUN_DRY_MODE = "runDryMode";
+	public static final String TASK_REPORT_PATH = "taskReportPath";
+	public static final String CHECKPOINT_JOURNAL_PATH = "checkpointJournalPath";
+	public static final String RESOURCES_JOURNAL_MODE = "resourcesJournalMode";
+	public static final String LISTENERS_BACK_PRESSURE_POLICY = "listenersBackPressurePolicy";
 	public static final String SEQUENCE_DESCRIPTOR_FILE_PATH = "sequenceDescriptorFilePath";
 	public static final String ORDERS = "orders";
 	public static final String PROPERTIES = "properties";
@@ -101,6 +108,14 @@ public class ProcessorManagerLoader {
 	public static final String TARGETS_FILTERS = "targetFilters";
 
 	private IProcessorManager _processorManager;
+	// null when configurations are not shared
+	private SharedConfigurations _sharedConfigurations;
+	// null when relative paths are resolved from the current working directory
+	private File _workingDirectory;
+	// the shared plug-in configurations acquired by this object
+	private List<IPlugInConfiguration> _acquiredPlugInConfigurations;
+	// null when the console appender's filter is used
+	private LevelRangeFilter _consoleFilter;
 
 	private static final String CONSOLE_APPENDER = "console";
 
@@ -110,6 +125,128 @@ public class ProcessorManagerLoader {
 	 * </p>
 	 */
 	public ProcessorManagerLoader() {
+		this(null);
+	}
+
+	/**
+	 * <p>
+	 * Create a new {@link ProcessorManagerLoader} object, which shares the
+	 * logging configuration and the plug-in configurations with the other
+	 * {@link ProcessorManagerLoader}s created with the given
+	 * {@link SharedConfigurations}. The created {@link IProcessorManager} has
+	 * its 'Shared Plug-In Configurations Mode' enabled (see
+	 * {@link IProcessorManager#enableSharedPlugInConfigurationsMode()}).
+	 * </p>
+	 * 
+	 * @param sc
+	 *            is the shared configurations, or <tt>null</tt> to load all
+	 *            configurations.
+	 */
+	public ProcessorManagerLoader(SharedConfigurations sc) {
+		_sharedConfigurations = sc;
+		_acquiredPlugInConfigurations = new ArrayList<IPlugInConfiguration>();
+	}
+
+	/**
+	 * @return the configurations shared with other
+	 *         {@link ProcessorManagerLoader}s, or <tt>null</tt>.
+	 */
+	public SharedConfigurations getSharedConfigurations() {
+		return _sharedConfigurations;
+	}
+
+	/**
+	 * @return the directory relative paths (of the Command Line and of the
+	 *         Global Configuration File) are resolved from, or <tt>null</tt> if
+	 *         they are resolved from the current working directory.
+	 */
+	public File getWorkingDirectory() {
+		return _workingDirectory;
+	}
+
+	/**
+	 * <p>
+	 * Set the directory relative paths are resolved from. The relative paths
+	 * of the Command Line, of the Global Configuration File, of the plug-in
+	 * configuration directives and of the included files are resolved from it
+	 * (e.g. the working directory of a {@link DaemonClient}).
+	 * </p>
+	 * 
+	 * @param workingDirectory
+	 *            is the directory relative paths are resolved from, or
+	 *            <tt>null</tt> to resolve them from the current working
+	 *            directory.
+	 * 
+	 * @return the previous working directory.
+	 */
+	public File setWorkingDirectory(File workingDirectory) {
+		File previous = getWorkingDirectory();
+		_workingDirectory = workingDirectory;
+		return previous;
+	}
+
+	/**
+	 * @return the canonical path of the given path, resolved from the working
+	 *         directory (see {@link #getWorkingDirectory()}), or the given path
+	 *         if it is absolute.
+	 */
+	private String absolutize(String path) throws IOException {
+		File f = new File(path);
+		if (f.isAbsolute()) {
+			return path;
+		}
+		if (getWorkingDirectory() != null) {
+			f = new File(getWorkingDirectory(), path);
+		}
+		return f.getCanonicalPath();
+	}
+
+	/**
+	 * <p>
+	 * Release the shared plug-in configurations this object acquired while
+	 * loading the Global Configuration File (see
+	 * {@link SharedConfigurations#releasePlugInConfiguration(IPlugInConfiguration)}
+	 * ). Must be called when the processing of the inner
+	 * {@link IProcessorManager} is done, or was never started. Does nothing if
+	 * configurations are not shared.
+	 * </p>
+	 */
+	public void releaseSharedPlugInConfigurations() {
+		SharedConfigurations sc = getSharedConfigurations();
+		if (sc == null) {
+			return;
+		}
+		for (IPlugInConfiguration pc : _acquiredPlugInConfigurations) {
+			sc.releasePlugInConfiguration(pc);
+		}
+		_acquiredPlugInConfigurations.clear();
+	}
+
+	/**
+	 * @return the filter the Options <tt>-q</tt> and <tt>-v</tt> modify, or
+	 *         <tt>null</tt> if they modify the filter of the console appender.
+	 */
+	public LevelRangeFilter getConsoleFilter() {
+		return _consoleFilter;
+	}
+
+	/**
+	 * <p>
+	 * Set the filter the Options <tt>-q</tt> and <tt>-v</tt> modify, instead
+	 * of the filter of the console appender (e.g. the filter of the appender
+	 * which streams the logs of a processing to a {@link DaemonClient}).
+	 * </p>
+	 * 
+	 * @param filter
+	 *            is the filter to modify, or <tt>null</tt> to modify the
+	 *            filter of the console appender.
+	 * 
+	 * @return the previous filter.
+	 */
+	public LevelRangeFilter setConsoleFilter(LevelRangeFilter filter) {
+		LevelRangeFilter previous = getConsoleFilter();
+		_consoleFilter = filter;
+		return previous;
 	}
 
 	/**
@@ -226,9 +363,21 @@ public class ProcessorManagerLoader {
 	 * Add the given Property to the Sequence Descriptor (see
 	 * {@link IProcessorManager#getSequenceDescriptor()},
 	 * {@link ISequenceDescriptor#addProperty(Property)}) ;</li>
+	 * 
+	 * <li><tt>--resume &lt;Checkpoint Journal File Path&gt;</tt><br/>
+	 * Resume the processing recorded in the given checkpoint journal (see
+	 * {@link IProcessorManager#setCheckpointJournalPath(String)},
+	 * {@link IProcessorManager#enableResumeMode()}) ;</li>
 	 * </ul>
 	 * </p>
 	 * 
+	 * <p>
+	 * The Option list ends at the first Argument which doesn't start with
+	 * <tt>-</tt>, or right after <tt>--</tt>. Any other <tt>--xxx</tt>, which is
+	 * not a long Option listed above, also ends the Option list, as
+	 * <tt>--</tt> does.
+	 * </p>
+	 * 
 	 * @param cmdLine
 	 *            is the Command Line to parse.
 	 * 
@@ -305,6 +454,11 @@ public class ProcessorManagerLoader {
 		}
 	}
 
+	/**
+	 * The long option which resumes a failed processing.
+	 */
+	private static final String RESUME_OPTION = "resume";
+
 	private Pattern C_OPTION_FINDER = Pattern.compile("^-(\\w*)C\\w*$");
 
 	/**
@@ -397,7 +551,12 @@ public class ProcessorManagerLoader {
 				throw new CommandLineParsingException(
 						Messages.CmdEx_MISSING_OPTION_SPECIFIER);
 			}
-			// '--' means this is the end of option list
+			// '--<name>' is a long option
+			if (sOpt.charAt(0) == '-' && isLongOption(sOpt.substring(1))) {
+				i = parseLongOption(cmdLine, i, sOpt.substring(1));
+				continue;
+			}
+			// '--' (or any other '--xxx') means this is the end of option list
 			// => exit option parsing loop
 			if (sOpt.charAt(0) == '-') {
 				return i + 1; // +1 because : must go forward the '--'
@@ -461,13 +620,43 @@ public class ProcessorManagerLoader {
 		}
 	}
 
+	private static boolean isLongOption(String sOpt) {
+		return sOpt.equals(RESUME_OPTION);
+	}
+
+	private int parseLongOption(String[] cmdLine, int i, String sOpt)
+			throws CommandLineParsingException, IOException {
+		switch (sOpt) {
+		case RESUME_OPTION:
+			return parseResume(cmdLine, i);
+		default:
+			throw new CommandLineParsingException(Msg.bind(
+					Messages.CmdEx_UNKNOWN_OPTION_SPECIFIER, "--" + sOpt));
+		}
+	}
+
+	private int parseResume(String[] cmdLine, int i)
+			throws CommandLineParsingException, IOException {
+		if (++i >= cmdLine.length || cmdLine[i].equals("--")) {
+			throw new CommandLineParsingException(Msg.bind(
+					Messages.CmdEx_MISSING_LONG_OPTION_VALUE, RESUME_OPTION));
+		}
+		try {
+			IProcessorManager pm = getProcessorManager();
+			pm.setCheckpointJournalPath(absolutize(cmdLine[i]));
+			pm.enableResumeMode();
+		} catch (MelodyException Ex) {
+			throw new CommandLineParsingException(Msg.bind(
+					Messages.CmdEx_INVALID_LONG_OPTION_VALUE, RESUME_OPTION),
+					Ex);
+		}
+		return i;
+	}
+
 	private int parseIncreaseLogThreshold(String[] cmdLine, int i)
 			throws CommandLineParsingException {
 		try {
-			Logger logger = Logger.getRootLogger();
-			Appender appender = logger.getAppender(CONSOLE_APPENDER);
-			LevelRangeFilter filter = null;
-			filter = (LevelRangeFilter) appender.getFilter();
+			LevelRangeFilter filter = findConsoleFilter();
 			filter.setLevelMin(LogThreshold.increase(filter.getLevelMin()));
 			filter.activateOptions();
 		} catch (IllegalLogThresholdException Ex) {
@@ -481,9 +670,7 @@ public class ProcessorManagerLoader {
 	private int parseDecreaseLogThreshold(String[] cmdLine, int i)
 			throws CommandLineParsingException {
 		try {
-			Logger logger = Logger.getRootLogger();
-			Appender appender = logger.getAppender(CONSOLE_APPENDER);
-			LevelRangeFilter filter = (LevelRangeFilter) appender.getFilter();
+			LevelRangeFilter filter = findConsoleFilter();
 			filter.setLevelMin(LogThreshold.decrease(filter.getLevelMin()));
 			filter.activateOptions();
 		} catch (IllegalLogThresholdException Ex) {
@@ -493,6 +680,15 @@ public class ProcessorManagerLoader {
 		return i;
 	}
 
+	private LevelRangeFilter findConsoleFilter() {
+		if (getConsoleFilter() != null) {
+			return getConsoleFilter();
+		}
+		Logger logger = Logger.getRootLogger();
+		Appender appender = logger.getAppender(CONSOLE_APPENDER);
+		return (LevelRangeFilter) appender.getFilter();
+	}
+
 	private int parseResourcesFilter(String[] cmdLine, int i)
 			throws CommandLineParsingException {
 		if (cmdLine[++i].equals("--")) {
@@ -555,7 +751,7 @@ public class ProcessorManagerLoader {
 		}
 		try {
 			IProcessorManager pm = getProcessorManager();
-			pm.getResourcesDescriptor().add(cmdLine[i]);
+			pm.getResourcesDescriptor().add(absolutize(cmdLine[i]));
 		} catch (IllegalTargetsFilterException Ex) {
 			throw new CommandLineParsingException(Msg.bind(
 					Messages.CmdEx_INVALID_OPTION_VALUE, 'T'), Ex);
@@ -576,12 +772,7 @@ public class ProcessorManagerLoader {
 					Messages.CmdEx_MISSING_OPTION_VALUE, 'f'));
 		}
 		try {
-			String val = cmdLine[i];
-			// make it absolute
-			File f = new File(val);
-			if (!f.isAbsolute()) {
-				val = f.getCanonicalPath();
-			}
+			String val = absolutize(cmdLine[i]);
 			IProcessorManager pm = getProcessorManager();
 			pm.getSequenceDescriptor().load(val);
 			pm.getRegisteredTasks().registerExtension(
@@ -677,6 +868,14 @@ public class ProcessorManagerLoader {
 	 * Enable/disable 'Run Dry Mode' (see
 	 * {@link IProcessorManager#disableRunDryMode()} ;</li>
 	 * 
+	 * <li><tt>taskReportPath</tt><br/>
+	 * Set the path of the execution report file (see
+	 * {@link IProcessorManager#setTaskReportPath(String)}) ;</li>
+	 * 
+	 * <li><tt>checkpointJournalPath</tt><br/>
+	 * Set the path of the checkpoint journal (see
+	 * {@link IProcessorManager#setCheckpointJournalPath(String)}) ;</li>
+	 * 
 	 * <li><tt>sequenceDescriptorFilePath</tt><br/>
 	 * Set the path of the Sequence Descriptor with the given value (see
 	 * {@link IProcessorManager#getSequenceDescriptor()},
@@ -730,12 +929,9 @@ public class ProcessorManagerLoader {
 	public void loadGlobalConfigurationFile(String gcfPath)
 			throws ConfigurationLoadingException, IOException {
 		try {
-			// make it absolute
-			File f = new File(gcfPath);
-			if (!f.isAbsolute()) {
-				gcfPath = f.getCanonicalPath();
-			}
-			PropertySet oProps = new PropertySet(gcfPath);
+			gcfPath = absolutize(gcfPath);
+			PropertySet oProps = new PropertySet(gcfPath,
+					getWorkingDirectory());
 
 			// Mandatory Configuration Directives
 			loadLoggingVariablesToSubstitute(oProps);
@@ -753,6 +949,10 @@ public class ProcessorManagerLoader {
 			loadBatchMode(oProps);
 			loadPreserveTmpFileMode(oProps);
 			loadRunDryMode(oProps);
+			loadTaskReportPath(oProps);
+			loadCheckpointJournalPath(oProps);
+			loadResourcesJournalMode(oProps);
+			loadListenersBackPressurePolicy(oProps);
 			loadSequenceDescriptor(oProps);
 			loadOrderNames(oProps);
 			loadProperties(oProps);
@@ -824,12 +1024,14 @@ public class ProcessorManagerLoader {
 				throw new ConfigurationLoadingException(
 						Messages.ConfEx_EMPTY_DIRECTIVE);
 			}
-			// make it absolute
-			File f = new File(val);
-			if (!f.isAbsolute()) {
-				val = f.getCanonicalPath();
-			}
+			val = absolutize(val);
 			FS.validateFileExists(val);
+			// Loading it again would remove the appenders of running
+			// processing
+			if (getSharedConfigurations() != null
+					&& !getSharedConfigurations().markLoggingConfigured()) {
+				return;
+			}
 			org.apache.log4j.xml.DOMConfigurator.configure(val);
 		} catch (MelodyException | FactoryConfigurationError | IOException Ex) {
 			throw new ConfigurationLoadingException(Msg.bind(
@@ -854,6 +1056,9 @@ public class ProcessorManagerLoader {
 			ProcessorManagerFactory pmf = null;
 			pmf = ProcessorManagerFactory.newInstance();
 			setProcessorManager(pmf.newProcessorManager());
+			if (getSharedConfigurations() != null) {
+				getProcessorManager().enableSharedPlugInConfigurationsMode();
+			}
 		} catch (ProcessorManagerFactoryException
 				| ConfigurationLoadingException Ex) {
 			throw new ConfigurationLoadingException(
@@ -875,11 +1080,7 @@ public class ProcessorManagerLoader {
 				throw new ConfigurationLoadingException(
 						Messages.ConfEx_EMPTY_DIRECTIVE);
 			}
-			// make it absolute
-			File f = new File(val);
-			if (!f.isAbsolute()) {
-				val = f.getCanonicalPath();
-			}
+			val = absolutize(val);
 			IProcessorManager pm = getProcessorManager();
 			pm.setWorkingFolderPath(val);
 		} catch (MelodyException | IOException Ex) {
@@ -944,45 +1145,49 @@ public class ProcessorManagerLoader {
 		if (val.trim().length() == 0) {
 			return;
 		}
+		// all files are loaded at once, which is much faster
+		List<String> paths = new ArrayList<String>();
 		try {
 			for (String rdd : val.split(",")) {
 				rdd = rdd.trim();
 				if (rdd.length() == 0) {
 					continue;
 				}
-				loadResourcesDescriptor(oProps, rdd);
+				paths.add(absolutize(loadResourcesDescriptor(oProps, rdd)));
 			}
-		} catch (ConfigurationLoadingException Ex) {
+			IProcessorManager pm = getProcessorManager();
+			pm.getResourcesDescriptor().addAll(paths);
+		} catch (IllegalTargetsFilterException Ex) {
+			throw new ConfigurationLoadingException(Msg.bind(
+					Messages.ConfEx_INVALID_DIRECTIVE, TARGETS_FILTERS), Ex);
+		} catch (IllegalResourcesFilterException Ex) {
+			throw new ConfigurationLoadingException(Msg.bind(
+					Messages.ConfEx_INVALID_DIRECTIVE, RESOURCES_FILTERS), Ex);
+		} catch (MelodyException Ex) {
 			throw new ConfigurationLoadingException(Msg.bind(
 					Messages.ConfEx_INVALID_DIRECTIVE, RESOURCES_DESCRIPTORS),
 					Ex);
 		}
 	}
 
-	private void loadResourcesDescriptor(PropertySet oProps, String rdd)
-			throws ConfigurationLoadingException, IOException {
+	/**
+	 * @return the path of the Resources Descriptor defined by the given
+	 *         directive.
+	 */
+	private String loadResourcesDescriptor(PropertySet oProps, String rdd)
+			throws ConfigurationLoadingException {
 		if (!oProps.containsKey(rdd)) {
 			throw new ConfigurationLoadingException(Msg.bind(
 					Messages.ConfEx_MISSING_DIRECTIVE, rdd));
 		}
-		try {
-			String val = oProps.get(rdd);
-			if (val.trim().length() == 0) {
-				throw new ConfigurationLoadingException(
-						Messages.ConfEx_EMPTY_DIRECTIVE);
-			}
-			IProcessorManager pm = getProcessorManager();
-			pm.getResourcesDescriptor().add(val);
-		} catch (IllegalTargetsFilterException Ex) {
-			throw new ConfigurationLoadingException(Msg.bind(
-					Messages.ConfEx_INVALID_DIRECTIVE, TARGETS_FILTERS), Ex);
-		} catch (IllegalResourcesFilterException Ex) {
-			throw new ConfigurationLoadingException(Msg.bind(
-					Messages.ConfEx_INVALID_DIRECTIVE, RESOURCES_FILTERS), Ex);
-		} catch (MelodyException Ex) {
+		String val = oProps.get(rdd);
+		if (val.trim().length() == 0) {
 			throw new ConfigurationLoadingException(Msg.bind(
-					Messages.ConfEx_INVALID_DIRECTIVE, rdd), Ex);
+					Messages.ConfEx_INVALID_DIRECTIVE, rdd),
+					new ConfigurationLoadingException(
+							Messages.ConfEx_EMPTY_DIRECTIVE));
 		}
+		return val;
 	}
 
 	private void loadBatchMode(PropertySet oProps)
@@ -1031,6 +1236,84 @@ public class ProcessorManagerLoader {
 		}
 	}
 
+	private void loadTaskReportPath(PropertySet oProps)
+			throws ConfigurationLoadingException {
+		if (!oProps.containsKey(TASK_REPORT_PATH)) {
+			return;
+		}
+		try {
+			String val = oProps.get(TASK_REPORT_PATH);
+			if (val.trim().length() == 0) {
+				throw new ConfigurationLoadingException(
+						Messages.ConfEx_EMPTY_DIRECTIVE);
+			}
+			val = absolutize(val);
+			IProcessorManager pm = getProcessorManager();
+			pm.setTaskReportPath(val);
+		} catch (MelodyException | IOException Ex) {
+			throw new ConfigurationLoadingException(Msg.bind(
+					Messages.ConfEx_INVALID_DIRECTIVE, TASK_REPORT_PATH), Ex);
+		}
+	}
+
+	private void loadCheckpointJournalPath(PropertySet oProps)
+			throws ConfigurationLoadingException {
+		if (!oProps.containsKey(CHECKPOINT_JOURNAL_PATH)) {
+			return;
+		}
+		try {
+			String val = oProps.get(CHECKPOINT_JOURNAL_PATH);
+			if (val.trim().length() == 0) {
+				throw new ConfigurationLoadingException(
+						Messages.ConfEx_EMPTY_DIRECTIVE);
+			}
+			val = absolutize(val);
+			IProcessorManager pm = getProcessorManager();
+			pm.setCheckpointJournalPath(val);
+		} catch (MelodyException | IOException Ex) {
+			throw new ConfigurationLoadingException(
+					Msg.bind(Messages.ConfEx_INVALID_DIRECTIVE,
+							CHECKPOINT_JOURNAL_PATH), Ex);
+		}
+	}
+
+	private void loadResourcesJournalMode(PropertySet oProps)
+			throws ConfigurationLoadingException {
+		if (!oProps.containsKey(RESOURCES_JOURNAL_MODE)) {
+			return;
+		}
+		try {
+			String val = oProps.get(RESOURCES_JOURNAL_MODE);
+			IProcessorManager pm = getProcessorManager();
+			pm.setResourcesJournalMode(Bool.parseString(val));
+		} catch (MelodyException Ex) {
+			throw new ConfigurationLoadingException(Msg.bind(
+					Messages.ConfEx_INVALID_DIRECTIVE, RESOURCES_JOURNAL_MODE),
+					Ex);
+		}
+	}
+
+	private void loadListenersBackPressurePolicy(PropertySet oProps)
+			throws ConfigurationLoadingException {
+		if (!oProps.containsKey(LISTENERS_BACK_PRESSURE_POLICY)) {
+			return;
+		}
+		String val = oProps.get(LISTENERS_BACK_PRESSURE_POLICY).trim();
+		for (BackPressurePolicy policy : BackPressurePolicy.values()) {
+			if (policy.name().equalsIgnoreCase(val)) {
+				IProcessorManager pm = getProcessorManager();
+				pm.setListenersBackPressurePolicy(policy);
+				return;
+			}
+		}
+		throw new ConfigurationLoadingException(Msg.bind(
+				Messages.ConfEx_INVALID_DIRECTIVE,
+				LISTENERS_BACK_PRESSURE_POLICY),
+				new ConfigurationLoadingException(Msg.bind(
+						Messages.ConfEx_INVALID_BACK_PRESSURE_POLICY, val,
+						Arrays.asList(BackPressurePolicy.values()))));
+	}
+
 	private void loadSequenceDescriptor(PropertySet oProps)
 			throws ConfigurationLoadingException {
 		if (!oProps.containsKey(SEQUENCE_DESCRIPTOR_FILE_PATH)) {
@@ -1042,11 +1325,7 @@ public class ProcessorManagerLoader {
 				throw new ConfigurationLoadingException(
 						Messages.ConfEx_EMPTY_DIRECTIVE);
 			}
-			// make it absolute
-			File f = new File(val);
-			if (!f.isAbsolute()) {
-				val = f.getCanonicalPath();
-			}
+			val = absolutize(val);
 			IProcessorManager pm = getProcessorManager();
 			pm.getSequenceDescriptor().load(val);
 			pm.getRegisteredTasks().registerExtension(
@@ -1308,13 +1587,47 @@ public class ProcessorManagerLoader {
 
 	private void loadPlugInConfiguration(PropertySet oProps, String pcd)
 			throws ConfigurationLoadingException, IOException {
-		String pcf = loadPlugInConfigurationDirective(oProps, pcd);
-		PropertySet pcps = loadPlugInConfigurationFile(oProps, pcd, pcf);
+		String pcf = absolutize(loadPlugInConfigurationDirective(oProps, pcd));
+		SharedConfigurations sc = getSharedConfigurations();
+		if (sc == null) {
+			registerPlugInConfiguration(loadPlugInConfiguration(oProps, pcd,
+					loadPlugInConfigurationFile(oProps, pcd, pcf)));
+			return;
+		}
+		// The plug-in configuration is loaded once, and is shared while its
+		// file is not modified
+		synchronized (sc) {
+			File f = new File(pcf);
+			IPlugInConfiguration pc = sc.acquirePlugInConfiguration(f);
+			if (pc == null) {
+				long lastModified = f.lastModified();
+				long length = f.length();
+				PropertySet pcps = loadPlugInConfigurationFile(oProps, pcd,
+						pcf);
+				pc = loadPlugInConfiguration(oProps, pcd, pcps);
+				sc.putPlugInConfiguration(f, lastModified, length,
+						pcps.getIncludedFiles(), pc);
+				_acquiredPlugInConfigurations.add(pc);
+			} else {
+				_acquiredPlugInConfigurations.add(pc);
+				if (getProcessorManager().getPluginConfigurations().contains(
+						pc.getClass())) {
+					throw new ConfigurationLoadingException(Msg.bind(
+							Messages.ConfEx_DUPLICATE_CONF_DIRECTIVE,
+							IPlugInConfiguration.PLUGIN_CONF_CLASS, pcf,
+							pc.getClass()));
+				}
+			}
+			registerPlugInConfiguration(pc);
+		}
+	}
+
+	private IPlugInConfiguration loadPlugInConfiguration(PropertySet oProps,
+			String pcd, PropertySet pcps) throws ConfigurationLoadingException {
 		String pcc = findPlugInConfigurationClassName(oProps, pcd, pcps);
 		Class<? extends IPlugInConfiguration> c = convertPlugInConfigurationClass(
 				pcps, pcc);
-		IPlugInConfiguration pc = instanciatePlugInConfiguration(pcps, c);
-		registerPlugInConfiguration(pc);
+		return instanciatePlugInConfiguration(pcps, c);
 	}
 
 	private String loadPlugInConfigurationDirective(PropertySet oProps,
@@ -1338,12 +1651,8 @@ public class ProcessorManagerLoader {
 			IOException {
 		PropertySet pcps = null;
 		try {
-			// make it absolute
-			File f = new File(pcf);
-			if (!f.isAbsolute()) {
-				pcf = f.getCanonicalPath();
-			}
-			pcps = new PropertySet(pcf);
+			pcf = absolutize(pcf);
+			pcps = new PropertySet(pcf, getWorkingDirectory());
 		} catch (IllegalFileException Ex) {
 			throw new ConfigurationLoadingException(Msg.bind(
 					Messages.ConfEx_NVF_PLUGINS_DIRECTIVE, pcd, pcf), Ex);
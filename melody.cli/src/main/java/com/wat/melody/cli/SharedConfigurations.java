@@ -0,0 +1,299 @@
+package com.wat.melody.cli;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wat.melody.api.IPlugInConfiguration;
+import com.wat.melody.common.ex.MelodyException;
+
+/**
+ * <p>
+ * The configurations which are loaded once and shared by all the
+ * {@link ProcessorManagerLoader}s of a long-lived process (see {@link Daemon}
+ * ) :
+ * <ul>
+ * <li>The logging configuration is only loaded by the first
+ * {@link ProcessorManagerLoader}, because loading it again would remove the
+ * appenders which stream the logs of running processing ;</li>
+ * <li>Plug-in configurations are indexed by the canonical path of their
+ * configuration file : a plug-in configuration is reused (with the resources
+ * it holds, like pooled connections) as long as the last modification time
+ * and the size of its configuration file and of the files it includes don't
+ * change ;</li>
+ * </ul>
+ * </p>
+ * 
+ * <p>
+ * Each {@link ProcessorManagerLoader} acquires the plug-in configurations it
+ * uses, and releases them when its processing is done. A plug-in configuration
+ * whose file was modified is retired : it is no more reused, and it is closed
+ * as soon as the last processing which uses it releases it.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class SharedConfigurations {
+
+	private static Logger log = LoggerFactory
+			.getLogger(SharedConfigurations.class);
+
+	private boolean _loggingConfigured;
+	private Map<String, SharedPlugInConfiguration> _pluginConfigurations;
+	// the plug-in configurations whose file was modified, which are still
+	// used by running processing
+	private List<SharedPlugInConfiguration> _retiredPluginConfigurations;
+
+	public SharedConfigurations() {
+		_loggingConfigured = false;
+		_pluginConfigurations = new HashMap<String, SharedPlugInConfiguration>();
+		_retiredPluginConfigurations = new ArrayList<SharedPlugInConfiguration>();
+	}
+
+	/**
+	 * <p>
+	 * Mark the logging configuration as loaded.
+	 * </p>
+	 * 
+	 * @return <tt>true</tt> if the logging configuration was not loaded yet,
+	 *         which means the caller must load it.
+	 */
+	public synchronized boolean markLoggingConfigured() {
+		boolean previous = _loggingConfigured;
+		_loggingConfigured = true;
+		return !previous;
+	}
+
+	/**
+	 * <p>
+	 * Acquire the plug-in configuration which was loaded from the given file.
+	 * The caller must release it (see
+	 * {@link #releasePlugInConfiguration(IPlugInConfiguration)}) when its
+	 * processing is done.
+	 * </p>
+	 * 
+	 * @param f
+	 *            is a plug-in configuration file.
+	 * 
+	 * @return the plug-in configuration which was loaded from the given file,
+	 *         or <tt>null</tt> if the given file was never loaded or was
+	 *         modified since it was loaded.
+	 * 
+	 * @throws IOException
+	 *             if the canonical path of the given file cannot be computed.
+	 */
+	public synchronized IPlugInConfiguration acquirePlugInConfiguration(File f)
+			throws IOException {
+		File c = f.getCanonicalFile();
+		SharedPlugInConfiguration e = _pluginConfigurations.get(c.getPath());
+		if (e == null) {
+			return null;
+		}
+		if (e.isValid()) {
+			e.acquire();
+			return e.getPlugInConfiguration();
+		}
+		log.info("Plug-In Configuration File '" + c + "' (or a file it "
+				+ "includes) was modified. It will be loaded again.");
+		_pluginConfigurations.remove(c.getPath());
+		retire(e);
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Register the plug-in configuration loaded from the given file, so that
+	 * next {@link ProcessorManagerLoader}s reuse it. The given plug-in
+	 * configuration is acquired by the caller, which must release it (see
+	 * {@link #releasePlugInConfiguration(IPlugInConfiguration)}) when its
+	 * processing is done.
+	 * </p>
+	 * 
+	 * @param f
+	 *            is a plug-in configuration file, whose last modification time
+	 *            and size were read before it was loaded.
+	 * @param lastModified
+	 *            is the last modification time of the given file, read before
+	 *            it was loaded.
+	 * @param length
+	 *            is the size of the given file, read before it was loaded.
+	 * @param includedFiles
+	 *            are the files the given file includes (see
+	 *            {@link com.wat.melody.common.properties.PropertySet#getIncludedFiles()}
+	 *            ). The plug-in
+	 *            configuration is loaded again when one of them is modified.
+	 * @param pc
+	 *            is the plug-in configuration loaded from the given file.
+	 * 
+	 * @throws IOException
+	 *             if the canonical path of the given file cannot be computed.
+	 */
+	public synchronized void putPlugInConfiguration(File f, long lastModified,
+			long length, List<String> includedFiles, IPlugInConfiguration pc)
+			throws IOException {
+		File c = f.getCanonicalFile();
+		List<FileStamp> stamps = new ArrayList<FileStamp>();
+		stamps.add(new FileStamp(c, lastModified, length));
+		for (String include : includedFiles) {
+			File i = new File(include);
+			stamps.add(new FileStamp(i, i.lastModified(), i.length()));
+		}
+		SharedPlugInConfiguration e = new SharedPlugInConfiguration(stamps, pc);
+		e.acquire();
+		SharedPlugInConfiguration previous = _pluginConfigurations.put(
+				c.getPath(), e);
+		if (previous != null) {
+			retire(previous);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Release a plug-in configuration acquired with
+	 * {@link #acquirePlugInConfiguration(File)} or registered with
+	 * {@link #putPlugInConfiguration(File, long, long, List, IPlugInConfiguration)}
+	 * . If it was retired and no more processing uses it, it is closed.
+	 * </p>
+	 * 
+	 * @param pc
+	 *            is the plug-in configuration to release.
+	 */
+	public void releasePlugInConfiguration(IPlugInConfiguration pc) {
+		synchronized (this) {
+			SharedPlugInConfiguration retired = null;
+			for (SharedPlugInConfiguration e : _pluginConfigurations.values()) {
+				if (e.getPlugInConfiguration() == pc) {
+					e.release();
+					return;
+				}
+			}
+			for (SharedPlugInConfiguration e : _retiredPluginConfigurations) {
+				if (e.getPlugInConfiguration() == pc) {
+					retired = e;
+					break;
+				}
+			}
+			if (retired == null || retired.release() > 0) {
+				return;
+			}
+			_retiredPluginConfigurations.remove(retired);
+		}
+		// closed outside the lock : closing pooled connections can be long
+		close(pc);
+	}
+
+	private void retire(SharedPlugInConfiguration e) {
+		if (e.isUsed()) {
+			_retiredPluginConfigurations.add(e);
+		} else {
+			close(e.getPlugInConfiguration());
+		}
+	}
+
+	/**
+	 * <p>
+	 * Release the resources held by all plug-in configurations which implement
+	 * {@link Closeable} (e.g. pooled connections). Must be called when no more
+	 * processing runs.
+	 * </p>
+	 */
+	public synchronized void close() {
+		List<SharedPlugInConfiguration> pcs = new ArrayList<SharedPlugInConfiguration>(
+				_retiredPluginConfigurations);
+		pcs.addAll(_pluginConfigurations.values());
+		_pluginConfigurations.clear();
+		_retiredPluginConfigurations.clear();
+		for (SharedPlugInConfiguration e : pcs) {
+			close(e.getPlugInConfiguration());
+		}
+	}
+
+	private static void close(IPlugInConfiguration pc) {
+		if (!(pc instanceof Closeable)) {
+			return;
+		}
+		try {
+			((Closeable) pc).close();
+		} catch (IOException | RuntimeException Ex) {
+			log.warn(new MelodyException("Fail to close plug-in "
+					+ "configuration '" + pc.getClass().getCanonicalName()
+					+ "'.", Ex).getUserFriendlyStackTrace());
+		}
+	}
+
+	private static class FileStamp {
+
+		private File _file;
+		private long _lastModified;
+		private long _length;
+
+		public FileStamp(File f, long lastModified, long length) {
+			_file = f;
+			_lastModified = lastModified;
+			_length = length;
+		}
+
+		public boolean isValid() {
+			return _lastModified == _file.lastModified()
+					&& _length == _file.length();
+		}
+
+	}
+
+	private static class SharedPlugInConfiguration {
+
+		// the configuration file, then the files it includes
+		private List<FileStamp> _stamps;
+		private IPlugInConfiguration _pc;
+		// the number of processing which use it
+		private int _references;
+
+		public SharedPlugInConfiguration(List<FileStamp> stamps,
+				IPlugInConfiguration pc) {
+			_stamps = stamps;
+			_pc = pc;
+			_references = 0;
+		}
+
+		public void acquire() {
+			_references++;
+		}
+
+		/**
+		 * @return the number of processing which still use it.
+		 */
+		public int release() {
+			if (_references > 0) {
+				_references--;
+			}
+			return _references;
+		}
+
+		public boolean isUsed() {
+			return _references > 0;
+		}
+
+		public boolean isValid() {
+			for (FileStamp stamp : _stamps) {
+				if (!stamp.isValid()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		public IPlugInConfiguration getPlugInConfiguration() {
+			return _pc;
+		}
+
+	}
+
+}
@@ -1,5 +1,7 @@
 package com.wat.melody.cloud.instance;
 
+import java.util.concurrent.locks.Lock;
+
 import org.w3c.dom.Element;
 
 import com.wat.melody.cloud.disk.DiskDeviceList;
@@ -15,6 +17,7 @@ import com.wat.melody.common.firewall.FireWallRules;
 import com.wat.melody.common.firewall.FireWallRulesPerDevice;
 import com.wat.melody.common.firewall.NetworkDeviceName;
 import com.wat.melody.common.keypair.KeyPairName;
+import com.wat.melody.common.xml.DocHelper;
 import com.wat.melody.common.xml.exception.NodeRelatedException;
 
 /**
@@ -223,11 +226,16 @@ public class InstanceControllerRelatedToAnInstanceElement extends
 		}
 		for (NetworkDevice nd : netDevices) {
 			Element d = getNetworkDeviceElement(nd);
-			synchronized (getInstanceElement().getOwnerDocument()) {
+			Lock lock = DocHelper.getReadWriteLock(
+					getInstanceElement().getOwnerDocument()).writeLock();
+			lock.lock();
+			try {
 				removeData(d, NetworkDevicesLoader.IP_ATTR);
 				removeData(d, NetworkDevicesLoader.FQDN_ATTR);
 				removeData(d, NetworkDevicesLoader.NAT_IP_ATTR);
 				removeData(d, NetworkDevicesLoader.NAT_FQDN_ATTR);
+			} finally {
+				lock.unlock();
 			}
 		}
 	}
@@ -241,11 +249,16 @@ public class InstanceControllerRelatedToAnInstanceElement extends
 				// The instance node could have no such network device node
 				continue;
 			}
-			synchronized (getInstanceElement().getOwnerDocument()) {
+			Lock lock = DocHelper.getReadWriteLock(
+					getInstanceElement().getOwnerDocument()).writeLock();
+			lock.lock();
+			try {
 				setData(d, NetworkDevicesLoader.IP_ATTR, nd.getIP());
 				setData(d, NetworkDevicesLoader.FQDN_ATTR, nd.getFQDN());
 				setData(d, NetworkDevicesLoader.NAT_IP_ATTR, nd.getNatIP());
 				setData(d, NetworkDevicesLoader.NAT_FQDN_ATTR, nd.getNatFQDN());
+			} finally {
+				lock.unlock();
 			}
 		}
 		fireInstanceStarted();
@@ -255,11 +268,25 @@ public class InstanceControllerRelatedToAnInstanceElement extends
 		if (value == null || value.length() == 0) {
 			return;
 		}
-		elmt.setAttribute(attr, value);
+		Lock lock = DocHelper.getReadWriteLock(elmt.getOwnerDocument())
+				.writeLock();
+		lock.lock();
+		try {
+			elmt.setAttribute(attr, value);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	protected void removeData(Element elmt, String attr) {
-		elmt.removeAttribute(attr);
+		Lock lock = DocHelper.getReadWriteLock(elmt.getOwnerDocument())
+				.writeLock();
+		lock.lock();
+		try {
+			elmt.removeAttribute(attr);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	private Element getNetworkDeviceElement(NetworkDevice netdev)
@@ -1,11 +1,14 @@
 package com.wat.melody.cloud.protectedarea;
 
+import java.util.concurrent.locks.Lock;
+
 import org.w3c.dom.Element;
 
 import com.wat.melody.cloud.protectedarea.exception.ProtectedAreaException;
 import com.wat.melody.cloud.protectedarea.xml.ProtectedAreaDatasLoader;
 import com.wat.melody.common.firewall.FireWallRules;
 import com.wat.melody.common.firewall.FireWallRulesPerDevice;
+import com.wat.melody.common.xml.DocHelper;
 
 /**
  * <p>
@@ -125,11 +128,25 @@ public class ProtectedAreaControllerRelatedToAProtectedAreaElement extends
 		if (value == null || value.length() == 0) {
 			return;
 		}
-		elmt.setAttribute(attr, value);
+		Lock lock = DocHelper.getReadWriteLock(elmt.getOwnerDocument())
+				.writeLock();
+		lock.lock();
+		try {
+			elmt.setAttribute(attr, value);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	protected void removeData(Element elmt, String attr) {
-		elmt.removeAttribute(attr);
+		Lock lock = DocHelper.getReadWriteLock(elmt.getOwnerDocument())
+				.writeLock();
+		lock.lock();
+		try {
+			elmt.removeAttribute(attr);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 }
\ No newline at end of file
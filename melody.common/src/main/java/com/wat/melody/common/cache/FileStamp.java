@@ -0,0 +1,112 @@
+package com.wat.melody.common.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * <p>
+ * The path, the last modification time and the size of a file, at a given
+ * time.
+ * </p>
+ *
+ * <p>
+ * Caches of objects built from a file (e.g. a parsed XML file) index them by
+ * {@link FileStamp} : once the file is modified, its {@link FileStamp} is no
+ * longer equal to the one of the cached object, so that the file is read
+ * again.
+ * </p>
+ *
+ * <p>
+ * A {@link FileStamp} must be computed before reading the file, so that a file
+ * modified during its reading will be read again.
+ * </p>
+ *
+ * @author Guillaume Cornet
+ *
+ */
+public final class FileStamp {
+
+	private String _path;
+	private long _lastModified;
+	private long _length;
+
+	public FileStamp(String path, long lastModified, long length) {
+		if (path == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + String.class.getCanonicalName()
+					+ " (a file path).");
+		}
+		_path = path;
+		_lastModified = lastModified;
+		_length = length;
+	}
+
+	/**
+	 * @param f
+	 *            is a file.
+	 *
+	 * @return the canonical path, the last modification time and the size of
+	 *         the given file.
+	 *
+	 * @throws IOException
+	 *             if the canonical path of the given file cannot be computed.
+	 */
+	public static FileStamp of(File f) throws IOException {
+		File c = f.getCanonicalFile();
+		return new FileStamp(c.getPath(), c.lastModified(), c.length());
+	}
+
+	/**
+	 * @param p
+	 *            is a file.
+	 *
+	 * @return the absolute path, the last modification time and the size of
+	 *         the given file.
+	 *
+	 * @throws IOException
+	 *             if the attributes of the given file cannot be read.
+	 */
+	public static FileStamp of(Path p) throws IOException {
+		return new FileStamp(p.toAbsolutePath().toString(), Files
+				.getLastModifiedTime(p).toMillis(), Files.size(p));
+	}
+
+	public String getPath() {
+		return _path;
+	}
+
+	public long getLastModified() {
+		return _lastModified;
+	}
+
+	public long getLength() {
+		return _length;
+	}
+
+	@Override
+	public int hashCode() {
+		return _path.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object anObject) {
+		if (this == anObject) {
+			return true;
+		}
+		if (anObject instanceof FileStamp) {
+			FileStamp s = (FileStamp) anObject;
+			return _lastModified == s._lastModified && _length == s._length
+					&& _path.equals(s._path);
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "{ path:" + _path + ", last-modified:" + _lastModified
+				+ ", length:" + _length + " }";
+	}
+
+}
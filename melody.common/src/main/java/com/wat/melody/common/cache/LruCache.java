@@ -0,0 +1,225 @@
+package com.wat.melody.common.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * A bounded, thread-safe cache. When the cache is full, the least recently used
+ * entry is evicted.
+ * </p>
+ * 
+ * <p>
+ * The cache can also be bounded by the total weight of its entries, where the
+ * weight of an entry is computed by {@link #weigh(Object, Object)} (e.g. the
+ * number of characters of a cached text). An entry which is heavier than the
+ * maximum weight is not cached.
+ * </p>
+ * 
+ * <p>
+ * Hits and misses are counted by {@link #get(Object)}.
+ * </p>
+ * 
+ * @param <K>
+ *            is the type of the keys.
+ * @param <V>
+ *            is the type of the cached values.
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class LruCache<K, V> {
+
+	private Map<K, V> _cache;
+	private int _maxSize;
+	private long _maxWeight;
+	private long _weight;
+	private AtomicLong _hits = new AtomicLong();
+	private AtomicLong _misses = new AtomicLong();
+
+	public LruCache(int maxSize) {
+		this(maxSize, Long.MAX_VALUE);
+	}
+
+	public LruCache(int maxSize, long maxWeight) {
+		setMaxSize(maxSize);
+		setMaxWeight(maxWeight);
+		_cache = new LinkedHashMap<K, V>(16, 0.75f, true);
+	}
+
+	/**
+	 * <p>
+	 * Compute the weight of an entry. Must always return the same weight for
+	 * the same entry.
+	 * </p>
+	 * 
+	 * @return the weight of the given entry. This implementation returns 0.
+	 */
+	protected long weigh(K key, V value) {
+		return 0;
+	}
+
+	/**
+	 * @param key
+	 *            is the key of the value to get.
+	 * 
+	 * @return the value associated to the given key, or <tt>null</tt> if the
+	 *         given key is not in this cache.
+	 */
+	public V get(K key) {
+		V value;
+		synchronized (_cache) {
+			value = _cache.get(key);
+		}
+		if (value != null) {
+			_hits.incrementAndGet();
+		} else {
+			_misses.incrementAndGet();
+		}
+		return value;
+	}
+
+	/**
+	 * <p>
+	 * Put the given value in this cache. If this cache is full, the least
+	 * recently used entries are evicted. If the given entry is heavier than the
+	 * maximum weight, it is not cached.
+	 * </p>
+	 * 
+	 * @param key
+	 *            is the key of the value to put.
+	 * @param value
+	 *            is the value to put.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given key or the given value is <tt>null</tt>.
+	 */
+	public void put(K key, V value) {
+		if (key == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid key.");
+		}
+		if (value == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid value.");
+		}
+		long weight = weigh(key, value);
+		synchronized (_cache) {
+			if (weight > getMaxWeight()) {
+				return;
+			}
+			V previous = _cache.put(key, value);
+			if (previous != null) {
+				_weight -= weigh(key, previous);
+			}
+			_weight += weight;
+			evict();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Remove all entries from this cache. Hit and miss counters are not reset.
+	 * </p>
+	 */
+	public void clear() {
+		synchronized (_cache) {
+			_cache.clear();
+			_weight = 0;
+		}
+	}
+
+	public int size() {
+		synchronized (_cache) {
+			return _cache.size();
+		}
+	}
+
+	/**
+	 * @return the total weight of the entries of this cache.
+	 */
+	public long getWeight() {
+		synchronized (_cache) {
+			return _weight;
+		}
+	}
+
+	public long getHitCount() {
+		return _hits.get();
+	}
+
+	public long getMissCount() {
+		return _misses.get();
+	}
+
+	public int getMaxSize() {
+		return _maxSize;
+	}
+
+	public int setMaxSize(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException(maxSize + ": Not accepted. "
+					+ "Must be a positive integer.");
+		}
+		int previous = getMaxSize();
+		_maxSize = maxSize;
+		if (_cache != null) {
+			synchronized (_cache) {
+				evict();
+			}
+		}
+		return previous;
+	}
+
+	public long getMaxWeight() {
+		return _maxWeight;
+	}
+
+	public long setMaxWeight(long maxWeight) {
+		if (maxWeight < 0) {
+			throw new IllegalArgumentException(maxWeight + ": Not accepted. "
+					+ "Must be a positive long or zero.");
+		}
+		long previous = getMaxWeight();
+		_maxWeight = maxWeight;
+		if (_cache != null) {
+			synchronized (_cache) {
+				evict();
+			}
+		}
+		return previous;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder("{ ");
+		str.append("size:");
+		str.append(size());
+		str.append(", max-size:");
+		str.append(getMaxSize());
+		if (getMaxWeight() != Long.MAX_VALUE) {
+			str.append(", weight:");
+			str.append(getWeight());
+			str.append(", max-weight:");
+			str.append(getMaxWeight());
+		}
+		str.append(", hits:");
+		str.append(getHitCount());
+		str.append(", misses:");
+		str.append(getMissCount());
+		str.append(" }");
+		return str.toString();
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<K, V>> it = _cache.entrySet().iterator();
+		while (_cache.size() > getMaxSize() || _weight > getMaxWeight()) {
+			Map.Entry<K, V> eldest = it.next();
+			_weight -= weigh(eldest.getKey(), eldest.getValue());
+			it.remove();
+		}
+	}
+
+}
\ No newline at end of file
@@ -45,6 +45,14 @@ import com.wat.melody.common.systool.SysTool;
  * </p>
  * 
  * <p>
+ * A {@link PropertySet} can be cloned in constant time (see {@link #clone()}).
+ * The properties hold at the time of the clone are frozen in an immutable
+ * layer, which is shared by the {@link PropertySet} and its clone. Each of
+ * them then only holds its own modifications, and reads fall through to the
+ * shared layers.
+ * </p>
+ * 
+ * <p>
  * <i>This class is thread-safe, meaning that multiple threads can share the
  * same {@link PropertySet} object without the need for external
  * synchronization.</i>
@@ -59,8 +67,19 @@ public class PropertySet {
 	public static final String EMPTY_STRING_PATTERN = "^\\s*$";
 	public static final String INCLUDE_PATTERN = "^\\s*include\\s+.*$";
 
-	private Map<String, Property> _properties = new LinkedHashMap<String, Property>();
+	/**
+	 * When the number of shared layers exceeds this value, layers are merged
+	 * into a single one.
+	 */
+	private static final int MAX_LAYERS = 8;
+
+	private Layer _parent = null;
+	private Map<String, Entry> _properties = new LinkedHashMap<String, Entry>();
 	private String _sourceFile = null;
+	// null when relative included files are resolved from the current working
+	// directory
+	private File _workingDirectory = null;
+	private List<String> _includedFiles = new ArrayList<String>();
 
 	/**
 	 * <p>
@@ -115,8 +134,64 @@ public class PropertySet {
 		load(filePath);
 	}
 
-	private Map<String, Property> getProperties() {
-		return _properties;
+	/**
+	 * <p>
+	 * Creates a new {@link PropertySet} which holds all properties defined in
+	 * the file pointed by the given path (see {@link #load(String)}), where
+	 * relative included files are resolved from the given working directory.
+	 * </p>
+	 * 
+	 * @param filePath
+	 *            is the path of the file to load.
+	 * @param workingDirectory
+	 *            is the directory relative included files are resolved from,
+	 *            or <tt>null</tt> to resolve them from the current working
+	 *            directory.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given path is <tt>null</tt>.
+	 * @throws IllegalFileException
+	 *             see {@link #PropertySet(String)}.
+	 * @throws IOException
+	 *             see {@link #PropertySet(String)}.
+	 * @throws IllegalPropertiesSetException
+	 *             see {@link #PropertySet(String)}.
+	 */
+	public PropertySet(String filePath, File workingDirectory)
+			throws IllegalFileException, IllegalPropertiesSetException,
+			IOException {
+		this();
+		setWorkingDirectory(workingDirectory);
+		load(filePath);
+	}
+
+	/**
+	 * @return a new map which contains all properties hold by this object, in
+	 *         insertion order.
+	 */
+	private synchronized Map<String, Property> getProperties() {
+		return Layer.merge(_parent, _properties);
+	}
+
+	/**
+	 * @return the {@link Entry} which stands for the given key in this object
+	 *         or in its shared layers, or <tt>null</tt> if the key was never
+	 *         put.
+	 */
+	private Entry lookup(String key) {
+		Entry e = _properties.get(key);
+		if (e != null || _parent == null) {
+			return e;
+		}
+		return _parent.lookup(key);
+	}
+
+	private boolean parentContainsKey(String key) {
+		if (_parent == null) {
+			return false;
+		}
+		Entry e = _parent.lookup(key);
+		return e != null && e.getProperty() != null;
 	}
 
 	private String setFilePath(String filePath) {
@@ -137,6 +212,38 @@ public class PropertySet {
 		return _sourceFile;
 	}
 
+	/**
+	 * @return the canonical paths of the files which were included (via the
+	 *         <tt>include</tt> directive) by the file which was used to load
+	 *         (via {@link #load(String)}) this object, in inclusion order.
+	 */
+	public synchronized List<String> getIncludedFiles() {
+		return new ArrayList<String>(_includedFiles);
+	}
+
+	/**
+	 * @return the directory relative included files are resolved from, or
+	 *         <tt>null</tt> if they are resolved from the current working
+	 *         directory.
+	 */
+	public File getWorkingDirectory() {
+		return _workingDirectory;
+	}
+
+	/**
+	 * @param workingDirectory
+	 *            is the directory relative included files are resolved from,
+	 *            or <tt>null</tt> to resolve them from the current working
+	 *            directory.
+	 * 
+	 * @return the previous working directory.
+	 */
+	public File setWorkingDirectory(File workingDirectory) {
+		File previous = getWorkingDirectory();
+		_workingDirectory = workingDirectory;
+		return previous;
+	}
+
 	/**
 	 * <p>
 	 * Load all properties defined in the file pointed by the given path.
@@ -226,7 +333,8 @@ public class PropertySet {
 			IllegalFileException, IllegalPropertiesSetException {
 		String previous = setFilePath(filePath);
 		// remove all elements
-		getProperties().clear();
+		clear();
+		_includedFiles.clear();
 
 		// Validate input parameters
 		FS.validateFileExists(filePath);
@@ -319,13 +427,18 @@ public class PropertySet {
 				}
 			} else if (line.matches(INCLUDE_PATTERN)) {
 				String toLoad = line.replaceFirst("\\s*include\\s+", "");
-				toLoad = new File(toLoad).getCanonicalPath();
+				File inc = new File(toLoad);
+				if (!inc.isAbsolute() && getWorkingDirectory() != null) {
+					inc = new File(getWorkingDirectory(), toLoad);
+				}
+				toLoad = inc.getCanonicalPath();
 				// include directive can leads in circular ref
 				if (circle.contains(toLoad)) {
 					throw new IllegalPropertiesSetException(f, pos, Msg.bind(
 							Messages.PropertiesSetEx_CIRCULAR_REF, toLoad));
 				}
 				circle.add(toLoad);
+				_includedFiles.add(toLoad);
 				// load included file
 				try {
 					FS.validateFileExists(toLoad);
@@ -475,7 +588,8 @@ public class PropertySet {
 	 * </p>
 	 */
 	public synchronized void clear() {
-		getProperties().clear();
+		_parent = null;
+		_properties.clear();
 	}
 
 	/**
@@ -489,7 +603,8 @@ public class PropertySet {
 	 *             if the requested key is <tt>null</tt>.
 	 */
 	public synchronized boolean containsKey(String key) {
-		return getProperties().containsKey(key);
+		Entry e = lookup(key);
+		return e != null && e.getProperty() != null;
 	}
 
 	/**
@@ -503,7 +618,21 @@ public class PropertySet {
 	 *             if the given property is <tt>null</tt>.
 	 */
 	public synchronized Property put(Property p) {
-		return getProperties().put(p.getName().getValue(), p);
+		String key = p.getName().getValue();
+		Entry e = _properties.get(key);
+		if (e == null) {
+			Property previous = getProperty(key);
+			_properties.put(key, new Entry(p, false));
+			return previous;
+		}
+		if (e.getProperty() == null) {
+			// the key was removed : the property goes to the end
+			_properties.remove(key);
+			_properties.put(key, new Entry(p, true));
+			return null;
+		}
+		_properties.put(key, new Entry(p, e.isReset()));
+		return e.getProperty();
 	}
 
 	/**
@@ -517,10 +646,8 @@ public class PropertySet {
 	 *             if the requested key is <tt>null</tt>.
 	 */
 	public synchronized String get(String key) {
-		if (!containsKey(key)) {
-			return null;
-		}
-		return getProperties().get(key).getValue();
+		Property p = getProperty(key);
+		return p == null ? null : p.getValue();
 	}
 
 	/**
@@ -534,10 +661,17 @@ public class PropertySet {
 	 *             if the requested key is <tt>null</tt>.
 	 */
 	public synchronized Property getProperty(String key) {
-		if (!containsKey(key)) {
-			return null;
-		}
-		return getProperties().get(key);
+		Entry e = lookup(key);
+		return e == null ? null : e.getProperty();
+	}
+
+	/**
+	 * @return all the properties hold by this object, in insertion order. The
+	 *         returned list is a copy : modifying it doesn't modify this
+	 *         object.
+	 */
+	public synchronized List<Property> values() {
+		return new ArrayList<Property>(getProperties().values());
 	}
 
 	/**
@@ -551,10 +685,16 @@ public class PropertySet {
 	 *             if the requested key is <tt>null</tt>.
 	 */
 	public synchronized String remove(String key) {
-		if (!containsKey(key)) {
+		Property previous = getProperty(key);
+		if (previous == null) {
 			return null;
 		}
-		return getProperties().remove(key).getValue();
+		_properties.remove(key);
+		if (parentContainsKey(key)) {
+			// hide the property of the shared layers
+			_properties.put(key, new Entry(null, true));
+		}
+		return previous.getValue();
 	}
 
 	/**
@@ -578,17 +718,112 @@ public class PropertySet {
 	}
 
 	/**
+	 * <p>
+	 * The properties hold by this object are frozen in an immutable layer,
+	 * shared by this object and the returned copy. This operation doesn't copy
+	 * any property.
+	 * </p>
+	 * 
 	 * @return A shallow copy of this object's (element themselves are not
 	 *         copied. If the returned {@link PropertySet} is modified, this
 	 *         object will not be modified.
 	 */
 	@Override
 	public synchronized PropertySet clone() {
-		PropertySet copy = new PropertySet();
-		for (Property p : getProperties().values()) {
-			copy.put(p);
+		if (!_properties.isEmpty()) {
+			_parent = new Layer(_parent, _properties);
+			_properties = new LinkedHashMap<String, Entry>();
 		}
+		PropertySet copy = new PropertySet();
+		copy._parent = _parent;
 		return copy;
 	}
 
+	/**
+	 * <p>
+	 * A property put or removed in a {@link PropertySet}. A removed property is
+	 * an {@link Entry} whose property is <tt>null</tt>. A reset {@link Entry}
+	 * hides the property of the same name defined in the parent layers, which
+	 * means that its position is the position of the {@link Entry}, instead of
+	 * the position of the property in the parent layers.
+	 * </p>
+	 */
+	private static class Entry {
+
+		private final Property _property;
+		private final boolean _reset;
+
+		public Entry(Property p, boolean reset) {
+			_property = p;
+			_reset = reset;
+		}
+
+		public Property getProperty() {
+			return _property;
+		}
+
+		public boolean isReset() {
+			return _reset;
+		}
+
+	}
+
+	/**
+	 * <p>
+	 * An immutable set of {@link Entry}, shared by multiple
+	 * {@link PropertySet}.
+	 * </p>
+	 */
+	private static class Layer {
+
+		private final Layer _parent;
+		private final Map<String, Entry> _entries;
+		private final int _depth;
+
+		public Layer(Layer parent, Map<String, Entry> entries) {
+			if (parent != null && parent._depth >= MAX_LAYERS) {
+				// flatten, so that lookups stay cheap
+				Map<String, Entry> flat = new LinkedHashMap<String, Entry>();
+				for (Property p : merge(parent, entries).values()) {
+					flat.put(p.getName().getValue(), new Entry(p, false));
+				}
+				parent = null;
+				entries = flat;
+			}
+			_parent = parent;
+			_entries = entries;
+			_depth = parent == null ? 1 : parent._depth + 1;
+		}
+
+		public Entry lookup(String key) {
+			for (Layer l = this; l != null; l = l._parent) {
+				Entry e = l._entries.get(key);
+				if (e != null) {
+					return e;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * @return a new map which contains all the properties defined in the
+		 *         given layer and entries, in insertion order.
+		 */
+		public static Map<String, Property> merge(Layer layer,
+				Map<String, Entry> entries) {
+			Map<String, Property> res = layer == null ? new LinkedHashMap<String, Property>()
+					: merge(layer._parent, layer._entries);
+			for (Map.Entry<String, Entry> e : entries.entrySet()) {
+				if (e.getValue().isReset()) {
+					res.remove(e.getKey());
+				}
+				if (e.getValue().getProperty() != null) {
+					res.put(e.getKey(), e.getValue().getProperty());
+				}
+			}
+			return res;
+		}
+
+	}
+
 }
\ No newline at end of file
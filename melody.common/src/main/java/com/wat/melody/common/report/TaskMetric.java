@@ -0,0 +1,35 @@
+package com.wat.melody.common.report;
+
+/**
+ * <p>
+ * A quantity measured while a task is processed (see {@link TaskMetrics}).
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public enum TaskMetric {
+
+	/**
+	 * <p>
+	 * Time spent waiting for a shared resource (e.g. a lock, a free slot for a
+	 * parallel step), in nanoseconds.
+	 * </p>
+	 */
+	WAIT_TIME,
+
+	/**
+	 * <p>
+	 * Number of bytes transferred.
+	 * </p>
+	 */
+	BYTES_TRANSFERRED,
+
+	/**
+	 * <p>
+	 * Number of times an operation was retried (e.g. a connection).
+	 * </p>
+	 */
+	RETRIES;
+
+}
@@ -0,0 +1,139 @@
+package com.wat.melody.common.report;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A set of counters, one per {@link TaskMetric}, which are incremented while a
+ * task is processed.
+ * </p>
+ * 
+ * <p>
+ * Code which measures something (e.g. a lock, a transfer, a connection) is
+ * unaware of the task it works for : it just calls
+ * {@link #record(TaskMetric, long)}, which increments the counters of the
+ * {@link TaskMetrics} which is <i>current</i> for the calling thread (see
+ * {@link #setCurrent(TaskMetrics)}). A thread inherits the current
+ * {@link TaskMetrics} of the thread which created it. When there is no current
+ * {@link TaskMetrics} (e.g. when reporting is disabled),
+ * {@link #record(TaskMetric, long)} does nothing.
+ * </p>
+ * 
+ * <p>
+ * Counters can be incremented by multiple threads simultaneously.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class TaskMetrics {
+
+	private static final TaskMetric[] METRICS = TaskMetric.values();
+
+	private static InheritableThreadLocal<TaskMetrics> _current = new InheritableThreadLocal<TaskMetrics>();
+
+	/**
+	 * @return the {@link TaskMetrics} which is current for the calling thread,
+	 *         or <tt>null</tt> if there is none.
+	 */
+	public static TaskMetrics current() {
+		return _current.get();
+	}
+
+	/**
+	 * <p>
+	 * Make the given {@link TaskMetrics} current for the calling thread.
+	 * </p>
+	 * 
+	 * @param metrics
+	 *            is the {@link TaskMetrics} to make current. Can be
+	 *            <tt>null</tt>.
+	 * 
+	 * @return the {@link TaskMetrics} which was previously current for the
+	 *         calling thread, or <tt>null</tt> if there was none.
+	 */
+	public static TaskMetrics setCurrent(TaskMetrics metrics) {
+		TaskMetrics previous = _current.get();
+		if (metrics == null) {
+			_current.remove();
+		} else {
+			_current.set(metrics);
+		}
+		return previous;
+	}
+
+	/**
+	 * <p>
+	 * Add the given value to the given counter of the {@link TaskMetrics}
+	 * which is current for the calling thread. Does nothing if there is no
+	 * current {@link TaskMetrics}.
+	 * </p>
+	 * 
+	 * @param metric
+	 *            is the counter to increment.
+	 * @param value
+	 *            is the value to add.
+	 */
+	public static void record(TaskMetric metric, long value) {
+		TaskMetrics metrics = _current.get();
+		if (metrics != null) {
+			metrics.add(metric, value);
+		}
+	}
+
+	private AtomicLongArray _counters;
+
+	public TaskMetrics() {
+		_counters = new AtomicLongArray(METRICS.length);
+	}
+
+	/**
+	 * @param metric
+	 *            is the counter to increment.
+	 * @param value
+	 *            is the value to add.
+	 * 
+	 * @return the new value of the given counter.
+	 */
+	public long add(TaskMetric metric, long value) {
+		return _counters.addAndGet(metric.ordinal(), value);
+	}
+
+	public long get(TaskMetric metric) {
+		return _counters.get(metric.ordinal());
+	}
+
+	/**
+	 * <p>
+	 * Add all the counters of the given {@link TaskMetrics} to the counters of
+	 * this object.
+	 * </p>
+	 * 
+	 * @param metrics
+	 *            is the {@link TaskMetrics} to add.
+	 */
+	public void addAll(TaskMetrics metrics) {
+		for (int i = 0; i < METRICS.length; i++) {
+			long value = metrics._counters.get(i);
+			if (value != 0) {
+				_counters.addAndGet(i, value);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder("{ ");
+		for (int i = 0; i < METRICS.length; i++) {
+			if (i != 0) {
+				str.append(", ");
+			}
+			str.append(METRICS[i].toString().toLowerCase().replace('_', '-'));
+			str.append(":");
+			str.append(_counters.get(i));
+		}
+		str.append(" }");
+		return str.toString();
+	}
+
+}
@@ -40,6 +40,17 @@ public interface ISshSession {
 
 	public boolean isConnected();
 
+	/**
+	 * <p>
+	 * Check that this session is connected and that the remote system still
+	 * answers, by sending a keep-alive message.
+	 * </p>
+	 * 
+	 * @return <tt>true</tt> if this session is connected and the keep-alive
+	 *         message was successfully sent, or <tt>false</tt> otherwise.
+	 */
+	public boolean isAlive();
+
 	public int execRemoteCommand(String command, boolean requiretty,
 			OutputStream out, OutputStream err, GenericTimeout killTimeout)
 			throws SshSessionException, InterruptedException;
@@ -48,6 +59,35 @@ public interface ISshSession {
 			OutputStream out, OutputStream err) throws SshSessionException,
 			InterruptedException;
 
+	/**
+	 * <p>
+	 * Execute the given commands one after the other, over a single channel.
+	 * Execution stops at the first command which fails.
+	 * </p>
+	 * 
+	 * @param commands
+	 *            is the list of commands to execute. Each of them must be a
+	 *            complete shell command.
+	 * @param requiretty
+	 * @param out
+	 * @param err
+	 * @param killTimeout
+	 *            is the time to wait for the commands to complete gracefully,
+	 *            when the calling thread is interrupted. Once elapsed, the
+	 *            channel is disconnected (see
+	 *            {@link #execRemoteCommand(String, boolean, OutputStream, OutputStream, GenericTimeout)}
+	 *            ).
+	 * 
+	 * @return zero if all commands succeed, or the exit status of the first
+	 *         command which fails.
+	 * 
+	 * @throws SshSessionException
+	 * @throws InterruptedException
+	 */
+	public int execRemoteCommands(List<String> commands, boolean requiretty,
+			OutputStream out, OutputStream err, GenericTimeout killTimeout)
+			throws SshSessionException, InterruptedException;
+
 	public void upload(List<ResourcesSpecification> rrs, int maxPar,
 			TemplatingHandler th, MelodyThreadFactory tf)
 			throws SshSessionException, InterruptedException;
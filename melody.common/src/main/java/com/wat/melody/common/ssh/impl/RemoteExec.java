@@ -1,6 +1,11 @@
 package com.wat.melody.common.ssh.impl;
 
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +20,15 @@ import com.wat.melody.common.timeout.GenericTimeout;
 import com.wat.melody.common.timeout.exception.IllegalTimeoutException;
 
 /**
+ * <p>
+ * Execute a command on a remote system, through a JSch 'exec' Channel.
+ * </p>
+ * 
+ * <p>
+ * The calling thread doesn't poll the channel : it is woken up as soon as the
+ * channel is closed by the remote system (JSch closes the error stream of the
+ * channel once the exit status has been received).
+ * </p>
  * 
  * @author Guillaume Cornet
  * 
@@ -41,6 +55,49 @@ class RemoteExec {
 
 	private static final GenericTimeout DEFAULT_KILL_TIMEOUT = createGenericTimeout(30000);
 
+	/**
+	 * Safety net : the channel state is checked at least at this interval (in
+	 * millis), in case the completion notification is missed.
+	 */
+	private static final long CHECK_INTERVAL = 5000;
+
+	/**
+	 * <p>
+	 * Build a single shell script which executes the given commands one after
+	 * the other, and stops at the first command which fails.
+	 * </p>
+	 * 
+	 * @param commands
+	 *            is the list of commands to batch. Each of them must be a
+	 *            complete shell command.
+	 * 
+	 * @return a shell script whose exit status is zero if all commands
+	 *         succeed, or the exit status of the first command which fails.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given list is <tt>null</tt> or empty, or contains a
+	 *             <tt>null</tt> command.
+	 */
+	protected static String batch(List<String> commands) {
+		if (commands == null || commands.isEmpty()) {
+			throw new IllegalArgumentException(commands + ": Not accepted. "
+					+ "Must be a non empty list of String (ssh commands to "
+					+ "execute).");
+		}
+		StringBuilder script = new StringBuilder();
+		for (String command : commands) {
+			if (command == null) {
+				throw new IllegalArgumentException("null: Not accepted. "
+						+ "Must be a valid String (an ssh command to "
+						+ "execute).");
+			}
+			script.append(command);
+			script.append("\n__melody_rc=$?; [ $__melody_rc -eq 0 ] || ");
+			script.append("exit $__melody_rc\n");
+		}
+		return script.toString();
+	}
+
 	private SshSession _session;
 	private String _cmd;
 	private boolean _requiretty;
@@ -72,31 +129,32 @@ class RemoteExec {
 
 		int retry = 3;
 		while (true) {
+			CountDownLatch closed = new CountDownLatch(1);
 			try {
 				channel = getSession().openExecChannel();
 				channel.setCommand(getCommand());
 				channel.setPty(getRequiretty());
 				channel.setInputStream(null);
 				channel.setOutputStream(getOutputStream());
-				channel.setErrStream(getErrorStream());
+				channel.setErrStream(new ClosedSignalOutputStream(
+						getErrorStream(), closed));
 
 				channel.connect();
-				while (true) {
-					/*
-					 * Can't find a way to 'join' the session or the channel ...
-					 * So we're pooling the isClosed ....
-					 */
-					if (channel.isClosed()) {
-						break;
-					}
+				while (!channel.isClosed() && closed.getCount() != 0) {
+					long wait = CHECK_INTERVAL;
 					// were we interrupted ?
-					if (iex != null
-							&& System.currentTimeMillis() - start > timeout) {
-						log.warn(Msg.bind(Messages.ExecMsg_FORCE_STOP, timeout));
-						throw iex;
+					if (iex != null) {
+						long remaining = timeout
+								- (System.currentTimeMillis() - start);
+						if (remaining <= 0) {
+							log.warn(Msg.bind(Messages.ExecMsg_FORCE_STOP,
+									timeout));
+							throw iex;
+						}
+						wait = Math.min(wait, remaining);
 					}
 					try {
-						Thread.sleep(500);
+						closed.await(wait, TimeUnit.MILLISECONDS);
 					} catch (InterruptedException Ex) {
 						if (iex != null) {
 							continue;
@@ -107,16 +165,6 @@ class RemoteExec {
 						log.info(Msg.bind(Messages.ExecMsg_GRACEFULL_STOP,
 								timeout));
 					}
-					if (Thread.interrupted()) {
-						if (iex != null) {
-							continue;
-						}
-						start = System.currentTimeMillis();
-						iex = new InterruptedException(
-								Messages.ExecEx_INTERRUPTED);
-						log.info(Msg.bind(Messages.ExecMsg_GRACEFULL_STOP,
-								timeout));
-					}
 				}
 				break;
 			} catch (JSchException Ex) {
@@ -252,4 +300,35 @@ class RemoteExec {
 		return previous;
 	}
 
+	/**
+	 * <p>
+	 * Signal the given {@link CountDownLatch} when closed. JSch closes the
+	 * error stream of an 'exec' Channel when the channel is closed.
+	 * </p>
+	 */
+	private static class ClosedSignalOutputStream extends FilterOutputStream {
+
+		private CountDownLatch _closed;
+
+		public ClosedSignalOutputStream(OutputStream out, CountDownLatch closed) {
+			super(out);
+			_closed = closed;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				_closed.countDown();
+			}
+		}
+
+	}
+
 }
\ No newline at end of file
@@ -190,6 +190,11 @@ public class SshManagedSession implements ISshSession {
 		return _session.isConnected();
 	}
 
+	@Override
+	public synchronized boolean isAlive() {
+		return _session.isAlive();
+	}
+
 	@Override
 	public int execRemoteCommand(String command, boolean requiretty,
 			OutputStream out, OutputStream err, GenericTimeout killTimeout)
@@ -205,6 +210,14 @@ public class SshManagedSession implements ISshSession {
 		return _session.execRemoteCommand(command, requiretty, out, err);
 	}
 
+	@Override
+	public int execRemoteCommands(List<String> commands, boolean requiretty,
+			OutputStream out, OutputStream err, GenericTimeout killTimeout)
+			throws SshSessionException, InterruptedException {
+		return _session.execRemoteCommands(commands, requiretty, out, err,
+				killTimeout);
+	}
+
 	@Override
 	public void upload(List<ResourcesSpecification> rss, int maxPar,
 			TemplatingHandler th, MelodyThreadFactory tf)
@@ -19,6 +19,8 @@ import com.wat.melody.common.keypair.KeyPairName;
 import com.wat.melody.common.keypair.KeyPairRepository;
 import com.wat.melody.common.keypair.KeyPairRepositoryPath;
 import com.wat.melody.common.messages.Msg;
+import com.wat.melody.common.report.TaskMetric;
+import com.wat.melody.common.report.TaskMetrics;
 import com.wat.melody.common.ssh.IHostKey;
 import com.wat.melody.common.ssh.ISshConnectionDatas;
 import com.wat.melody.common.ssh.ISshSession;
@@ -170,6 +172,20 @@ public class SshSession implements ISshSession {
 		return _session != null && _session.isConnected();
 	}
 
+	@Override
+	public synchronized boolean isAlive() {
+		if (!isConnected()) {
+			return false;
+		}
+		try {
+			_session.sendKeepAliveMsg();
+			return true;
+		} catch (Exception Ex) {
+			log.debug("Ssh session " + this + " is not alive.", Ex);
+			return false;
+		}
+	}
+
 	@Override
 	public int execRemoteCommand(String command, boolean requiretty,
 			OutputStream outStream, OutputStream errStream)
@@ -187,6 +203,15 @@ public class SshSession implements ISshSession {
 				killTimeout).exec();
 	}
 
+	@Override
+	public int execRemoteCommands(List<String> commands, boolean requiretty,
+			OutputStream outStream, OutputStream errStream,
+			GenericTimeout killTimeout) throws SshSessionException,
+			InterruptedException {
+		return new RemoteExec(this, RemoteExec.batch(commands), requiretty,
+				outStream, errStream, killTimeout).exec();
+	}
+
 	@Override
 	public void upload(List<ResourcesSpecification> rss, int maxPar,
 			TemplatingHandler th, MelodyThreadFactory tf)
@@ -422,6 +447,7 @@ public class SshSession implements ISshSession {
 				log.info(pex.getUserFriendlyStackTrace());
 				ex.info(pex.getFullStackTrace());
 				cnxRetry -= 1;
+				TaskMetrics.record(TaskMetric.RETRIES, 1);
 				cnxDelay += 3;
 				try {
 					Thread.sleep(cnxDelay * 1000);
@@ -0,0 +1,607 @@
+package com.wat.melody.common.ssh.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wat.melody.common.ssh.ISshConnectionDatas;
+import com.wat.melody.common.ssh.ISshSession;
+import com.wat.melody.common.ssh.ISshSessionConfiguration;
+import com.wat.melody.common.ssh.ISshUserDatas;
+import com.wat.melody.common.ssh.exception.HostKeyChangedException;
+import com.wat.melody.common.ssh.exception.HostKeyNotFoundException;
+import com.wat.melody.common.ssh.exception.InvalidCredentialException;
+import com.wat.melody.common.ssh.exception.SshSessionException;
+
+/**
+ * <p>
+ * A pool of connected {@link ISshSession}, which allow multiple ssh operations
+ * on the same remote system to share the same ssh connection, instead of
+ * running a full handshake and key exchange for each of them.
+ * </p>
+ * 
+ * <p>
+ * Pooled {@link ISshSession} are indexed by remote host, port, login,
+ * credentials and session configuration. A pooled {@link ISshSession} can be
+ * lent to multiple borrowers simultaneously, as long as the number of channels
+ * they requested doesn't exceed the maximum number of channels per session.
+ * The number of {@link ISshSession} opened on a single remote system is
+ * limited. When this limit is reached, the least recently used idle
+ * {@link ISshSession} of this remote system (whatever its login) is
+ * disconnected to make room. If none is idle, borrowers wait for a channel to
+ * be released.
+ * </p>
+ * 
+ * <p>
+ * Before being reused, an idle {@link ISshSession} is checked for liveness.
+ * Other borrowers can't share it until the check is done.
+ * {@link ISshSession} which stay idle longer than the idle timeout are
+ * disconnected.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class SshSessionPool {
+
+	private static Logger log = LoggerFactory.getLogger(SshSessionPool.class);
+
+	public static final int DEFAULT_MAX_SESSIONS_PER_HOST = 4;
+	public static final int DEFAULT_MAX_CHANNELS_PER_SESSION = 10;
+	public static final long DEFAULT_IDLE_TIMEOUT = 60000;
+
+	private Map<Key, List<PooledSession>> _sessions;
+	private Map<String, Integer> _sessionsPerHost;
+	private Map<ISshSession, PooledSession> _index;
+	private int _maxSessionsPerHost;
+	private int _maxChannelsPerSession;
+	private long _idleTimeout;
+	private boolean _closed;
+
+	private long _created;
+	private long _reused;
+	private long _discarded;
+	private long _evicted;
+	private long _waits;
+
+	public SshSessionPool() {
+		_sessions = new HashMap<Key, List<PooledSession>>();
+		_sessionsPerHost = new HashMap<String, Integer>();
+		_index = new IdentityHashMap<ISshSession, PooledSession>();
+		setMaxSessionsPerHost(DEFAULT_MAX_SESSIONS_PER_HOST);
+		setMaxChannelsPerSession(DEFAULT_MAX_CHANNELS_PER_SESSION);
+		setIdleTimeout(DEFAULT_IDLE_TIMEOUT);
+	}
+
+	/**
+	 * <p>
+	 * Borrow a connected {@link ISshSession} from this pool.
+	 * </p>
+	 * 
+	 * <p>
+	 * If this pool contains a connected {@link ISshSession}, whose remote
+	 * host, port, login, credentials and session configuration are equal to
+	 * the given candidate's ones, and which have enough free channels, it is
+	 * returned. Otherwise, the given candidate is connected and added to this
+	 * pool. The returned {@link ISshSession} must be released with
+	 * {@link #release(ISshSession, int)}.
+	 * </p>
+	 * 
+	 * @param candidate
+	 *            is a non connected {@link ISshSession}, which will be
+	 *            connected and pooled if no pooled {@link ISshSession} can be
+	 *            reused.
+	 * @param channels
+	 *            is the maximum number of channels the borrower will open
+	 *            simultaneously.
+	 * 
+	 * @return a connected {@link ISshSession}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given {@link ISshSession} is <tt>null</tt>.
+	 * @throws IllegalStateException
+	 *             if this pool is closed.
+	 * @throws InvalidCredentialException
+	 *             on authentication failure.
+	 * @throws HostKeyChangedException
+	 *             when the remote system was not trusted, and the host key
+	 *             presented by the remote system does not match the host key
+	 *             stored in the known host file.
+	 * @throws HostKeyNotFoundException
+	 *             when the remote system was not trusted, and the host key
+	 *             presented by the remote system was not stored in the known
+	 *             host file.
+	 * @throws SshSessionException
+	 *             if the connection fail for any other reason (no route to
+	 *             host, dns failure, network unreachable, ...).
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting for a
+	 *             free channel or while connecting.
+	 */
+	public ISshSession borrow(ISshSession candidate, int channels)
+			throws SshSessionException, InvalidCredentialException,
+			HostKeyChangedException, HostKeyNotFoundException,
+			InterruptedException {
+		if (candidate == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + ISshSession.class.getCanonicalName()
+					+ ".");
+		}
+		Key key = new Key(candidate.getClass(), candidate.getUserDatas(),
+				candidate.getConnectionDatas(),
+				candidate.getSessionConfiguration());
+		while (true) {
+			PooledSession ps = null;
+			boolean idle = false;
+			List<ISshSession> evicted = new ArrayList<ISshSession>();
+			synchronized (this) {
+				while (ps == null) {
+					if (_closed) {
+						throw new IllegalStateException("Not accepted. "
+								+ "The session pool is closed.");
+					}
+					evictIdleSessions(evicted);
+					channels = Math.max(1,
+							Math.min(channels, getMaxChannelsPerSession()));
+					ps = findAvailableSession(key, channels);
+					if (ps != null) {
+						idle = ps._leasedChannels == 0;
+						// nobody else can lease it until it is checked
+						ps._validating = idle;
+						ps._leasedChannels += channels;
+					} else if (countSessions(key) < getMaxSessionsPerHost()
+							|| evictLeastRecentlyUsedSession(key, evicted)) {
+						ps = new PooledSession(key, candidate);
+						ps._leasedChannels = channels;
+						register(ps);
+					} else {
+						_waits++;
+						// wake up to run eviction again, even if no session
+						// is released
+						wait(Math.max(1, getIdleTimeout()));
+					}
+				}
+			}
+			disconnect(evicted);
+			if (ps.getSession() == candidate) {
+				boolean connected = false;
+				try {
+					candidate.connect();
+					connected = true;
+				} finally {
+					if (!connected) {
+						unregister(ps);
+					}
+				}
+				synchronized (this) {
+					ps._connected = true;
+					_created++;
+				}
+				return candidate;
+			}
+			// an idle session may have been closed by the remote system
+			if (idle && !validate(ps)) {
+				log.trace("Pooled ssh session " + key + " is dead.");
+				ps.getSession().disconnect();
+				continue;
+			}
+			synchronized (this) {
+				_reused++;
+			}
+			return ps.getSession();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Release an {@link ISshSession} previously borrowed from this pool.
+	 * </p>
+	 * 
+	 * @param session
+	 *            is the {@link ISshSession} to release.
+	 * @param channels
+	 *            is the number of channels which was given when the
+	 *            {@link ISshSession} was borrowed.
+	 */
+	public void release(ISshSession session, int channels) {
+		if (session == null) {
+			return;
+		}
+		boolean disconnect = false;
+		synchronized (this) {
+			PooledSession ps = _index.get(session);
+			if (ps == null) {
+				// not a pooled session
+				disconnect = true;
+			} else {
+				channels = Math.max(1,
+						Math.min(channels, getMaxChannelsPerSession()));
+				ps._leasedChannels = Math.max(0, ps._leasedChannels
+						- channels);
+				ps._lastUsed = System.currentTimeMillis();
+				if (ps._leasedChannels == 0
+						&& (_closed || !session.isConnected())) {
+					unregisterSession(ps);
+					disconnect = true;
+				}
+			}
+			notifyAll();
+		}
+		if (disconnect) {
+			session.disconnect();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Disconnect all idle {@link ISshSession}. {@link ISshSession} which are in
+	 * use will be disconnected when released.
+	 * </p>
+	 */
+	public void close() {
+		List<ISshSession> toClose = new ArrayList<ISshSession>();
+		synchronized (this) {
+			_closed = true;
+			for (PooledSession ps : new ArrayList<PooledSession>(
+					_index.values())) {
+				if (ps._leasedChannels == 0) {
+					unregisterSession(ps);
+					toClose.add(ps.getSession());
+				}
+			}
+			notifyAll();
+		}
+		disconnect(toClose);
+	}
+
+	public synchronized boolean isClosed() {
+		return _closed;
+	}
+
+	public synchronized int countSessions() {
+		return _index.size();
+	}
+
+	public synchronized int countIdleSessions() {
+		int count = 0;
+		for (PooledSession ps : _index.values()) {
+			if (ps._leasedChannels == 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public synchronized long getCreatedCount() {
+		return _created;
+	}
+
+	public synchronized long getReusedCount() {
+		return _reused;
+	}
+
+	public synchronized long getDiscardedCount() {
+		return _discarded;
+	}
+
+	public synchronized long getEvictedCount() {
+		return _evicted;
+	}
+
+	public synchronized long getWaitCount() {
+		return _waits;
+	}
+
+	public synchronized int getMaxSessionsPerHost() {
+		return _maxSessionsPerHost;
+	}
+
+	public synchronized int setMaxSessionsPerHost(int max) {
+		if (max < 1) {
+			throw new IllegalArgumentException(max + ": Not accepted. "
+					+ "Must be a positive integer.");
+		}
+		int previous = _maxSessionsPerHost;
+		_maxSessionsPerHost = max;
+		notifyAll();
+		return previous;
+	}
+
+	public synchronized int getMaxChannelsPerSession() {
+		return _maxChannelsPerSession;
+	}
+
+	public synchronized int setMaxChannelsPerSession(int max) {
+		if (max < 1) {
+			throw new IllegalArgumentException(max + ": Not accepted. "
+					+ "Must be a positive integer.");
+		}
+		int previous = _maxChannelsPerSession;
+		_maxChannelsPerSession = max;
+		notifyAll();
+		return previous;
+	}
+
+	/**
+	 * @return the time (in millis) after which an idle {@link ISshSession} is
+	 *         disconnected.
+	 */
+	public synchronized long getIdleTimeout() {
+		return _idleTimeout;
+	}
+
+	public synchronized long setIdleTimeout(long timeout) {
+		if (timeout < 0) {
+			throw new IllegalArgumentException(timeout + ": Not accepted. "
+					+ "Must be a positive long or zero.");
+		}
+		long previous = _idleTimeout;
+		_idleTimeout = timeout;
+		return previous;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder str = new StringBuilder("{ ");
+		str.append("sessions:");
+		str.append(countSessions());
+		str.append(", idle-sessions:");
+		str.append(countIdleSessions());
+		str.append(", max-sessions-per-host:");
+		str.append(getMaxSessionsPerHost());
+		str.append(", max-channels-per-session:");
+		str.append(getMaxChannelsPerSession());
+		str.append(", idle-timeout:");
+		str.append(getIdleTimeout());
+		str.append(", created:");
+		str.append(getCreatedCount());
+		str.append(", reused:");
+		str.append(getReusedCount());
+		str.append(", discarded:");
+		str.append(getDiscardedCount());
+		str.append(", evicted:");
+		str.append(getEvictedCount());
+		str.append(", waits:");
+		str.append(getWaitCount());
+		str.append(" }");
+		return str.toString();
+	}
+
+	private PooledSession findAvailableSession(Key key, int channels) {
+		List<PooledSession> list = _sessions.get(key);
+		if (list == null) {
+			return null;
+		}
+		for (PooledSession ps : list) {
+			if (ps._connected && !ps._validating
+					&& ps._leasedChannels + channels <= getMaxChannelsPerSession()) {
+				return ps;
+			}
+		}
+		return null;
+	}
+
+	private int countSessions(Key key) {
+		Integer count = _sessionsPerHost.get(key.getHost());
+		return count == null ? 0 : count;
+	}
+
+	private void register(PooledSession ps) {
+		List<PooledSession> list = _sessions.get(ps.getKey());
+		if (list == null) {
+			list = new ArrayList<PooledSession>();
+			_sessions.put(ps.getKey(), list);
+		}
+		list.add(ps);
+		_index.put(ps.getSession(), ps);
+		_sessionsPerHost.put(ps.getKey().getHost(), countSessions(ps.getKey())
+				+ 1);
+	}
+
+	private synchronized void unregister(PooledSession ps) {
+		unregisterSession(ps);
+		notifyAll();
+	}
+
+	private void unregisterSession(PooledSession ps) {
+		if (_index.remove(ps.getSession()) == null) {
+			return;
+		}
+		List<PooledSession> list = _sessions.get(ps.getKey());
+		list.remove(ps);
+		if (list.isEmpty()) {
+			_sessions.remove(ps.getKey());
+		}
+		int count = countSessions(ps.getKey()) - 1;
+		if (count == 0) {
+			_sessionsPerHost.remove(ps.getKey().getHost());
+		} else {
+			_sessionsPerHost.put(ps.getKey().getHost(), count);
+		}
+	}
+
+	private void evictIdleSessions(List<ISshSession> evicted) {
+		long now = System.currentTimeMillis();
+		Iterator<PooledSession> it = new ArrayList<PooledSession>(
+				_index.values()).iterator();
+		while (it.hasNext()) {
+			PooledSession ps = it.next();
+			if (ps._connected && ps._leasedChannels == 0
+					&& now - ps._lastUsed > getIdleTimeout()) {
+				unregisterSession(ps);
+				evicted.add(ps.getSession());
+				_evicted++;
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Unregister the least recently used idle {@link PooledSession} opened on
+	 * the host of the given {@link Key}, so that a session with another login
+	 * can be opened on this host.
+	 * </p>
+	 * 
+	 * @return <tt>true</tt> if a {@link PooledSession} was unregistered (it is
+	 *         added to the given list and must be disconnected by the caller),
+	 *         or <tt>false</tt> if all sessions opened on the host are in use.
+	 */
+	private boolean evictLeastRecentlyUsedSession(Key key,
+			List<ISshSession> evicted) {
+		PooledSession lru = null;
+		for (PooledSession ps : _index.values()) {
+			if (ps._connected && ps._leasedChannels == 0
+					&& ps.getKey().getHost().equals(key.getHost())
+					&& (lru == null || ps._lastUsed < lru._lastUsed)) {
+				lru = ps;
+			}
+		}
+		if (lru == null) {
+			return false;
+		}
+		log.trace("Pooled ssh session " + lru.getKey() + " is evicted to "
+				+ "make room for " + key + ".");
+		unregisterSession(lru);
+		evicted.add(lru.getSession());
+		_evicted++;
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Check the liveness of the given {@link PooledSession}, which was idle,
+	 * and which can't be found by other borrowers until the check is done.
+	 * </p>
+	 * 
+	 * @return <tt>true</tt> if the given {@link PooledSession} is alive, and
+	 *         can be lent to other borrowers again, or <tt>false</tt> if it is
+	 *         dead, and was unregistered (it must be disconnected by the
+	 *         caller).
+	 */
+	private boolean validate(PooledSession ps) {
+		boolean alive = false;
+		try {
+			alive = ps.getSession().isAlive();
+		} finally {
+			synchronized (this) {
+				ps._validating = false;
+				if (!alive) {
+					unregisterSession(ps);
+					_discarded++;
+				}
+				notifyAll();
+			}
+		}
+		return alive;
+	}
+
+	private void disconnect(List<ISshSession> sessions) {
+		for (ISshSession session : sessions) {
+			session.disconnect();
+		}
+	}
+
+	/**
+	 * <p>
+	 * A pooled {@link ISshSession}, and the number of channels currently
+	 * leased. All fields are guarded by the pool's monitor.
+	 * </p>
+	 */
+	private static class PooledSession {
+
+		private Key _key;
+		private ISshSession _session;
+		private boolean _connected;
+		// true while the liveness of this idle session is checked
+		private boolean _validating;
+		private int _leasedChannels;
+		private long _lastUsed;
+
+		public PooledSession(Key key, ISshSession session) {
+			_key = key;
+			_session = session;
+			_lastUsed = System.currentTimeMillis();
+		}
+
+		public Key getKey() {
+			return _key;
+		}
+
+		public ISshSession getSession() {
+			return _session;
+		}
+
+	}
+
+	/**
+	 * <p>
+	 * Index of a pooled {@link ISshSession}. The session configuration is
+	 * compared by identity. The type of the {@link ISshSession} is part of the
+	 * index, so that a managed session is never lent instead of a plain one.
+	 * </p>
+	 */
+	private static class Key {
+
+		private Class<?> _type;
+		private String _host;
+		private String _login;
+		private String _password;
+		private String _keyPair;
+		private boolean _trust;
+		private ISshSessionConfiguration _conf;
+
+		public Key(Class<?> type, ISshUserDatas ud, ISshConnectionDatas cd,
+				ISshSessionConfiguration conf) {
+			_type = type;
+			_host = cd.getHost().getAddress() + ":" + cd.getPort().getValue();
+			_login = ud.getLogin();
+			_password = ud.getPassword();
+			_keyPair = ud.getKeyPairRepositoryPath() + "/"
+					+ ud.getKeyPairName();
+			_trust = cd.getTrust();
+			_conf = conf;
+		}
+
+		public String getHost() {
+			return _host;
+		}
+
+		@Override
+		public int hashCode() {
+			return _host.hashCode() + 31 * String.valueOf(_login).hashCode();
+		}
+
+		@Override
+		public boolean equals(Object anObject) {
+			if (this == anObject) {
+				return true;
+			}
+			if (anObject instanceof Key) {
+				Key k = (Key) anObject;
+				return _type == k._type && _conf == k._conf
+						&& _trust == k._trust
+						&& _host.equals(k._host) && equals(_login, k._login)
+						&& equals(_password, k._password)
+						&& _keyPair.equals(k._keyPair);
+			}
+			return false;
+		}
+
+		private static boolean equals(String a, String b) {
+			return a == null ? b == null : a.equals(b);
+		}
+
+		@Override
+		public String toString() {
+			return _login + "@" + _host;
+		}
+
+	}
+
+}
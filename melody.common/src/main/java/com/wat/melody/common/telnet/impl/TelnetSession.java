@@ -11,6 +11,8 @@ import org.slf4j.LoggerFactory;
 
 import com.wat.melody.common.ex.WrapperInterruptedException;
 import com.wat.melody.common.messages.Msg;
+import com.wat.melody.common.report.TaskMetric;
+import com.wat.melody.common.report.TaskMetrics;
 import com.wat.melody.common.telnet.ITelnetConnectionDatas;
 import com.wat.melody.common.telnet.ITelnetSessionConfiguration;
 import com.wat.melody.common.telnet.ITelnetUserDatas;
@@ -359,6 +361,7 @@ public class TelnetSession implements ITetnetSession {
 				log.info(pex.getUserFriendlyStackTrace());
 				ex.info(pex.getFullStackTrace());
 				cnxRetry -= 1;
+				TaskMetrics.record(TaskMetric.RETRIES, 1);
 				cnxDelay += 3;
 				try {
 					Thread.sleep(cnxDelay * 1000);
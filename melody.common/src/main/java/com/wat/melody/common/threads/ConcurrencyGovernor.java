@@ -0,0 +1,179 @@
+package com.wat.melody.common.threads;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * A pool of permits, which limits the number of steps which can run
+ * simultaneously in a whole processing (e.g. a processing and all its
+ * sub-processing).
+ * </p>
+ * 
+ * <p>
+ * This pool is hierarchy-aware : a thread which starts parallel steps and then
+ * waits for them to end (e.g. foreach, call, multi-threaded transfer) doesn't
+ * run while waiting. The first step it starts inherits its slot, without
+ * acquiring any permit. Additional steps must acquire a permit (see
+ * {@link #tryAcquire(Runnable)}), and must release it when they end (see
+ * {@link #release()}). As a result, a parent which waits for its children can
+ * always make progress, even when all permits are held, and the number of
+ * running steps never exceeds the size of the pool.
+ * </p>
+ * 
+ * <p>
+ * A thread which fails to acquire a permit doesn't block : it can register a
+ * callback, which will be called as soon as a permit is released. It should
+ * then try to acquire a permit again.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class ConcurrencyGovernor {
+
+	private int _maxPermits;
+	private int _occupancy;
+	private int _peakOccupancy;
+	private long _refusals;
+	private Set<Runnable> _waiters;
+
+	/**
+	 * @param maxPermits
+	 *            is the size of the pool. 0 means there is no limit.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given size is negative.
+	 */
+	public ConcurrencyGovernor(int maxPermits) {
+		if (maxPermits < 0) {
+			throw new IllegalArgumentException(maxPermits + ": Not accepted. "
+					+ "Must be a positive integer or zero.");
+		}
+		_maxPermits = maxPermits;
+		_occupancy = 0;
+		_peakOccupancy = 0;
+		_refusals = 0;
+		_waiters = new LinkedHashSet<Runnable>();
+	}
+
+	/**
+	 * @return the size of the pool. 0 means there is no limit.
+	 */
+	public int getMaxPermits() {
+		return _maxPermits;
+	}
+
+	/**
+	 * @return the number of permits currently held.
+	 */
+	public synchronized int getOccupancy() {
+		return _occupancy;
+	}
+
+	/**
+	 * @return the highest number of permits held simultaneously.
+	 */
+	public synchronized int getPeakOccupancy() {
+		return _peakOccupancy;
+	}
+
+	/**
+	 * @return the number of times a permit was requested while none was
+	 *         available.
+	 */
+	public synchronized long getRefusalCount() {
+		return _refusals;
+	}
+
+	/**
+	 * <p>
+	 * Acquire a permit, if one is available.
+	 * </p>
+	 * 
+	 * @param onRelease
+	 *            is a callback, which will be called once, as soon as a permit
+	 *            is released, if no permit is currently available. Can be
+	 *            <tt>null</tt>. The callback is called by the releasing thread,
+	 *            and must not block.
+	 * 
+	 * @return <tt>true</tt> if a permit was acquired, <tt>false</tt>
+	 *         otherwise.
+	 */
+	public synchronized boolean tryAcquire(Runnable onRelease) {
+		if (_maxPermits != 0 && _occupancy >= _maxPermits) {
+			_refusals++;
+			if (onRelease != null) {
+				_waiters.add(onRelease);
+			}
+			return false;
+		}
+		if (onRelease != null) {
+			_waiters.remove(onRelease);
+		}
+		if (++_occupancy > _peakOccupancy) {
+			_peakOccupancy = _occupancy;
+		}
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Release a permit, and call all the callbacks registered by threads which
+	 * failed to acquire a permit.
+	 * </p>
+	 * 
+	 * @throws IllegalStateException
+	 *             if no permit is currently held.
+	 */
+	public void release() {
+		List<Runnable> waiters;
+		synchronized (this) {
+			if (_occupancy == 0) {
+				throw new IllegalStateException("No permit is held. "
+						+ "Source code has certainly been modified and a bug "
+						+ "have been introduced.");
+			}
+			_occupancy--;
+			if (_waiters.isEmpty()) {
+				return;
+			}
+			waiters = new ArrayList<Runnable>(_waiters);
+			_waiters.clear();
+		}
+		for (Runnable r : waiters) {
+			r.run();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Unregister the given callback, previously registered with
+	 * {@link #tryAcquire(Runnable)}.
+	 * </p>
+	 * 
+	 * @param onRelease
+	 *            is the callback to unregister.
+	 */
+	public synchronized void cancel(Runnable onRelease) {
+		_waiters.remove(onRelease);
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder str = new StringBuilder("{ ");
+		str.append("max-permits:");
+		str.append(_maxPermits);
+		str.append(", occupancy:");
+		str.append(_occupancy);
+		str.append(", peak-occupancy:");
+		str.append(_peakOccupancy);
+		str.append(", refusals:");
+		str.append(_refusals);
+		str.append(" }");
+		return str.toString();
+	}
+
+}
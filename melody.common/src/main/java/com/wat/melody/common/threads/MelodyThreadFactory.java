@@ -9,4 +9,11 @@ public interface MelodyThreadFactory {
 
 	public Thread newThread(ThreadGroup tg, Runnable r, String name);
 
+	/**
+	 * @return the {@link ConcurrencyGovernor} which limits the number of
+	 *         threads created by this object which can run simultaneously. Can
+	 *         be <tt>null</tt>, which means there is no limit.
+	 */
+	public ConcurrencyGovernor getConcurrencyGovernor();
+
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+package com.wat.melody.common.threads;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * A bounded, lock-free FIFO queue, which can be used by multiple producers and
+ * multiple consumers simultaneously.
+ * </p>
+ * 
+ * <p>
+ * Each slot of the buffer holds a sequence number, which tells producers and
+ * consumers whether the slot is free or full for the current lap. Producers
+ * and consumers only compete on the position they are about to claim, with a
+ * single compare-and-set. Elements offered by the same producer are polled in
+ * the order they were offered.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class RingBuffer<E> {
+
+	private int _mask;
+	private AtomicReferenceArray<E> _slots;
+	private AtomicLongArray _sequences;
+	// the position of the next element to offer
+	private AtomicLong _tail;
+	// the position of the next element to poll
+	private AtomicLong _head;
+
+	/**
+	 * @param capacity
+	 *            is the minimal capacity of the buffer. It is rounded up to
+	 *            the next power of two.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given capacity is lower than 1 or greater than
+	 *             2^30.
+	 */
+	public RingBuffer(int capacity) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException(capacity + ": Not accepted. "
+					+ "Must be a positive integer, lower or equals to 2^30.");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		_mask = size - 1;
+		_slots = new AtomicReferenceArray<E>(size);
+		_sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			_sequences.set(i, i);
+		}
+		_tail = new AtomicLong();
+		_head = new AtomicLong();
+	}
+
+	public int capacity() {
+		return _mask + 1;
+	}
+
+	/**
+	 * <p>
+	 * Add the given element at the end of the buffer, if there is a free
+	 * place.
+	 * </p>
+	 * 
+	 * @param e
+	 *            is the element to add.
+	 * 
+	 * @return <tt>true</tt> if the element was added, or <tt>false</tt> if the
+	 *         buffer is full.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given element is <tt>null</tt>.
+	 */
+	public boolean offer(E e) {
+		if (e == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid element.");
+		}
+		long pos = _tail.get();
+		while (true) {
+			int index = (int) (pos & _mask);
+			long diff = _sequences.get(index) - pos;
+			if (diff == 0) {
+				// the slot is free for this lap => claim it
+				if (_tail.compareAndSet(pos, pos + 1)) {
+					_slots.set(index, e);
+					_sequences.set(index, pos + 1);
+					return true;
+				}
+			} else if (diff < 0) {
+				// the slot still holds an element of the previous lap
+				return false;
+			}
+			pos = _tail.get();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Remove the first element of the buffer.
+	 * </p>
+	 * 
+	 * @return the first element of the buffer, or <tt>null</tt> if the buffer
+	 *         is empty.
+	 */
+	public E poll() {
+		long pos = _head.get();
+		while (true) {
+			int index = (int) (pos & _mask);
+			long diff = _sequences.get(index) - (pos + 1);
+			if (diff == 0) {
+				// the slot is full for this lap => claim it
+				if (_head.compareAndSet(pos, pos + 1)) {
+					E e = _slots.get(index);
+					_slots.set(index, null);
+					_sequences.set(index, pos + _mask + 1);
+					return e;
+				}
+			} else if (diff < 0) {
+				// the slot is not filled yet
+				return null;
+			}
+			pos = _head.get();
+		}
+	}
+
+	/**
+	 * @return the number of elements in the buffer. The result is only an
+	 *         estimation when producers or consumers are working concurrently.
+	 */
+	public int size() {
+		long size = _tail.get() - _head.get();
+		if (size < 0) {
+			return 0;
+		}
+		return (int) Math.min(size, capacity());
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+}
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +16,9 @@ import com.wat.melody.common.ex.MelodyException;
 import com.wat.melody.common.ex.WrapperInterruptedException;
 import com.wat.melody.common.files.FileSystem;
 import com.wat.melody.common.messages.Msg;
+import com.wat.melody.common.report.TaskMetric;
+import com.wat.melody.common.report.TaskMetrics;
+import com.wat.melody.common.threads.ConcurrencyGovernor;
 import com.wat.melody.common.threads.MelodyThreadFactory;
 import com.wat.melody.common.transfer.exception.TransferException;
 import com.wat.melody.common.transfer.finder.TransferableFilesIterator;
@@ -53,6 +57,14 @@ public abstract class TransferMultiThread {
 	private ThreadGroup _threadGroup;
 	private List<TransferThread> _threads;
 	private ConsolidatedException _exceptions;
+	// the size of the regular files transferred by all threads
+	private AtomicLong _bytesTransferred;
+
+	private ConcurrencyGovernor _governor;
+	// the thread which uses the slot of the current thread
+	private TransferThread _inheritor;
+	// the threads which hold a permit
+	private List<TransferThread> _permitHolders;
 
 	public TransferMultiThread(List<ResourcesSpecification> rss, int maxPar,
 			TemplatingHandler th, MelodyThreadFactory threadFactory) {
@@ -65,6 +77,8 @@ public abstract class TransferMultiThread {
 		setThreadGroup(null);
 		setThreads(new ArrayList<TransferThread>());
 		setExceptions(new ConsolidatedException());
+		_permitHolders = new ArrayList<TransferThread>();
+		_bytesTransferred = new AtomicLong();
 	}
 
 	public void doTransfer() throws TransferException, InterruptedException {
@@ -110,6 +124,14 @@ public abstract class TransferMultiThread {
 			// This allow the doProcessing method to be called multiple time
 			// (will certainly be useful someday)
 			setThreadGroup(null);
+			for (int i = 0; i < _permitHolders.size(); i++) {
+				_governor.release();
+			}
+			_permitHolders.clear();
+			_inheritor = null;
+			// reported by the calling thread, on behalf of all threads
+			TaskMetrics.record(TaskMetric.BYTES_TRANSFERRED,
+					_bytesTransferred.getAndSet(0));
 		}
 	}
 
@@ -131,9 +153,21 @@ public abstract class TransferMultiThread {
 		}
 	}
 
+	/**
+	 * <p>
+	 * Start {@link TransferThread}s, according to the maximum number of
+	 * {@link TransferThread} this object can run simultaneously (see
+	 * {@link #getMaxPar()}). The first {@link TransferThread} inherits the slot
+	 * of the current thread, which only waits. Each additional
+	 * {@link TransferThread} must acquire a permit in the
+	 * {@link ConcurrencyGovernor} of the {@link MelodyThreadFactory} (if any).
+	 * </p>
+	 */
 	private void startTransferThreads() throws InterruptedException {
 		int threadToLaunchID = getThreads().size();
 		List<TransferThread> runningThreads = new ArrayList<TransferThread>();
+		MelodyThreadFactory tf = getThreadFactory();
+		_governor = tf != null ? tf.getConcurrencyGovernor() : null;
 
 		while (threadToLaunchID > 0 || runningThreads.size() > 0) {
 			if (Thread.interrupted()) {
@@ -141,8 +175,17 @@ public abstract class TransferMultiThread {
 			}
 			// Start ready threads
 			while (threadToLaunchID > 0 && runningThreads.size() < getMaxPar()) {
+				boolean holdsPermit = _governor != null && _inheritor != null;
+				if (holdsPermit && !_governor.tryAcquire(null)) {
+					break;
+				}
 				TransferThread ft = getThreads().get(--threadToLaunchID);
 				runningThreads.add(ft);
+				if (holdsPermit) {
+					_permitHolders.add(ft);
+				} else if (_inheritor == null) {
+					_inheritor = ft;
+				}
 				ft.startProcessing();
 			}
 			// Sleep a little
@@ -151,8 +194,14 @@ public abstract class TransferMultiThread {
 			// Remove ended threads
 			for (int i = runningThreads.size() - 1; i >= 0; i--) {
 				TransferThread ft = runningThreads.get(i);
-				if (ft.getFinalState() != NEW && ft.getFinalState() != RUNNING)
+				if (ft.getFinalState() != NEW && ft.getFinalState() != RUNNING) {
 					runningThreads.remove(ft);
+					if (_permitHolders.remove(ft)) {
+						_governor.release();
+					} else if (ft == _inheritor) {
+						_inheritor = null;
+					}
+				}
 			}
 		}
 	}
@@ -330,6 +379,9 @@ public abstract class TransferMultiThread {
 			Transferable t) {
 		try {
 			t.transfer(destinationFileSystem);
+			if (t.isRegularFile()) {
+				_bytesTransferred.addAndGet(t.getAttributes().size());
+			}
 		} catch (InterruptedIOException Ex) {
 			InterruptedException e = new WrapperInterruptedException(Msg.bind(
 					Messages.TransferEx_FAILED, t), Ex);
@@ -1,7 +1,11 @@
 package com.wat.melody.common.xml;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +18,7 @@ import org.w3c.dom.events.Event;
 import org.w3c.dom.events.EventListener;
 import org.w3c.dom.events.EventTarget;
 import org.w3c.dom.events.MutationEvent;
+import org.xml.sax.SAXException;
 
 import com.wat.melody.common.ex.ConsolidatedException;
 import com.wat.melody.common.ex.MelodyException;
@@ -46,13 +51,21 @@ public class DUNIDDoc extends Doc implements EventListener {
 
 	public static final String DUNID_ATTR = "__DUNID__";
 
+	private static final Set<String> DUNID_ATTRS = Collections
+			.singleton(DUNID_ATTR);
+
 	private boolean _hasChanged;
 	private Set<DocListener> _listeners;
+	// null when the journal is disabled
+	private volatile DUNIDDocJournal _journal;
+	// held while the journal is compacted
+	private Lock _journalLock;
 
 	public DUNIDDoc() {
 		super();
 		setHasChanged(false);
 		setListeners(new LinkedHashSet<DocListener>());
+		_journal = null;
 	}
 
 	@Override
@@ -106,11 +119,143 @@ public class DUNIDDoc extends Doc implements EventListener {
 		// Release the listener
 		stopListening();
 		super.setDocument(d);
+		/*
+		 * Index Elements by DUNID. The index listens to modifications too, and
+		 * must be registered first, so that it is up to date when handlers run.
+		 * Readers only read the index : it is built here, under the write lock.
+		 * A Document which is restored (e.g. while stored) is already indexed.
+		 */
+		if (!DUNIDDocHelper.isIndexed(d)) {
+			Lock lock = getReadWriteLock().writeLock();
+			lock.lock();
+			try {
+				DUNIDDocHelper.buildIndex(d);
+			} finally {
+				lock.unlock();
+			}
+		}
 		// Listen to all modifications performed on the underlying doc
 		startListening();
 		return getDocument();
 	}
 
+	/**
+	 * <p>
+	 * Record each modification of this object in a journal, so that the
+	 * modifications survive a crash of the JVM (see {@link DUNIDDocJournal}).
+	 * The journal is regularly compacted into the source file of this object.
+	 * </p>
+	 * 
+	 * <p>
+	 * If this object holds modifications which were not stored yet (e.g. a
+	 * journal was replayed when this object was loaded), this object is
+	 * stored first.
+	 * </p>
+	 * 
+	 * @param lock
+	 *            is the lock which prevents this object from being modified.
+	 *            It is held while the journal is compacted.
+	 * 
+	 * @return <tt>true</tt> if the journal was enabled, or <tt>false</tt> if
+	 *         it was already enabled or if this object was not loaded from a
+	 *         file.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given {@link Lock} is <tt>null</tt>.
+	 * @throws IOException
+	 *             if the journal can't be written.
+	 */
+	public synchronized boolean enableJournal(Lock lock) throws IOException {
+		if (lock == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Lock.class.getCanonicalName() + ".");
+		}
+		if (_journal != null || getSourceFile() == null) {
+			return false;
+		}
+		// the journal applies to the content of the source file
+		store();
+		_journalLock = lock;
+		_journal = new DUNIDDocJournal(getSourceFile(), new Runnable() {
+
+			@Override
+			public void run() {
+				compactJournal();
+			}
+
+		});
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Stop recording modifications in the journal. The journal file is
+	 * deleted if this object was stored after the last modification, and is
+	 * kept otherwise, so that the modifications are replayed the next time
+	 * the source file is loaded.
+	 * </p>
+	 * 
+	 * @return <tt>true</tt> if the journal was disabled, or <tt>false</tt> if
+	 *         it was not enabled.
+	 */
+	public boolean disableJournal() {
+		DUNIDDocJournal journal;
+		synchronized (this) {
+			journal = _journal;
+			_journal = null;
+		}
+		if (journal == null) {
+			return false;
+		}
+		journal.close(true);
+		return true;
+	}
+
+	public boolean isJournalEnabled() {
+		return _journal != null;
+	}
+
+	/**
+	 * <p>
+	 * Store this object into its source file, while it can't be modified,
+	 * which resets the journal.
+	 * </p>
+	 */
+	private void compactJournal() {
+		Lock lock = _journalLock;
+		lock.lock();
+		try {
+			synchronized (this) {
+				if (_journal == null) {
+					return;
+				}
+				store();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Replay the journal of the source file, if any (see
+	 * {@link DUNIDDocJournal#replay(Document, String)}).
+	 * </p>
+	 */
+	private void replayJournal() {
+		if (getSourceFile() == null) {
+			return;
+		}
+		try {
+			if (DUNIDDocJournal.replay(getDocument(), getSourceFile()) != 0) {
+				markHasChanged();
+			}
+		} catch (IOException Ex) {
+			log.warn(new MelodyException("Fail to replay the journal of '"
+					+ getSourceFile() + "'.", Ex).getUserFriendlyStackTrace());
+		}
+	}
+
 	public boolean addListener(DocListener l) {
 		if (l == null) {
 			throw new IllegalArgumentException("null: Not accepted. "
@@ -372,18 +517,32 @@ public class DUNIDDoc extends Doc implements EventListener {
 		 * data of the top most Element, and not of the inserted element
 		 */
 		markHasChanged();
+		DUNIDDocJournal journal = _journal;
+		if (journal != null) {
+			journal.recordElementInserted(t);
+		}
 		log.debug(Msg.bind(Messages.DUNIDDocMsg_ELEMENT_INSERTED,
 				getSmartMsg(), t.getNodeName()));
 	}
 
 	protected void elementRemoved(MutationEvent evt) throws MelodyException {
 		markHasChanged();
+		DUNIDDocJournal journal = _journal;
+		if (journal != null) {
+			journal.recordElementRemoved((Element) evt.getTarget());
+		}
 		log.debug(Msg.bind(Messages.DUNIDDocMsg_ELEMENT_REMOVED, getSmartMsg(),
 				((Element) evt.getTarget()).getNodeName()));
 	}
 
 	protected void textLeafInserted(MutationEvent evt) throws MelodyException {
 		markHasChanged();
+		DUNIDDocJournal journal = _journal;
+		if (journal != null) {
+			Text t = (Text) evt.getTarget();
+			journal.recordTextSet((Element) t.getParentNode(),
+					t.getTextContent());
+		}
 		log.debug(Msg.bind(Messages.DUNIDDocMsg_LEAF_TEXT_INSERTED,
 				getSmartMsg(), ((Text) evt.getTarget()).getParentNode()
 						.getNodeName(), ((Text) evt.getTarget())
@@ -392,6 +551,11 @@ public class DUNIDDoc extends Doc implements EventListener {
 
 	protected void textLeafRemoved(MutationEvent evt) throws MelodyException {
 		markHasChanged();
+		DUNIDDocJournal journal = _journal;
+		if (journal != null) {
+			journal.recordTextRemoved((Element) ((Text) evt.getTarget())
+					.getParentNode());
+		}
 		log.debug(Msg.bind(Messages.DUNIDDocMsg_LEAF_TEXT_REMOVED,
 				getSmartMsg(), ((Text) evt.getTarget()).getParentNode()
 						.getNodeName(), ((Text) evt.getTarget())
@@ -400,6 +564,11 @@ public class DUNIDDoc extends Doc implements EventListener {
 
 	protected void textLeafModified(MutationEvent evt) throws MelodyException {
 		markHasChanged();
+		DUNIDDocJournal journal = _journal;
+		if (journal != null) {
+			journal.recordTextSet((Element) ((Text) evt.getTarget())
+					.getParentNode(), evt.getNewValue());
+		}
 		log.debug(Msg.bind(Messages.DUNIDDocMsg_LEAF_TEXT_MODIFIED,
 				getSmartMsg(), ((Text) evt.getTarget()).getParentNode()
 						.getNodeName(), evt.getPrevValue(), evt.getNewValue()));
@@ -412,6 +581,11 @@ public class DUNIDDoc extends Doc implements EventListener {
 					evt.getNewValue()));
 		}
 		markHasChanged();
+		DUNIDDocJournal journal = _journal;
+		if (journal != null) {
+			journal.recordAttributeSet((Element) evt.getTarget(),
+					evt.getAttrName(), evt.getNewValue());
+		}
 		log.debug(Msg.bind(Messages.DUNIDDocMsg_ATTRIBUTE_INSERTED,
 				getSmartMsg(), evt.getAttrName(), evt.getNewValue()));
 	}
@@ -423,6 +597,11 @@ public class DUNIDDoc extends Doc implements EventListener {
 					evt.getPrevValue()));
 		}
 		markHasChanged();
+		DUNIDDocJournal journal = _journal;
+		if (journal != null) {
+			journal.recordAttributeRemoved((Element) evt.getTarget(),
+					evt.getAttrName());
+		}
 		log.debug(Msg.bind(Messages.DUNIDDocMsg_ATTRIBUTE_REMOVED,
 				getSmartMsg(), evt.getAttrName(), evt.getPrevValue()));
 	}
@@ -434,11 +613,27 @@ public class DUNIDDoc extends Doc implements EventListener {
 					evt.getPrevValue(), evt.getNewValue()));
 		}
 		markHasChanged();
+		DUNIDDocJournal journal = _journal;
+		if (journal != null) {
+			journal.recordAttributeSet((Element) evt.getTarget(),
+					evt.getAttrName(), evt.getNewValue());
+		}
 		log.debug(Msg.bind(Messages.DUNIDDocMsg_ATTRIBUTE_MODIFIED,
 				getSmartMsg(), evt.getAttrName(), evt.getPrevValue(),
 				evt.getNewValue()));
 	}
 
+	/**
+	 * <p>
+	 * The parsed file goes through the {@link ParsedDocumentCache}, when it is
+	 * enabled.
+	 * </p>
+	 */
+	@Override
+	protected Document parse(File file) throws SAXException, IOException {
+		return ParsedDocumentCache.parse(file);
+	}
+
 	/**
 	 * @throws IllegalDocException
 	 *             if one or more {@link Element}s have a {@link #DUNID_ATTR}
@@ -459,8 +654,10 @@ public class DUNIDDoc extends Doc implements EventListener {
 			}
 			throw new IllegalDocException(causes);
 		}
-		// When adding DUNID attributes, we don't want to listen/raise events
+		// When replaying the journal and adding DUNID attributes, we don't
+		// want to listen/raise events
 		stopListening();
+		replayJournal();
 		DUNIDDocHelper.addDUNID(getDocument().getFirstChild());
 		startListening();
 	}
@@ -471,7 +668,11 @@ public class DUNIDDoc extends Doc implements EventListener {
 	 * </p>
 	 * 
 	 * <ul>
-	 * <li>Will remove all added {link #DUNID_ATTR} XML Attributes ;</li>
+	 * <li>Will not store the added {link #DUNID_ATTR} XML Attributes ;</li>
+	 * <li>Will neither copy nor modify the underlying {@link Document} ;</li>
+	 * <li>Will reset the journal (or delete the journal file, when the
+	 * journal is disabled), if the given file is the source file of this
+	 * object (see {@link #enableJournal(Lock)}) ;</li>
 	 * </ul>
 	 * 
 	 * @param path
@@ -491,12 +692,29 @@ public class DUNIDDoc extends Doc implements EventListener {
 		if (!hasChanged()) {
 			return;
 		}
-		Document doc = (Document) getDocument().cloneNode(true);
-		NodeList nl = DUNIDDocHelper.findDUNIDs(doc);
-		for (int i = 0; i < nl.getLength(); i++) {
-			((Element) nl.item(i)).removeAttribute(DUNID_ATTR);
+		// DUNID attributes are skipped while the Document is serialized
+		DocHelper.store(getDocument(), sPath, DUNID_ATTRS);
+		if (!sPath.equals(getSourceFile())) {
+			return;
+		}
+		// the source file now holds all modifications
+		DUNIDDocJournal journal = _journal;
+		if (journal == null) {
+			File f = DUNIDDocJournal.getJournalFile(sPath);
+			if (f.exists() && !f.delete()) {
+				log.warn("Fail to delete the journal '" + f + "'.");
+			}
+			return;
+		}
+		try {
+			journal.reset();
+		} catch (IOException Ex) {
+			log.warn(new MelodyException("Fail to reset the journal '"
+					+ journal.getFile() + "'. The journal is disabled.", Ex)
+					.getUserFriendlyStackTrace());
+			_journal = null;
+			journal.close(false);
 		}
-		DocHelper.store(doc, sPath);
 	}
 
 	/**
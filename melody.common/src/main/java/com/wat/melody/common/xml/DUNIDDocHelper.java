@@ -58,14 +58,53 @@ public abstract class DUNIDDocHelper {
 		if (d == null || dunid == null) {
 			return null;
 		}
-		try {
-			return (Element) XPathExpander.evaluateAsNode("//*[@"
-					+ DUNIDDoc.DUNID_ATTR + "='" + dunid.getValue() + "']", d);
-		} catch (XPathExpressionException Ex) {
-			throw new RuntimeException("Unexecpted error while evaluating "
-					+ "an XPath Expression. "
-					+ "Source code has certainly been modified and "
-					+ "a bug have been introduced.", Ex);
+		DUNIDIndex index = DocContext.get(d).getDUNIDIndex();
+		if (index == null) {
+			// not held by a DUNIDDoc : scan the whole document
+			return DUNIDIndex.find(d.getDocumentElement(), dunid.getValue(),
+					null);
+		}
+		return index.get(dunid.getValue());
+	}
+
+	/**
+	 * @param d
+	 *            is a {@link Document}.
+	 * 
+	 * @return <tt>true</tt> if the given {@link Document} is indexed (see
+	 *         {@link #buildIndex(Document)}), <tt>false</tt> otherwise.
+	 */
+	protected static boolean isIndexed(Document d) {
+		return DocContext.get(d).getDUNIDIndex() != null;
+	}
+
+	/**
+	 * <p>
+	 * Build the {@link DUNIDIndex} of the given {@link Document}, and store it
+	 * into its context (see {@link DocContext}), unless the given
+	 * {@link Document} is already indexed.
+	 * </p>
+	 * 
+	 * <p>
+	 * The {@link DUNIDIndex} listens to all modifications performed on the
+	 * given {@link Document}, so that it remains up to date. It is not
+	 * propagated to clones of the given {@link Document}.
+	 * </p>
+	 * 
+	 * <p>
+	 * Building the {@link DUNIDIndex} reads the whole DOM tree and registers
+	 * DOM listeners : the caller must hold the write lock of the given
+	 * {@link Document} (or the given {@link Document} must not be visible by
+	 * other threads yet).
+	 * </p>
+	 * 
+	 * @param d
+	 *            is a {@link Document}.
+	 */
+	protected static void buildIndex(Document d) {
+		DocContext ctx = DocContext.get(d);
+		if (ctx.getDUNIDIndex() == null) {
+			ctx.setDUNIDIndex(new DUNIDIndex(d));
 		}
 	}
 
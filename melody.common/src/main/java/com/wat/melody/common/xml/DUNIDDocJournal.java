@@ -0,0 +1,587 @@
+package com.wat.melody.common.xml;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * <p>
+ * A write-behind journal of the modifications of a {@link DUNIDDoc}, so that
+ * the modifications performed during a processing survive a crash of the JVM,
+ * without rewriting the whole XML file at each modification.
+ * </p>
+ * 
+ * <p>
+ * The journal is stored next to the XML file of the {@link DUNIDDoc} (see
+ * {@link #getJournalFile(String)}). Its first line identifies the content of
+ * the XML file the journal applies to (a CRC32 and a size). Each following
+ * line records one modification. Because DUNIDs are generated each time the
+ * XML file is loaded, modified {@link Element}s are identified by their XPath
+ * position (see {@link DocHelper#getXPathPosition(Element)}) : replaying the
+ * records in order, on the XML file they apply to, gives back the modified
+ * {@link Document}.
+ * </p>
+ * 
+ * <p>
+ * Records are queued by the modifying threads and written by a background
+ * thread, which writes and syncs all the queued records at once (group
+ * commit). After {@link #COMPACTION_THRESHOLD} records or
+ * {@link #COMPACTION_INTERVAL} milliseconds, the background thread runs the
+ * given compaction, which stores the {@link DUNIDDoc} into its XML file and
+ * resets this journal (see {@link #reset()}).
+ * </p>
+ * 
+ * <p>
+ * When a {@link DUNIDDoc} is loaded, the journal of its XML file, if any, is
+ * replayed (see {@link #replay(Document, String)}).
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class DUNIDDocJournal implements Runnable {
+
+	private static Logger log = LoggerFactory.getLogger(DUNIDDocJournal.class);
+
+	public static final String EXTENSION = ".journal";
+
+	/**
+	 * Number of records written before the journal is compacted.
+	 */
+	public static final int COMPACTION_THRESHOLD = 1024;
+
+	/**
+	 * Maximum amount of milliseconds a record can wait before the journal is
+	 * compacted.
+	 */
+	public static final long COMPACTION_INTERVAL = 30000;
+
+	private static final String BASE = "BASE";
+	private static final String SET_ATTRIBUTE = "A";
+	private static final String REMOVE_ATTRIBUTE = "a";
+	private static final String SET_TEXT = "T";
+	private static final String REMOVE_TEXT = "t";
+	private static final String INSERT_ELEMENT = "E";
+	private static final String REMOVE_ELEMENT = "e";
+
+	private static final Set<String> DUNID_ATTRS = Collections
+			.singleton(DUNIDDoc.DUNID_ATTR);
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * @param path
+	 *            is the path of the XML file of a {@link DUNIDDoc}.
+	 * 
+	 * @return the journal file of the given XML file.
+	 */
+	public static File getJournalFile(String path) {
+		return new File(path + EXTENSION);
+	}
+
+	/**
+	 * @return the CRC32 and the size of the given file, which identify its
+	 *         content.
+	 */
+	private static String computeBase(File f) throws IOException {
+		CRC32 crc = new CRC32();
+		long length = 0;
+		byte[] buf = new byte[65536];
+		try (InputStream in = new FileInputStream(f)) {
+			int n;
+			while ((n = in.read(buf)) != -1) {
+				crc.update(buf, 0, n);
+				length += n;
+			}
+		}
+		return Long.toHexString(crc.getValue()) + " " + length;
+	}
+
+	private static String encode(String s) {
+		try {
+			return URLEncoder.encode(s, UTF8.name());
+		} catch (UnsupportedEncodingException Ex) {
+			throw new RuntimeException("Unexpected error while encoding a "
+					+ "journal record. "
+					+ "Because every Java platform must support UTF-8, "
+					+ "such error cannot happened. "
+					+ "Source code has certainly been modified and "
+					+ "a bug have been introduced.", Ex);
+		}
+	}
+
+	private static String decode(String s) {
+		try {
+			return URLDecoder.decode(s, UTF8.name());
+		} catch (UnsupportedEncodingException Ex) {
+			throw new RuntimeException("Unexpected error while decoding a "
+					+ "journal record. "
+					+ "Because every Java platform must support UTF-8, "
+					+ "such error cannot happened. "
+					+ "Source code has certainly been modified and "
+					+ "a bug have been introduced.", Ex);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Replay the journal of the given XML file, if any, on the given
+	 * {@link Document}, which must have been parsed from the given XML file
+	 * and must not contain DUNIDs yet.
+	 * </p>
+	 * 
+	 * <p>
+	 * The journal is ignored if it doesn't apply to the current content of the
+	 * given XML file (e.g. the XML file was stored after the last record was
+	 * written, or was modified by hand). Replay stops at the first record
+	 * which can't be applied (e.g. the last record, torn because the JVM
+	 * crashed while writing it).
+	 * </p>
+	 * 
+	 * @param d
+	 *            is the {@link Document} parsed from the given XML file.
+	 * @param path
+	 *            is the path of the XML file.
+	 * 
+	 * @return the number of replayed records.
+	 * 
+	 * @throws IOException
+	 *             if the journal or the XML file can't be read.
+	 */
+	public static int replay(Document d, String path) throws IOException {
+		File jf = getJournalFile(path);
+		if (!jf.exists()) {
+			return 0;
+		}
+		int count = 0;
+		try (BufferedReader r = Files.newBufferedReader(jf.toPath(), UTF8)) {
+			String line = r.readLine();
+			String base = BASE + " " + computeBase(new File(path));
+			if (line == null || !line.equals(base)) {
+				log.info("Journal '" + jf + "' ignored : it doesn't apply to "
+						+ "the current content of '" + path + "'.");
+				return 0;
+			}
+			while ((line = r.readLine()) != null) {
+				try {
+					apply(d, line.split(" ", -1));
+				} catch (RuntimeException | SAXException Ex) {
+					log.warn("Journal '" + jf + "': record " + (count + 1)
+							+ " can't be replayed (" + Ex + "). The "
+							+ "following records are ignored.");
+					break;
+				}
+				count++;
+			}
+		}
+		log.info("Journal '" + jf + "': " + count + " modification(s) "
+				+ "replayed on '" + path + "'.");
+		return count;
+	}
+
+	private static void apply(Document d, String[] fields)
+			throws SAXException, IOException {
+		Element e = findElement(d, decode(fields[1]));
+		switch (fields[0]) {
+		case SET_ATTRIBUTE:
+			e.setAttribute(decode(fields[2]), decode(fields[3]));
+			break;
+		case REMOVE_ATTRIBUTE:
+			e.removeAttribute(decode(fields[2]));
+			break;
+		case SET_TEXT:
+			e.setTextContent(decode(fields[2]));
+			break;
+		case REMOVE_TEXT:
+			e.setTextContent("");
+			break;
+		case INSERT_ELEMENT:
+			Node n = d.importNode(DocHelper.parse(decode(fields[3]))
+					.getDocumentElement(), true);
+			e.insertBefore(n, findChildElement(e,
+					Integer.parseInt(fields[2])));
+			break;
+		case REMOVE_ELEMENT:
+			e.getParentNode().removeChild(e);
+			break;
+		default:
+			throw new IllegalArgumentException(fields[0]
+					+ ": Not accepted. Unknown record.");
+		}
+	}
+
+	/**
+	 * @return the {@link Element} at the given XPath position (see
+	 *         {@link DocHelper#getXPathPosition(Element)}).
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if no such {@link Element} exists.
+	 */
+	private static Element findElement(Document d, String position) {
+		Node n = d;
+		for (String step : position.substring(1).split("/")) {
+			int i = step.lastIndexOf('[');
+			String name = step.substring(0, i);
+			int index = Integer.parseInt(step.substring(i + 1,
+					step.length() - 1));
+			Node c = n.getFirstChild();
+			for (; c != null; c = c.getNextSibling()) {
+				if (c.getNodeName().equals(name) && --index == 0) {
+					break;
+				}
+			}
+			if (c == null) {
+				throw new IllegalArgumentException(position
+						+ ": Not accepted. No such element.");
+			}
+			n = c;
+		}
+		return (Element) n;
+	}
+
+	/**
+	 * @return the child {@link Element} of the given {@link Element} at the
+	 *         given index (starting at 0), or <tt>null</tt> if the given
+	 *         {@link Element} doesn't have so many child {@link Element}s.
+	 */
+	private static Element findChildElement(Element e, int index) {
+		for (Node c = e.getFirstChild(); c != null; c = c.getNextSibling()) {
+			if (c.getNodeType() == Node.ELEMENT_NODE && index-- == 0) {
+				return (Element) c;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the index of the given {@link Element} among the child
+	 *         {@link Element}s of its parent (starting at 0).
+	 */
+	private static int getElementIndex(Element e) {
+		int index = 0;
+		for (Node c = e.getPreviousSibling(); c != null; c = c
+				.getPreviousSibling()) {
+			if (c.getNodeType() == Node.ELEMENT_NODE) {
+				index++;
+			}
+		}
+		return index;
+	}
+
+	private String _path;
+	private File _file;
+	private Runnable _compaction;
+	// the records not written yet
+	private List<String> _pendingRecords;
+	// guards the journal file
+	private Object _ioLock;
+	private FileOutputStream _out;
+	private BufferedWriter _writer;
+	private int _recordsSinceReset;
+	private long _lastReset;
+	// the number of records which makes the compaction due
+	private int _compactionThreshold;
+	private boolean _closed;
+	private Thread _thread;
+
+	/**
+	 * <p>
+	 * Create the journal of the given XML file, which applies to its current
+	 * content, and start its background thread.
+	 * </p>
+	 * 
+	 * @param path
+	 *            is the path of the XML file of a {@link DUNIDDoc}. The
+	 *            content of the XML file must be the content of the
+	 *            {@link DUNIDDoc}.
+	 * @param compaction
+	 *            stores the {@link DUNIDDoc} into the given XML file, then
+	 *            calls {@link #reset()}. It is run by the background thread.
+	 * 
+	 * @throws IOException
+	 *             if the journal can't be written.
+	 */
+	public DUNIDDocJournal(String path, Runnable compaction)
+			throws IOException {
+		if (path == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + String.class.getCanonicalName()
+					+ " (a file path).");
+		}
+		if (compaction == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Runnable.class.getCanonicalName()
+					+ ".");
+		}
+		_path = path;
+		_file = getJournalFile(path);
+		_compaction = compaction;
+		_pendingRecords = new ArrayList<String>();
+		_ioLock = new Object();
+		_closed = false;
+		reset();
+		_thread = new Thread(this, "journal-" + _file.getName());
+		_thread.setDaemon(true);
+		_thread.start();
+	}
+
+	public File getFile() {
+		return _file;
+	}
+
+	public void recordAttributeSet(Element e, String name, String value) {
+		record(SET_ATTRIBUTE, encode(DocHelper.getXPathPosition(e)),
+				encode(name), encode(value));
+	}
+
+	public void recordAttributeRemoved(Element e, String name) {
+		record(REMOVE_ATTRIBUTE, encode(DocHelper.getXPathPosition(e)),
+				encode(name));
+	}
+
+	public void recordTextSet(Element e, String text) {
+		record(SET_TEXT, encode(DocHelper.getXPathPosition(e)), encode(text));
+	}
+
+	public void recordTextRemoved(Element e) {
+		record(REMOVE_TEXT, encode(DocHelper.getXPathPosition(e)));
+	}
+
+	/**
+	 * @param e
+	 *            is the inserted {@link Element}, which is already in its
+	 *            parent.
+	 */
+	public void recordElementInserted(Element e) {
+		record(INSERT_ELEMENT, encode(DocHelper
+				.getXPathPosition((Element) e.getParentNode())),
+				String.valueOf(getElementIndex(e)),
+				encode(DocHelper.serialize(e, DUNID_ATTRS)));
+	}
+
+	/**
+	 * @param e
+	 *            is the removed {@link Element}, which is still in its
+	 *            parent.
+	 */
+	public void recordElementRemoved(Element e) {
+		record(REMOVE_ELEMENT, encode(DocHelper.getXPathPosition(e)));
+	}
+
+	private synchronized void record(String... fields) {
+		if (_closed) {
+			return;
+		}
+		StringBuilder str = new StringBuilder(fields[0]);
+		for (int i = 1; i < fields.length; i++) {
+			str.append(' ');
+			str.append(fields[i]);
+		}
+		_pendingRecords.add(str.toString());
+		notifyAll();
+	}
+
+	/**
+	 * <p>
+	 * Write and sync the queued records, until the journal is closed. While
+	 * records are synced, new records are queued, and will be written at
+	 * once.
+	 * </p>
+	 */
+	@Override
+	public void run() {
+		while (true) {
+			synchronized (this) {
+				try {
+					while (!_closed && _pendingRecords.isEmpty()
+							&& !isCompactionDue()) {
+						wait(getCompactionDelay());
+					}
+				} catch (InterruptedException Ex) {
+					return;
+				}
+				if (_closed) {
+					return;
+				}
+			}
+			try {
+				flush();
+			} catch (IOException Ex) {
+				log.warn("Fail to write in the journal '" + _file
+						+ "'. The journal is disabled.", Ex);
+				close(false);
+				return;
+			}
+			if (isCompactionDue()) {
+				try {
+					_compaction.run();
+				} catch (RuntimeException Ex) {
+					log.warn("Fail to compact the journal '" + _file + "'.",
+							Ex);
+					synchronized (this) {
+						// don't retry immediately
+						_lastReset = System.nanoTime();
+						_compactionThreshold = _recordsSinceReset
+								+ COMPACTION_THRESHOLD;
+					}
+				}
+			}
+		}
+	}
+
+	private synchronized boolean isCompactionDue() {
+		if (_recordsSinceReset + _pendingRecords.size() == 0) {
+			return false;
+		}
+		return _recordsSinceReset >= _compactionThreshold
+				|| getElapsedTimeSinceReset() >= COMPACTION_INTERVAL;
+	}
+
+	/**
+	 * @return the amount of milliseconds before the next compaction is due,
+	 *         or 0 if there is nothing to compact.
+	 */
+	private synchronized long getCompactionDelay() {
+		if (_recordsSinceReset + _pendingRecords.size() == 0) {
+			return 0;
+		}
+		return Math.max(1, COMPACTION_INTERVAL - getElapsedTimeSinceReset());
+	}
+
+	private synchronized long getElapsedTimeSinceReset() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - _lastReset);
+	}
+
+	/**
+	 * <p>
+	 * Write and sync all queued records.
+	 * </p>
+	 */
+	private void flush() throws IOException {
+		synchronized (_ioLock) {
+			List<String> records;
+			synchronized (this) {
+				records = _pendingRecords;
+				_pendingRecords = new ArrayList<String>();
+			}
+			if (records.isEmpty() || _writer == null) {
+				return;
+			}
+			for (String record : records) {
+				_writer.write(record);
+				_writer.newLine();
+			}
+			_writer.flush();
+			_out.getFD().sync();
+			synchronized (this) {
+				_recordsSinceReset += records.size();
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Discard all records, and make the journal apply to the current content
+	 * of the XML file. Must be called right after the {@link DUNIDDoc} was
+	 * stored into its XML file, while the {@link DUNIDDoc} can't be modified.
+	 * </p>
+	 * 
+	 * @throws IOException
+	 *             if the journal can't be written.
+	 */
+	public void reset() throws IOException {
+		synchronized (_ioLock) {
+			synchronized (this) {
+				if (_closed) {
+					return;
+				}
+				_pendingRecords.clear();
+				_recordsSinceReset = 0;
+				_lastReset = System.nanoTime();
+				_compactionThreshold = COMPACTION_THRESHOLD;
+			}
+			if (_writer != null) {
+				_writer.close();
+			}
+			String base = computeBase(new File(_path));
+			_out = new FileOutputStream(_file);
+			_writer = new BufferedWriter(new OutputStreamWriter(_out, UTF8));
+			_writer.write(BASE + " " + base);
+			_writer.newLine();
+			_writer.flush();
+			_out.getFD().sync();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Write the queued records, stop the background thread and close the
+	 * journal. Later records are ignored. Doesn't wait for a running
+	 * compaction, which will do nothing.
+	 * </p>
+	 * 
+	 * @param delete
+	 *            is <tt>true</tt> if the journal file must be deleted, which
+	 *            is only done if no record was written since the last
+	 *            {@link #reset()} (i.e. the XML file holds all
+	 *            modifications).
+	 */
+	public void close(boolean delete) {
+		synchronized (this) {
+			if (_closed) {
+				return;
+			}
+			_closed = true;
+			notifyAll();
+		}
+		synchronized (_ioLock) {
+			try {
+				flush();
+			} catch (IOException Ex) {
+				log.warn("Fail to write in the journal '" + _file + "'.", Ex);
+			}
+			if (_writer != null) {
+				try {
+					_writer.close();
+				} catch (IOException Ex) {
+					log.warn("Fail to close the journal '" + _file + "'.", Ex);
+				}
+				_writer = null;
+				_out = null;
+			}
+			boolean compacted;
+			synchronized (this) {
+				compacted = _recordsSinceReset == 0;
+			}
+			if (delete && compacted) {
+				if (!_file.delete()) {
+					log.warn("Fail to delete the journal '" + _file + "'.");
+				}
+			}
+		}
+	}
+
+}
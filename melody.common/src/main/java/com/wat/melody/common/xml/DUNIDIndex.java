@@ -0,0 +1,209 @@
+package com.wat.melody.common.xml;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.EventTarget;
+import org.w3c.dom.events.MutationEvent;
+
+/**
+ * <p>
+ * Index all {@link Element}s of a {@link Document} by their {@link DUNID}, so
+ * that an {@link Element} can be retrieved by its {@link DUNID} without
+ * scanning the whole {@link Document}.
+ * </p>
+ * 
+ * <p>
+ * The index is built when created, and is kept up to date by listening to all
+ * modifications performed on the {@link Document} (element insertion, element
+ * removal, and {@link DUNIDDoc#DUNID_ATTR} XML attribute modification).
+ * </p>
+ * 
+ * <p>
+ * When several {@link Element}s have the same {@link DUNID}, the first one in
+ * document order is retrieved. When it is removed (or when its
+ * {@link DUNIDDoc#DUNID_ATTR} XML attribute is modified), the
+ * {@link Document} is scanned to find the next one.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+class DUNIDIndex implements EventListener {
+
+	private ConcurrentMap<String, Element> _index;
+	// DUNIDs which are (or were) shared by more than one Element
+	private Set<String> _duplicates;
+
+	/**
+	 * <p>
+	 * Build the index of the given {@link Document}, and listen to its
+	 * modifications.
+	 * </p>
+	 * 
+	 * @param d
+	 *            is the {@link Document} to index.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given {@link Document} is <tt>null</tt>.
+	 */
+	public DUNIDIndex(Document d) {
+		if (d == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Document.class.getCanonicalName()
+					+ ".");
+		}
+		_index = new ConcurrentHashMap<String, Element>();
+		_duplicates = Collections
+				.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		EventTarget target = (EventTarget) d;
+		target.addEventListener("DOMAttrModified", this, true);
+		target.addEventListener("DOMNodeRemoved", this, true);
+		target.addEventListener("DOMNodeInserted", this, true);
+		index(d.getDocumentElement());
+	}
+
+	/**
+	 * @param dunid
+	 *            is the value of the {@link DUNID} to search.
+	 * 
+	 * @return the {@link Element} whose {@link DUNIDDoc#DUNID_ATTR} XML
+	 *         attribute is equal to the given value, or <tt>null</tt> if such
+	 *         {@link Element} cannot be found.
+	 */
+	public Element get(String dunid) {
+		return _index.get(dunid);
+	}
+
+	public int size() {
+		return _index.size();
+	}
+
+	@Override
+	public void handleEvent(Event evt) {
+		if (!(evt instanceof MutationEvent)) {
+			return;
+		}
+		MutationEvent e = (MutationEvent) evt;
+		if (evt.getType().equals("DOMAttrModified")) {
+			if (!DUNIDDoc.DUNID_ATTR.equals(e.getAttrName())) {
+				return;
+			}
+			Element t = (Element) evt.getTarget();
+			if (e.getPrevValue() != null) {
+				remove(e.getPrevValue(), t, null);
+			}
+			if (e.getNewValue() != null) {
+				add(e.getNewValue(), t);
+			}
+		} else if (evt.getTarget() instanceof Element) {
+			Element t = (Element) evt.getTarget();
+			if (evt.getType().equals("DOMNodeInserted")) {
+				index(t);
+			} else if (evt.getType().equals("DOMNodeRemoved")) {
+				// the removed element is still in the document
+				unindex(t, t);
+			}
+		}
+	}
+
+	private void index(Element e) {
+		if (e == null) {
+			return;
+		}
+		Attr a = e.getAttributeNode(DUNIDDoc.DUNID_ATTR);
+		if (a != null) {
+			add(a.getValue(), e);
+		}
+		// walk through siblings (NodeList is not thread safe)
+		for (Node c = e.getFirstChild(); c != null; c = c.getNextSibling()) {
+			if (c.getNodeType() == Node.ELEMENT_NODE) {
+				index((Element) c);
+			}
+		}
+	}
+
+	private void unindex(Element e, Node removed) {
+		Attr a = e.getAttributeNode(DUNIDDoc.DUNID_ATTR);
+		if (a != null) {
+			remove(a.getValue(), e, removed);
+		}
+		for (Node c = e.getFirstChild(); c != null; c = c.getNextSibling()) {
+			if (c.getNodeType() == Node.ELEMENT_NODE) {
+				unindex((Element) c, removed);
+			}
+		}
+	}
+
+	private void add(String dunid, Element e) {
+		Element prev = _index.putIfAbsent(dunid, e);
+		if (prev == null || prev == e) {
+			return;
+		}
+		_duplicates.add(dunid);
+		// the first element in document order wins
+		short pos = e.compareDocumentPosition(prev);
+		if ((pos & Node.DOCUMENT_POSITION_FOLLOWING) != 0) {
+			_index.replace(dunid, prev, e);
+		}
+	}
+
+	/**
+	 * @param removed
+	 *            is the root of the sub tree which is being removed from the
+	 *            {@link Document}, and which must not be scanned, or
+	 *            <tt>null</tt>.
+	 */
+	private void remove(String dunid, Element e, Node removed) {
+		if (!_index.remove(dunid, e) || !_duplicates.contains(dunid)) {
+			return;
+		}
+		Element next = find(e.getOwnerDocument().getDocumentElement(), dunid,
+				removed);
+		if (next == null) {
+			_duplicates.remove(dunid);
+		} else {
+			_index.putIfAbsent(dunid, next);
+		}
+	}
+
+	/**
+	 * @param e
+	 *            is the root of the sub tree to scan, or <tt>null</tt>.
+	 * @param dunid
+	 *            is the value of the {@link DUNID} to search.
+	 * @param excluded
+	 *            is the root of a sub tree which must not be scanned, or
+	 *            <tt>null</tt>.
+	 * 
+	 * @return the first {@link Element} in document order whose
+	 *         {@link DUNIDDoc#DUNID_ATTR} XML attribute is equal to the given
+	 *         value, or <tt>null</tt> if such {@link Element} cannot be found.
+	 */
+	static Element find(Element e, String dunid, Node excluded) {
+		if (e == null || e == excluded) {
+			return null;
+		}
+		if (dunid.equals(e.getAttribute(DUNIDDoc.DUNID_ATTR))) {
+			return e;
+		}
+		for (Node c = e.getFirstChild(); c != null; c = c.getNextSibling()) {
+			if (c.getNodeType() == Node.ELEMENT_NODE) {
+				Element found = find((Element) c, dunid, excluded);
+				if (found != null) {
+					return found;
+				}
+			}
+		}
+		return null;
+	}
+
+}
@@ -3,10 +3,15 @@ package com.wat.melody.common.xml;
 import java.io.CharConversionException;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpressionException;
 
+import net.sf.saxon.dom.DocumentWrapper;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -31,6 +36,8 @@ public class Doc {
 	private String _sourceFile = null;
 	private Document _doc = null;
 	private XPath _xPath;
+	private volatile ReadWriteLock _lock = new ReentrantReadWriteLock();
+	private DocumentWrapper _documentWrapper;
 
 	public Doc() {
 		setXPath(XPathExpander.newXPath(null));
@@ -60,7 +67,7 @@ public class Doc {
 		File file = new File(path);
 		setSourceFile(file.toString());
 		try {
-			setDocument(DocHelper.parse(file));
+			setDocument(parse(file));
 		} catch (SAXParseException Ex) {
 			throw new IllegalDocException(Msg.bind(
 					Messages.DocEx_INVALID_XML_SYNTAX_AT, path,
@@ -110,7 +117,14 @@ public class Doc {
 					+ "accessible (deleted, moved, read permission "
 					+ "removed, ...).", Ex);
 		}
-		setDocument((Document) doc.getDocument().cloneNode(true));
+		// cloning doesn't support concurrent reads of the DOM tree
+		Lock lock = doc.getReadWriteLock().writeLock();
+		lock.lock();
+		try {
+			setDocument((Document) doc.getDocument().cloneNode(true));
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
@@ -146,6 +160,25 @@ public class Doc {
 		validateContent();
 	}
 
+	/**
+	 * <p>
+	 * Parse the given file. Called by {@link #load(String)}.
+	 * </p>
+	 * 
+	 * @param file
+	 *            is the file to parse.
+	 * 
+	 * @return the parsed {@link Document}.
+	 * 
+	 * @throws SAXException
+	 *             if the file is not a valid XML file.
+	 * @throws IOException
+	 *             if an IO error occurred while reading the file.
+	 */
+	protected Document parse(File file) throws SAXException, IOException {
+		return DocHelper.parse(file);
+	}
+
 	/**
 	 * <p>
 	 * Validate the content of this object.
@@ -242,13 +275,31 @@ public class Doc {
 		Document previous = getDocument();
 		_doc = d;
 		/*
-		 * Store the XPath into the Document's user data, so it can be retrieved
+		 * All Documents held by this object share the same lock, so that
+		 * concurrent XPath evaluations and DOM modifications are synchronized.
+		 * A Document shared with other owners keeps its lock, which is adopted.
+		 */
+		DocContext ctx = DocContext.get(_doc, getReadWriteLock());
+		_lock = ctx.getReadWriteLock();
+		/*
+		 * Store the XPath into the Document's context, so it can be retrieved
 		 * from everywhere.
 		 */
-		DocHelper.storeXPath(_doc, getXPath());
+		ctx.setXPath(getXPath());
+		// the context only weakly references the wrapper
+		_documentWrapper = XPathExpander.storeDocumentWrapper(_doc);
 		return previous;
 	}
 
+	/**
+	 * @return the {@link ReadWriteLock} which guards the {@link Document} held
+	 *         by this object. XPath evaluations acquire its read lock.
+	 *         Modifications of the DOM tree must acquire its write lock.
+	 */
+	public ReadWriteLock getReadWriteLock() {
+		return _lock;
+	}
+
 	public XPath getXPath() {
 		return _xPath;
 	}
@@ -0,0 +1,249 @@
+package com.wat.melody.common.xml;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.xml.xpath.XPath;
+
+import net.sf.saxon.dom.DocumentWrapper;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * <p>
+ * Holds the objects which are shared by all users of a {@link Document} : the
+ * {@link ReadWriteLock} which guards it, the {@link XPath} object which
+ * evaluates XPath expressions in it, the {@link DocumentWrapper} which allows
+ * concurrent XPath evaluations in it, and the index of its {@link Element}s
+ * by {@link DUNID} (see {@link DUNIDDoc}).
+ * </p>
+ *
+ * <p>
+ * The DOM implementation stores all user data of a {@link Document} in a
+ * single map, which is not thread safe. Because these objects are retrieved
+ * before any lock is acquired, they are not stored as user data, but in a
+ * concurrent table, where each {@link Document} is weakly referenced and
+ * compared by identity.
+ * </p>
+ *
+ * <p>
+ * The objects held by this context must not reference the {@link Document}
+ * (otherwise, it would never be released). The {@link DocumentWrapper}, which
+ * does, is weakly referenced : its owners (see {@link Doc}) must keep it. The
+ * {@link DUNIDIndex}, which does too, is weakly referenced : it listens to the
+ * {@link Document}, which keeps it.
+ * </p>
+ *
+ * @author Guillaume Cornet
+ *
+ */
+public final class DocContext {
+
+	private static final ReferenceQueue<Document> _queue = new ReferenceQueue<Document>();
+	private static final ConcurrentMap<Key, DocContext> _contexts = new ConcurrentHashMap<Key, DocContext>();
+
+	/**
+	 * @param d
+	 *            is a {@link Document}.
+	 *
+	 * @return the context of the given {@link Document}. If the given
+	 *         {@link Document} doesn't have any context yet, a new one, with a
+	 *         dedicated {@link ReadWriteLock}, is atomically created. All
+	 *         further calls will return the same context.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the given {@link Document} is <tt>null</tt>.
+	 */
+	public static DocContext get(Document d) {
+		if (d == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Document.class.getCanonicalName()
+					+ ".");
+		}
+		DocContext ctx = _contexts.get(new Key(d, null));
+		if (ctx != null) {
+			return ctx;
+		}
+		return putIfAbsent(d, new ReentrantReadWriteLock());
+	}
+
+	/**
+	 * <p>
+	 * A {@link Document} can be shared by multiple owners (e.g. Sequence
+	 * Descriptors). Because they all must acquire the same
+	 * {@link ReadWriteLock}, the {@link ReadWriteLock} of the first owner is
+	 * kept, and next owners must adopt it.
+	 * </p>
+	 *
+	 * @param d
+	 *            is a {@link Document}.
+	 * @param lock
+	 *            is the {@link ReadWriteLock} which will guard the given
+	 *            {@link Document}, if it doesn't have any context yet.
+	 *
+	 * @return the context of the given {@link Document}, which is either a new
+	 *         one holding the given {@link ReadWriteLock}, or the one which
+	 *         was previously created.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the given {@link Document} is <tt>null</tt>.
+	 * @throws IllegalArgumentException
+	 *             if the given {@link ReadWriteLock} is <tt>null</tt>.
+	 */
+	public static DocContext get(Document d, ReadWriteLock lock) {
+		if (d == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Document.class.getCanonicalName()
+					+ ".");
+		}
+		if (lock == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid "
+					+ ReadWriteLock.class.getCanonicalName() + ".");
+		}
+		DocContext ctx = _contexts.get(new Key(d, null));
+		if (ctx != null) {
+			return ctx;
+		}
+		return putIfAbsent(d, lock);
+	}
+
+	private static DocContext putIfAbsent(Document d, ReadWriteLock lock) {
+		expungeStaleContexts();
+		DocContext ctx = new DocContext(lock);
+		DocContext previous = _contexts.putIfAbsent(new Key(d, _queue), ctx);
+		return previous != null ? previous : ctx;
+	}
+
+	private static void expungeStaleContexts() {
+		Reference<? extends Document> ref;
+		while ((ref = _queue.poll()) != null) {
+			_contexts.remove(ref);
+		}
+	}
+
+	private final ReadWriteLock _lock;
+	private volatile XPath _xpath;
+	private volatile WeakReference<DocumentWrapper> _documentWrapper;
+	private volatile WeakReference<DUNIDIndex> _dunidIndex;
+
+	private DocContext(ReadWriteLock lock) {
+		_lock = lock;
+	}
+
+	/**
+	 * @return the {@link ReadWriteLock} which guards the {@link Document}.
+	 *         XPath evaluations acquire its read lock. Modifications of the
+	 *         DOM tree must acquire its write lock.
+	 */
+	public ReadWriteLock getReadWriteLock() {
+		return _lock;
+	}
+
+	/**
+	 * @return the {@link XPath} object which evaluates XPath expressions in
+	 *         the {@link Document}, or <tt>null</tt> if no {@link XPath}
+	 *         object have been previously stored.
+	 */
+	public XPath getXPath() {
+		return _xpath;
+	}
+
+	/**
+	 * @param xpath
+	 *            is the {@link XPath} to store. Can be <tt>null</tt>.
+	 */
+	public void setXPath(XPath xpath) {
+		_xpath = xpath;
+	}
+
+	/**
+	 * @return the {@link DocumentWrapper} which allows concurrent XPath
+	 *         evaluations in the {@link Document}, or <tt>null</tt> if no
+	 *         {@link DocumentWrapper} have been previously stored (or if it
+	 *         has been released by all its owners).
+	 */
+	public DocumentWrapper getDocumentWrapper() {
+		WeakReference<DocumentWrapper> ref = _documentWrapper;
+		return ref == null ? null : ref.get();
+	}
+
+	/**
+	 * @param dw
+	 *            is the {@link DocumentWrapper} to store, if no
+	 *            {@link DocumentWrapper} is currently stored.
+	 *
+	 * @return the {@link DocumentWrapper} currently stored, which is either the
+	 *         given one, or the one which was previously stored. The caller
+	 *         must keep it.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the given {@link DocumentWrapper} is <tt>null</tt>.
+	 */
+	public synchronized DocumentWrapper setDocumentWrapperIfAbsent(
+			DocumentWrapper dw) {
+		if (dw == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid "
+					+ DocumentWrapper.class.getCanonicalName() + ".");
+		}
+		DocumentWrapper previous = getDocumentWrapper();
+		if (previous != null) {
+			return previous;
+		}
+		_documentWrapper = new WeakReference<DocumentWrapper>(dw);
+		return dw;
+	}
+
+	/**
+	 * @return the {@link DUNIDIndex} of the {@link Document}, or <tt>null</tt>
+	 *         if it is not indexed.
+	 */
+	DUNIDIndex getDUNIDIndex() {
+		WeakReference<DUNIDIndex> ref = _dunidIndex;
+		return ref == null ? null : ref.get();
+	}
+
+	void setDUNIDIndex(DUNIDIndex index) {
+		_dunidIndex = new WeakReference<DUNIDIndex>(index);
+	}
+
+	/**
+	 * A weak reference to a {@link Document}, compared by identity. Once
+	 * cleared, it is only equal to itself.
+	 */
+	private static final class Key extends WeakReference<Document> {
+
+		private final int _hash;
+
+		Key(Document d, ReferenceQueue<Document> queue) {
+			super(d, queue);
+			_hash = System.identityHashCode(d);
+		}
+
+		@Override
+		public int hashCode() {
+			return _hash;
+		}
+
+		@Override
+		public boolean equals(Object anObject) {
+			if (this == anObject) {
+				return true;
+			}
+			if (!(anObject instanceof Key)) {
+				return false;
+			}
+			Document d = get();
+			return d != null && d == ((Key) anObject).get();
+		}
+
+	}
+
+}
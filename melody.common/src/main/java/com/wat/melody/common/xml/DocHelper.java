@@ -1,8 +1,22 @@
 package com.wat.melody.common.xml;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -10,8 +24,11 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpressionException;
@@ -19,10 +36,12 @@ import javax.xml.xpath.XPathExpressionException;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 
 import com.wat.melody.common.files.FS;
 import com.wat.melody.common.files.exception.IllegalDirectoryException;
@@ -183,21 +202,261 @@ public abstract class DocHelper {
 	 */
 	public static void store(Document d, String path)
 			throws IllegalFileException, IllegalDirectoryException {
+		Set<String> none = Collections.emptySet();
+		store(d, path, none);
+	}
+
+	/**
+	 * <p>
+	 * Store the given {@link Document} into the given file, without the given
+	 * XML Attributes.
+	 * </p>
+	 * 
+	 * <p>
+	 * The given {@link Document} is serialized while it is walked : it is
+	 * neither copied nor modified. It is written into a temporary file, in
+	 * the directory of the given file, which is synced to disk and then
+	 * atomically replaces the given file. The given file is never left
+	 * half-written. The temporary file gets the permissions, the group and
+	 * the ACLs of the given file. When the given file is a symbolic link, the
+	 * file it points to is replaced, and the link is kept.
+	 * </p>
+	 * 
+	 * <p>
+	 * When the directory of the given file (or of the file it points to) is
+	 * not writable, no temporary file can be created : the given file is
+	 * written in place.
+	 * </p>
+	 * 
+	 * @param d
+	 *            is the {@link Document} to store on disk.
+	 * @param path
+	 *            is a file path, which specifies where the given
+	 *            {@link Document} will be stored.
+	 * @param excludedAttributes
+	 *            are the names of the XML Attributes which must not be
+	 *            stored.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             <ul>
+	 *             <li>if the given path is <tt>null</tt> ;</li>
+	 *             <li>if the given {@link Document} is <tt>null</tt> ;</li>
+	 *             <li>if the given excluded XML Attributes are <tt>null</tt>
+	 *             ;</li>
+	 *             </ul>
+	 * @throws IllegalFileException
+	 *             if the given path doesn't point to a valid file (e.g. a
+	 *             directory, not readable, not writable).
+	 * @throws IllegalDirectoryException
+	 *             if the given path parent directory doesn't point to a valid
+	 *             directory (e.g. not readable, not writable)..
+	 */
+	public static void store(Document d, String path,
+			Set<String> excludedAttributes) throws IllegalFileException,
+			IllegalDirectoryException {
 		FS.validateFilePath(path);
 		if (d == null) {
 			throw new IllegalArgumentException("null: Not accepted. "
 					+ "Must be a valid " + Document.class.getCanonicalName()
 					+ ".");
 		}
+		if (excludedAttributes == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Set.class.getCanonicalName() + "<"
+					+ String.class.getCanonicalName() + ">.");
+		}
+		File dest = new File(path).getAbsoluteFile();
+		// the serializer doesn't support concurrent reads of the DOM tree
+		Lock lock = getReadWriteLock(d).writeLock();
+		lock.lock();
+		File tmp = null;
 		try {
-			synchronized (d) {
-				TransformerFactory f = TransformerFactory.newInstance();
-				Transformer t = f.newTransformer();
-				t.transform(new DOMSource(d), new StreamResult(new File(path)));
+			if (dest.exists()) {
+				// replace the file a symbolic link points to, not the link
+				dest = dest.toPath().toRealPath().toFile();
 			}
-		} catch (TransformerException Ex) {
+			if (!Files.isWritable(dest.getParentFile().toPath())) {
+				write(d, dest, excludedAttributes);
+				return;
+			}
+			tmp = File.createTempFile(dest.getName() + ".", ".tmp",
+					dest.getParentFile());
+			write(d, tmp, excludedAttributes);
+			if (dest.exists()) {
+				copyAttributes(dest.toPath(), tmp.toPath());
+			}
+			try {
+				Files.move(tmp.toPath(), dest.toPath(),
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException Ex) {
+				Files.move(tmp.toPath(), dest.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			tmp = null;
+		} catch (IOException | SAXException Ex) {
 			throw new RuntimeException("Error while saving XML document "
 					+ "to '" + path + "'.", Ex);
+		} finally {
+			lock.unlock();
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Serialize the given {@link Document} into the given file, and sync it
+	 * to disk.
+	 * </p>
+	 */
+	private static void write(Document d, File f,
+			Set<String> excludedAttributes) throws IOException, SAXException {
+		try (FileOutputStream fos = new FileOutputStream(f)) {
+			OutputStream out = new BufferedOutputStream(fos);
+			TransformerHandler h = newTransformerHandler();
+			h.setResult(new StreamResult(out));
+			h.startDocument();
+			serializeChildNodes(d, h, excludedAttributes);
+			h.endDocument();
+			out.flush();
+			fos.getFD().sync();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Copy the permissions, the group and the ACLs of the given source file
+	 * to the given target file, when the file system supports them. The group
+	 * is not copied if the current user doesn't belong to it.
+	 * </p>
+	 */
+	private static void copyAttributes(Path source, Path target)
+			throws IOException {
+		PosixFileAttributeView src = Files.getFileAttributeView(source,
+				PosixFileAttributeView.class);
+		PosixFileAttributeView dst = Files.getFileAttributeView(target,
+				PosixFileAttributeView.class);
+		if (src != null && dst != null) {
+			PosixFileAttributes attrs = src.readAttributes();
+			try {
+				dst.setGroup(attrs.group());
+			} catch (IOException ignored) {
+				// the current user doesn't belong to this group
+			}
+			dst.setPermissions(attrs.permissions());
+		}
+		AclFileAttributeView srcAcl = Files.getFileAttributeView(source,
+				AclFileAttributeView.class);
+		AclFileAttributeView dstAcl = Files.getFileAttributeView(target,
+				AclFileAttributeView.class);
+		if (srcAcl != null && dstAcl != null) {
+			dstAcl.setAcl(srcAcl.getAcl());
+		}
+	}
+
+	/**
+	 * @param e
+	 *            is an {@link Element}.
+	 * @param excludedAttributes
+	 *            are the names of the XML Attributes which must not be
+	 *            serialized.
+	 * 
+	 * @return the XML representation of the given {@link Element}, without
+	 *         XML declaration and without the given XML Attributes.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given {@link Element} or the given excluded XML
+	 *             Attributes are <tt>null</tt>.
+	 */
+	public static String serialize(Element e, Set<String> excludedAttributes) {
+		if (e == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Element.class.getCanonicalName()
+					+ ".");
+		}
+		if (excludedAttributes == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Set.class.getCanonicalName() + "<"
+					+ String.class.getCanonicalName() + ">.");
+		}
+		StringWriter sw = new StringWriter();
+		try {
+			TransformerHandler h = newTransformerHandler();
+			h.getTransformer().setOutputProperty(
+					OutputKeys.OMIT_XML_DECLARATION, "yes");
+			h.setResult(new StreamResult(sw));
+			h.startDocument();
+			serialize(e, h, excludedAttributes);
+			h.endDocument();
+		} catch (SAXException Ex) {
+			throw new RuntimeException("Error while serializing XML "
+					+ "element '" + e.getNodeName() + "'.", Ex);
+		}
+		return sw.toString();
+	}
+
+	private static TransformerHandler newTransformerHandler() {
+		try {
+			return ((SAXTransformerFactory) TransformerFactory.newInstance())
+					.newTransformerHandler();
+		} catch (TransformerConfigurationException Ex) {
+			throw new RuntimeException("Unexecpted error while creating "
+					+ "a new Transformer Handler. "
+					+ "Source code has certainly been modified and "
+					+ "a bug have been introduced.", Ex);
+		}
+	}
+
+	private static void serializeChildNodes(Node n, TransformerHandler h,
+			Set<String> excludedAttributes) throws SAXException {
+		for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+			serialize(c, h, excludedAttributes);
+		}
+	}
+
+	private static void serialize(Node n, TransformerHandler h,
+			Set<String> excludedAttributes) throws SAXException {
+		switch (n.getNodeType()) {
+		case Node.ELEMENT_NODE:
+			String name = n.getNodeName();
+			AttributesImpl attrs = new AttributesImpl();
+			NamedNodeMap nnm = n.getAttributes();
+			for (int i = 0; i < nnm.getLength(); i++) {
+				Node a = nnm.item(i);
+				if (!excludedAttributes.contains(a.getNodeName())) {
+					attrs.addAttribute("", a.getNodeName(), a.getNodeName(),
+							"CDATA", a.getNodeValue());
+				}
+			}
+			h.startElement("", name, name, attrs);
+			serializeChildNodes(n, h, excludedAttributes);
+			h.endElement("", name, name);
+			break;
+		case Node.TEXT_NODE:
+			char[] text = n.getNodeValue().toCharArray();
+			h.characters(text, 0, text.length);
+			break;
+		case Node.CDATA_SECTION_NODE:
+			char[] cdata = n.getNodeValue().toCharArray();
+			h.startCDATA();
+			h.characters(cdata, 0, cdata.length);
+			h.endCDATA();
+			break;
+		case Node.COMMENT_NODE:
+			char[] comment = n.getNodeValue().toCharArray();
+			h.comment(comment, 0, comment.length);
+			break;
+		case Node.PROCESSING_INSTRUCTION_NODE:
+			h.processingInstruction(n.getNodeName(), n.getNodeValue());
+			break;
+		case Node.ENTITY_REFERENCE_NODE:
+			serializeChildNodes(n, h, excludedAttributes);
+			break;
+		default:
+			// the document type is not stored, as the identity transformation
+			// does
+			break;
 		}
 	}
 
@@ -218,25 +477,28 @@ public abstract class DocHelper {
 					+ "Must be a valid " + Document.class.getCanonicalName()
 					+ ".");
 		}
+		// the serializer doesn't support concurrent reads of the DOM tree
+		Lock lock = getReadWriteLock(d).writeLock();
+		lock.lock();
 		try {
-			synchronized (d) {
-				StringWriter sw = new StringWriter();
-				TransformerFactory f = TransformerFactory.newInstance();
-				Transformer t = f.newTransformer();
-				t.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-				t.setOutputProperty(OutputKeys.METHOD, "xml");
-				t.setOutputProperty(OutputKeys.INDENT, "yes");
-				t.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-				t.transform(new DOMSource(d), new StreamResult(sw));
-				String s = sw.toString();
-				// even on Windows OS, new line contained in this String is '\n'
-				if (s.endsWith("\n")) {
-					s = s.substring(0, s.length() - 1);
-				}
-				return s;
+			StringWriter sw = new StringWriter();
+			TransformerFactory f = TransformerFactory.newInstance();
+			Transformer t = f.newTransformer();
+			t.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+			t.setOutputProperty(OutputKeys.METHOD, "xml");
+			t.setOutputProperty(OutputKeys.INDENT, "yes");
+			t.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+			t.transform(new DOMSource(d), new StreamResult(sw));
+			String s = sw.toString();
+			// even on Windows OS, new line contained in this String is '\n'
+			if (s.endsWith("\n")) {
+				s = s.substring(0, s.length() - 1);
 			}
+			return s;
 		} catch (TransformerException Ex) {
 			throw new RuntimeException("Error while dumping XML document.", Ex);
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -258,49 +520,48 @@ public abstract class DocHelper {
 					+ ".");
 		}
 		StringBuilder sTargetXPath = new StringBuilder();
-		synchronized (e.getOwnerDocument()) {
+		Lock lock = getReadWriteLock(e.getOwnerDocument()).readLock();
+		lock.lock();
+		try {
 			for (Node n = e; n.getParentNode() != null; n = n.getParentNode()) {
 				sTargetXPath.insert(0, "[" + getChildNodePosition(n) + "]");
 				sTargetXPath.insert(0, "/" + n.getNodeName());
 			}
+		} finally {
+			lock.unlock();
 		}
 		return sTargetXPath.toString();
 	}
 
 	private static int getChildNodePosition(Node e) {
-		Node parent = e.getParentNode();
+		/*
+		 * Walk through siblings instead of using the parent's NodeList, because
+		 * the NodeList maintains an internal cache, which is not thread safe.
+		 */
 		int index = 1;
-		for (int i = 0; i < parent.getChildNodes().getLength(); ++i) {
-			Node c = parent.getChildNodes().item(i);
-			if (c == e) {
-				return index;
-			} else if (c.getNodeName().equals(e.getNodeName())) {
+		for (Node c = e.getPreviousSibling(); c != null; c = c
+				.getPreviousSibling()) {
+			if (c.getNodeName().equals(e.getNodeName())) {
 				++index;
 			}
 		}
-
-		throw new RuntimeException("Unexecpted error while looking "
-				+ "for a child node position. "
-				+ "The given node cannot be found in its parent chlids. "
-				+ "Source code has certainly been modified and "
-				+ "a bug have been introduced.");
+		return index;
 	}
 
 	public static Location getNodeLocation(Node n) {
 		return LocationFactory.newLocation(n);
 	}
 
-	private static String XPATH = "x";
-
 	/**
 	 * <p>
-	 * Store the given {@link XPath} object into the given {@link Document} as
-	 * user data.
+	 * Store the given {@link XPath} object into the context of the given
+	 * {@link Document} (see {@link DocContext}).
 	 * </p>
 	 * 
 	 * <p>
 	 * The {@link XPath} object can be retrieve using the method
-	 * {@link #retrieveXPath(Document)}.
+	 * {@link #retrieveXPath(Document)}. It is not propagated to clones of the
+	 * given {@link Document}.
 	 * </p>
 	 * 
 	 * @param d
@@ -312,12 +573,7 @@ public abstract class DocHelper {
 	 *             if the given {@link Document} is <tt>null</tt>.
 	 */
 	public static void storeXPath(Document d, XPath xpath) {
-		if (d == null) {
-			throw new IllegalArgumentException("null: Not accepted. "
-					+ "Must be a valid " + Document.class.getCanonicalName()
-					+ ".");
-		}
-		d.setUserData(XPATH, xpath, new CloneUserDataHandler());
+		DocContext.get(d).setXPath(xpath);
 	}
 
 	/**
@@ -333,13 +589,33 @@ public abstract class DocHelper {
 	 *             if the given {@link Document} is <tt>null</tt>.
 	 */
 	public static XPath retrieveXPath(Document d) {
-		if (d == null) {
-			throw new IllegalArgumentException("null: Not accepted. "
-					+ "Must be a valid " + Document.class.getCanonicalName()
-					+ ".");
-		}
-		Object obj = d.getUserData(XPATH);
-		return (obj == null) ? null : (XPath) obj;
+		return DocContext.get(d).getXPath();
+	}
+
+	/**
+	 * <p>
+	 * Concurrent access to a DOM tree should use the returned
+	 * {@link ReadWriteLock} : XPath evaluations acquire its read lock (see
+	 * {@link XPathExpander}) and DOM modifications must acquire its write lock.
+	 * </p>
+	 * 
+	 * <p>
+	 * The {@link ReadWriteLock} is held by the context of the given
+	 * {@link Document} (see {@link DocContext}), which is created once, so
+	 * that all callers always get the same {@link ReadWriteLock}.
+	 * </p>
+	 * 
+	 * @param d
+	 *            is a {@link Document}.
+	 * 
+	 * @return the {@link ReadWriteLock} which guards the given
+	 *         {@link Document}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given {@link Document} is <tt>null</tt>.
+	 */
+	public static ReadWriteLock getReadWriteLock(Document d) {
+		return DocContext.get(d).getReadWriteLock();
 	}
 
 	/**
@@ -1,6 +1,7 @@
 package com.wat.melody.common.xml;
 
 import java.io.IOException;
+import java.util.concurrent.locks.Lock;
 
 import javax.xml.xpath.XPathExpressionException;
 
@@ -560,7 +561,9 @@ public class FilteredDoc extends DUNIDDoc {
 					+ ".");
 		}
 
-		synchronized (getDocument()) {
+		Lock lock = getReadWriteLock().writeLock();
+		lock.lock();
+		try {
 			NodeList nl;
 			try {
 				nl = evaluateAsNodeList(filter.getValue());
@@ -581,6 +584,12 @@ public class FilteredDoc extends DUNIDDoc {
 			}
 
 			Document filtered = DocHelper.newDocument();
+			/*
+			 * The filtered Document is guarded by the lock of this object (held
+			 * here), and is indexed while it is built.
+			 */
+			DocContext.get(filtered, getReadWriteLock());
+			DUNIDDocHelper.buildIndex(filtered);
 			for (int i = 0; i < nl.getLength(); i++) {
 				FilteredDocHelper.insertElement(filtered, (Element) nl.item(i),
 						true);
@@ -596,6 +605,8 @@ public class FilteredDoc extends DUNIDDoc {
 				DocHelper.removeTextNode((Element) filtered.getFirstChild());
 			}
 			setDocument(filtered);
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -1,7 +1,12 @@
 package com.wat.melody.common.xml;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.xpath.XPathExpressionException;
 
@@ -122,6 +127,15 @@ public abstract class FilteredDocHelper {
 	 * {@link Document}.
 	 * </p>
 	 * 
+	 * <p>
+	 * All {@link Element}s are merged in a single pass, in topological order :
+	 * an {@link Element} is merged once its herited parent (and all the
+	 * herited ancestors of its herited parent) have been merged. Independent
+	 * {@link Element}s are merged in document order. {@link Element}s which
+	 * receive an {@link #HERIT_ATTR} XML attribute while being merged (e.g.
+	 * copies of herited content) are merged right after.
+	 * </p>
+	 * 
 	 * @param doc
 	 *            is the {@link Document} to merge.
 	 * 
@@ -133,59 +147,150 @@ public abstract class FilteredDocHelper {
 	protected static void mergeHeritedContent(FilteredDoc fd)
 			throws NodeRelatedException {
 		Document doc = fd.getDocument();
-		NodeList nl = null;
+		HeritResolver resolver = new HeritResolver(doc);
+		LinkedList<Element> toMerge = new LinkedList<Element>();
+		for (Node n : new NodeCollection(findNodeWithHeritAttr(doc))) {
+			toMerge.add((Element) n);
+		}
+		List<Element> merging = new ArrayList<Element>();
+		while (!toMerge.isEmpty()) {
+			mergeHeritedElement(toMerge.removeFirst(), resolver, toMerge,
+					merging);
+		}
+	}
 
-		while ((nl = findNodeWithHeritAttr(doc)).getLength() > 0) {
-			// h(erited)
-			Element h = (Element) nl.item(0);
-			// p(arent)
-			Element p = resolvHeritAttr(h);
-
-			// remove 'herit' attr in h
-			h.removeAttribute(FilteredDoc.HERIT_ATTR);
-
-			// clone (e.g we keep user data) h into t(arget)
-			Element t = (Element) h.cloneNode(false);
-
-			// replace h by t
-			h.getParentNode().replaceChild(t, h);
-			
-			// copy all p's attributes into t, but not override existing
-			for (int i = 0; i < p.getAttributes().getLength(); i++) {
-				Attr attr = (Attr) p.getAttributes().item(i);
-				if (!t.hasAttribute(attr.getName())) {
-					t.setAttribute(attr.getName(), attr.getValue());
-				}
+	/**
+	 * @param h
+	 *            is the {@link Element} to merge.
+	 * @param resolver
+	 *            resolves the herited parents.
+	 * @param toMerge
+	 *            are the {@link Element}s which remain to merge. Herited
+	 *            {@link Element}s found in the merged content are added in
+	 *            first position.
+	 * @param merging
+	 *            is the list of all {@link Element}s which are being merged.
+	 *            It is used to detect circular references.
+	 * 
+	 * @throws NodeRelatedException
+	 *             {@inheritDoc}
+	 */
+	private static void mergeHeritedElement(Element h, HeritResolver resolver,
+			LinkedList<Element> toMerge, List<Element> merging)
+			throws NodeRelatedException {
+		// already merged, or merged into another element
+		if (!h.hasAttribute(FilteredDoc.HERIT_ATTR)
+				|| !resolver.isAttached(h)) {
+			return;
+		}
+		// p(arent)
+		Element p = null;
+		merging.add(h);
+		while (true) {
+			p = resolver.resolve(h);
+			if (p != null && p.hasAttribute(FilteredDoc.HERIT_ATTR)
+					&& merging.contains(p)) {
+				throw new NodeRelatedException(h, Msg.bind(
+						Messages.HeritAttrEx_CIRCULAR_REF,
+						printCircularReferences(merging)));
 			}
+			// p and its herited ancestors must be merged first
+			Element a = findHeritedAncestorOrSelf(p, merging);
+			if (a == null) {
+				break;
+			}
+			mergeHeritedElement(a, resolver, toMerge, merging);
+		}
+		merging.remove(merging.size() - 1);
+
+		// remove 'herit' attr in h
+		h.removeAttribute(FilteredDoc.HERIT_ATTR);
+		if (p == null) {
+			// empty 'herit' attr
+			return;
+		}
 
-			// copy all p's elements into t
-			for (int i = 0; i < p.getChildNodes().getLength(); i++) {
-				Node n = (Node) p.getChildNodes().item(i);
-				t.appendChild(n.cloneNode(true));
+		// clone (e.g we keep user data) h into t(arget)
+		Element t = (Element) h.cloneNode(false);
+
+		// replace h by t
+		h.getParentNode().replaceChild(t, h);
+
+		// copy all p's attributes into t, but not override existing
+		for (int i = 0; i < p.getAttributes().getLength(); i++) {
+			Attr attr = (Attr) p.getAttributes().item(i);
+			if (!t.hasAttribute(attr.getName())) {
+				t.setAttribute(attr.getName(), attr.getValue());
 			}
+		}
+
+		// copy all p's elements into t
+		for (int i = 0; i < p.getChildNodes().getLength(); i++) {
+			Node n = (Node) p.getChildNodes().item(i);
+			t.appendChild(n.cloneNode(true));
+		}
+
+		// remove all UUID in t's subtree
+		removeDUNID(t);
 
-			// remove all UUID in t's subtree
-			NodeList uuidsToRemove = null;
-			try {
-				uuidsToRemove = XPathExpander.evaluateAsNodeList(
-						"descendant-or-self::*/@" + DUNIDDoc.DUNID_ATTR, t);
-			} catch (XPathExpressionException Ex) {
-				throw new RuntimeException("Unexecpted error while evaluating "
-						+ "an XPath Expression. "
-						+ "Since the XPath expression to evaluate is "
-						+ "hard coded, " + "such error cannot happened. "
-						+ "Source code has certainly been modified and "
-						+ "a bug have been introduced.", Ex);
+		// merge h in t
+		mergeElement(h, t);
+		// add UUID
+		DUNIDDocHelper.addDUNID(t);
+		resolver.replaced(h, t);
+
+		// merge the herited elements of t's subtree right after
+		List<Element> found = new ArrayList<Element>();
+		findHeritedElements(t, found);
+		toMerge.addAll(0, found);
+	}
+
+	/**
+	 * @return the outermost {@link Element} among the given {@link Element}
+	 *         and its ancestors, which contains an {@link #HERIT_ATTR} XML
+	 *         attribute and which is not being merged, or <tt>null</tt> if
+	 *         there is no such {@link Element}.
+	 */
+	private static Element findHeritedAncestorOrSelf(Element p,
+			List<Element> merging) {
+		Element found = null;
+		for (Node n = p; n instanceof Element; n = n.getParentNode()) {
+			Element e = (Element) n;
+			if (e.hasAttribute(FilteredDoc.HERIT_ATTR)
+					&& !merging.contains(e)) {
+				found = e;
 			}
-			for (Node uuidToRemove : new NodeCollection(uuidsToRemove)) {
-				Attr attr = (Attr) uuidToRemove;
-				attr.getOwnerElement().removeAttributeNode(attr);
+		}
+		return found;
+	}
+
+	/**
+	 * <p>
+	 * Add the {@link Element}s of the given {@link Element}'s subtree which
+	 * contains an {@link #HERIT_ATTR} XML attribute in the given list, in
+	 * document order.
+	 * </p>
+	 */
+	private static void findHeritedElements(Element e, List<Element> found) {
+		if (e.hasAttribute(FilteredDoc.HERIT_ATTR)) {
+			found.add(e);
+		}
+		for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+			if (n.getNodeType() == Node.ELEMENT_NODE) {
+				findHeritedElements((Element) n, found);
 			}
+		}
+	}
 
-			// merge h in t
-			mergeElement(h, t);
-			// add UUID
-			DUNIDDocHelper.addDUNID(t);
+	private static void removeDUNID(Element e) {
+		Attr attr = e.getAttributeNode(DUNIDDoc.DUNID_ATTR);
+		if (attr != null) {
+			e.removeAttributeNode(attr);
+		}
+		for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+			if (n.getNodeType() == Node.ELEMENT_NODE) {
+				removeDUNID((Element) n);
+			}
 		}
 	}
 
@@ -195,33 +300,27 @@ public abstract class FilteredDocHelper {
 			Attr attr = (Attr) source.getAttributes().item(i);
 			dest.setAttribute(attr.getName(), attr.getValue());
 		}
-		
-		while ( source.hasChildNodes() ) {
+
+		// dest's child elements, by type and name (built on first need)
+		Map<String, Element> targets = null;
+		while (source.hasChildNodes()) {
 			Node n = source.getFirstChild();
 			if (n.getNodeType() != Node.ELEMENT_NODE) {
 				// move the node in the dest
 				dest.appendChild(n);
 				continue;
 			}
-			Element e = (Element)n;
+			Element e = (Element) n;
 			// identify target
 			String elmtName = e.getAttribute("name");
-			String elmtType = e.getNodeName();
 			// target defined
 			if (elmtName != null && elmtName.length() > 0) {
-				Node target = null;
-				// get target
-				try {
-					target = XPathExpander.evaluateAsNode(
-							elmtType+"[@name='"+elmtName+"']", dest);
-				} catch (XPathExpressionException Ex) {
-					throw new RuntimeException("Unexecpted error while evaluating "
-							+ "an XPath Expression. "
-							+ "Since the XPath expression to evaluate is "
-							+ "hard coded, " + "such error cannot happened. "
-							+ "Source code has certainly been modified and "
-							+ "a bug have been introduced.", Ex);
+				if (targets == null) {
+					targets = indexChildElements(dest);
 				}
+				String key = getTargetKey(e);
+				// get target
+				Element target = targets.get(key);
 				// target exists
 				if (target != null) {
 					String heritPolicy = e.getAttribute("herit-policy");
@@ -229,19 +328,51 @@ public abstract class FilteredDocHelper {
 					if (heritPolicy != null && heritPolicy.equals("replace")) {
 						// replace target by a copy
 						dest.replaceChild(e, target);
+						targets.put(key, e);
 					} else {
 						// merge target and a copy
-						mergeElement(e, (Element)target);
+						mergeElement(e, target);
 						source.removeChild(e);
 					}
 					continue;
-				}				
+				}
+				targets.put(key, e);
 			}
 			// move the node in the dest
 			dest.appendChild(e);
 		}
 	}
 
+	/**
+	 * @return the child {@link Element}s of the given {@link Element} which
+	 *         have a name, indexed by type and name (see
+	 *         {@link #getTargetKey(Element)}). When multiple child
+	 *         {@link Element}s have the same type and name, the first one is
+	 *         indexed.
+	 */
+	private static Map<String, Element> indexChildElements(Element e) {
+		Map<String, Element> index = new HashMap<String, Element>();
+		for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+			if (n.getNodeType() != Node.ELEMENT_NODE) {
+				continue;
+			}
+			Element c = (Element) n;
+			if (c.getAttribute("name").length() == 0) {
+				continue;
+			}
+			String key = getTargetKey(c);
+			if (!index.containsKey(key)) {
+				index.put(key, c);
+			}
+		}
+		return index;
+	}
+
+	private static String getTargetKey(Element e) {
+		// an element's type can't contain a '/'
+		return e.getNodeName() + "/" + e.getAttribute("name");
+	}
+
 	// protected static void mergeHeritedContent(FilteredDoc fd)
 	// throws NodeRelatedException {
 	// Document doc = fd.getDocument();
@@ -408,9 +539,10 @@ public abstract class FilteredDocHelper {
 	 */
 	protected static void validateParentHeritedNodes(Document doc)
 			throws NodeRelatedException {
-		NodeList nl = findNodeWithHeritAttr(doc);
-		for (int i = 0; i < nl.getLength(); i++) {
-			validateHeritAttr((Element) nl.item(i));
+		HeritResolver resolver = new HeritResolver(doc);
+		Set<Element> validated = new HashSet<Element>();
+		for (Node n : new NodeCollection(findNodeWithHeritAttr(doc))) {
+			validateHeritAttr((Element) n, resolver, validated);
 		}
 	}
 
@@ -450,53 +582,88 @@ public abstract class FilteredDocHelper {
 	 * </p>
 	 * 
 	 * @param n
-	 *            is the {@link Element} to validate. Can be <tt>null</tt>.
+	 *            is the {@link Element} to validate.
+	 * @param resolver
+	 *            resolves the herited parents.
+	 * @param validated
+	 *            are the already validated {@link Element}s, whose herited
+	 *            parents are not validated again. The given {@link Element}
+	 *            and its herited parents are added to it once validated.
 	 * 
 	 * @throws NodeRelatedException
 	 *             {@inheritDoc}
+	 *             <li>if, once resolved, the herited parent {@link Element}
+	 *             have already been visited (e.g. a circular reference hae been
+	 *             detected) ;</li>
 	 */
-	private static void validateHeritAttr(Element n)
-			throws NodeRelatedException {
+	private static void validateHeritAttr(Element n, HeritResolver resolver,
+			Set<Element> validated) throws NodeRelatedException {
+		// the list of all already visited herited Elements
 		List<Element> circle = new ArrayList<Element>();
-		circle.add(n);
-		validateHeritAttr(n, circle);
+		for (Element e = n; e != null && !validated.contains(e); e = resolver
+				.resolve(e)) {
+			if (circle.contains(e)) {
+				throw new NodeRelatedException(
+						circle.get(circle.size() - 1), Msg.bind(
+								Messages.HeritAttrEx_CIRCULAR_REF,
+								printCircularReferences(circle)));
+			}
+			circle.add(e);
+		}
+		validated.addAll(circle);
 	}
 
 	/**
-	 * @param n
-	 *            is the {@link Element} to validate. Can be <tt>null</tt>.
-	 * @param circle
-	 *            is the list of all already visited herited {@link Element}s.
-	 *            It is used to detect circular references. Can't be
-	 *            <tt>null</tt>.
-	 * 
-	 * @throws NodeRelatedException
-	 *             {@inheritDoc}
-	 * 			<li>if, once resolved, the herited parent {@link Element}
-	 *             have already been visited (e.g. a circular reference hae been
-	 *             detected) ;</li>
+	 * <p>
+	 * Resolves the {@link #HERIT_ATTR} XML attributes of a {@link Document}
+	 * (see {@link FilteredDocHelper#resolvHeritAttr(Element)}). Each XPath
+	 * Expression is evaluated once, as long as the {@link Element} it matched
+	 * remains in the {@link Document}.
+	 * </p>
 	 */
-	private static void validateHeritAttr(Element n, List<Element> circle)
-			throws NodeRelatedException {
-		if (circle == null) {
-			throw new IllegalArgumentException("null: Not accepted. "
-					+ "Must be valid " + List.class.getCanonicalName() + "<"
-					+ Element.class.getCanonicalName() + ">" + ".");
+	private static class HeritResolver {
+
+		private Document _doc;
+		// herit XPath Expression -> herited parent
+		private Map<String, Element> _parents;
+		// merged Element -> the Element which replaced it
+		private Map<Element, Element> _replacements;
+
+		public HeritResolver(Document doc) {
+			_doc = doc;
+			_parents = new HashMap<String, Element>();
+			_replacements = new HashMap<Element, Element>();
 		}
 
-		Element parent = resolvHeritAttr(n);
-		if (parent == null) {
-			return;
+		public Element resolve(Element n) throws NodeRelatedException {
+			String xpath = n.getAttribute(FilteredDoc.HERIT_ATTR);
+			if (xpath.length() == 0) {
+				return null;
+			}
+			Element parent = _parents.get(xpath);
+			while (_replacements.containsKey(parent)) {
+				parent = _replacements.get(parent);
+			}
+			if (parent == null || !isAttached(parent)) {
+				parent = resolvHeritAttr(n);
+			}
+			_parents.put(xpath, parent);
+			return parent;
+		}
+
+		public void replaced(Element merged, Element by) {
+			_replacements.put(merged, by);
 		}
 
-		if (circle.contains(parent)) {
-			throw new NodeRelatedException(n,
-					Msg.bind(Messages.HeritAttrEx_CIRCULAR_REF,
-							printCircularReferences(circle)));
+		public boolean isAttached(Node n) {
+			for (; n != null; n = n.getParentNode()) {
+				if (n == _doc) {
+					return true;
+				}
+			}
+			return false;
 		}
-		circle.add(parent);
 
-		validateHeritAttr(parent, circle);
 	}
 
 	/**
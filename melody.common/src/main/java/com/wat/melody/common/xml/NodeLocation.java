@@ -0,0 +1,75 @@
+package com.wat.melody.common.xml;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * <p>
+ * The location (source, line number and column number) where an
+ * {@link Element} was found at parse time.
+ * </p>
+ * 
+ * <p>
+ * The {@link Parser} attaches a single {@link NodeLocation} to each
+ * {@link Element} it creates, as the user data {@link Parser#LOCATION}. This
+ * object is immutable : it is shared (and not copied) by the {@link Element}s
+ * which are cloned, imported, adopted or renamed from the parsed one. All the
+ * {@link NodeLocation}s of a parse share the same source <tt>String</tt>.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public final class NodeLocation {
+
+	/**
+	 * @param n
+	 *            is an {@link Element}.
+	 * 
+	 * @return the location of the given {@link Element}, or <tt>null</tt> if
+	 *         the given {@link Element} was not created by the {@link Parser}
+	 *         (or is <tt>null</tt>).
+	 */
+	public static NodeLocation getLocation(Node n) {
+		if (n == null) {
+			return null;
+		}
+		Object location = n.getUserData(Parser.LOCATION);
+		return (location instanceof NodeLocation) ? (NodeLocation) location
+				: null;
+	}
+
+	private final String _source;
+	private final int _line;
+	private final int _column;
+
+	public NodeLocation(String source, int line, int column) {
+		if (source == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + String.class.getCanonicalName()
+					+ ".");
+		}
+		_source = source;
+		_line = line;
+		_column = column;
+	}
+
+	public String getSource() {
+		return _source;
+	}
+
+	public int getLine() {
+		return _line;
+	}
+
+	public int getColumn() {
+		return _column;
+	}
+
+	@Override
+	public String toString() {
+		return "file:" + getSource() + ", line:" + getLine() + ", column:"
+				+ getColumn();
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,132 @@
+package com.wat.melody.common.xml;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import com.wat.melody.common.cache.FileStamp;
+import com.wat.melody.common.cache.LruCache;
+
+/**
+ * <p>
+ * A process-wide, bounded cache of parsed {@link Document}s, which is disabled
+ * by default. It is designed for long-lived processes (e.g. a daemon), which
+ * load the same files again and again.
+ * </p>
+ * 
+ * <p>
+ * Parsed {@link Document}s are indexed by the canonical path, the last
+ * modification time and the size of their file, so that a modified file is
+ * parsed again. Because the
+ * {@link Document}s returned by {@link #parse(File)} are modified by their
+ * owner, this cache keeps a pristine {@link Document} and returns a deep copy
+ * of it : copying a {@link Document} is much cheaper than parsing its file.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public final class ParsedDocumentCache {
+
+	public static final int MAX_SIZE = 32;
+
+	private static volatile boolean _enabled = false;
+	private static LruCache<FileStamp, CachedDocument> _cache = new LruCache<FileStamp, CachedDocument>(
+			MAX_SIZE);
+
+	private ParsedDocumentCache() {
+	}
+
+	public static boolean isEnabled() {
+		return _enabled;
+	}
+
+	/**
+	 * @param enabled
+	 *            is <tt>true</tt> to enable this cache, <tt>false</tt> to
+	 *            disable and clear it.
+	 * 
+	 * @return the previous value.
+	 */
+	public static boolean setEnabled(boolean enabled) {
+		boolean previous = _enabled;
+		_enabled = enabled;
+		if (!enabled) {
+			clear();
+		}
+		return previous;
+	}
+
+	/**
+	 * <p>
+	 * Parse the given file, or copy its previously parsed {@link Document} if
+	 * the file was not modified since.
+	 * </p>
+	 * 
+	 * @param f
+	 *            is the file to parse.
+	 * 
+	 * @return the {@link Document} of the given file, which is owned by the
+	 *         caller.
+	 * 
+	 * @throws SAXException
+	 *             if the file is not a valid XML file.
+	 * @throws IOException
+	 *             if an IO error occurred while reading the file.
+	 */
+	public static Document parse(File f) throws SAXException, IOException {
+		if (!isEnabled()) {
+			return DocHelper.parse(f);
+		}
+		// read before parsing, so that a file modified during the parsing
+		// will be parsed again
+		FileStamp key = FileStamp.of(f);
+		CachedDocument e = _cache.get(key);
+		if (e != null) {
+			return e.copy();
+		}
+		e = new CachedDocument(DocHelper.parse(f));
+		_cache.put(key, e);
+		return e.copy();
+	}
+
+	public static void clear() {
+		_cache.clear();
+	}
+
+	public static int size() {
+		return _cache.size();
+	}
+
+	public static long getHitCount() {
+		return _cache.getHitCount();
+	}
+
+	public static long getMissCount() {
+		return _cache.getMissCount();
+	}
+
+	public static String getStatistics() {
+		return "{ enabled:" + isEnabled() + ", cache:" + _cache + " }";
+	}
+
+	private static class CachedDocument {
+
+		private Document _doc;
+
+		public CachedDocument(Document d) {
+			_doc = d;
+		}
+
+		public Document copy() {
+			// cloning doesn't support concurrent reads of the DOM tree
+			synchronized (this) {
+				return (Document) _doc.cloneNode(true);
+			}
+		}
+
+	}
+
+}
@@ -22,9 +22,9 @@ import org.xml.sax.ext.DefaultHandler2;
 
 /**
  * <p>
- * Parse a file and return a {@link Document}. Line number and column number are
- * added to each XML elements as user datas. The path of the source file is also
- * added to the returned {@link Document} as user data.
+ * Parse a file and return a {@link Document}. The location (path of the source
+ * file, line number and column number) of each XML elements is added to them
+ * as a single user data (see {@link NodeLocation}).
  * </p>
  * 
  * @author Guillaume Cornet
@@ -33,20 +33,11 @@ import org.xml.sax.ext.DefaultHandler2;
 public abstract class Parser {
 
 	/**
-	 * UserData key of each {@link Node}, which contains their line number.
+	 * UserData key of each {@link Element}, which contains their
+	 * {@link NodeLocation} (e.g. the source which was used to load it, its line
+	 * number and its column number).
 	 */
-	public static final String LINE_NUMBER = "l";
-
-	/**
-	 * UserData key of each {@link Node}, which contains their column number.
-	 */
-	public static final String COLUMN_NUMBER = "c";
-
-	/**
-	 * UserData key of the {@link Document}, which contains the source which was
-	 * used to load it.
-	 */
-	public static final String SOURCE = "s";
+	public static final String LOCATION = "L";
 
 	/**
 	 * Global UserDataHandler, which makes copy of all UserDatas of each
@@ -56,22 +47,10 @@ public abstract class Parser {
 
 	/**
 	 * <p>
-	 * Parse the given file and return a {@link Document}. Line number and
-	 * column number are added to each XML Element {@link Node}s as user datas.
-	 * The path of the given file is also added to the returned XML Element
-	 * {@link Document} as user data.
-	 * 
-	 * <ul>
-	 * <li>To get the line number of a {@link Node}, call the
-	 * {@link Node#getUserData(String)} on the {@link Node} object and query for
-	 * {@link #LINE_NUMBER} key ;</li>
-	 * <li>To get the column number of a {@link Node}, call the
-	 * {@link Node#getUserData(String)} on the {@link Node} object and query for
-	 * {@link #COLUMN_NUMBER} key ;</li>
-	 * <li>To get the file which was used to load the {@link Document}, call the
-	 * {@link Node#getUserData(String)} on the {@link Document} object and query
-	 * for {@link #SOURCE} key ;</li>
-	 * </ul>
+	 * Parse the given file and return a {@link Document}. The location (path of
+	 * the given file, line number and column number) of each XML Element
+	 * {@link Node}s is added to them as user data. To get it, call
+	 * {@link NodeLocation#getLocation(Node)}.
 	 * </p>
 	 * 
 	 * @throws IllegalArgumentException
@@ -101,17 +80,9 @@ public abstract class Parser {
 	/**
 	 * <p>
 	 * Parse the given String, which contains XML, and return a {@link Document}
-	 * . Line number and column number are added to each XML Element
-	 * {@link Node}s as user datas.
-	 * 
-	 * <ul>
-	 * <li>To get the line number of a {@link Node}, call the
-	 * {@link Node#getUserData(String)} on the {@link Node} object and query for
-	 * {@link #LINE_NUMBER} key ;</li>
-	 * <li>To get the column number of a {@link Node}, call the
-	 * {@link Node#getUserData(String)} on the {@link Node} object and query for
-	 * {@link #COLUMN_NUMBER} key ;</li>
-	 * </ul>
+	 * . The location (line number and column number) of each XML Element
+	 * {@link Node}s is added to them as user data. To get it, call
+	 * {@link NodeLocation#getLocation(Node)}.
 	 * </p>
 	 * 
 	 * @throws IllegalArgumentException
@@ -159,16 +130,9 @@ public abstract class Parser {
 		return handler.getDocument();
 	}
 
-	protected static void trackSource(Element e, String location) {
-		e.setUserData(SOURCE, location, GenericCloneUserDataHandler);
-	}
-
-	protected static void trackLineNumber(Element e, int lineNumber) {
-		e.setUserData(LINE_NUMBER, lineNumber, GenericCloneUserDataHandler);
-	}
-
-	protected static void trackColumnNumber(Element e, int colunmNumber) {
-		e.setUserData(COLUMN_NUMBER, colunmNumber, GenericCloneUserDataHandler);
+	protected static void trackLocation(Element e, NodeLocation location) {
+		// a single immutable user data, which is shared (not copied) by clones
+		e.setUserData(LOCATION, location, GenericCloneUserDataHandler);
 	}
 
 }
@@ -271,9 +235,8 @@ class MySAXHandler extends DefaultHandler2 {
 		for (int i = 0; i < attributes.getLength(); i++) {
 			el.setAttribute(attributes.getQName(i), attributes.getValue(i));
 		}
-		Parser.trackSource(el, getSource());
-		Parser.trackLineNumber(el, _locator.getLineNumber());
-		Parser.trackColumnNumber(el, _locator.getColumnNumber());
+		Parser.trackLocation(el, new NodeLocation(getSource(),
+				_locator.getLineNumber(), _locator.getColumnNumber()));
 		_elementStack.push(el);
 	}
 
@@ -3,7 +3,7 @@ package com.wat.melody.common.xml.location;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
-import com.wat.melody.common.xml.Parser;
+import com.wat.melody.common.xml.NodeLocation;
 
 /**
  * 
@@ -39,20 +39,20 @@ public abstract class LocationAbstract implements Location {
 
 	@Override
 	public String getSource() {
-		Object source = getRelatedElement().getUserData(Parser.SOURCE);
-		return (source == null) ? null : (String) source;
+		NodeLocation location = NodeLocation.getLocation(getRelatedElement());
+		return (location == null) ? null : location.getSource();
 	}
 
 	@Override
 	public Integer getLine() {
-		Object line = getRelatedElement().getUserData(Parser.LINE_NUMBER);
-		return (line == null) ? null : (Integer) line;
+		NodeLocation location = NodeLocation.getLocation(getRelatedElement());
+		return (location == null) ? null : location.getLine();
 	}
 
 	@Override
 	public Integer getColumn() {
-		Object col = getRelatedElement().getUserData(Parser.COLUMN_NUMBER);
-		return (col == null) ? null : (Integer) col;
+		NodeLocation location = NodeLocation.getLocation(getRelatedElement());
+		return (location == null) ? null : location.getColumn();
 	}
 
 	public abstract Element getRelatedElement();
@@ -4,13 +4,17 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.locks.Lock;
 
 import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
+import net.sf.saxon.dom.DocumentWrapper;
 import net.sf.saxon.lib.FeatureKeys;
 import net.sf.saxon.xpath.XPathFactoryImpl;
 
@@ -21,9 +25,9 @@ import org.w3c.dom.NodeList;
 import com.wat.melody.common.files.FS;
 import com.wat.melody.common.files.exception.IllegalFileException;
 import com.wat.melody.common.messages.Msg;
-import com.wat.melody.common.properties.PropertyName;
 import com.wat.melody.common.properties.PropertySet;
 import com.wat.melody.common.xml.Doc;
+import com.wat.melody.common.xml.DocContext;
 import com.wat.melody.common.xml.DocHelper;
 import com.wat.melody.common.xpath.exception.XPathExpressionSyntaxException;
 
@@ -52,6 +56,29 @@ public abstract class XPathExpander {
 
 	}
 
+	private static final XPath _defaultXPath = newXPath(null);
+	private static final XPathExpressionCache _expressionCache = new XPathExpressionCache(
+			XPathExpressionCache.DEFAULT_MAX_SIZE);
+	private static final XPathTemplateCache _templateCache = new XPathTemplateCache(
+			XPathTemplateCache.DEFAULT_MAX_SIZE);
+
+	/**
+	 * @return the cache which holds all XPath expressions compiled by this
+	 *         object.
+	 */
+	public static XPathExpressionCache getExpressionCache() {
+		return _expressionCache;
+	}
+
+	/**
+	 * @return the cache which holds all templates (e.g. <tt>String</tt> or
+	 *         template files which contains Melody Expressions) compiled by
+	 *         this object.
+	 */
+	public static XPathTemplateCache getTemplateCache() {
+		return _templateCache;
+	}
+
 	/**
 	 * <p>
 	 * Create a new {@link XPath} object, and assign it the given
@@ -89,8 +116,11 @@ public abstract class XPathExpander {
 	 * </p>
 	 * 
 	 * <p>
-	 * During the evaluation, the given context's owner {@link Document} is
-	 * synchronized (concurrent access to the DOM tree should use this monitor).
+	 * During the evaluation, the read lock of the given context's owner
+	 * {@link Document} is acquired (see
+	 * {@link DocHelper#getReadWriteLock(Document)}), so that concurrent
+	 * evaluations can be performed in parallel. Concurrent modifications of the
+	 * DOM tree should acquire the write lock.
 	 * </p>
 	 * 
 	 * <p>
@@ -124,19 +154,7 @@ public abstract class XPathExpander {
 	 */
 	public static String evaluateAsString(String expr, Node ctx)
 			throws XPathExpressionException {
-		if (ctx == null) {
-			throw new IllegalArgumentException("null: Not accepted. "
-					+ "Must be a valid " + Node.class.getCanonicalName() + ".");
-		}
-		boolean isDoc = ctx.getNodeType() == Node.DOCUMENT_NODE;
-		Document d = isDoc ? (Document) ctx : ctx.getOwnerDocument();
-		XPath xpath = DocHelper.retrieveXPath(d);
-		if (xpath == null) {
-			xpath = newXPath(null);
-		}
-		synchronized (d) {
-			return (String) xpath.evaluate(expr, ctx, XPathConstants.STRING);
-		}
+		return (String) evaluate(expr, ctx, XPathConstants.STRING);
 	}
 
 	/**
@@ -146,8 +164,11 @@ public abstract class XPathExpander {
 	 * </p>
 	 * 
 	 * <p>
-	 * During the evaluation, the given context's owner {@link Document} is
-	 * synchronized (concurrent access to the DOM tree should use this monitor).
+	 * During the evaluation, the read lock of the given context's owner
+	 * {@link Document} is acquired (see
+	 * {@link DocHelper#getReadWriteLock(Document)}), so that concurrent
+	 * evaluations can be performed in parallel. Concurrent modifications of the
+	 * DOM tree should acquire the write lock.
 	 * </p>
 	 * 
 	 * <p>
@@ -182,19 +203,7 @@ public abstract class XPathExpander {
 	 */
 	public static NodeList evaluateAsNodeList(String expr, Node ctx)
 			throws XPathExpressionException {
-		if (ctx == null) {
-			throw new IllegalArgumentException("null: Not accepted. "
-					+ "Must be a valid " + Node.class.getCanonicalName() + ".");
-		}
-		boolean isDoc = ctx.getNodeType() == Node.DOCUMENT_NODE;
-		Document d = isDoc ? (Document) ctx : ctx.getOwnerDocument();
-		XPath xpath = DocHelper.retrieveXPath(d);
-		if (xpath == null) {
-			xpath = newXPath(null);
-		}
-		synchronized (d) {
-			return (NodeList) xpath.evaluate(expr, ctx, XPathConstants.NODESET);
-		}
+		return (NodeList) evaluate(expr, ctx, XPathConstants.NODESET);
 	}
 
 	/**
@@ -204,8 +213,11 @@ public abstract class XPathExpander {
 	 * </p>
 	 * 
 	 * <p>
-	 * During the evaluation, the given context's owner {@link Document} is
-	 * synchronized (concurrent access to the DOM tree should use this monitor).
+	 * During the evaluation, the read lock of the given context's owner
+	 * {@link Document} is acquired (see
+	 * {@link DocHelper#getReadWriteLock(Document)}), so that concurrent
+	 * evaluations can be performed in parallel. Concurrent modifications of the
+	 * DOM tree should acquire the write lock.
 	 * </p>
 	 * 
 	 * <p>
@@ -240,19 +252,110 @@ public abstract class XPathExpander {
 	 */
 	public static Node evaluateAsNode(String expr, Node ctx)
 			throws XPathExpressionException {
+		return (Node) evaluate(expr, ctx, XPathConstants.NODE);
+	}
+
+	private static Object evaluate(String expr, Node ctx, QName returnType)
+			throws XPathExpressionException {
 		if (ctx == null) {
 			throw new IllegalArgumentException("null: Not accepted. "
 					+ "Must be a valid " + Node.class.getCanonicalName() + ".");
 		}
 		boolean isDoc = ctx.getNodeType() == Node.DOCUMENT_NODE;
 		Document d = isDoc ? (Document) ctx : ctx.getOwnerDocument();
-		XPath xpath = DocHelper.retrieveXPath(d);
-		if (xpath == null) {
-			xpath = newXPath(null);
+		DocContext dc = DocContext.get(d);
+		XPathExpression xpr = compile(expr, dc);
+		DocumentWrapper dw = dc.getDocumentWrapper();
+		Lock lock;
+		if (dw == null) {
+			/*
+			 * The DOM implementation doesn't support concurrent reads (some
+			 * reads update internal caches). Without a shared document
+			 * wrapper, the evaluation must be exclusive.
+			 */
+			lock = dc.getReadWriteLock().writeLock();
+			lock.lock();
+			try {
+				return xpr.evaluate(ctx, returnType);
+			} finally {
+				lock.unlock();
+			}
+		}
+		// the shared document wrapper serializes its own DOM reads
+		lock = dc.getReadWriteLock().readLock();
+		lock.lock();
+		try {
+			return xpr.evaluate(dw.wrap(ctx), returnType);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Store a new {@link DocumentWrapper} into the context of the given
+	 * {@link Document} (see {@link DocContext}). All further XPath evaluation
+	 * performed in the given {@link Document} will share this
+	 * {@link DocumentWrapper}, which allow them to run concurrently. Without
+	 * it, XPath evaluation in the given {@link Document} are serialized.
+	 * </p>
+	 * 
+	 * <p>
+	 * If the given {@link Document} already contains a {@link DocumentWrapper},
+	 * it is kept. The {@link DocumentWrapper} is not propagated to clones of
+	 * the given {@link Document}. Because the context only weakly references
+	 * the {@link DocumentWrapper}, the caller must keep the returned one as
+	 * long as it uses the given {@link Document}.
+	 * </p>
+	 * 
+	 * @param d
+	 *            is the {@link Document} to store the {@link DocumentWrapper}
+	 *            in.
+	 * 
+	 * @return the {@link DocumentWrapper} of the given {@link Document}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given {@link Document} is <tt>null</tt>.
+	 */
+	public static DocumentWrapper storeDocumentWrapper(Document d) {
+		DocContext dc = DocContext.get(d);
+		DocumentWrapper dw = dc.getDocumentWrapper();
+		if (dw != null) {
+			return dw;
 		}
-		synchronized (d) {
-			return (Node) xpath.evaluate(expr, ctx, XPathConstants.NODE);
+		return dc.setDocumentWrapperIfAbsent(new DocumentWrapper(d, d
+				.getBaseURI(), _xpathFactory.getConfiguration()));
+	}
+
+	/**
+	 * <p>
+	 * Get the compiled form of the given XPath expression, using the
+	 * {@link XPath} object stored in the given {@link DocContext} (or a
+	 * default one, if the given {@link DocContext} doesn't contain an
+	 * {@link XPath} object). The compiled form is cached, so that further
+	 * evaluation of the same expression will not compile it again.
+	 * </p>
+	 * 
+	 * @param expr
+	 *            is the XPath 2.0 expression to compile.
+	 * @param dc
+	 *            is the context of the {@link Document} which contains the
+	 *            {@link XPath} object to use.
+	 * 
+	 * @return the compiled form of the given expression.
+	 * 
+	 * @throws NullPointerException
+	 *             if the given expression is <tt>null</tt>.
+	 * @throws XPathExpressionException
+	 *             if the given expression is not a valid XPath 2.0 expression.
+	 */
+	private static XPathExpression compile(String expr, DocContext dc)
+			throws XPathExpressionException {
+		XPath xpath = dc.getXPath();
+		if (xpath == null) {
+			xpath = _defaultXPath;
 		}
+		return getExpressionCache().compile(xpath, expr);
 	}
 
 	public static final String DELIM_START = "§[";
@@ -275,9 +378,11 @@ public abstract class XPathExpander {
 	 * </p>
 	 * 
 	 * <p>
-	 * During the evaluation, the given context's owner {@link Document} is
-	 * synchronized, preventing concurrent access to the owner {@link Document},
-	 * which is not thread safe (because of xerces).
+	 * During the evaluation of each Melody Expression, the read lock of the
+	 * given context's owner {@link Document} is acquired (see
+	 * {@link DocHelper#getReadWriteLock(Document)}), so that concurrent
+	 * expansions can be performed in parallel. Concurrent modifications of the
+	 * DOM tree should acquire the write lock.
 	 * </p>
 	 * 
 	 * <p>
@@ -328,10 +433,13 @@ public abstract class XPathExpander {
 					+ "Must be a valid " + Path.class.getCanonicalName() + ".");
 		}
 		FS.validateFileExists(fileToExpand.toString());
-		String fileContent = new String(Files.readAllBytes(fileToExpand));
+		XPathTemplate template = null;
 		try {
-			return expand(fileContent, ctx, properties);
+			template = getTemplateCache().compile(fileToExpand);
+			return template.render(ctx, properties);
 		} catch (XPathExpressionSyntaxException Ex) {
+			String fileContent = template != null ? template.getSource()
+					: new String(Files.readAllBytes(fileToExpand));
 			throw new XPathExpressionSyntaxException(Msg.bind(
 					Messages.XPathExprSyntaxEx_INVALID_XPATH_EXPR_IN_TEMPLATE,
 					fileToExpand, fileContent.trim()), Ex);
@@ -355,9 +463,11 @@ public abstract class XPathExpander {
 	 * </p>
 	 * 
 	 * <p>
-	 * During the evaluation, the given context's owner {@link Document} is
-	 * synchronized, preventing concurrent access to the owner {@link Document},
-	 * which is not thread safe (because of xerces).
+	 * During the evaluation of each Melody Expression, the read lock of the
+	 * given context's owner {@link Document} is acquired (see
+	 * {@link DocHelper#getReadWriteLock(Document)}), so that concurrent
+	 * expansions can be performed in parallel. Concurrent modifications of the
+	 * DOM tree should acquire the write lock.
 	 * </p>
 	 * 
 	 * <p>
@@ -394,91 +504,14 @@ public abstract class XPathExpander {
 		if (expr == null) {
 			return null;
 		}
-		int start = expr.indexOf(DELIM_START);
-		int end = expr.indexOf(DELIM_STOP);
-		if (start == -1) {
-			// Start Delimiter not found
-			if (end == -1) {
-				// Start Delimiter not found AND Stop Delimiter not found
-				return expr;
-			} else {
-				// Start Delimiter not found AND Stop Delimiter found
-				throw new XPathExpressionSyntaxException(Msg.bind(
-						Messages.XPathExprSyntaxEx_START_DELIM_MISSING,
-						extractPart(expr, end)));
-			}
-		}
-		// Start Delimiter found
-		if (end == -1) {
-			// Start Delimiter found AND Stop Delimiter not found
-			throw new XPathExpressionSyntaxException(Msg.bind(
-					Messages.XPathExprSyntaxEx_STOP_DELIM_MISSING,
-					extractPart(expr, start)));
-		} else if (end < start) {
-			// Start Delimiter found AFTER Stop Delimiter
-			throw new XPathExpressionSyntaxException(Msg.bind(
-					Messages.XPathExprSyntaxEx_START_DELIM_MISSING,
-					extractPart(expr, end)));
-		}
-		int next = start;
-		while ((next = expr.indexOf(DELIM_START, next + DELIM_START.length())) != -1) {
-			if (next < end) {
-				end = expr.indexOf(DELIM_STOP, end + DELIM_STOP.length());
-			} else {
-				break;
-			}
-
-		}
-		if (end == -1) {
-			// Start Delimiter found AND Stop Delimiter not found
-			throw new XPathExpressionSyntaxException(Msg.bind(
-					Messages.XPathExprSyntaxEx_STOP_DELIM_MISSING,
-					extractPart(expr, start)));
-		}
-		StringBuilder str = new StringBuilder();
-		str.append(expr.substring(0, start));
-		str.append(resolvedXPathExpression(
-				expr.substring(start + DELIM_START.length(), end), ctx, vars));
-		str.append(expand(expr.substring(end + DELIM_STOP.length()), ctx, vars));
-		return str.toString();
-	}
-
-	private static String resolvedXPathExpression(String expr, Node ctx,
-			PropertySet vars) throws XPathExpressionSyntaxException {
-		// Expand Nested Expression
-		expr = expand(expr, ctx, vars);
-		expr = expr.trim();
-		// Here, all Nested Expression have been expanded
-		if (expr.matches("^" + PropertyName.PATTERN + "$")) {
-			// If it matches the PropertyName Pattern, the Expression is
-			// remplaced by the Property's value
-			if (vars == null) {
-				throw new RuntimeException("Cannot expand the property '"
-						+ expr
-						+ "' because no PropertiesSet have been provided.");
-			}
-			if (vars.containsKey(expr)) {
-				return vars.get(expr);
-			} else {
-				throw new XPathExpressionSyntaxException(Msg.bind(
-						Messages.XPathExprSyntaxEx_UNDEF_PROPERTY, expr));
-			}
-		} else {
-			if (ctx == null) {
-				throw new RuntimeException("Cannot expand the expression '"
-						+ expr + "' because no Context have been provided.");
-			}
-			try {
-				return evaluateAsString(expr, ctx);
-			} catch (XPathExpressionException Ex) {
-				throw new XPathExpressionSyntaxException(Msg.bind(
-						Messages.XPathExprSyntaxEx_INVALID_XPATH_EXPR,
-						extractPart(expr, 0)), Ex);
-			}
+		if (expr.indexOf(DELIM_START) == -1 && expr.indexOf(DELIM_STOP) == -1) {
+			// Neither Start Delimiter nor Stop Delimiter found
+			return expr;
 		}
+		return getTemplateCache().compile(expr).render(ctx, vars);
 	}
 
-	private static String extractPart(String sMsg, int near) {
+	static String extractPart(String sMsg, int near) {
 		if (sMsg == null) {
 			return "";
 		}
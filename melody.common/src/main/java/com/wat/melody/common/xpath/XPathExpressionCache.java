@@ -0,0 +1,165 @@
+package com.wat.melody.common.xpath;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFunctionResolver;
+
+import com.wat.melody.common.cache.LruCache;
+
+/**
+ * <p>
+ * A bounded, thread-safe cache of compiled {@link XPathExpression}.
+ * </p>
+ * 
+ * <p>
+ * Compiled {@link XPathExpression} are indexed by their literal expression
+ * and by the {@link NamespaceContext} and the {@link XPathFunctionResolver}
+ * of the {@link XPath} object which compiled them. When the cache is full,
+ * the least recently used {@link XPathExpression} is evicted.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class XPathExpressionCache {
+
+	public static final int DEFAULT_MAX_SIZE = 2048;
+
+	private LruCache<Key, XPathExpression> _cache;
+
+	public XPathExpressionCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public XPathExpressionCache(int maxSize) {
+		_cache = new LruCache<Key, XPathExpression>(maxSize);
+	}
+
+	/**
+	 * <p>
+	 * Get the compiled form of the given XPath expression. If the given
+	 * expression was not previously compiled with the given {@link XPath}'s
+	 * namespace context and function resolver, it is compiled and put in this
+	 * cache.
+	 * </p>
+	 * 
+	 * @param xpath
+	 *            is the {@link XPath} object which will compile the given
+	 *            expression, if it is not already in this cache.
+	 * @param expr
+	 *            is the XPath 2.0 expression to compile.
+	 * 
+	 * @return the compiled form of the given expression.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given {@link XPath} is <tt>null</tt>.
+	 * @throws NullPointerException
+	 *             if the given expression is <tt>null</tt>.
+	 * @throws XPathExpressionException
+	 *             if the given expression is not a valid XPath 2.0 expression.
+	 */
+	public XPathExpression compile(XPath xpath, String expr)
+			throws XPathExpressionException {
+		if (xpath == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + XPath.class.getCanonicalName() + ".");
+		}
+		if (expr == null) {
+			throw new NullPointerException("null: Not accepted. "
+					+ "Must be a valid " + String.class.getCanonicalName()
+					+ " (an XPath 2.0 expression).");
+		}
+		Key key = new Key(expr, xpath.getNamespaceContext(),
+				xpath.getXPathFunctionResolver());
+		XPathExpression compiled = _cache.get(key);
+		if (compiled != null) {
+			return compiled;
+		}
+		// XPath objects are not thread safe
+		synchronized (xpath) {
+			compiled = xpath.compile(expr);
+		}
+		_cache.put(key, compiled);
+		return compiled;
+	}
+
+	/**
+	 * <p>
+	 * Remove all compiled {@link XPathExpression} from this cache. Hit and miss
+	 * counters are not reset.
+	 * </p>
+	 */
+	public void clear() {
+		_cache.clear();
+	}
+
+	public int size() {
+		return _cache.size();
+	}
+
+	public long getHitCount() {
+		return _cache.getHitCount();
+	}
+
+	public long getMissCount() {
+		return _cache.getMissCount();
+	}
+
+	public int getMaxSize() {
+		return _cache.getMaxSize();
+	}
+
+	public int setMaxSize(int maxSize) {
+		return _cache.setMaxSize(maxSize);
+	}
+
+	@Override
+	public String toString() {
+		return _cache.toString();
+	}
+
+	/**
+	 * <p>
+	 * Index of a compiled {@link XPathExpression}. The namespace context and the
+	 * function resolver are compared by identity.
+	 * </p>
+	 */
+	private static class Key {
+
+		private String _expr;
+		private NamespaceContext _nsCtx;
+		private XPathFunctionResolver _fnResolver;
+		private int _hash;
+
+		public Key(String expr, NamespaceContext nsCtx,
+				XPathFunctionResolver fnResolver) {
+			_expr = expr;
+			_nsCtx = nsCtx;
+			_fnResolver = fnResolver;
+			_hash = 31 * (31 * expr.hashCode() + System.identityHashCode(nsCtx))
+					+ System.identityHashCode(fnResolver);
+		}
+
+		@Override
+		public int hashCode() {
+			return _hash;
+		}
+
+		@Override
+		public boolean equals(Object anObject) {
+			if (this == anObject) {
+				return true;
+			}
+			if (anObject instanceof Key) {
+				Key k = (Key) anObject;
+				return _nsCtx == k._nsCtx && _fnResolver == k._fnResolver
+						&& _expr.equals(k._expr);
+			}
+			return false;
+		}
+
+	}
+
+}
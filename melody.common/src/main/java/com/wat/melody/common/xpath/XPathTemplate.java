@@ -0,0 +1,342 @@
+package com.wat.melody.common.xpath;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.xml.xpath.XPathExpressionException;
+
+import org.w3c.dom.Node;
+
+import com.wat.melody.common.messages.Msg;
+import com.wat.melody.common.properties.PropertyName;
+import com.wat.melody.common.properties.PropertySet;
+import com.wat.melody.common.xpath.exception.XPathExpressionSyntaxException;
+
+/**
+ * <p>
+ * The compiled form of a <tt>String</tt> which contains Melody Expressions
+ * (see {@link XPathExpander#expand(String, Node, PropertySet)}).
+ * </p>
+ * 
+ * <p>
+ * Delimiters are parsed once, when the template is compiled. The compiled
+ * template is a list of tokens, which are either literal parts of the source
+ * <tt>String</tt> or Melody Expressions (which can contains nested Melody
+ * Expressions). Tokens only hold positions in the source <tt>String</tt>, so
+ * that rendering a template doesn't copy any part of it, but appends them into
+ * a single {@link StringBuilder}.
+ * </p>
+ * 
+ * <p>
+ * A compiled template is immutable, and can be rendered by multiple threads
+ * simultaneously.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public final class XPathTemplate {
+
+	private static final Pattern PROPERTY_NAME = Pattern.compile("^"
+			+ PropertyName.PATTERN + "$");
+
+	/**
+	 * <p>
+	 * Compile the given <tt>String</tt>.
+	 * </p>
+	 * 
+	 * @param template
+	 *            is the <tt>String</tt> to compile.
+	 * 
+	 * @return the compiled form of the given <tt>String</tt>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given <tt>String</tt> is <tt>null</tt>.
+	 * @throws XPathExpressionSyntaxException
+	 *             if the delimiters of the Melody Expressions found in the
+	 *             given <tt>String</tt> are not balanced.
+	 */
+	public static XPathTemplate compile(String template)
+			throws XPathExpressionSyntaxException {
+		if (template == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + String.class.getCanonicalName()
+					+ ".");
+		}
+		return new XPathTemplate(template, 0, template.length());
+	}
+
+	private static final int START_LEN = XPathExpander.DELIM_START.length();
+	private static final int STOP_LEN = XPathExpander.DELIM_STOP.length();
+
+	private String _source;
+	private int _from;
+	private int _to;
+	/**
+	 * Literal tokens are {@link Integer} couples (start and end positions in
+	 * the source). Melody Expressions are {@link Expression}.
+	 */
+	private List<Object> _tokens;
+	/**
+	 * <tt>true</tt> if {@link #_tokens} doesn't contain any {@link Expression}.
+	 * Computed once parsed, so that rendering a constant template doesn't scan
+	 * its tokens.
+	 */
+	private boolean _constant;
+
+	private XPathTemplate(String source, int from, int to)
+			throws XPathExpressionSyntaxException {
+		_source = source;
+		_from = from;
+		_to = to;
+		_tokens = new ArrayList<Object>();
+		parse();
+		_constant = !containsExpression();
+	}
+
+	/**
+	 * @return the <tt>String</tt> which was compiled.
+	 */
+	public String getSource() {
+		return _source.substring(_from, _to);
+	}
+
+	/**
+	 * @return the length of the <tt>String</tt> this object was compiled from
+	 *         (which is retained by this object).
+	 */
+	int getRetainedLength() {
+		return _source.length();
+	}
+
+	/**
+	 * @return <tt>true</tt> if this template doesn't contain any Melody
+	 *         Expression.
+	 */
+	public boolean isConstant() {
+		return _constant;
+	}
+
+	/**
+	 * <p>
+	 * Expand all Melody Expressions of this template.
+	 * </p>
+	 * 
+	 * @param ctx
+	 *            necessary to expand XPath 2.0 Expression.
+	 * @param vars
+	 *            necessary to expand Property's Name.
+	 * 
+	 * @return the expanded <tt>String</tt>.
+	 * 
+	 * @throws XPathExpressionSyntaxException
+	 *             if a Melody Expression cannot be expanded because it is not a
+	 *             valid XPath 2.0 Expression or an existing Property's Name.
+	 */
+	public String render(Node ctx, PropertySet vars)
+			throws XPathExpressionSyntaxException {
+		if (_constant) {
+			return getSource();
+		}
+		StringBuilder str = new StringBuilder(_to - _from + 64);
+		render(str, ctx, vars);
+		return str.toString();
+	}
+
+	/**
+	 * <p>
+	 * Expand all Melody Expressions of this template, and append the result in
+	 * the given {@link StringBuilder}.
+	 * </p>
+	 * 
+	 * @param str
+	 *            is the {@link StringBuilder} to append to.
+	 * @param ctx
+	 *            necessary to expand XPath 2.0 Expression.
+	 * @param vars
+	 *            necessary to expand Property's Name.
+	 * 
+	 * @throws XPathExpressionSyntaxException
+	 *             if a Melody Expression cannot be expanded because it is not a
+	 *             valid XPath 2.0 Expression or an existing Property's Name.
+	 */
+	public void render(StringBuilder str, Node ctx, PropertySet vars)
+			throws XPathExpressionSyntaxException {
+		for (int i = 0; i < _tokens.size(); i++) {
+			Object token = _tokens.get(i);
+			if (token instanceof Expression) {
+				str.append(((Expression) token).resolve(ctx, vars));
+			} else {
+				int start = (Integer) token;
+				int end = (Integer) _tokens.get(++i);
+				str.append(_source, start, end);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getSource();
+	}
+
+	private void addLiteral(int start, int end) {
+		if (start < end) {
+			_tokens.add(start);
+			_tokens.add(end);
+		}
+	}
+
+	private boolean containsExpression() {
+		for (Object token : _tokens) {
+			if (token instanceof Expression) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the position of the given delimiter in the source, between the
+	 *         given position and the end of this template, or -1 if not found.
+	 */
+	private int indexOf(String delim, int from) {
+		int i = _source.indexOf(delim, from);
+		if (i == -1 || i + delim.length() > _to) {
+			return -1;
+		}
+		return i;
+	}
+
+	/**
+	 * <p>
+	 * Split this template into tokens. A Melody Expression ends at the stop
+	 * delimiter which balances its start delimiter.
+	 * </p>
+	 */
+	private void parse() throws XPathExpressionSyntaxException {
+		int pos = _from;
+		while (true) {
+			int start = indexOf(XPathExpander.DELIM_START, pos);
+			int end = indexOf(XPathExpander.DELIM_STOP, pos);
+			if (start == -1) {
+				// Start Delimiter not found
+				if (end == -1) {
+					// Start Delimiter not found AND Stop Delimiter not found
+					addLiteral(pos, _to);
+					return;
+				}
+				// Start Delimiter not found AND Stop Delimiter found
+				throw new XPathExpressionSyntaxException(Msg.bind(
+						Messages.XPathExprSyntaxEx_START_DELIM_MISSING,
+						extractPart(pos, end)));
+			}
+			// Start Delimiter found
+			if (end == -1) {
+				// Start Delimiter found AND Stop Delimiter not found
+				throw new XPathExpressionSyntaxException(Msg.bind(
+						Messages.XPathExprSyntaxEx_STOP_DELIM_MISSING,
+						extractPart(pos, start)));
+			} else if (end < start) {
+				// Start Delimiter found AFTER Stop Delimiter
+				throw new XPathExpressionSyntaxException(Msg.bind(
+						Messages.XPathExprSyntaxEx_START_DELIM_MISSING,
+						extractPart(pos, end)));
+			}
+			int next = start;
+			while ((next = indexOf(XPathExpander.DELIM_START, next
+					+ START_LEN)) != -1) {
+				if (next < end) {
+					end = indexOf(XPathExpander.DELIM_STOP, end + STOP_LEN);
+					if (end == -1) {
+						break;
+					}
+				} else {
+					break;
+				}
+			}
+			if (end == -1) {
+				// Start Delimiter found AND Stop Delimiter not found
+				throw new XPathExpressionSyntaxException(Msg.bind(
+						Messages.XPathExprSyntaxEx_STOP_DELIM_MISSING,
+						extractPart(pos, start)));
+			}
+			addLiteral(pos, start);
+			_tokens.add(new Expression(new XPathTemplate(_source, start
+					+ START_LEN, end)));
+			pos = end + STOP_LEN;
+		}
+	}
+
+	private String extractPart(int pos, int near) {
+		return XPathExpander.extractPart(_source.substring(pos, _to), near
+				- pos);
+	}
+
+	/**
+	 * <p>
+	 * A Melody Expression. Its nested Melody Expressions are expanded first.
+	 * The result is then either a Property's Name or an XPath 2.0 Expression.
+	 * </p>
+	 */
+	private static class Expression {
+
+		private XPathTemplate _inner;
+		/**
+		 * The trimmed expression, when it doesn't contains any nested Melody
+		 * Expression. <tt>null</tt> otherwise.
+		 */
+		private String _constant;
+		private boolean _isPropertyName;
+
+		public Expression(XPathTemplate inner) {
+			_inner = inner;
+			if (inner.isConstant()) {
+				_constant = inner.getSource().trim();
+				_isPropertyName = PROPERTY_NAME.matcher(_constant).matches();
+			}
+		}
+
+		public String resolve(Node ctx, PropertySet vars)
+				throws XPathExpressionSyntaxException {
+			String expr = _constant;
+			boolean isPropertyName = _isPropertyName;
+			if (expr == null) {
+				// Expand Nested Expression
+				expr = _inner.render(ctx, vars).trim();
+				isPropertyName = PROPERTY_NAME.matcher(expr).matches();
+			}
+			// Here, all Nested Expression have been expanded
+			if (isPropertyName) {
+				// If it matches the PropertyName Pattern, the Expression is
+				// remplaced by the Property's value
+				if (vars == null) {
+					throw new RuntimeException("Cannot expand the property '"
+							+ expr + "' because no PropertiesSet have been "
+							+ "provided.");
+				}
+				if (vars.containsKey(expr)) {
+					return vars.get(expr);
+				} else {
+					throw new XPathExpressionSyntaxException(Msg.bind(
+							Messages.XPathExprSyntaxEx_UNDEF_PROPERTY, expr));
+				}
+			} else {
+				if (ctx == null) {
+					throw new RuntimeException("Cannot expand the expression '"
+							+ expr + "' because no Context have been "
+							+ "provided.");
+				}
+				try {
+					return XPathExpander.evaluateAsString(expr, ctx);
+				} catch (XPathExpressionException Ex) {
+					throw new XPathExpressionSyntaxException(Msg.bind(
+							Messages.XPathExprSyntaxEx_INVALID_XPATH_EXPR,
+							XPathExpander.extractPart(expr, 0)), Ex);
+				}
+			}
+		}
+
+	}
+
+}
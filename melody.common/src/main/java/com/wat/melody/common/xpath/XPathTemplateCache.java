@@ -0,0 +1,191 @@
+package com.wat.melody.common.xpath;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.wat.melody.common.cache.FileStamp;
+import com.wat.melody.common.cache.LruCache;
+import com.wat.melody.common.xpath.exception.XPathExpressionSyntaxException;
+
+/**
+ * <p>
+ * A bounded, thread-safe cache of {@link XPathTemplate}.
+ * </p>
+ * 
+ * <p>
+ * {@link XPathTemplate} compiled from a <tt>String</tt> (e.g. an XML attribute
+ * value) are indexed by this <tt>String</tt>. {@link XPathTemplate} compiled
+ * from a template file are indexed by the path, the last modification time and
+ * the size of this file, so that a modified template file is compiled again.
+ * When the cache is full, the least recently used {@link XPathTemplate} is
+ * evicted.
+ * </p>
+ * 
+ * <p>
+ * Because an {@link XPathTemplate} retains the text it was compiled from, this
+ * cache is also bounded by the total number of characters of the cached
+ * {@link XPathTemplate}. {@link XPathTemplate} compiled from a text longer than
+ * {@link #MAX_TEMPLATE_LENGTH} (e.g. a large template file) are never cached.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class XPathTemplateCache {
+
+	public static final int DEFAULT_MAX_SIZE = 4096;
+	public static final long DEFAULT_MAX_CHARACTERS = 4 * 1024 * 1024;
+	public static final int MAX_TEMPLATE_LENGTH = 64 * 1024;
+
+	private LruCache<Object, XPathTemplate> _cache;
+
+	public XPathTemplateCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public XPathTemplateCache(int maxSize) {
+		this(maxSize, DEFAULT_MAX_CHARACTERS);
+	}
+
+	public XPathTemplateCache(int maxSize, long maxCharacters) {
+		_cache = new LruCache<Object, XPathTemplate>(maxSize, maxCharacters) {
+
+			@Override
+			protected long weigh(Object key, XPathTemplate value) {
+				// a String key is the source of the template
+				return value.getRetainedLength();
+			}
+
+		};
+	}
+
+	/**
+	 * <p>
+	 * Get the compiled form of the given <tt>String</tt>. If the given
+	 * <tt>String</tt> was not previously compiled, it is compiled and put in
+	 * this cache.
+	 * </p>
+	 * 
+	 * @param template
+	 *            is the <tt>String</tt> to compile.
+	 * 
+	 * @return the compiled form of the given <tt>String</tt>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given <tt>String</tt> is <tt>null</tt>.
+	 * @throws XPathExpressionSyntaxException
+	 *             if the delimiters of the Melody Expressions found in the
+	 *             given <tt>String</tt> are not balanced.
+	 */
+	public XPathTemplate compile(String template)
+			throws XPathExpressionSyntaxException {
+		if (template == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + String.class.getCanonicalName()
+					+ ".");
+		}
+		if (template.length() > MAX_TEMPLATE_LENGTH) {
+			return XPathTemplate.compile(template);
+		}
+		XPathTemplate compiled = _cache.get(template);
+		if (compiled != null) {
+			return compiled;
+		}
+		compiled = XPathTemplate.compile(template);
+		_cache.put(template, compiled);
+		return compiled;
+	}
+
+	/**
+	 * <p>
+	 * Get the compiled form of the content of the given template file. If the
+	 * given file was not previously compiled, or if it was modified since, it
+	 * is read, compiled and put in this cache.
+	 * </p>
+	 * 
+	 * @param template
+	 *            is the {@link Path} of the template file to compile. It must
+	 *            point to an existing file.
+	 * 
+	 * @return the compiled form of the content of the given template file.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given {@link Path} is <tt>null</tt>.
+	 * @throws IOException
+	 *             if an IO error occurred while reading the given file.
+	 * @throws XPathExpressionSyntaxException
+	 *             if the delimiters of the Melody Expressions found in the
+	 *             given file are not balanced.
+	 */
+	public XPathTemplate compile(Path template) throws IOException,
+			XPathExpressionSyntaxException {
+		if (template == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Path.class.getCanonicalName() + ".");
+		}
+		FileStamp key = FileStamp.of(template);
+		XPathTemplate compiled = _cache.get(key);
+		if (compiled != null) {
+			return compiled;
+		}
+		compiled = XPathTemplate.compile(new String(Files
+				.readAllBytes(template)));
+		if (compiled.getRetainedLength() <= MAX_TEMPLATE_LENGTH) {
+			_cache.put(key, compiled);
+		}
+		return compiled;
+	}
+
+	/**
+	 * <p>
+	 * Remove all {@link XPathTemplate} from this cache. Hit and miss counters
+	 * are not reset.
+	 * </p>
+	 */
+	public void clear() {
+		_cache.clear();
+	}
+
+	public int size() {
+		return _cache.size();
+	}
+
+	public long getHitCount() {
+		return _cache.getHitCount();
+	}
+
+	public long getMissCount() {
+		return _cache.getMissCount();
+	}
+
+	public int getMaxSize() {
+		return _cache.getMaxSize();
+	}
+
+	public int setMaxSize(int maxSize) {
+		return _cache.setMaxSize(maxSize);
+	}
+
+	/**
+	 * @return the total number of characters of the cached
+	 *         {@link XPathTemplate}.
+	 */
+	public long getCharacters() {
+		return _cache.getWeight();
+	}
+
+	public long getMaxCharacters() {
+		return _cache.getMaxWeight();
+	}
+
+	public long setMaxCharacters(long maxCharacters) {
+		return _cache.setMaxWeight(maxCharacters);
+	}
+
+	@Override
+	public String toString() {
+		return _cache.toString();
+	}
+
+}
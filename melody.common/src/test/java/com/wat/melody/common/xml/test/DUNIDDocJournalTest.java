@@ -0,0 +1,177 @@
+package com.wat.melody.common.xml.test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.wat.melody.common.xml.DUNIDDoc;
+import com.wat.melody.common.xml.DUNIDDocJournal;
+import com.wat.melody.common.xml.DocHelper;
+
+/**
+ * <p>
+ * Replays the journal of a {@link DUNIDDoc} after a simulated kill : the
+ * {@link DUNIDDoc} is modified, then abandoned without being stored, and its
+ * source file is loaded again.
+ * </p>
+ * 
+ * <p>
+ * Covers attribute, text leaf, element insertion and element removal records,
+ * a torn last record, and a journal whose BASE line (CRC and size) doesn't
+ * match the source file anymore.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class DUNIDDocJournalTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final Set<String> DUNID_ATTRS = Collections
+			.singleton(DUNIDDoc.DUNID_ATTR);
+
+	private static final String ED = "<environment>"
+			+ "<instance name=\"web1\" region=\"eu-west-1\">"
+			+ "<disk name=\"sda\"/><disk name=\"sdb\"/><disk name=\"sdc\"/>"
+			+ "<state>stopped</state>" + "</instance>"
+			+ "<instance name=\"web2\" region=\"eu-west-1\" obsolete=\"true\">"
+			+ "<disk name=\"sda\"/>" + "</instance>" + "</environment>";
+
+	public static void main(String arg[]) throws Exception {
+		File dir = Files.createTempDirectory("journal-test").toFile();
+		try {
+			String expected = replayAfterKill(dir);
+			replayTornRecord(dir, expected);
+			ignoreMismatchingBase(dir);
+			System.out.println("DUNIDDocJournalTest: OK");
+		} finally {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	/**
+	 * @return the expected content of the replayed {@link Document}.
+	 */
+	private static String replayAfterKill(File dir) throws Exception {
+		File ed = new File(dir, "ed.xml");
+		Files.write(ed.toPath(), ED.getBytes(UTF8));
+
+		DUNIDDoc doc = new DUNIDDoc();
+		doc.load(ed.getPath());
+		check(doc.enableJournal(new ReentrantReadWriteLock().readLock()),
+				"the journal should be enabled");
+		// the journal applies to the content stored when it is enabled
+		String stored = read(ed);
+		Document d = doc.getDocument();
+
+		Element web1 = (Element) doc.evaluateAsNode("/environment/instance[1]");
+		Element web2 = (Element) doc.evaluateAsNode("/environment/instance[2]");
+		// attribute records
+		web1.setAttribute("ip", "10.0.0.1");
+		web1.setAttribute("region", "us-east-1");
+		web2.removeAttribute("obsolete");
+		// text leaf record
+		doc.evaluateAsNode("/environment/instance[1]/state").getFirstChild()
+				.setNodeValue("running");
+		// element insertion records : the positions of the following
+		// siblings change
+		Element disk = d.createElement("disk");
+		disk.setAttribute("name", "sd0");
+		web1.insertBefore(disk, web1.getFirstChild());
+		Element nic = d.createElement("network-device");
+		nic.setAttribute("name", "eth0");
+		nic.setTextContent("192.168.0.1");
+		web2.appendChild(nic);
+		// element removal records : 'sdb' is 'disk[3]' after the insertion
+		web1.removeChild((Element) doc
+				.evaluateAsNode("/environment/instance[1]/disk[@name='sdb']"));
+		web2.removeChild((Element) doc
+				.evaluateAsNode("/environment/instance[2]/disk[@name='sda']"));
+		Element web3 = d.createElement("instance");
+		web3.setAttribute("name", "web3");
+		d.getDocumentElement().appendChild(web3);
+		d.getDocumentElement().removeChild(web2);
+
+		String expected = DocHelper.serialize(d.getDocumentElement(),
+				DUNID_ATTRS);
+		waitForJournal(DUNIDDocJournal.getJournalFile(ed.getPath()));
+
+		// the process is killed : the document is never stored
+		check(stored.equals(read(ed)), "the resources should not be stored");
+		check(expected.equals(load(ed)), "the journal should be replayed");
+		return expected;
+	}
+
+	private static void replayTornRecord(File dir, String expected)
+			throws Exception {
+		File ed = new File(dir, "ed.xml");
+		File journal = DUNIDDocJournal.getJournalFile(ed.getPath());
+		// the process is killed while writing the last record
+		Files.write(journal.toPath(), "A %2Fenvironment%5B1".getBytes(UTF8),
+				StandardOpenOption.APPEND);
+		check(expected.equals(load(ed)),
+				"the torn record should be ignored by the replay");
+	}
+
+	private static void ignoreMismatchingBase(File dir) throws Exception {
+		File ed = new File(dir, "ed.xml");
+		// the resources are modified by hand : the CRC doesn't match anymore
+		String content = read(ed).replace("web1", "WEB1");
+		Files.write(ed.toPath(), content.getBytes(UTF8));
+		check(!load(ed).contains("10.0.0.1"),
+				"a journal whose CRC doesn't match should be ignored");
+		// same CRC prefix, but not the same size
+		Files.write(ed.toPath(), (content + "\n").getBytes(UTF8));
+		check(!load(ed).contains("10.0.0.1"),
+				"a journal whose size doesn't match should be ignored");
+	}
+
+	private static String load(File ed) throws Exception {
+		DUNIDDoc doc = new DUNIDDoc();
+		doc.load(ed.getPath());
+		return DocHelper.serialize(doc.getDocument().getDocumentElement(),
+				DUNID_ATTRS);
+	}
+
+	private static String read(File f) throws Exception {
+		return new String(Files.readAllBytes(f.toPath()), UTF8);
+	}
+
+	/**
+	 * <p>
+	 * Records are written by a background thread : wait until the journal
+	 * stops growing.
+	 * </p>
+	 */
+	private static void waitForJournal(File journal) throws Exception {
+		long size = -1;
+		for (int i = 0; i < 100; i++) {
+			Thread.sleep(100);
+			if (journal.length() == size && Files.readAllLines(
+					journal.toPath(), UTF8).size() > 1) {
+				return;
+			}
+			size = journal.length();
+		}
+		throw new AssertionError("the journal '" + journal
+				+ "' should be written");
+	}
+
+	private static void check(boolean condition, String msg) {
+		if (!condition) {
+			throw new AssertionError(msg);
+		}
+	}
+
+}
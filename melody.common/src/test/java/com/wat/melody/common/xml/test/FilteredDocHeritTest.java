@@ -0,0 +1,166 @@
+package com.wat.melody.common.xml.test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import com.wat.melody.common.xml.DUNIDDoc;
+import com.wat.melody.common.xml.DocHelper;
+import com.wat.melody.common.xml.FilteredDoc;
+import com.wat.melody.common.xml.exception.IllegalDocException;
+
+/**
+ * <p>
+ * Merges the herited content of a few Resources Descriptors, and compares the
+ * result with the output of the former implementation of
+ * {@link FilteredDoc#mergeHeritedContent()}, which re-evaluated all herit
+ * attributes after each merge.
+ * </p>
+ * 
+ * <p>
+ * Covers chained herits (declared before or after the herited element),
+ * nested herits (herit attributes inside herited content),
+ * <tt>herit-policy="replace"</tt>, and circular references.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class FilteredDocHeritTest {
+
+	private static final Set<String> DUNID_ATTRS = Collections
+			.singleton(DUNIDDoc.DUNID_ATTR);
+
+	public static void main(String arg[]) throws Exception {
+		// chained herits, declared after the herited element
+		check("<resources>"
+				+ "<m name='c' x='1'><d name='d1' s='1'/><d name='d2' s='2'/>"
+				+ "<k/></m>"
+				+ "<m name='b' herit=\"./m[@name='c']\" y='2'>"
+				+ "<d name='d1' s='10'/>"
+				+ "<d name='d3' herit-policy='replace' s='3'/></m>"
+				+ "<i name='a' herit=\"./m[@name='b']\" z='3'>"
+				+ "<d name='d2' herit-policy='replace' q='9'/>"
+				+ "<d name='d1' t='t'/>text</i>" + "</resources>",
+				"<resources>"
+						+ "<m name=\"c\" x=\"1\"><d name=\"d1\" s=\"1\"/>"
+						+ "<d name=\"d2\" s=\"2\"/><k/></m>"
+						+ "<m name=\"b\" x=\"1\" y=\"2\"><d name=\"d1\" s=\"10\"/>"
+						+ "<d name=\"d2\" s=\"2\"/><k/>"
+						+ "<d herit-policy=\"replace\" name=\"d3\" s=\"3\"/></m>"
+						+ "<i name=\"a\" x=\"1\" y=\"2\" z=\"3\">"
+						+ "<d name=\"d1\" s=\"10\" t=\"t\"/><d name=\"d2\" q=\"9\"/>"
+						+ "<k/><d herit-policy=\"replace\" name=\"d3\" s=\"3\"/>"
+						+ "text</i>" + "</resources>");
+
+		// chained herits, declared before the herited element
+		check("<resources>"
+				+ "<i name='a' herit=\"./m[@name='b']\" z='3'>"
+				+ "<d name='d2' herit-policy='replace' q='9'/>"
+				+ "<d name='d1' t='t'/></i>"
+				+ "<m name='b' herit=\"./m[@name='c']\" y='2'>"
+				+ "<d name='d1' s='10'/></m>"
+				+ "<m name='c' x='1'><d name='d1' s='1'/><d name='d2' s='2'/>"
+				+ "</m>" + "</resources>",
+				"<resources>"
+						+ "<i name=\"a\" x=\"1\" y=\"2\" z=\"3\">"
+						+ "<d name=\"d1\" s=\"10\" t=\"t\"/><d name=\"d2\" q=\"9\"/>"
+						+ "</i>"
+						+ "<m name=\"b\" x=\"1\" y=\"2\"><d name=\"d1\" s=\"10\"/>"
+						+ "<d name=\"d2\" s=\"2\"/></m>"
+						+ "<m name=\"c\" x=\"1\"><d name=\"d1\" s=\"1\"/>"
+						+ "<d name=\"d2\" s=\"2\"/></m>" + "</resources>");
+
+		// nested herits, in herited and in heriting content
+		check("<resources>"
+				+ "<base name='base'>"
+				+ "<nic name='eth0' herit=\"./nics/nic[@name='std']\"/>"
+				+ "<disk name='root' size='8'/></base>"
+				+ "<nics><nic name='std' mtu='1500'><opt name='o1'/></nic>"
+				+ "</nics>"
+				+ "<vm name='v1' herit=\"./base[@name='base']\">"
+				+ "<nic name='eth0' mtu='9000'/>"
+				+ "<disk name='data' size='100'/></vm>"
+				+ "<vm name='v2' herit=\"./vm[@name='v1']\">"
+				+ "<disk name='root' herit-policy='replace' size='20'/></vm>"
+				+ "<grp herit=\"./base[@name='base']\">"
+				+ "<vm name='v3' herit=\"./vm[@name='v2']\" a='b'/></grp>"
+				+ "</resources>",
+				"<resources>"
+						+ "<base name=\"base\"><nic mtu=\"1500\" name=\"eth0\">"
+						+ "<opt name=\"o1\"/></nic><disk name=\"root\" size=\"8\"/>"
+						+ "</base>"
+						+ "<nics><nic mtu=\"1500\" name=\"std\"><opt name=\"o1\"/>"
+						+ "</nic></nics>"
+						+ "<vm name=\"v1\"><nic mtu=\"9000\" name=\"eth0\">"
+						+ "<opt name=\"o1\"/></nic><disk name=\"root\" size=\"8\"/>"
+						+ "<disk name=\"data\" size=\"100\"/></vm>"
+						+ "<vm name=\"v2\"><nic mtu=\"9000\" name=\"eth0\">"
+						+ "<opt name=\"o1\"/></nic><disk name=\"root\" size=\"20\"/>"
+						+ "<disk name=\"data\" size=\"100\"/></vm>"
+						+ "<grp name=\"base\"><nic mtu=\"1500\" name=\"eth0\">"
+						+ "<opt name=\"o1\"/></nic><disk name=\"root\" size=\"8\"/>"
+						+ "<vm a=\"b\" name=\"v3\"><nic mtu=\"9000\" name=\"eth0\">"
+						+ "<opt name=\"o1\"/></nic><disk name=\"root\" size=\"20\"/>"
+						+ "<disk name=\"data\" size=\"100\"/></vm></grp>"
+						+ "</resources>");
+
+		// herit from a child element
+		check("<resources>"
+				+ "<a name='a' herit=\"./a/b[@name='in']\" k='1'>"
+				+ "<b name='in' v='2'><c name='c'/></b></a>" + "</resources>",
+				"<resources>" + "<a k=\"1\" name=\"a\" v=\"2\"><c name=\"c\"/>"
+						+ "<b name=\"in\" v=\"2\"><c name=\"c\"/></b></a>"
+						+ "</resources>");
+
+		// circular reference
+		checkCircularRef("<resources>"
+				+ "<a name='a' herit=\"./b[@name='b']\"/>"
+				+ "<b name='b' herit=\"./c[@name='c']\"/>"
+				+ "<c name='c' herit=\"./a[@name='a']\"/>" + "</resources>", 3);
+		checkCircularRef("<resources>"
+				+ "<z name='z' herit=\"./a[@name='a']\"/>"
+				+ "<a name='a' herit=\"./a[@name='a']\"/>" + "</resources>", 2);
+
+		System.out.println("FilteredDocHeritTest: OK");
+	}
+
+	private static FilteredDoc load(String xml) throws Exception {
+		DUNIDDoc doc = new DUNIDDoc();
+		doc.loadFromXML(xml);
+		FilteredDoc fd = new FilteredDoc();
+		fd.load(doc);
+		return fd;
+	}
+
+	private static void check(String xml, String expected) throws Exception {
+		FilteredDoc fd = load(xml);
+		fd.mergeHeritedContent();
+		String merged = DocHelper.serialize(fd.getDocument()
+				.getDocumentElement(), DUNID_ATTRS);
+		if (!merged.equals(expected)) {
+			throw new AssertionError("Merged content differs.\nexpected: "
+					+ expected + "\nmerged:   " + merged);
+		}
+	}
+
+	private static void checkCircularRef(String xml, int stackSize)
+			throws Exception {
+		FilteredDoc fd = load(xml);
+		try {
+			fd.mergeHeritedContent();
+		} catch (IllegalDocException Ex) {
+			String msg = Ex.getUserFriendlyStackTrace();
+			if (!msg.contains("detects a circular reference")) {
+				throw new AssertionError("Unexpected error : " + msg);
+			}
+			int count = msg.split("has parent XML Element", -1).length - 1;
+			if (count != stackSize) {
+				throw new AssertionError("The circular reference stack should "
+						+ "contain " + stackSize + " Element(s) : " + msg);
+			}
+			return;
+		}
+		throw new AssertionError("A circular reference should be detected.");
+	}
+
+}
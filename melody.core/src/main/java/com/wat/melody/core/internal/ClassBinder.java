@@ -0,0 +1,238 @@
+package com.wat.melody.core.internal;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Everything the {@link TaskFactory} needs to know about a class in order to
+ * bind an {@link org.w3c.dom.Element} to an instance of this class : the
+ * setters of its attributes, the setter of its text content, the add and
+ * create methods of its nested elements, and the names of its mandatory
+ * attributes and nested elements.
+ * </p>
+ * 
+ * <p>
+ * A {@link ClassBinder} is built once per class by the
+ * {@link TaskFactoryCache}, and is immutable once built, so that it can be
+ * shared by all {@link TaskFactory} and used by multiple threads
+ * simultaneously. Methods are held as {@link MethodHandle}, so that no
+ * reflection lookup is performed when instantiating a task.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+final class ClassBinder {
+
+	private Map<String, Binding> _setters;
+	private Binding _text;
+	private boolean _textMandatory;
+	private Map<String, Binding> _adders;
+	private Map<String, Binding> _creators;
+	private List<String> _mandatoryAttributes;
+	private List<String> _mandatoryNestedElements;
+	private boolean _unexpectedAttributesAccepted;
+	private boolean _taskContainer;
+
+	ClassBinder() {
+		_setters = new HashMap<String, Binding>();
+		_adders = new HashMap<String, Binding>();
+		_creators = new HashMap<String, Binding>();
+		_mandatoryAttributes = new ArrayList<String>();
+		_mandatoryNestedElements = new ArrayList<String>();
+	}
+
+	/**
+	 * @param attrName
+	 *            is an attribute name (no case match).
+	 * 
+	 * @return the binding of the setter of the given attribute, or
+	 *         <tt>null</tt> if the class doesn't support such attribute.
+	 */
+	public Binding getSetter(String attrName) {
+		return _setters.get(attrName.toUpperCase());
+	}
+
+	/**
+	 * @return the binding of the setter of the text content, or <tt>null</tt>
+	 *         if the class doesn't support text content.
+	 */
+	public Binding getText() {
+		return _text;
+	}
+
+	public boolean isTextMandatory() {
+		return _textMandatory;
+	}
+
+	/**
+	 * @param elmtName
+	 *            is a nested element name (no case match).
+	 * 
+	 * @return the binding of the add method of the given nested element, or
+	 *         <tt>null</tt> if the class doesn't have such add method.
+	 */
+	public Binding getAdder(String elmtName) {
+		return _adders.get(elmtName.toUpperCase());
+	}
+
+	/**
+	 * @param elmtName
+	 *            is a nested element name (no case match).
+	 * 
+	 * @return the binding of the create method of the given nested element, or
+	 *         <tt>null</tt> if the class doesn't have such create method.
+	 */
+	public Binding getCreator(String elmtName) {
+		return _creators.get(elmtName.toUpperCase());
+	}
+
+	/**
+	 * @return the names of the mandatory attributes, in the order of the
+	 *         class's methods.
+	 */
+	public List<String> getMandatoryAttributes() {
+		return _mandatoryAttributes;
+	}
+
+	/**
+	 * @return the names of the mandatory nested elements, in the order of the
+	 *         class's methods.
+	 */
+	public List<String> getMandatoryNestedElements() {
+		return _mandatoryNestedElements;
+	}
+
+	/**
+	 * @return <tt>true</tt> if the class implements
+	 *         {@link com.wat.melody.api.IUnexpectedAttributes}.
+	 */
+	public boolean isUnexpectedAttributesAccepted() {
+		return _unexpectedAttributesAccepted;
+	}
+
+	/**
+	 * @return <tt>true</tt> if the class implements
+	 *         {@link com.wat.melody.api.ITaskContainer}.
+	 */
+	public boolean isTaskContainer() {
+		return _taskContainer;
+	}
+
+	boolean containsSetter(String key) {
+		return _setters.containsKey(key);
+	}
+
+	Binding putSetter(String key, Binding b) {
+		return _setters.put(key, b);
+	}
+
+	void setText(Binding b, boolean mandatory) {
+		_text = b;
+		_textMandatory = mandatory;
+	}
+
+	Map<String, Binding> getAdders() {
+		return _adders;
+	}
+
+	Map<String, Binding> getCreators() {
+		return _creators;
+	}
+
+	void setUnexpectedAttributesAccepted(boolean accepted) {
+		_unexpectedAttributesAccepted = accepted;
+	}
+
+	void setTaskContainer(boolean container) {
+		_taskContainer = container;
+	}
+
+	/**
+	 * <p>
+	 * Make the lists of mandatory attributes and nested elements unmodifiable.
+	 * Must be called once the {@link ClassBinder} is fully built.
+	 * </p>
+	 */
+	void freeze() {
+		_mandatoryAttributes = Collections
+				.unmodifiableList(_mandatoryAttributes);
+		_mandatoryNestedElements = Collections
+				.unmodifiableList(_mandatoryNestedElements);
+	}
+
+	/**
+	 * <p>
+	 * A method of the bound class, and the way to create its argument.
+	 * </p>
+	 */
+	static final class Binding {
+
+		private Method _method;
+		private MethodHandle _handle;
+		private Class<?> _paramType;
+		private MethodHandle _paramConstructor;
+		private boolean _paramFileBased;
+
+		Binding(Method method, MethodHandle handle, Class<?> paramType,
+				MethodHandle paramConstructor, boolean paramFileBased) {
+			_method = method;
+			_handle = handle;
+			_paramType = paramType;
+			_paramConstructor = paramConstructor;
+			_paramFileBased = paramFileBased;
+		}
+
+		/**
+		 * @return the bound method, used to describe errors.
+		 */
+		public Method getMethod() {
+			return _method;
+		}
+
+		/**
+		 * @return the bound method. For a setter and an add method, its type
+		 *         is <tt>(Object, Object)void</tt>. For a create method, its
+		 *         type is <tt>(Object)Object</tt>.
+		 */
+		public MethodHandle getHandle() {
+			return _handle;
+		}
+
+		/**
+		 * @return the type of the argument of the bound method, or
+		 *         <tt>null</tt> for a create method.
+		 */
+		public Class<?> getParamType() {
+			return _paramType;
+		}
+
+		/**
+		 * @return the constructor of the argument of the bound method. For a
+		 *         setter, its type is <tt>(String)Object</tt>, and it is
+		 *         <tt>null</tt> if the argument is a primitive, an enumeration
+		 *         or if it doesn't have a public 1-string-argument
+		 *         constructor. For an add method, its type is
+		 *         <tt>()Object</tt>. For a create method, it is <tt>null</tt>.
+		 */
+		public MethodHandle getParamConstructor() {
+			return _paramConstructor;
+		}
+
+		/**
+		 * @return <tt>true</tt> if the argument of the bound method implements
+		 *         {@link com.wat.melody.common.files.IFileBased}.
+		 */
+		public boolean isParamFileBased() {
+			return _paramFileBased;
+		}
+
+	}
+
+}
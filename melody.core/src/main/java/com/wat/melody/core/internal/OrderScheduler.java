@@ -0,0 +1,378 @@
+package com.wat.melody.core.internal;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.w3c.dom.Element;
+
+import com.wat.melody.api.ITaskContext;
+import com.wat.melody.api.Melody;
+import com.wat.melody.api.exception.TaskException;
+import com.wat.melody.common.ex.ConsolidatedException;
+import com.wat.melody.common.ex.WrapperInterruptedException;
+import com.wat.melody.common.order.OrderName;
+import com.wat.melody.common.threads.ConcurrencyGovernor;
+
+/**
+ * <p>
+ * Process orders according to the dependencies declared between them : each
+ * order is started as soon as all the orders it depends on finished
+ * successfully, so that independent orders run in parallel.
+ * </p>
+ * 
+ * <p>
+ * The first order inherits the slot of the current thread, which only waits.
+ * Each additional order must acquire a permit in the processing's
+ * {@link ConcurrencyGovernor} (see
+ * {@link com.wat.melody.api.IProcessorManager#getConcurrencyGovernor()}), so
+ * that orders, nested foreach and call can't run more than
+ * {@link com.wat.melody.api.IProcessorManager#getMaxSimultaneousStep()} steps
+ * simultaneously. Orders run in the processing's pool of threads (see
+ * {@link com.wat.melody.api.IProcessorManager#getTaskExecutor()}).
+ * </p>
+ * 
+ * <p>
+ * As soon as an order fails, no more order is started : the running orders
+ * are waited, and the orders which depend on the failed order are never
+ * started.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class OrderScheduler {
+
+	private static final Object PERMIT_RELEASED = new Object();
+
+	/**
+	 * <p>
+	 * Search for a cycle in the given dependencies.
+	 * </p>
+	 * 
+	 * @param dependencies
+	 *            associates each order to the orders it depends on.
+	 * 
+	 * @return the orders which form a cycle, the first order being repeated at
+	 *         the end, or <tt>null</tt> if the given dependencies are acyclic.
+	 */
+	public static List<OrderName> findCycle(
+			Map<OrderName, ? extends Collection<OrderName>> dependencies) {
+		Set<OrderName> done = new HashSet<OrderName>();
+		Set<OrderName> path = new LinkedHashSet<OrderName>();
+		for (OrderName order : dependencies.keySet()) {
+			List<OrderName> cycle = findCycle(order, dependencies, path, done);
+			if (cycle != null) {
+				return cycle;
+			}
+		}
+		return null;
+	}
+
+	private static List<OrderName> findCycle(OrderName order,
+			Map<OrderName, ? extends Collection<OrderName>> dependencies,
+			Set<OrderName> path, Set<OrderName> done) {
+		if (done.contains(order)) {
+			return null;
+		}
+		if (path.contains(order)) {
+			List<OrderName> cycle = new ArrayList<OrderName>();
+			boolean inCycle = false;
+			for (OrderName o : path) {
+				inCycle |= o.equals(order);
+				if (inCycle) {
+					cycle.add(o);
+				}
+			}
+			cycle.add(order);
+			return cycle;
+		}
+		Collection<OrderName> deps = dependencies.get(order);
+		if (deps != null) {
+			path.add(order);
+			for (OrderName dep : deps) {
+				List<OrderName> cycle = findCycle(dep, dependencies, path,
+						done);
+				if (cycle != null) {
+					return cycle;
+				}
+			}
+			path.remove(order);
+		}
+		done.add(order);
+		return null;
+	}
+
+	private Map<OrderName, Element> _orders;
+	// the dependencies of each order, which are not done yet
+	private Map<OrderName, Set<OrderName>> _pendingDependencies;
+	// the orders which depend on each order
+	private Map<OrderName, List<OrderName>> _dependents;
+	private BlockingQueue<Object> _doneOrders;
+	private ConsolidatedException _exceptions;
+
+	/**
+	 * @param orders
+	 *            associates each order to process to its {@link Element}, in
+	 *            the order they must be started when they are ready at the
+	 *            same time.
+	 * @param dependencies
+	 *            associates each order to the orders it depends on. The
+	 *            dependencies which are not in the orders to process are
+	 *            ignored. Must be acyclic (see {@link #findCycle(Map)}).
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if one of the given arguments is <tt>null</tt>.
+	 */
+	public OrderScheduler(Map<OrderName, Element> orders,
+			Map<OrderName, ? extends Collection<OrderName>> dependencies) {
+		if (orders == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Map.class.getCanonicalName() + "<"
+					+ OrderName.class.getCanonicalName() + ", "
+					+ Element.class.getCanonicalName() + ">.");
+		}
+		if (dependencies == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Map.class.getCanonicalName() + "<"
+					+ OrderName.class.getCanonicalName() + ", "
+					+ Collection.class.getCanonicalName() + "<"
+					+ OrderName.class.getCanonicalName() + ">>.");
+		}
+		_orders = new LinkedHashMap<OrderName, Element>(orders);
+		_pendingDependencies = new HashMap<OrderName, Set<OrderName>>();
+		_dependents = new HashMap<OrderName, List<OrderName>>();
+		for (OrderName order : _orders.keySet()) {
+			Set<OrderName> pending = new HashSet<OrderName>();
+			Collection<OrderName> deps = dependencies.get(order);
+			if (deps != null) {
+				for (OrderName dep : deps) {
+					if (_orders.containsKey(dep) && pending.add(dep)) {
+						getDependents(dep).add(order);
+					}
+				}
+			}
+			_pendingDependencies.put(order, pending);
+		}
+		_doneOrders = new LinkedBlockingQueue<Object>();
+		_exceptions = new ConsolidatedException();
+	}
+
+	private List<OrderName> getDependents(OrderName order) {
+		List<OrderName> dependents = _dependents.get(order);
+		if (dependents == null) {
+			dependents = new ArrayList<OrderName>();
+			_dependents.put(order, dependents);
+		}
+		return dependents;
+	}
+
+	/**
+	 * <p>
+	 * Process all orders, in the current {@link ITaskContext}.
+	 * </p>
+	 * 
+	 * @throws TaskException
+	 *             if an order failed.
+	 * @throws InterruptedException
+	 *             if the processing was interrupted.
+	 */
+	public void process() throws TaskException, InterruptedException {
+		ITaskContext context = Melody.getContext();
+		// all orders share the same branch context, so that they belong to
+		// the same scope
+		ITaskContext branchContext = context.createBranchContext();
+		ConcurrencyGovernor governor = context.getProcessorManager()
+				.getConcurrencyGovernor();
+		Runnable permitReleased = new Runnable() {
+
+			@Override
+			public void run() {
+				_doneOrders.add(PERMIT_RELEASED);
+			}
+
+		};
+		String threadsName = Thread.currentThread().getName();
+		Queue<OrderName> ready = new ArrayDeque<OrderName>();
+		for (OrderName order : _orders.keySet()) {
+			if (_pendingDependencies.get(order).isEmpty()) {
+				ready.add(order);
+			}
+		}
+		int running = 0;
+		// true when a running order uses the slot of the current thread
+		boolean slotInherited = false;
+		// true when no more order must be started
+		boolean stopped = false;
+		try {
+			while (running > 0 || (!stopped && !ready.isEmpty())) {
+				if (!stopped) {
+					try {
+						context.handleProcessorStateUpdates();
+					} catch (InterruptedException Ex) {
+						_exceptions.addCause(Ex);
+						stopped = true;
+					}
+				}
+				// Start ready orders
+				while (!stopped && !ready.isEmpty()) {
+					boolean holdsPermit = false;
+					if (slotInherited) {
+						if (!governor.tryAcquire(permitReleased)) {
+							break;
+						}
+						holdsPermit = true;
+					}
+					OrderName order = ready.poll();
+					try {
+						new OrderRun(order, holdsPermit, threadsName + ">"
+								+ order).start(branchContext, governor);
+					} catch (RuntimeException Ex) {
+						if (holdsPermit) {
+							governor.release();
+						}
+						_exceptions.addCause(Ex);
+						stopped = true;
+						break;
+					}
+					slotInherited |= !holdsPermit;
+					running++;
+				}
+				// Wait for at least one order to end or one permit to be
+				// released
+				if (running > 0) {
+					Object o;
+					try {
+						o = _doneOrders.take();
+					} catch (InterruptedException Ex) {
+						// If the processing was stopped, wait for each order
+						// to end
+						_exceptions.addCause(Ex);
+						stopped = true;
+						continue;
+					}
+					do {
+						if (o == PERMIT_RELEASED) {
+							continue;
+						}
+						OrderRun run = (OrderRun) o;
+						running--;
+						if (!run.holdsPermit()) {
+							slotInherited = false;
+						}
+						if (run.getFinalError() != null) {
+							_exceptions.addCause(run.getFinalError());
+							stopped = true;
+							continue;
+						}
+						for (OrderName dependent : getDependents(run
+								.getOrder())) {
+							Set<OrderName> pending = _pendingDependencies
+									.get(dependent);
+							pending.remove(run.getOrder());
+							if (pending.isEmpty()) {
+								ready.add(dependent);
+							}
+						}
+					} while ((o = _doneOrders.poll()) != null);
+				}
+			}
+		} finally {
+			governor.cancel(permitReleased);
+		}
+		quit();
+	}
+
+	/**
+	 * <p>
+	 * Inspect the errors which occurred during the processing and raise the
+	 * appropriate exception.
+	 * </p>
+	 */
+	private void quit() throws TaskException, InterruptedException {
+		boolean interrupted = false;
+		for (Throwable ex : _exceptions.getCauses()) {
+			if (ex instanceof InterruptedException
+					|| ex instanceof InterruptedIOException) {
+				interrupted = true;
+			} else {
+				// MelodyException or unmanaged error
+				throw new TaskException(_exceptions);
+			}
+		}
+		if (interrupted) {
+			throw new WrapperInterruptedException(_exceptions);
+		}
+	}
+
+	/**
+	 * <p>
+	 * The processing of one order, in a thread of the processing's pool of
+	 * threads.
+	 * </p>
+	 */
+	private class OrderRun implements Runnable {
+
+		private OrderName _order;
+		private boolean _holdsPermit;
+		private String _name;
+		private ConcurrencyGovernor _governor;
+		private volatile Throwable _finalError;
+
+		public OrderRun(OrderName order, boolean holdsPermit, String name) {
+			_order = order;
+			_holdsPermit = holdsPermit;
+			_name = name;
+		}
+
+		public OrderName getOrder() {
+			return _order;
+		}
+
+		public boolean holdsPermit() {
+			return _holdsPermit;
+		}
+
+		public Throwable getFinalError() {
+			return _finalError;
+		}
+
+		public void start(ITaskContext branchContext,
+				ConcurrencyGovernor governor) {
+			_governor = governor;
+			branchContext.getProcessorManager().getTaskExecutor()
+					.execute(Melody.propagateContext(branchContext, this));
+		}
+
+		@Override
+		public void run() {
+			Thread t = Thread.currentThread();
+			String name = t.getName();
+			t.setName(_name);
+			try {
+				Melody.getContext().processTask(_orders.get(_order));
+			} catch (Throwable Ex) {
+				_finalError = Ex;
+			} finally {
+				t.setName(name);
+				if (_holdsPermit) {
+					_governor.release();
+				}
+				_doneOrders.add(this);
+			}
+		}
+
+	}
+
+}
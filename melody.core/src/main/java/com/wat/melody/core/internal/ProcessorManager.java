@@ -1,8 +1,18 @@
 package com.wat.melody.core.internal;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EmptyStackException;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.xpath.XPath;
 
@@ -18,10 +28,14 @@ import com.wat.melody.api.IRegisteredTasks;
 import com.wat.melody.api.IShareProperties;
 import com.wat.melody.api.ITask;
 import com.wat.melody.api.ITaskBuilder;
+import com.wat.melody.api.ITaskContext;
 import com.wat.melody.api.ITopLevelTask;
 import com.wat.melody.api.Melody;
 import com.wat.melody.api.MelodyThread;
 import com.wat.melody.api.Messages;
+import com.wat.melody.api.TaskScope;
+import com.wat.melody.api.event.AsyncProcessorListener;
+import com.wat.melody.api.event.BackPressurePolicy;
 import com.wat.melody.api.event.ProcessingFinishedEvent;
 import com.wat.melody.api.event.ProcessingStartedEvent;
 import com.wat.melody.api.event.RequestProcessingToPauseEvent;
@@ -41,17 +55,24 @@ import com.wat.melody.common.ex.MelodyException;
 import com.wat.melody.common.ex.WrapperInterruptedException;
 import com.wat.melody.common.files.FS;
 import com.wat.melody.common.files.exception.IllegalDirectoryException;
+import com.wat.melody.common.files.exception.IllegalFileException;
 import com.wat.melody.common.messages.Msg;
 import com.wat.melody.common.properties.PropertySet;
 import com.wat.melody.common.reflection.ReflectionHelper;
+import com.wat.melody.common.threads.ConcurrencyGovernor;
 import com.wat.melody.common.timeout.GenericTimeout;
 import com.wat.melody.common.timeout.exception.IllegalTimeoutException;
+import com.wat.melody.common.xml.DocHelper;
 import com.wat.melody.common.xml.exception.SimpleNodeRelatedException;
 import com.wat.melody.common.xpath.XPathExpander;
 import com.wat.melody.common.xpath.XPathFunctionResolver;
 import com.wat.melody.common.xpath.XPathNamespaceContextResolver;
 import com.wat.melody.common.xpath.XPathResolver;
+import com.wat.melody.core.internal.checkpoint.CheckpointJournal;
+import com.wat.melody.core.internal.report.ExecutionRecord;
+import com.wat.melody.core.internal.report.ProcessingReport;
 import com.wat.melody.core.nativeplugin.order.Order;
+import com.wat.melody.core.nativeplugin.synchronize.LockManager;
 
 /**
  * <p>
@@ -97,13 +118,27 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 	private static final GenericTimeout DEFAULT_KILL_TIMEOUT = createGenericTimeout(
 			30000);
 
+	/**
+	 * Seconds an idle thread of the pool of threads of the processing waits for
+	 * a new step before dying.
+	 */
+	private static final long TASK_WORKER_KEEP_ALIVE = 60;
+
 	private TaskFactory _taskFactory;
 	private String _workingFolderPath;
 	private int _maxSimultaneousStep;
+	private ConcurrencyGovernor _concurrencyGovernor;
 	private GenericTimeout _hardKillTimeout;
 	private boolean _batchMode;
 	private boolean _preserveTemporayFilesMode;
 	private boolean _runDryMode;
+	private String _taskReportPath;
+	private String _checkpointJournalPath;
+	private boolean _resumeMode;
+	private boolean _resourcesJournalMode;
+	private boolean _sharedPlugInConfigurationsMode;
+	// null when listeners are called synchronously
+	private BackPressurePolicy _listenersBackPressurePolicy;
 	private SequenceDescriptor _sequenceDescriptor;
 	private ResourcesDescriptor _resourcesDescriptor;
 
@@ -115,9 +150,25 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 	private boolean _pauseRequested;
 	private ThreadGroup _threadGroup;
 	private MelodyThread _thread;
+	// null until a step is run in parallel
+	private ThreadPoolExecutor _taskExecutor;
 	private Throwable _finalError;
 	private List<IProcessorListener> _listeners;
-	private IProcessorManager _parentProcessorManager;
+	private List<Runnable> _processingDoneCallbacks;
+	private ProcessorManager _parentProcessorManager;
+	private Object _callScope;
+	private Object _globalScope;
+	// the running sub-ProcessorManagers, which are paused and resumed with
+	// this object
+	private List<ProcessorManager> _runningSubProcessorManagers;
+	// null when the execution report is disabled
+	private ProcessingReport _processingReport;
+	// null when the checkpoint journal is disabled
+	private CheckpointJournal _checkpointJournal;
+	// the scope of the units of work recorded in the checkpoint journal
+	private String _checkpointScope;
+	// the task which created this sub-ProcessorManager
+	private Element _caller;
 
 	public ProcessorManager() {
 		// Mandatory Configuration Directives
@@ -133,11 +184,18 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 					+ "a bug have been introduced. ", Ex);
 		}
 		setHardKillTimeout(DEFAULT_KILL_TIMEOUT);
+		setConcurrencyGovernor(new ConcurrencyGovernor(0));
 
 		// Optional Configuration Directives
 		setBatchMode(false);
 		setPreserveTemporaryFilesMode(false);
 		setRunDryMode(false);
+		_taskReportPath = null;
+		_checkpointJournalPath = null;
+		setResumeMode(false);
+		setResourcesJournalMode(false);
+		setSharedPlugInConfigurationsMode(false);
+		setListenersBackPressurePolicy(null);
 		setTaskFactory(new TaskFactory());
 		setSequenceDescriptor(new SequenceDescriptor());
 		setResourcesDescriptor(new ResourcesDescriptor());
@@ -151,8 +209,14 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 		setThreadGroup(null);
 		setThread(null);
 		setFinalError(null);
-		setListeners(new ArrayList<IProcessorListener>());
+		// shared with all sub-ProcessorManagers, and iterated by all threads
+		setListeners(new CopyOnWriteArrayList<IProcessorListener>());
+		_processingDoneCallbacks = new ArrayList<Runnable>();
 		setParentProcessorManager(null);
+		_globalScope = new Object();
+		_callScope = _globalScope;
+		_runningSubProcessorManagers = new ArrayList<ProcessorManager>();
+		_checkpointScope = "";
 	}
 
 	private void initWorkingFolderPath() {
@@ -174,11 +238,11 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 		return previous;
 	}
 
-	private IProcessorManager getParentProcessorManager() {
+	private ProcessorManager getParentProcessorManager() {
 		return _parentProcessorManager;
 	}
 
-	private void setParentProcessorManager(IProcessorManager ppm) {
+	private void setParentProcessorManager(ProcessorManager ppm) {
 		// can be null, if it is the master ProcessorManager
 		_parentProcessorManager = ppm;
 	}
@@ -220,6 +284,60 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 		return previous;
 	}
 
+	@Override
+	public ConcurrencyGovernor getConcurrencyGovernor() {
+		return _concurrencyGovernor;
+	}
+
+	private ConcurrencyGovernor setConcurrencyGovernor(ConcurrencyGovernor cg) {
+		if (cg == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid "
+					+ ConcurrencyGovernor.class.getCanonicalName() + ".");
+		}
+		ConcurrencyGovernor previous = getConcurrencyGovernor();
+		_concurrencyGovernor = cg;
+		return previous;
+	}
+
+	@Override
+	public synchronized Executor getTaskExecutor() {
+		if (_taskExecutor == null) {
+			_taskExecutor = createTaskExecutor();
+		}
+		return _taskExecutor;
+	}
+
+	/**
+	 * <p>
+	 * Create the pool of threads of this processing. Its threads are
+	 * {@link CoreThread}s of the {@link ThreadGroup} of this object (or of the
+	 * {@link ThreadGroup} of the current thread, if the processing runs
+	 * synchronously), so that {@link #stopProcessing()} interrupts them. Idle
+	 * threads die after {@link #TASK_WORKER_KEEP_ALIVE} seconds.
+	 * </p>
+	 */
+	private ThreadPoolExecutor createTaskExecutor() {
+		final ThreadGroup tg = getThreadGroup() != null ? getThreadGroup()
+				: Thread.currentThread().getThreadGroup();
+		ThreadFactory tf = new ThreadFactory() {
+
+			private AtomicInteger _count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				CoreThread t = new CoreThread(tg, r, tg.getName() + "-worker-"
+						+ _count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+
+		};
+		return new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+				TASK_WORKER_KEEP_ALIVE, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>(), tf);
+	}
+
 	@Override
 	public GenericTimeout getHardKillTimeout() {
 		return _hardKillTimeout;
@@ -315,6 +433,131 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 		return _runDryMode;
 	}
 
+	@Override
+	public String getTaskReportPath() {
+		return _taskReportPath;
+	}
+
+	@Override
+	public String setTaskReportPath(String v) throws IllegalFileException,
+			IllegalDirectoryException {
+		if (v != null) {
+			v = new File(v).getAbsolutePath();
+			FS.validateFilePath(v);
+		}
+		String previous = getTaskReportPath();
+		_taskReportPath = v;
+		return previous;
+	}
+
+	@Override
+	public String getCheckpointJournalPath() {
+		return _checkpointJournalPath;
+	}
+
+	@Override
+	public String setCheckpointJournalPath(String v)
+			throws IllegalFileException, IllegalDirectoryException {
+		if (v != null) {
+			v = new File(v).getAbsolutePath();
+			FS.validateFilePath(v);
+		}
+		String previous = getCheckpointJournalPath();
+		_checkpointJournalPath = v;
+		return previous;
+	}
+
+	@Override
+	public boolean setResumeMode(boolean v) {
+		boolean previous = _resumeMode;
+		_resumeMode = v;
+		return previous;
+	}
+
+	@Override
+	public boolean enableResumeMode() {
+		boolean previous = _resumeMode;
+		_resumeMode = true;
+		return previous;
+	}
+
+	@Override
+	public boolean disableResumeMode() {
+		boolean previous = _resumeMode;
+		_resumeMode = false;
+		return previous;
+	}
+
+	@Override
+	public boolean isResumeModeEnable() {
+		return _resumeMode;
+	}
+
+	@Override
+	public boolean setResourcesJournalMode(boolean v) {
+		boolean previous = _resourcesJournalMode;
+		_resourcesJournalMode = v;
+		return previous;
+	}
+
+	@Override
+	public boolean enableResourcesJournalMode() {
+		boolean previous = _resourcesJournalMode;
+		_resourcesJournalMode = true;
+		return previous;
+	}
+
+	@Override
+	public boolean disableResourcesJournalMode() {
+		boolean previous = _resourcesJournalMode;
+		_resourcesJournalMode = false;
+		return previous;
+	}
+
+	@Override
+	public boolean isResourcesJournalModeEnable() {
+		return _resourcesJournalMode;
+	}
+
+	@Override
+	public boolean setSharedPlugInConfigurationsMode(boolean v) {
+		boolean previous = _sharedPlugInConfigurationsMode;
+		_sharedPlugInConfigurationsMode = v;
+		return previous;
+	}
+
+	@Override
+	public boolean enableSharedPlugInConfigurationsMode() {
+		boolean previous = _sharedPlugInConfigurationsMode;
+		_sharedPlugInConfigurationsMode = true;
+		return previous;
+	}
+
+	@Override
+	public boolean disableSharedPlugInConfigurationsMode() {
+		boolean previous = _sharedPlugInConfigurationsMode;
+		_sharedPlugInConfigurationsMode = false;
+		return previous;
+	}
+
+	@Override
+	public boolean isSharedPlugInConfigurationsModeEnable() {
+		return _sharedPlugInConfigurationsMode;
+	}
+
+	@Override
+	public BackPressurePolicy setListenersBackPressurePolicy(
+			BackPressurePolicy policy) {
+		BackPressurePolicy previous = _listenersBackPressurePolicy;
+		_listenersBackPressurePolicy = policy;
+		return previous;
+	}
+
+	@Override
+	public BackPressurePolicy getListenersBackPressurePolicy() {
+		return _listenersBackPressurePolicy;
+	}
+
 	@Override
 	public SequenceDescriptor getSequenceDescriptor() {
 		return _sequenceDescriptor;
@@ -421,6 +664,27 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 		return previous;
 	}
 
+	/**
+	 * <p>
+	 * Release the resources held by plug-in configurations which implement
+	 * {@link Closeable} (e.g. pooled connections).
+	 * </p>
+	 */
+	private void closePluginConfigurations() {
+		for (IPlugInConfiguration pc : getPluginConfigurations().values()) {
+			if (!(pc instanceof Closeable)) {
+				continue;
+			}
+			try {
+				((Closeable) pc).close();
+			} catch (IOException | RuntimeException Ex) {
+				log.warn(new MelodyException("Fail to close plug-in "
+						+ "configuration '" + pc.getClass().getCanonicalName()
+						+ "'.", Ex).getUserFriendlyStackTrace());
+			}
+		}
+	}
+
 	private boolean isSubPM() {
 		return getParentProcessorManager() != null;
 	}
@@ -431,9 +695,41 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 						.getSourceFile());
 	}
 
-	public IProcessorManager createSubProcessorManager(PropertySet ps) {
+	/**
+	 * @return the object which identifies the {@link TaskScope#CALL} scope
+	 *         of the tasks this object processes in its own threads.
+	 */
+	Object getCallScope() {
+		return _callScope;
+	}
+
+	/**
+	 * @return the object which identifies the {@link TaskScope#GLOBAL} scope
+	 *         of the tasks this object processes.
+	 */
+	Object getGlobalScope() {
+		return _globalScope;
+	}
+
+	/**
+	 * @param ps
+	 *            is the {@link PropertySet} of the new sub-ProcessorManager.
+	 * @param callScope
+	 *            identifies the {@link TaskScope#CALL} scope of the tasks the
+	 *            new sub-ProcessorManager will process in its own threads.
+	 * @param caller
+	 *            is the {@link Element} of the task which creates the new
+	 *            sub-ProcessorManager.
+	 * 
+	 * @return a new sub-ProcessorManager.
+	 */
+	public IProcessorManager createSubProcessorManager(PropertySet ps,
+			Object callScope, Element caller) {
 		ProcessorManager dest = new ProcessorManager();
 		dest.setParentProcessorManager(this);
+		dest._caller = caller;
+		dest._globalScope = _globalScope;
+		dest._callScope = callScope;
 		dest.setRegisteredTasks(getRegisteredTasks());
 		dest.setXPathResolver(getXPathResolver());
 
@@ -461,7 +757,17 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 					+ "a bug have been introduced.", Ex);
 		}
 
+		dest.setConcurrencyGovernor(getConcurrencyGovernor());
+		dest._taskReportPath = getTaskReportPath();
+		dest._processingReport = _processingReport;
+		dest._checkpointJournalPath = getCheckpointJournalPath();
+		dest._resumeMode = isResumeModeEnable();
+		dest._resourcesJournalMode = isResourcesJournalModeEnable();
+		dest.setSharedPlugInConfigurationsMode(
+				isSharedPlugInConfigurationsModeEnable());
+		dest._checkpointJournal = _checkpointJournal;
 		dest.setListeners(getListeners());
+		dest.setListenersBackPressurePolicy(getListenersBackPressurePolicy());
 		dest.setResourcesDescriptor(getResourcesDescriptor());
 		dest.setPluginConfigurations(getPluginConfigurations());
 		dest.setBatchMode(isBatchModeEnable());
@@ -494,6 +800,16 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 		str.append(isPreserveTemporaryFilesModeEnable());
 		str.append(", run-dry-mode-enabled:");
 		str.append(isRunDryModeEnable());
+		str.append(", task-report-path:");
+		str.append(getTaskReportPath());
+		str.append(", checkpoint-journal-path:");
+		str.append(getCheckpointJournalPath());
+		str.append(", resume-mode-enabled:");
+		str.append(isResumeModeEnable());
+		str.append(", resources-journal-mode-enabled:");
+		str.append(isResourcesJournalModeEnable());
+		str.append(", shared-plugin-configurations-mode-enabled:");
+		str.append(isSharedPlugInConfigurationsModeEnable());
 		str.append(" }");
 		return str.toString();
 	}
@@ -639,19 +955,68 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 		}
 	}
 
+	/**
+	 * <p>
+	 * Pause the processing, and all running sub-ProcessorManagers.
+	 * </p>
+	 * 
+	 * <p>
+	 * <i> Locks are always acquired from a ProcessorManager to its
+	 * sub-ProcessorManagers, never the other way round. </i>
+	 * </p>
+	 */
 	@Override
-	public synchronized void pauseProcessing() {
+	public void pauseProcessing() {
 		fireRequestProcessorToPauseEvent();
-		_pauseRequested = true;
+		synchronized (_runningSubProcessorManagers) {
+			setPauseRequested(true);
+			for (ProcessorManager pm : _runningSubProcessorManagers) {
+				pm.pauseProcessing();
+			}
+		}
 	}
 
+	/**
+	 * <p>
+	 * Resume the processing, and all running sub-ProcessorManagers.
+	 * </p>
+	 */
 	@Override
-	public synchronized void resumeProcessing() {
+	public void resumeProcessing() {
 		fireRequestProcessorToResumeEvent();
-		if (!isPauseRequested())
-			return;
-		_pauseRequested = false;
-		notifyAll();
+		synchronized (_runningSubProcessorManagers) {
+			synchronized (this) {
+				if (!isPauseRequested())
+					return;
+				_pauseRequested = false;
+				notifyAll();
+			}
+			for (ProcessorManager pm : _runningSubProcessorManagers) {
+				pm.resumeProcessing();
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Register the given sub-ProcessorManager, so that it is paused and
+	 * resumed with this object. If this object is paused, the given
+	 * sub-ProcessorManager is immediately paused.
+	 * </p>
+	 */
+	private void addRunningSubProcessorManager(ProcessorManager pm) {
+		synchronized (_runningSubProcessorManagers) {
+			_runningSubProcessorManagers.add(pm);
+			if (isPauseRequested()) {
+				pm.pauseProcessing();
+			}
+		}
+	}
+
+	private void removeRunningSubProcessorManager(ProcessorManager pm) {
+		synchronized (_runningSubProcessorManagers) {
+			_runningSubProcessorManagers.remove(pm);
+		}
 	}
 
 	@Override
@@ -675,6 +1040,16 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 		waitTillProcessingIsDone(0, 0);
 	}
 
+	@Override
+	public synchronized void addProcessingDoneCallback(Runnable callback) {
+		if (callback == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Runnable.class.getCanonicalName()
+					+ ".");
+		}
+		_processingDoneCallbacks.add(callback);
+	}
+
 	@Override
 	public boolean addListener(IProcessorListener l) {
 		if (l == null) {
@@ -682,6 +1057,9 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 					+ "Must be a valid "
 					+ IProcessorListener.class.getCanonicalName() + ".");
 		}
+		if (getListenersBackPressurePolicy() != null) {
+			l = new AsyncProcessorListener(l, getListenersBackPressurePolicy());
+		}
 		return _listeners.add(l);
 	}
 
@@ -692,7 +1070,35 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 					+ "Must be a valid "
 					+ IProcessorListener.class.getCanonicalName() + ".");
 		}
-		return _listeners.remove(l);
+		for (IProcessorListener e : _listeners) {
+			if (e == l) {
+				return _listeners.remove(e);
+			}
+			if (e instanceof AsyncProcessorListener
+					&& ((AsyncProcessorListener) e).getDelegate() == l) {
+				_listeners.remove(e);
+				try {
+					((AsyncProcessorListener) e).close();
+				} catch (InterruptedException Ex) {
+					Thread.currentThread().interrupt();
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * <p>
+	 * Deliver the events which are pending in the asynchronous listeners.
+	 * </p>
+	 */
+	private void flushListeners() {
+		for (IProcessorListener l : getListeners()) {
+			if (l instanceof AsyncProcessorListener) {
+				((AsyncProcessorListener) l).flush();
+			}
+		}
 	}
 
 	public List<IProcessorListener> getListeners() {
@@ -802,9 +1208,41 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 
 	@Override
 	public void run() {
+		if (!isSubPM()) {
+			/*
+			 * The master ProcessorManager's thread holds the first permit. Its
+			 * children will inherit it when it waits for them.
+			 */
+			setConcurrencyGovernor(new ConcurrencyGovernor(
+					getMaxSimultaneousStep()));
+			getConcurrencyGovernor().tryAcquire(null);
+			_processingReport = getTaskReportPath() != null ? new ProcessingReport()
+					: null;
+			_checkpointJournal = openCheckpointJournal();
+			if (isResourcesJournalModeEnable()) {
+				getResourcesDescriptor().enableJournal();
+			}
+		} else {
+			getParentProcessorManager().addRunningSubProcessorManager(this);
+			computeCheckpointScope();
+		}
 		try {
 			fireProcessorStartedEvent();
-			processSequenceDescriptor();
+			if (isSubPM() && isCheckpointed(_checkpointScope)) {
+				log.info("[" + DocHelper.getNodeLocation(_caller) + "] "
+						+ "Orders " + getSequenceDescriptor().getOrderSet()
+						+ " skipped (already done according to the "
+						+ "checkpoint journal).");
+			} else {
+				processSequenceDescriptor();
+				if (isSubPM()) {
+					checkpoint(_caller.getNodeName().toUpperCase(),
+							_checkpointScope, DocHelper.getNodeLocation(
+									_caller).toFullString()
+									+ ", orders:"
+									+ getSequenceDescriptor().getOrderSet());
+				}
+			}
 			fireProcessorFinishedEvent(State.SUCCESS, null);
 		} catch (InterruptedException Ex) {
 			String msg = Msg.bind(Messages.ProcMgrEx_PROCESS_FINAL_STATE,
@@ -839,13 +1277,53 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 		} finally {
 			if (!isSubPM()) {
 				getResourcesDescriptor().store();
+				// the resources files now hold all modifications
+				getResourcesDescriptor().disableJournal();
+				if (_checkpointJournal != null) {
+					// the units recorded so far can now be trusted
+					_checkpointJournal.markStored();
+				}
 				deleteTemporaryResources();
+				log.debug("XPath expression cache statistics: "
+						+ XPathExpander.getExpressionCache() + ".");
+				log.debug("XPath template cache statistics: "
+						+ XPathExpander.getTemplateCache() + ".");
+				log.debug("Sequence Descriptor cache statistics: "
+						+ SequenceDescriptorCache.getStatistics() + ".");
+				getConcurrencyGovernor().release();
+				log.debug("Concurrency governor statistics: "
+						+ getConcurrencyGovernor() + ".");
+				log.debug("Lock statistics: "
+						+ LockManager.releaseStatistics(getGlobalScope()) + ".");
+				writeProcessingReport();
+				closeCheckpointJournal();
+				if (!isSharedPlugInConfigurationsModeEnable()) {
+					closePluginConfigurations();
+				}
+				// listeners have received all events when the processing is
+				// done
+				flushListeners();
+			}
+			if (isSubPM()) {
+				getParentProcessorManager().removeRunningSubProcessorManager(
+						this);
 			}
 			// The thread is set to null, so it is possible to start the
 			// processing again (it will certainly be useful to somebody)
+			List<Runnable> callbacks;
 			synchronized (this) {
+				if (_taskExecutor != null) {
+					// running steps are all done : idle threads die now
+					_taskExecutor.shutdown();
+					_taskExecutor = null;
+				}
 				setThread(null);
 				setThreadGroup(null);
+				callbacks = new ArrayList<Runnable>(_processingDoneCallbacks);
+				_processingDoneCallbacks.clear();
+			}
+			for (Runnable r : callbacks) {
+				r.run();
 			}
 		}
 	}
@@ -856,6 +1334,118 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 				getSequenceDescriptor().getPropertySet());
 	}
 
+	/**
+	 * @return the checkpoint journal of the processing, or <tt>null</tt> if
+	 *         the checkpoint journal is disabled or can't be opened.
+	 */
+	private CheckpointJournal openCheckpointJournal() {
+		if (getCheckpointJournalPath() == null) {
+			return null;
+		}
+		if (isRunDryModeEnable()) {
+			log.debug("Checkpoint journal disabled "
+					+ "(because 'run-dry-mode' is enabled).");
+			return null;
+		}
+		try {
+			return new CheckpointJournal(getCheckpointJournalPath(),
+					isResumeModeEnable());
+		} catch (IOException Ex) {
+			log.warn(new MelodyException("Fail to open the checkpoint "
+					+ "journal '" + getCheckpointJournalPath() + "'. "
+					+ "The processing will not be resumable.", Ex)
+					.getUserFriendlyStackTrace());
+			return null;
+		}
+	}
+
+	private void closeCheckpointJournal() {
+		if (_checkpointJournal == null) {
+			return;
+		}
+		_checkpointJournal.close();
+		_checkpointJournal = null;
+	}
+
+	/**
+	 * <p>
+	 * Compute the scope of the units of work this sub-ProcessorManager
+	 * records in the checkpoint journal, so that the same order, called with
+	 * the same parameters by two different tasks, is recorded twice.
+	 * </p>
+	 */
+	private void computeCheckpointScope() {
+		if (_checkpointJournal == null) {
+			return;
+		}
+		SequenceDescriptor sd = getSequenceDescriptor();
+		_checkpointScope = CheckpointJournal.computeKey(
+				getParentProcessorManager()._checkpointScope, DocHelper
+						.getNodeLocation(_caller).toFullString(),
+				sd.getSourceFile() + " " + sd.getOrderSet(),
+				sd.getPropertySet());
+	}
+
+	/**
+	 * @param ctx
+	 *            is the {@link ITaskContext} of the task which owns the unit
+	 *            of work.
+	 * @param unit
+	 *            identifies the unit of work in this task.
+	 * 
+	 * @return the key of the given unit of work in the checkpoint journal,
+	 *         or <tt>null</tt> if the checkpoint journal is disabled.
+	 */
+	String computeCheckpointKey(ITaskContext ctx, String unit) {
+		if (_checkpointJournal == null) {
+			return null;
+		}
+		return CheckpointJournal.computeKey(_checkpointScope, DocHelper
+				.getNodeLocation(ctx.getRelatedElement()).toFullString(), unit,
+				ctx.getProperties());
+	}
+
+	/**
+	 * @return <tt>true</tt> if the unit of work which stands for the given key
+	 *         was successfully completed by the resumed processing.
+	 */
+	boolean isCheckpointed(String key) {
+		return key != null && _checkpointJournal != null
+				&& _checkpointJournal.isCompleted(key);
+	}
+
+	/**
+	 * <p>
+	 * Record the successful completion of the unit of work which stands for
+	 * the given key in the checkpoint journal, if enabled.
+	 * </p>
+	 */
+	void checkpoint(String kind, String key, String description) {
+		if (key == null || _checkpointJournal == null) {
+			return;
+		}
+		_checkpointJournal.record(kind, key, description);
+	}
+
+	private void writeProcessingReport() {
+		if (_processingReport == null) {
+			return;
+		}
+		try {
+			_processingReport.write(getTaskReportPath());
+			log.info(_processingReport
+					.getSummary(ProcessingReport.DEFAULT_TOP_COUNT));
+			log.debug("Execution report written in '" + getTaskReportPath()
+					+ "'.");
+		} catch (Throwable Ex) {
+			log.warn(new MelodyException("Fail to write the execution report "
+					+ "in '" + getTaskReportPath() + "'.", Ex)
+					.getUserFriendlyStackTrace());
+		} finally {
+			_processingReport = null;
+		}
+	}
+
 	private void deleteTemporaryResources() {
 		try {
 			if (isPreserveTemporaryFilesModeEnable()) {
@@ -879,6 +1469,19 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 		processTask(newTask(n, ps));
 	}
 
+	/**
+	 * @return the {@link ITaskContext} of the task which is being processed by
+	 *         the current thread, or <tt>null</tt> if the current thread
+	 *         doesn't process any task yet.
+	 */
+	private static ITaskContext currentContext() {
+		try {
+			return Melody.getContext();
+		} catch (IllegalStateException | EmptyStackException Ex) {
+			return null;
+		}
+	}
+
 	protected ITask newTask(Element n, PropertySet ps) throws TaskException {
 		boolean pushed = false;
 		try {
@@ -888,7 +1491,8 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 			// Doesn't apply to ITask which implements IShareProperties
 			PropertySet ownPs = ReflectionHelper.implement(tb.getTaskClass(),
 					IShareProperties.class) ? ps : ps.clone();
-			Melody.pushContext(new TaskContext(n, ownPs, this));
+			Melody.pushContext(new TaskContext(n, ownPs, this,
+					currentContext()));
 			pushed = true;
 			ITask t = getTaskFactory().newTask(tb, n);
 			fireTaskCreatedEvent(n.getNodeName().toLowerCase(), State.SUCCESS,
@@ -919,13 +1523,56 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 		}
 	}
 
+	/**
+	 * @return a new started {@link ExecutionRecord} for the given task, which
+	 *         is the task of the current {@link ITaskContext}, or <tt>null</tt>
+	 *         if the execution report is disabled.
+	 */
+	private ExecutionRecord startExecutionRecord(ITask task) {
+		if (_processingReport == null) {
+			return null;
+		}
+		ITaskContext ctx = Melody.getContext();
+		Element n = ctx.getRelatedElement();
+		ExecutionRecord record = _processingReport.newRecord(n.getNodeName()
+				.toLowerCase(),
+				task instanceof Order ? String.valueOf(((Order) task)
+						.getName()) : null, DocHelper.getNodeLocation(n)
+						.toString());
+		if (ctx instanceof TaskContext) {
+			((TaskContext) ctx).setExecutionRecord(record);
+		}
+		record.start();
+		return record;
+	}
+
 	protected void processTask(ITask task)
 			throws TaskException, InterruptedException {
+		ExecutionRecord record = startExecutionRecord(task);
+		State finalState = State.CRITICAL;
 		try {
 			fireTaskStartedEvent(task);
-			task.doProcessing();
+			String key = task instanceof Order ? computeCheckpointKey(
+					Melody.getContext(), ((Order) task).getName().getValue())
+					: null;
+			if (isCheckpointed(key)) {
+				log.info("Order '" + ((Order) task).getName() + "' skipped "
+						+ "(already done according to the checkpoint "
+						+ "journal).");
+			} else {
+				task.doProcessing();
+				if (key != null) {
+					checkpoint(Order.ORDER.toUpperCase(), key, DocHelper
+							.getNodeLocation(
+									Melody.getContext().getRelatedElement())
+							.toFullString()
+							+ ", order:" + ((Order) task).getName());
+				}
+			}
+			finalState = State.SUCCESS;
 			fireTaskFinishedEvent(task, State.SUCCESS, null);
 		} catch (InterruptedException Ex) {
+			finalState = State.INTERRUPTED;
 			String msg = Msg.bind(Messages.TaskEx_PROCESS_FINAL_STATE,
 					task.getClass().getSimpleName().toLowerCase(),
 					State.INTERRUPTED);
@@ -943,6 +1590,7 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 				throw e;
 			}
 		} catch (TaskException Ex) {
+			finalState = State.FAILED;
 			String msg = Messages.bind(Messages.TaskEx_PROCESS_FINAL_STATE,
 					task.getClass().getSimpleName().toLowerCase(),
 					State.FAILED);
@@ -971,6 +1619,9 @@ public final class ProcessorManager implements IProcessorManager, Runnable {
 			fireTaskFinishedEvent(task, State.CRITICAL, e);
 			throw e;
 		} finally {
+			if (record != null) {
+				record.finish(finalState);
+			}
 			Melody.popContext();
 		}
 	}
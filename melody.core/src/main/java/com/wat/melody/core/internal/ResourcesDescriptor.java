@@ -1,17 +1,33 @@
 package com.wat.melody.core.internal;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpressionException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
+import org.w3c.dom.events.Event;
 import org.w3c.dom.events.MutationEvent;
 
 import com.wat.melody.api.IResourcesDescriptor;
@@ -40,8 +56,12 @@ import com.wat.melody.common.xpath.XPathExpander;
 public class ResourcesDescriptor extends FilteredDoc implements
 		IResourcesDescriptor {
 
+	private static Logger log = LoggerFactory
+			.getLogger(ResourcesDescriptor.class);
+
 	private TargetsDescriptor _targetsDescriptor;
 	private List<DUNIDDoc> _DUNIDDocList;
+	private boolean _journalEnabled;
 
 	/**
 	 * <p>
@@ -71,6 +91,7 @@ public class ResourcesDescriptor extends FilteredDoc implements
 		setTargetsDescriptor(null);
 		// Build the list of DUNIDoc
 		setDUNIDDocList(new ArrayList<DUNIDDoc>());
+		_journalEnabled = false;
 	}
 
 	/**
@@ -185,7 +206,9 @@ public class ResourcesDescriptor extends FilteredDoc implements
 	public List<Element> evaluateTargets(String xpath)
 			throws XPathExpressionException {
 		List<Element> targets = new ArrayList<Element>();
-		synchronized (getDocument()) {
+		Lock lock = getReadWriteLock().readLock();
+		lock.lock();
+		try {
 			// Evaluate expression in the current document
 			NodeList nl = evaluateAsNodeList(xpath);
 			// Search for resulting nodes in the eligible targets
@@ -202,6 +225,8 @@ public class ResourcesDescriptor extends FilteredDoc implements
 					targets.add(n);
 				}
 			}
+		} finally {
+			lock.unlock();
 		}
 		return targets;
 	}
@@ -291,30 +316,181 @@ public class ResourcesDescriptor extends FilteredDoc implements
 	 *             if a {@link Filter} is not valid.
 	 */
 	@Override
-	public synchronized boolean add(String sPath) throws IllegalDocException,
+	public boolean add(String sPath) throws IllegalDocException,
 			IllegalFileException, IllegalTargetsFilterException,
 			IllegalResourcesFilterException, IOException {
-		if (findDUNIDDoc(sPath) != null) {
+		return addAll(Collections.singletonList(sPath));
+	}
+
+	/**
+	 * <p>
+	 * Add the given xml files to this object's resources, in the given order.
+	 * The files are loaded in parallel (see {@link #loadAll(List)}), outside
+	 * of the write lock of this object. Then, herited content is merged,
+	 * filters are applied and the targets descriptor is updated once for all
+	 * files.
+	 * </p>
+	 * 
+	 * @param sPaths
+	 *            are the paths of the xml files to add to this object's
+	 *            resources.
+	 * 
+	 * @return <tt>true</tt> if at least one of the given xml files have been
+	 *         successfully added to this object's resources.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given {@link Collection} is <tt>null</tt>.
+	 * @throws IllegalFileException
+	 *             if one of the given paths doesn't point to a valid file.
+	 * @throws IllegalDocException
+	 *             if one of the given files is not valid (not a xml file,
+	 *             invalid content).
+	 * @throws IllegalResourcesFilterException
+	 *             if a {@link Filter} is not valid.
+	 * @throws IllegalTargetsFilterException
+	 *             if a {@link Filter} is not valid.
+	 */
+	@Override
+	public synchronized boolean addAll(Collection<String> sPaths)
+			throws IllegalDocException, IllegalFileException,
+			IllegalTargetsFilterException, IllegalResourcesFilterException,
+			IOException {
+		if (sPaths == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Collection.class.getCanonicalName()
+					+ "<" + String.class.getCanonicalName() + ">.");
+		}
+		// the files which are not managed yet, without duplicates
+		Set<String> toLoad = new LinkedHashSet<String>();
+		for (String sPath : sPaths) {
+			if (sPath != null && findDUNIDDoc(sPath) == null) {
+				toLoad.add(sPath);
+			}
+		}
+		if (toLoad.isEmpty()) {
 			return false;
 		}
+		List<DUNIDDoc> docs = loadAll(new ArrayList<String>(toLoad));
+		Lock lock = getReadWriteLock().writeLock();
+		lock.lock();
+		try {
+			try {
+				stopListening();
+				for (DUNIDDoc d : docs) {
+					// Add in the list
+					getDUNIDDocList().add(d);
+					if (_journalEnabled) {
+						enableJournal(d);
+					}
+					// Add the content
+					Node n = getOriginalDocument().importNode(
+							d.getDocument().getFirstChild(), true);
+					getOriginalDocument().getFirstChild().appendChild(n);
+				}
+				mergeHeritedContent();
+				startListening();
+				// Rebuild
+				restoreOriginalDocument();
+				applyFilters();
+			} catch (IllegalFilterException Ex) {
+				throw new IllegalResourcesFilterException(Ex);
+			}
+			updateTargetsDescriptor();
+		} finally {
+			lock.unlock();
+		}
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Load the given xml files in parallel, on a pool of (at most) one thread
+	 * per available processor. The threads of the pool belong to the
+	 * {@link ThreadGroup} of the caller.
+	 * </p>
+	 * 
+	 * @return the loaded {@link DUNIDDoc}s, in the given order.
+	 * 
+	 * @throws IllegalFileException
+	 *             if one of the given paths doesn't point to a valid file.
+	 * @throws IllegalDocException
+	 *             if one of the given files is not valid (not a xml file,
+	 *             invalid content).
+	 * @throws IOException
+	 *             if an IO error occurred while reading a file, or if the
+	 *             caller was interrupted.
+	 */
+	private List<DUNIDDoc> loadAll(List<String> sPaths)
+			throws IllegalDocException, IllegalFileException, IOException {
+		List<DUNIDDoc> docs = new ArrayList<DUNIDDoc>();
+		if (sPaths.size() == 1) {
+			docs.add(loadDUNIDDoc(sPaths.get(0)));
+			return docs;
+		}
+		int threads = Math.min(sPaths.size(), Runtime.getRuntime()
+				.availableProcessors());
+		ExecutorService pool = Executors.newFixedThreadPool(threads,
+				new ThreadFactory() {
+
+					private AtomicInteger _count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "resources-loader-"
+								+ _count.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+
+				});
+		try {
+			List<Future<DUNIDDoc>> futures = new ArrayList<Future<DUNIDDoc>>();
+			for (final String sPath : sPaths) {
+				futures.add(pool.submit(new Callable<DUNIDDoc>() {
+
+					@Override
+					public DUNIDDoc call() throws Exception {
+						return loadDUNIDDoc(sPath);
+					}
+
+				}));
+			}
+			for (Future<DUNIDDoc> future : futures) {
+				docs.add(future.get());
+			}
+		} catch (InterruptedException Ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while loading "
+					+ "resources files.");
+		} catch (ExecutionException Ex) {
+			Throwable cause = Ex.getCause();
+			if (cause instanceof IllegalDocException) {
+				throw (IllegalDocException) cause;
+			} else if (cause instanceof IllegalFileException) {
+				throw (IllegalFileException) cause;
+			} else if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException("Unexecpted error while loading "
+					+ "a DUNIDDoc. "
+					+ "Source code has certainly been modified and "
+					+ "a bug have been introduced.", cause);
+		} finally {
+			pool.shutdownNow();
+		}
+		return docs;
+	}
+
+	private DUNIDDoc loadDUNIDDoc(String sPath)
+			throws IllegalDocException, IllegalFileException, IOException {
+		DUNIDDoc d = new DUNIDDoc();
+		d.setXPath(getXPath());
 		try {
-			// Add in the list
-			DUNIDDoc d = new DUNIDDoc();
-			d.setXPath(getXPath());
 			d.load(sPath);
-			getDUNIDDocList().add(d);
-			// Add the content
-			Node n = getOriginalDocument().importNode(
-					d.getDocument().getFirstChild(), true);
-			stopListening();
-			getOriginalDocument().getFirstChild().appendChild(n);
-			mergeHeritedContent();
-			startListening();
-			// Rebuild
-			restoreOriginalDocument();
-			applyFilters();
-		} catch (IllegalFilterException Ex) {
-			throw new IllegalResourcesFilterException(Ex);
 		} catch (IllegalDocException | IllegalFileException Ex) {
 			throw Ex;
 		} catch (MelodyException Ex) {
@@ -325,8 +501,7 @@ public class ResourcesDescriptor extends FilteredDoc implements
 					+ "Source code has certainly been modified and "
 					+ "a bug have been introduced.", Ex);
 		}
-		updateTargetsDescriptor();
-		return true;
+		return d;
 	}
 
 	/**
@@ -353,24 +528,31 @@ public class ResourcesDescriptor extends FilteredDoc implements
 		if (i == null) {
 			return false;
 		}
-		// Remove from list
-		getDUNIDDocList().remove(i);
-		// Remove the content
-		Node base = getOriginalDocument().getFirstChild();
-		stopListening();
-		base.removeChild(base.getChildNodes().item(i));
-		startListening();
+		Lock lock = getReadWriteLock().writeLock();
+		lock.lock();
 		try {
-			// Rebuild
-			restoreOriginalDocument();
-			validateHeritAttrs();
-			applyFilters();
-		} catch (IllegalFilterException Ex) {
-			throw new IllegalResourcesFilterException(Ex);
-		} catch (IllegalDocException Ex) {
-			throw Ex;
+			// Remove from list
+			DUNIDDoc d = getDUNIDDocList().remove((int) i);
+			d.disableJournal();
+			// Remove the content
+			Node base = getOriginalDocument().getFirstChild();
+			stopListening();
+			base.removeChild(base.getChildNodes().item(i));
+			startListening();
+			try {
+				// Rebuild
+				restoreOriginalDocument();
+				validateHeritAttrs();
+				applyFilters();
+			} catch (IllegalFilterException Ex) {
+				throw new IllegalResourcesFilterException(Ex);
+			} catch (IllegalDocException Ex) {
+				throw Ex;
+			}
+			updateTargetsDescriptor();
+		} finally {
+			lock.unlock();
 		}
-		updateTargetsDescriptor();
 		return true;
 	}
 
@@ -386,6 +568,55 @@ public class ResourcesDescriptor extends FilteredDoc implements
 		}
 	}
 
+	/**
+	 * <p>
+	 * Record each modification of this object's resources in a journal, next
+	 * to each resources file, until {@link #disableJournal()} is called (see
+	 * {@link DUNIDDoc#enableJournal(Lock)}). When the processing is killed
+	 * before this object is stored, the modifications are replayed the next
+	 * time the resources files are loaded.
+	 * </p>
+	 * 
+	 * @return the previous value.
+	 */
+	public synchronized boolean enableJournal() {
+		boolean previous = _journalEnabled;
+		_journalEnabled = true;
+		for (DUNIDDoc d : getDUNIDDocList()) {
+			enableJournal(d);
+		}
+		return previous;
+	}
+
+	/**
+	 * <p>
+	 * Stop recording modifications in the journals. Should be called right
+	 * after {@link #store()}, so that the journals are deleted.
+	 * </p>
+	 * 
+	 * @return the previous value.
+	 */
+	public synchronized boolean disableJournal() {
+		boolean previous = _journalEnabled;
+		_journalEnabled = false;
+		for (DUNIDDoc d : getDUNIDDocList()) {
+			d.disableJournal();
+		}
+		return previous;
+	}
+
+	private void enableJournal(DUNIDDoc d) {
+		try {
+			// the journal is compacted while no task modifies resources
+			d.enableJournal(getReadWriteLock().readLock());
+		} catch (IOException Ex) {
+			log.warn(new MelodyException("Fail to open the journal of the "
+					+ "resources file '" + d.getSourceFile() + "'. "
+					+ "Its modifications will be lost if the processing is "
+					+ "killed.", Ex).getUserFriendlyStackTrace());
+		}
+	}
+
 	/**
 	 * <p>
 	 * Due to the nature of this object, this operation is not supported.
@@ -419,6 +650,25 @@ public class ResourcesDescriptor extends FilteredDoc implements
 				.evaluateAsNode(expr, getDocument().getFirstChild());
 	}
 
+	/**
+	 * Modifications of the current document are propagated to the targets
+	 * descriptor => acquire the targets descriptor's write lock.
+	 */
+	@Override
+	public void handleEvent(Event evt) {
+		if (!areTargetsFiltersDefined()) {
+			super.handleEvent(evt);
+			return;
+		}
+		Lock lock = getTargetsDescriptor().getReadWriteLock().writeLock();
+		lock.lock();
+		try {
+			super.handleEvent(evt);
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	@Override
 	protected String getSmartMsg() {
 		return "resources-descriptor";
@@ -3,11 +3,13 @@ package com.wat.melody.core.internal;
 import java.io.File;
 import java.io.IOException;
 
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import com.wat.melody.api.ISequenceDescriptor;
 import com.wat.melody.api.Messages;
 import com.wat.melody.api.exception.IllegalOrderException;
+import com.wat.melody.common.cache.FileStamp;
 import com.wat.melody.common.ex.MelodyException;
 import com.wat.melody.common.files.FS;
 import com.wat.melody.common.files.exception.IllegalDirectoryException;
@@ -69,6 +71,18 @@ public class SequenceDescriptor extends Doc implements ISequenceDescriptor {
 		return str.toString();
 	}
 
+	/**
+	 * <p>
+	 * Load the Sequence Descriptor file pointed by the given path.
+	 * </p>
+	 * 
+	 * <p>
+	 * Parsed Sequence Descriptor files are cached (see
+	 * {@link SequenceDescriptorCache}) : if the given file was already parsed
+	 * and was not modified since, the previously parsed {@link Document} is
+	 * shared, the same way {@link #load(ISequenceDescriptor)} does.
+	 * </p>
+	 */
 	@Override
 	public void load(String sPath) throws IllegalDocException,
 			IllegalFileException, IllegalOrderException, IOException {
@@ -78,8 +92,18 @@ public class SequenceDescriptor extends Doc implements ISequenceDescriptor {
 					com.wat.melody.common.files.Messages.FileEx_NOT_ABSOLUTE,
 					sPath));
 		}
+		// the stamp is computed before parsing, so that a file modified
+		// during the parsing will be parsed again
+		FileStamp stamp = FileStamp.of(f);
+		Document cached = SequenceDescriptorCache.get(stamp);
 		try {
-			super.load(f.toString());
+			if (cached != null) {
+				setSourceFile(f.toString());
+				setDocument(cached);
+			} else {
+				super.load(f.toString());
+				SequenceDescriptorCache.put(stamp, getDocument());
+			}
 		} catch (IllegalDocException | IllegalFileException | IOException Ex) {
 			throw Ex;
 		} catch (MelodyException Ex) {
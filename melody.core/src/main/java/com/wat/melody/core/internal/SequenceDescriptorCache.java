@@ -0,0 +1,100 @@
+package com.wat.melody.core.internal;
+
+import java.io.File;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.w3c.dom.Document;
+
+import com.wat.melody.common.cache.FileStamp;
+import com.wat.melody.common.cache.LruCache;
+import com.wat.melody.common.xml.DocContext;
+
+/**
+ * <p>
+ * A process-wide, bounded cache of parsed Sequence Descriptor
+ * {@link Document}s.
+ * </p>
+ * 
+ * <p>
+ * Parsed {@link Document}s are indexed by the canonical path, the last
+ * modification time and the size of their file, so that a modified file is
+ * parsed again. Cached {@link Document}s are shared by all
+ * {@link SequenceDescriptor} which load the same file, and must be considered
+ * as read-only.
+ * </p>
+ * 
+ * <p>
+ * A shared {@link Document} keeps the {@link ReadWriteLock} of the first
+ * {@link SequenceDescriptor} which loaded it : next {@link SequenceDescriptor}s
+ * adopt it (see
+ * {@link DocContext#get(Document, ReadWriteLock)}), so
+ * that all threads which access the {@link Document} acquire the same lock.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+final class SequenceDescriptorCache {
+
+	public static final int MAX_SIZE = 128;
+
+	private static LruCache<FileStamp, Document> _cache = new LruCache<FileStamp, Document>(
+			MAX_SIZE);
+
+	private SequenceDescriptorCache() {
+	}
+
+	/**
+	 * <p>
+	 * Get the parsed {@link Document} of the given Sequence Descriptor file.
+	 * </p>
+	 * 
+	 * @param stamp
+	 *            is the state of the Sequence Descriptor file (see
+	 *            {@link FileStamp#of(File)}).
+	 * 
+	 * @return the parsed {@link Document} of the given Sequence Descriptor
+	 *         file, or <tt>null</tt> if it is not in this cache or if the file
+	 *         was modified since it was parsed.
+	 */
+	public static Document get(FileStamp stamp) {
+		return _cache.get(stamp);
+	}
+
+	/**
+	 * <p>
+	 * Put the parsed {@link Document} of the given Sequence Descriptor file in
+	 * this cache.
+	 * </p>
+	 * 
+	 * @param stamp
+	 *            is the state of the Sequence Descriptor file, computed before
+	 *            it was parsed (see {@link FileStamp#of(File)}).
+	 * @param d
+	 *            is the parsed {@link Document}.
+	 */
+	public static void put(FileStamp stamp, Document d) {
+		_cache.put(stamp, d);
+	}
+
+	public static void clear() {
+		_cache.clear();
+	}
+
+	public static int size() {
+		return _cache.size();
+	}
+
+	public static long getHitCount() {
+		return _cache.getHitCount();
+	}
+
+	public static long getMissCount() {
+		return _cache.getMissCount();
+	}
+
+	public static String getStatistics() {
+		return _cache.toString();
+	}
+
+}
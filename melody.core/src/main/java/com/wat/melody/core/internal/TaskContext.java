@@ -13,6 +13,7 @@ import org.w3c.dom.Element;
 
 import com.wat.melody.api.IProcessorManager;
 import com.wat.melody.api.ITaskContext;
+import com.wat.melody.api.TaskScope;
 import com.wat.melody.api.exception.TaskException;
 import com.wat.melody.api.report.ITaskReport;
 import com.wat.melody.api.report.ITaskReportItem;
@@ -21,8 +22,12 @@ import com.wat.melody.common.files.FS;
 import com.wat.melody.common.files.exception.IllegalDirectoryException;
 import com.wat.melody.common.files.exception.IllegalFileException;
 import com.wat.melody.common.properties.PropertySet;
+import com.wat.melody.common.xml.DocHelper;
 import com.wat.melody.common.xpath.XPathExpander;
 import com.wat.melody.common.xpath.exception.ExpressionSyntaxException;
+import com.wat.melody.core.internal.report.ExecutionRecord;
+import com.wat.melody.core.internal.report.TaskReport;
+import com.wat.melody.core.internal.report.TaskReportItem;
 
 /**
  * <p>
@@ -37,11 +42,51 @@ public class TaskContext implements ITaskContext {
 	private Element _relatedElement;
 	private PropertySet _propertiesSet;
 	private ProcessorManager _processorManager;
+	private Object _currentScope;
+	private Object _callScope;
+	private Object _globalScope;
+	private ExecutionRecord _executionRecord;
 
-	public TaskContext(Element n, PropertySet ps, ProcessorManager p) {
+	/**
+	 * @param n
+	 *            is the {@link Element} of the task.
+	 * @param ps
+	 *            is the {@link PropertySet} of the task.
+	 * @param p
+	 *            is the {@link ProcessorManager} which processes the task.
+	 * @param parent
+	 *            is the {@link ITaskContext} of the task which is being
+	 *            processed by the current thread, or <tt>null</tt> if the
+	 *            task is the first task of a new thread of the given
+	 *            {@link ProcessorManager}. The new {@link TaskContext} belongs
+	 *            to the scopes of its parent, if any, or opens a new
+	 *            {@link TaskScope#CURRENT} scope in the scopes of the given
+	 *            {@link ProcessorManager}.
+	 */
+	public TaskContext(Element n, PropertySet ps, ProcessorManager p,
+			ITaskContext parent) {
 		setProcessorManager(p);
 		setProperties(ps);
 		setRelatedElement(n);
+		if (parent != null) {
+			_currentScope = parent.getScope(TaskScope.CURRENT);
+			_callScope = parent.getScope(TaskScope.CALL);
+			_globalScope = parent.getScope(TaskScope.GLOBAL);
+		} else {
+			_currentScope = new Object();
+			_callScope = p.getCallScope();
+			_globalScope = p.getGlobalScope();
+		}
+	}
+
+	private TaskContext(TaskContext src, Object currentScope) {
+		setProcessorManager(src._processorManager);
+		setProperties(src.getProperties());
+		setRelatedElement(src.getRelatedElement());
+		_currentScope = currentScope;
+		_callScope = src._callScope;
+		_globalScope = src._globalScope;
+		_executionRecord = src._executionRecord;
 	}
 
 	@Override
@@ -101,29 +146,42 @@ public class TaskContext implements ITaskContext {
 
 	@Override
 	public void reportActivity(ITaskReport report) {
-		/*
-		 * TODO : implement. Should call a method in _processorManager.
-		 */
-		log.warn("Task reporting is not implemented yet");
+		if (report == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + ITaskReport.class.getCanonicalName()
+					+ ".");
+		}
+		if (_executionRecord == null) {
+			// execution report is disabled
+			log.trace("Task activity not recorded: " + report);
+			return;
+		}
+		_executionRecord.addReport(report);
+	}
+
+	/**
+	 * <p>
+	 * Set the {@link ExecutionRecord} which receives the activity reported by
+	 * the task (see {@link #reportActivity(ITaskReport)}).
+	 * </p>
+	 * 
+	 * @param record
+	 *            is the {@link ExecutionRecord} of the task, or <tt>null</tt>
+	 *            if the execution report is disabled.
+	 */
+	void setExecutionRecord(ExecutionRecord record) {
+		_executionRecord = record;
 	}
 
 	@Override
 	public ITaskReport createTaskReport(Set<ITaskReportItem> reportItems) {
-		/*
-		 * TODO : implement. Should call a method in _processorManager.
-		 */
-		log.warn("Task reporting is not implemented yet");
-		return null;
+		return new TaskReport(reportItems);
 	}
 
 	@Override
 	public ITaskReportItem createTaskReportItem(Date date,
 			TaskReportItemType taskReportType, String message) {
-		/*
-		 * TODO : implement. Should call a method in _processorManager.
-		 */
-		log.warn("Task reporting is not implemented yet");
-		return null;
+		return new TaskReportItem(date, taskReportType, message);
 	}
 
 	@Override
@@ -190,7 +248,61 @@ public class TaskContext implements ITaskContext {
 
 	@Override
 	public IProcessorManager createSubProcessorManager() {
-		return _processorManager.createSubProcessorManager(getProperties());
+		// the sub-ProcessorManager's tasks belong to a call scope, which is
+		// identified by this object
+		return _processorManager.createSubProcessorManager(getProperties(),
+				this, getRelatedElement());
+	}
+
+	@Override
+	public boolean isCheckpointed(String unit) {
+		if (unit == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + String.class.getCanonicalName()
+					+ " (a unit of work).");
+		}
+		return _processorManager.isCheckpointed(_processorManager
+				.computeCheckpointKey(this, unit));
+	}
+
+	@Override
+	public void checkpoint(String unit) {
+		if (unit == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + String.class.getCanonicalName()
+					+ " (a unit of work).");
+		}
+		String key = _processorManager.computeCheckpointKey(this, unit);
+		if (key == null) {
+			// checkpoint journal is disabled
+			return;
+		}
+		_processorManager.checkpoint(getRelatedElement().getNodeName()
+				.toUpperCase(), key, DocHelper.getNodeLocation(
+				getRelatedElement()).toFullString()
+				+ ", " + unit);
+	}
+
+	@Override
+	public Object getScope(TaskScope scope) {
+		if (scope == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + TaskScope.class.getCanonicalName()
+					+ ".");
+		}
+		switch (scope) {
+		case CURRENT:
+			return _currentScope;
+		case CALL:
+			return _callScope;
+		default:
+			return _globalScope;
+		}
+	}
+
+	@Override
+	public ITaskContext createBranchContext() {
+		return new TaskContext(this, new Object());
 	}
 
 }
\ No newline at end of file
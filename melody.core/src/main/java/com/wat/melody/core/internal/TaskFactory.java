@@ -2,14 +2,19 @@ package com.wat.melody.core.internal;
 
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
@@ -22,12 +27,8 @@ import com.wat.melody.api.ITask;
 import com.wat.melody.api.ITaskBuilder;
 import com.wat.melody.api.ITaskContainer;
 import com.wat.melody.api.ITopLevelTask;
-import com.wat.melody.api.IUnexpectedAttributes;
 import com.wat.melody.api.Melody;
 import com.wat.melody.api.Messages;
-import com.wat.melody.api.annotation.Attribute;
-import com.wat.melody.api.annotation.NestedElement;
-import com.wat.melody.api.annotation.TextContent;
 import com.wat.melody.api.event.State;
 import com.wat.melody.api.exception.AttributeRelatedException;
 import com.wat.melody.api.exception.NestedElementRelatedException;
@@ -36,13 +37,13 @@ import com.wat.melody.api.exception.TaskFactoryException;
 import com.wat.melody.api.exception.TextContentRelatedException;
 import com.wat.melody.common.bool.Bool;
 import com.wat.melody.common.bool.exception.IllegalBooleanException;
-import com.wat.melody.common.files.IFileBased;
 import com.wat.melody.common.messages.Msg;
 import com.wat.melody.common.properties.PropertySet;
 import com.wat.melody.common.reflection.ReflectionHelper;
 import com.wat.melody.common.xml.DocHelper;
 import com.wat.melody.common.xml.exception.SimpleNodeRelatedException;
 import com.wat.melody.common.xpath.exception.ExpressionSyntaxException;
+import com.wat.melody.core.internal.ClassBinder.Binding;
 
 /**
  * 
@@ -62,10 +63,15 @@ public class TaskFactory {
 	 * {@link ITask} objects from {@link Element} Nodes found in the Sequence
 	 * Descriptor.
 	 * </p>
+	 * 
+	 * <p>
+	 * The new {@link TaskFactory} uses the global {@link TaskFactoryCache} (see
+	 * {@link TaskFactoryCache#getGlobalCache()}).
+	 * </p>
 	 */
 	public TaskFactory() {
 		setRegisteredTasks(new RegisteredTasks());
-		setCache(new TaskFactoryCache());
+		setCache(TaskFactoryCache.getGlobalCache());
 	}
 
 	public IRegisteredTasks getRegisteredTasks() {
@@ -98,23 +104,8 @@ public class TaskFactory {
 		return previous;
 	}
 
-	private Method findSetMethod(Class<?> c, String attrName)
-			throws TaskFactoryException {
-		return getCache().getSetMethod(c, attrName);
-	}
-
-	private Method findTextMethod(Class<?> c) throws TaskFactoryException {
-		return getCache().getTextMethod(c);
-	}
-
-	private Method findAddMethod(Class<?> c, String elmtName)
-			throws TaskFactoryException {
-		return getCache().getAddMethod(c, elmtName);
-	}
-
-	private Method findCreateMethod(Class<?> c, String elmtName)
-			throws TaskFactoryException {
-		return getCache().getCreateMethod(c, elmtName);
+	private ClassBinder getBinder(Class<?> c) throws TaskFactoryException {
+		return getCache().getBinder(c);
 	}
 
 	/**
@@ -177,7 +168,15 @@ public class TaskFactory {
 		}
 		// some attributes are only useful for 'conditional behavior'.
 		// here, all attributes used to find the task are marked as 'already visited'
-		t.markEligibleElements(elmt, ps);
+		// marking modifies the DOM (user datas)
+		Lock lock = DocHelper.getReadWriteLock(elmt.getOwnerDocument())
+				.writeLock();
+		lock.lock();
+		try {
+			t.markEligibleElements(elmt, ps);
+		} finally {
+			lock.unlock();
+		}
 		
 		return t;
 	}
@@ -279,11 +278,10 @@ public class TaskFactory {
 
 		ITask t = tb.build();
 
-		synchronized (elmt.getOwnerDocument()) {
-			setAllMembers(t, elmt.getAttributes());
-			setTextContent(t, elmt.getChildNodes());
-			setAllNestedElements(t, elmt.getChildNodes());
-		}
+		setAllMembers(t, listAttributes(elmt));
+		List<Node> nestedNodes = listChildNodes(elmt);
+		setTextContent(t, nestedNodes);
+		setAllNestedElements(t, nestedNodes);
 		try {
 			t.validate();
 		} catch (TaskException Ex) {
@@ -292,17 +290,99 @@ public class TaskFactory {
 		return t;
 	}
 
-	private void setAllMembers(Object base, NamedNodeMap attrs)
-			throws TaskFactoryException {
-		if (attrs == null) {
-			detectsUndefinedMandatoryAttributes(base.getClass(), attrs);
-			return;
+	/**
+	 * <p>
+	 * {@link NodeList} and {@link NamedNodeMap} don't support concurrent reads
+	 * of the DOM tree. The attributes of the given {@link Element} are copied
+	 * under the read lock of its owner {@link Document}, so that they can be
+	 * expanded without holding any lock.
+	 * </p>
+	 * 
+	 * <p>
+	 * The 'eligible' marks (see {@link #findTaskClass(Element, PropertySet)})
+	 * are user data of the DOM tree, which are written under the write lock :
+	 * they are read under the same read lock, and copied with the attributes.
+	 * </p>
+	 */
+	private static AttributeList listAttributes(Element elmt) {
+		AttributeList attrs = new AttributeList();
+		Lock lock = DocHelper.getReadWriteLock(elmt.getOwnerDocument())
+				.readLock();
+		lock.lock();
+		try {
+			// don't call getAttributes, which lazily creates the map
+			if (!elmt.hasAttributes()) {
+				return attrs;
+			}
+			NamedNodeMap map = elmt.getAttributes();
+			for (int i = 0; i < map.getLength(); i++) {
+				Attr attr = (Attr) map.item(i);
+				attrs.add(attr, attr.getUserData("eligible") != null);
+			}
+		} finally {
+			lock.unlock();
 		}
-		for (int i = 0; i < attrs.getLength(); i++) {
-			Attr attr = (Attr) attrs.item(i);
+		return attrs;
+	}
+
+	/**
+	 * The attributes of an {@link Element}, with their 'eligible' marks.
+	 */
+	private static class AttributeList extends ArrayList<Attr> {
+
+		private static final long serialVersionUID = -7418529316452070961L;
+
+		private List<Attr> _eligibles = new ArrayList<Attr>();
+
+		public void add(Attr attr, boolean eligible) {
+			add(attr);
+			if (eligible) {
+				_eligibles.add(attr);
+			}
+		}
+
+		public boolean isEligible(Attr attr) {
+			for (Attr eligible : _eligibles) {
+				if (eligible == attr) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+	}
+
+	/**
+	 * <p>
+	 * Same as {@link #listAttributes(Element)}, for the child {@link Node}s of
+	 * the given {@link Element}, which are walked through siblings (
+	 * {@link NodeList} caches its last accessed item).
+	 * </p>
+	 */
+	private static List<Node> listChildNodes(Element elmt) {
+		List<Node> nodes = new ArrayList<Node>();
+		Lock lock = DocHelper.getReadWriteLock(elmt.getOwnerDocument())
+				.readLock();
+		lock.lock();
+		try {
+			for (Node n = elmt.getFirstChild(); n != null; n = n
+					.getNextSibling()) {
+				nodes.add(n);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return nodes;
+	}
+
+	private void setAllMembers(Object base, AttributeList attrs)
+			throws TaskFactoryException {
+		ClassBinder binder = getBinder(base.getClass());
+		for (Attr attr : attrs) {
 			String sAttrName = attr.getNodeName();
-			Method m = findSetMethod(base.getClass(), sAttrName);
-			if (m != null) {
+			Binding b = binder.getSetter(sAttrName);
+			if (b != null) {
+				Method m = b.getMethod();
 				String value = attr.getNodeValue();
 				try {
 					value = Melody.getContext().expand(value);
@@ -317,15 +397,14 @@ public class TaskFactory {
 									Messages.TaskFactoryEx_EXPAND_ATTR,
 									sAttrName, State.CRITICAL), Ex));
 				}
-				setMember(base, m, m.getParameterTypes()[0], attr, value);
+				setMember(base, b, attr, value);
 			} else {
 				// when some attributes are only useful for 'conditional behavior'.
 				// we have detected them previously. we 
 				// don't want such attribute to be consider as invalid.
 				// or when this specific task can have unexpected attributes.
-				if (attr.getUserData("eligible") == null &&
-						!ReflectionHelper.implement(base.getClass(),
-								IUnexpectedAttributes.class)){
+				if (!attrs.isEligible(attr) &&
+						!binder.isUnexpectedAttributesAccepted()){
 					throw new TaskFactoryException(
 							new SimpleNodeRelatedException(attr, Msg
 									.bind(Messages.TaskFactoryMsg_INVALID_ATTR,
@@ -333,43 +412,40 @@ public class TaskFactory {
 					}
 			}
 		}
-		detectsUndefinedMandatoryAttributes(base.getClass(), attrs);
+		detectsUndefinedMandatoryAttributes(binder, attrs);
 	}
 
-	private void detectsUndefinedMandatoryAttributes(Class<?> base,
-			NamedNodeMap attrs) throws TaskFactoryException {
+	private void detectsUndefinedMandatoryAttributes(ClassBinder binder,
+			List<Attr> attrs) throws TaskFactoryException {
 		// Detect if all mandatory attribute are defined
-		for (Method m : base.getMethods()) {
-			// Look for the annotation TaskAttrbiute
-			Attribute a = ReflectionHelper.getAnnotation(m, Attribute.class);
-			if (a != null && a.mandatory()) {
-				boolean found = false;
-				for (int i = 0; i < attrs.getLength(); i++) {
-					if (a.name().equalsIgnoreCase(attrs.item(i).getNodeName())) {
-						found = true;
-						break;
-					}
-				}
-				if (!found) {
-					throw new TaskFactoryException(Msg.bind(
-							Messages.TaskFactoryEx_MANDATORY_ATTR_NOT_FOUND,
-							a.name()));
+		for (String name : binder.getMandatoryAttributes()) {
+			boolean found = false;
+			for (Attr attr : attrs) {
+				if (name.equalsIgnoreCase(attr.getNodeName())) {
+					found = true;
+					break;
 				}
 			}
+			if (!found) {
+				throw new TaskFactoryException(Msg.bind(
+						Messages.TaskFactoryEx_MANDATORY_ATTR_NOT_FOUND, name));
+			}
 		}
 	}
 
-	private void setTextContent(Object base, NodeList nestedNodes)
+	private void setTextContent(Object base, List<Node> nestedNodes)
 			throws TaskFactoryException {
+		ClassBinder binder = getBinder(base.getClass());
 		// Ignore if child elements exists
-		if (nestedNodes == null || nestedNodes.getLength() != 1
-				|| nestedNodes.item(0).getNodeType() != Node.TEXT_NODE) {
-			detectsUndefinedMandatoryText(base.getClass(), nestedNodes);
+		if (nestedNodes.size() != 1
+				|| nestedNodes.get(0).getNodeType() != Node.TEXT_NODE) {
+			detectsUndefinedMandatoryText(binder, nestedNodes);
 			return;
 		}
-		Text text = (Text) nestedNodes.item(0);
-		Method m = findTextMethod(base.getClass());
-		if (m != null) {
+		Text text = (Text) nestedNodes.get(0);
+		Binding b = binder.getText();
+		if (b != null) {
+			Method m = b.getMethod();
 			String value = text.getNodeValue();
 			try {
 				value = Melody.getContext().expand(value);
@@ -382,44 +458,37 @@ public class TaskFactory {
 						text, m, Msg.bind(Messages.TaskFactoryEx_EXPAND_TEXT,
 								State.CRITICAL), Ex));
 			}
-			setText(base, m, m.getParameterTypes()[0], text, value);
+			setText(base, b, text, value);
 		} else {
 			throw new TaskFactoryException(Messages.TaskFactoryEx_INVALID_TEXT);
 		}
-		detectsUndefinedMandatoryText(base.getClass(), nestedNodes);
+		detectsUndefinedMandatoryText(binder, nestedNodes);
 	}
 
-	private void detectsUndefinedMandatoryText(Class<?> base,
-			NodeList nestedNodes) throws TaskFactoryException {
-		Method m = findTextMethod(base);
-		if (m == null) {
+	private void detectsUndefinedMandatoryText(ClassBinder binder,
+			List<Node> nestedNodes) throws TaskFactoryException {
+		if (binder.getText() == null || !binder.isTextMandatory()) {
 			return;
 		}
-		if (!ReflectionHelper.getAnnotation(m, TextContent.class).mandatory()) {
-			return;
-		}
-		if (nestedNodes == null || nestedNodes.getLength() != 1
-				|| nestedNodes.item(0).getNodeType() != Node.TEXT_NODE) {
+		if (nestedNodes.size() != 1
+				|| nestedNodes.get(0).getNodeType() != Node.TEXT_NODE) {
 			throw new TaskFactoryException(
 					Messages.TaskFactoryEx_MANDATORY_TEXT_NOT_FOUND);
 
 		}
 	}
 
-	private void setAllNestedElements(Object base, NodeList nestedNodes)
+	private void setAllNestedElements(Object base, List<Node> nestedNodes)
 			throws TaskFactoryException {
-		if (nestedNodes == null) {
-			detectsUndefinedMandatoryNestedElements(base.getClass(),
-					nestedNodes);
-			return;
-		}
-		for (int i = 0; i < nestedNodes.getLength(); i++) {
-			if (nestedNodes.item(i).getNodeType() != Node.ELEMENT_NODE) {
+		ClassBinder binder = getBinder(base.getClass());
+		for (Node nested : nestedNodes) {
+			if (nested.getNodeType() != Node.ELEMENT_NODE) {
 				continue;
 			}
-			Element n = (Element) nestedNodes.item(i);
-			if (addNestedElement(base, n) || createNestedElement(base, n)
-					|| registerInnerTask(base, n)) {
+			Element n = (Element) nested;
+			if (addNestedElement(base, binder, n)
+					|| createNestedElement(base, binder, n)
+					|| registerInnerTask(base, binder, n)) {
 				continue;
 			}
 			log.info(new TaskFactoryException(
@@ -427,65 +496,51 @@ public class TaskFactory {
 							Messages.TaskFactoryEx_INVALID_NE, n.getNodeName())))
 					.getUserFriendlyStackTrace());
 		}
-		detectsUndefinedMandatoryNestedElements(base.getClass(), nestedNodes);
+		detectsUndefinedMandatoryNestedElements(binder, nestedNodes);
 	}
 
-	private void detectsUndefinedMandatoryNestedElements(Class<?> base,
-			NodeList nestedNodes) throws TaskFactoryException {
-		for (Method m : base.getMethods()) {
-			NestedElement a = ReflectionHelper.getAnnotation(m,
-					NestedElement.class);
-			if (a != null && a.mandatory()) {
-				boolean found = false;
-				for (int i = 0; i < nestedNodes.getLength(); i++) {
-					if (a.name().equalsIgnoreCase(
-							nestedNodes.item(i).getNodeName())) {
-						found = true;
-						break;
-					}
-				}
-				if (!found) {
-					throw new TaskFactoryException(Msg.bind(
-							Messages.TaskFactoryEx_MANDATORY_NE_NOT_FOUND,
-							a.name()));
+	private void detectsUndefinedMandatoryNestedElements(ClassBinder binder,
+			List<Node> nestedNodes) throws TaskFactoryException {
+		for (String name : binder.getMandatoryNestedElements()) {
+			boolean found = false;
+			for (Node nested : nestedNodes) {
+				if (name.equalsIgnoreCase(nested.getNodeName())) {
+					found = true;
+					break;
 				}
 			}
+			if (!found) {
+				throw new TaskFactoryException(Msg.bind(
+						Messages.TaskFactoryEx_MANDATORY_NE_NOT_FOUND, name));
+			}
 		}
 	}
 
-	private boolean addNestedElement(Object base, Element elmt)
-			throws TaskFactoryException {
-		Method m = findAddMethod(base.getClass(), elmt.getNodeName());
-		if (m == null) {
+	private boolean addNestedElement(Object base, ClassBinder binder,
+			Element elmt) throws TaskFactoryException {
+		Binding b = binder.getAdder(elmt.getNodeName());
+		if (b == null) {
 			return false;
 		}
+		Method m = b.getMethod();
 		try {
 			Object o;
 			try {
-				o = m.getParameterTypes()[0].getConstructor().newInstance();
-			} catch (NoSuchMethodException | InstantiationException
-					| IllegalAccessException | ClassCastException Ex) {
-				throw new RuntimeException("Unexpected error while adding a "
-						+ "nested element by reflection. "
-						+ "Source code has certainly been modified and a "
-						+ "bug have been introduced.", Ex);
-			} catch (InvocationTargetException Ex) {
-				throw new TaskFactoryException(Ex.getCause());
+				o = (Object) b.getParamConstructor().invokeExact();
+			} catch (Throwable Ex) {
+				throw new TaskFactoryException(Ex);
 			}
 
-			setAllMembers(o, elmt.getAttributes());
-			setTextContent(o, elmt.getChildNodes());
-			setAllNestedElements(o, elmt.getChildNodes());
+			setAllMembers(o, listAttributes(elmt));
+			List<Node> nestedNodes = listChildNodes(elmt);
+			setTextContent(o, nestedNodes);
+			setAllNestedElements(o, nestedNodes);
 
+			validateInvocation(b, base, o);
 			try {
-				m.invoke(base, o);
-			} catch (IllegalAccessException | IllegalArgumentException Ex) {
-				throw new RuntimeException("Unexpected error while adding a "
-						+ "nested element by reflection. "
-						+ "Source code has certainly been modified and a bug "
-						+ "have been introduced.", Ex);
-			} catch (InvocationTargetException Ex) {
-				throw new TaskFactoryException(Ex.getCause());
+				b.getHandle().invokeExact(base, o);
+			} catch (Throwable Ex) {
+				throw new TaskFactoryException(Ex);
 			}
 		} catch (TaskFactoryException Ex) {
 			throw new TaskFactoryException(new NestedElementRelatedException(
@@ -500,23 +555,20 @@ public class TaskFactory {
 		return true;
 	}
 
-	private boolean createNestedElement(Object base, Element elmt)
-			throws TaskFactoryException {
-		Method m = findCreateMethod(base.getClass(), elmt.getNodeName());
-		if (m == null) {
+	private boolean createNestedElement(Object base, ClassBinder binder,
+			Element elmt) throws TaskFactoryException {
+		Binding b = binder.getCreator(elmt.getNodeName());
+		if (b == null) {
 			return false;
 		}
+		Method m = b.getMethod();
 		try {
 			Object o = null;
+			validateInvocation(b, base, null);
 			try {
-				o = m.invoke(base);
-			} catch (IllegalAccessException | IllegalArgumentException Ex) {
-				throw new RuntimeException("Unexpected error while creating a "
-						+ "nested element by reflection. "
-						+ "Source code has certainly been modified and a bug "
-						+ "have been introduced.", Ex);
-			} catch (InvocationTargetException Ex) {
-				throw new TaskFactoryException(Ex.getCause());
+				o = (Object) b.getHandle().invokeExact(base);
+			} catch (Throwable Ex) {
+				throw new TaskFactoryException(Ex);
 			}
 			/*
 			 * Verify that the object returned by the Create method is public.
@@ -527,9 +579,10 @@ public class TaskFactory {
 						elmt.getNodeName(), o.getClass().getCanonicalName()));
 			}
 
-			setAllMembers(o, elmt.getAttributes());
-			setTextContent(o, elmt.getChildNodes());
-			setAllNestedElements(o, elmt.getChildNodes());
+			setAllMembers(o, listAttributes(elmt));
+			List<Node> nestedNodes = listChildNodes(elmt);
+			setTextContent(o, nestedNodes);
+			setAllNestedElements(o, nestedNodes);
 		} catch (TaskFactoryException Ex) {
 			throw new TaskFactoryException(new NestedElementRelatedException(
 					elmt, m, Msg.bind(Messages.TaskFactoryEx_SET_NE, elmt
@@ -543,9 +596,9 @@ public class TaskFactory {
 		return true;
 	}
 
-	private boolean registerInnerTask(Object base, Element elmt)
-			throws TaskFactoryException {
-		if (!ReflectionHelper.implement(base.getClass(), ITaskContainer.class)) {
+	private boolean registerInnerTask(Object base, ClassBinder binder,
+			Element elmt) throws TaskFactoryException {
+		if (!binder.isTaskContainer()) {
 			return false;
 		}
 		try {
@@ -556,8 +609,10 @@ public class TaskFactory {
 		return true;
 	}
 
-	private void setMember(Object base, Method m, Class<?> param, Attr attr,
-			String attrVal) throws TaskFactoryException {
+	private void setMember(Object base, Binding b, Attr attr, String attrVal)
+			throws TaskFactoryException {
+		Method m = b.getMethod();
+		Class<?> param = b.getParamType();
 		String attrName = attr.getNodeName();
 		Object o = null;
 		try {
@@ -566,10 +621,10 @@ public class TaskFactory {
 				o = createNewEnumConstant(param, attrVal);
 			}
 			if (o == null) {
-				o = createNewFileBased(param, attrVal);
+				o = createNewFileBased(b, attrVal);
 			}
 			if (o == null) {
-				o = createNewObject(param, attrVal);
+				o = createNewObject(b, attrVal);
 			}
 		} catch (TaskFactoryException Ex) {
 			throw new TaskFactoryException(new AttributeRelatedException(attr,
@@ -581,26 +636,20 @@ public class TaskFactory {
 							State.CRITICAL), Ex));
 		}
 
+		validateInvocation(b, base, o);
 		try {
-			m.invoke(base, o);
-		} catch (IllegalAccessException | IllegalArgumentException Ex) {
-			throw new RuntimeException("Unexpected error while setting an "
-					+ "attribute by reflection. "
-					+ "Source code has certainly been modified and a bug "
-					+ "have been introduced.", Ex);
-		} catch (InvocationTargetException Ex) {
-			throw new TaskFactoryException(new AttributeRelatedException(attr,
-					m, Msg.bind(Messages.TaskFactoryEx_SET_ATTR, attrName,
-							State.FAILED), Ex.getCause()));
+			b.getHandle().invokeExact(base, o);
 		} catch (Throwable Ex) {
 			throw new TaskFactoryException(new AttributeRelatedException(attr,
 					m, Msg.bind(Messages.TaskFactoryEx_SET_ATTR, attrName,
-							State.CRITICAL), Ex));
+							State.FAILED), Ex));
 		}
 	}
 
-	private void setText(Object base, Method m, Class<?> param, Text text,
-			String textVal) throws TaskFactoryException {
+	private void setText(Object base, Binding b, Text text, String textVal)
+			throws TaskFactoryException {
+		Method m = b.getMethod();
+		Class<?> param = b.getParamType();
 		Object o = null;
 		try {
 			o = createNewPrimitiveType(param, textVal);
@@ -608,10 +657,10 @@ public class TaskFactory {
 				o = createNewEnumConstant(param, textVal);
 			}
 			if (o == null) {
-				o = createNewFileBased(param, textVal);
+				o = createNewFileBased(b, textVal);
 			}
 			if (o == null) {
-				o = createNewObject(param, textVal);
+				o = createNewObject(b, textVal);
 			}
 		} catch (TaskFactoryException Ex) {
 			throw new TaskFactoryException(new TextContentRelatedException(
@@ -623,21 +672,53 @@ public class TaskFactory {
 							State.CRITICAL), Ex));
 		}
 
+		validateInvocation(b, base, o);
 		try {
-			m.invoke(base, o);
-		} catch (IllegalAccessException | IllegalArgumentException Ex) {
-			throw new RuntimeException("Unexpected error while setting an "
-					+ "attribute by reflection. "
-					+ "Source code has certainly been modified and a bug "
-					+ "have been introduced.", Ex);
-		} catch (InvocationTargetException Ex) {
-			throw new TaskFactoryException(new TextContentRelatedException(
-					text, m, Msg.bind(Messages.TaskFactoryEx_SET_TEXT,
-							State.FAILED), Ex.getCause()));
+			b.getHandle().invokeExact(base, o);
 		} catch (Throwable Ex) {
 			throw new TaskFactoryException(new TextContentRelatedException(
 					text, m, Msg.bind(Messages.TaskFactoryEx_SET_TEXT,
-							State.CRITICAL), Ex));
+							State.FAILED), Ex));
+		}
+	}
+
+	/**
+	 * <p>
+	 * The handle of the given {@link Binding} casts its receiver and its
+	 * argument to the types of the bound method. Verifying them first ensures
+	 * that everything thrown by the invocation comes from the bound method
+	 * itself.
+	 * </p>
+	 * 
+	 * @param arg
+	 *            is the argument of the bound method (ignored for a create
+	 *            method).
+	 * 
+	 * @throws RuntimeException
+	 *             if the given receiver or argument doesn't match the types
+	 *             of the bound method.
+	 */
+	private static void validateInvocation(Binding b, Object base, Object arg) {
+		Method m = b.getMethod();
+		if (!m.getDeclaringClass().isInstance(base)) {
+			throw new RuntimeException("Unexpected error while invoking the "
+					+ "method '" + m + "' through a method handle : the "
+					+ "receiver doesn't match. "
+					+ "Source code has certainly been modified and a bug "
+					+ "have been introduced.");
+		}
+		Class<?> param = b.getParamType();
+		if (param == null) {
+			// create method : no argument
+			return;
+		}
+		if (arg == null ? param.isPrimitive() : !MethodType.methodType(param)
+				.wrap().returnType().isInstance(arg)) {
+			throw new RuntimeException("Unexpected error while invoking the "
+					+ "method '" + m + "' through a method handle : the "
+					+ "argument doesn't match. "
+					+ "Source code has certainly been modified and a bug "
+					+ "have been introduced.");
 		}
 	}
 
@@ -732,9 +813,9 @@ public class TaskFactory {
 				Arrays.asList(param.getEnumConstants())));
 	}
 
-	private Object createNewFileBased(Class<?> param, String value)
+	private Object createNewFileBased(Binding b, String value)
 			throws TaskFactoryException {
-		if (!ReflectionHelper.implement(param, IFileBased.class)) {
+		if (!b.isParamFileBased()) {
 			return null;
 		}
 		// make an absolute path, relative to the sequence descriptor basedir
@@ -748,20 +829,21 @@ public class TaskFactory {
 						+ "Path of '" + value + "'.", Ex);
 			}
 		}
-		return createNewObject(param, value);
+		return createNewObject(b, value);
 	}
 
-	private Object createNewObject(Class<?> param, String value)
+	private Object createNewObject(Binding b, String value)
 			throws TaskFactoryException {
-		try {
-			return param.getConstructor(String.class).newInstance(value);
-		} catch (NoSuchMethodException | InstantiationException
-				| IllegalAccessException Ex) {
+		MethodHandle ct = b.getParamConstructor();
+		if (ct == null) {
 			throw new TaskFactoryException(Msg.bind(
-					Messages.TaskFactoryEx_NO_CONSTRUCTOR_MATCH,
-					param.getCanonicalName()));
-		} catch (InvocationTargetException Ex) {
-			throw new TaskFactoryException(Ex.getCause());
+					Messages.TaskFactoryEx_NO_CONSTRUCTOR_MATCH, b
+							.getParamType().getCanonicalName()));
+		}
+		try {
+			return (Object) ct.invokeExact(value);
+		} catch (Throwable Ex) {
+			throw new TaskFactoryException(Ex);
 		}
 	}
 
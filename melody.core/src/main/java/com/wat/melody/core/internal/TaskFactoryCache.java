@@ -1,159 +1,265 @@
 package com.wat.melody.core.internal;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import com.wat.melody.api.ITaskContainer;
+import com.wat.melody.api.IUnexpectedAttributes;
 import com.wat.melody.api.Messages;
 import com.wat.melody.api.annotation.Attribute;
 import com.wat.melody.api.annotation.NestedElement;
 import com.wat.melody.api.annotation.NestedElement.Type;
 import com.wat.melody.api.annotation.TextContent;
 import com.wat.melody.api.exception.TaskFactoryException;
+import com.wat.melody.common.files.IFileBased;
 import com.wat.melody.common.messages.Msg;
 import com.wat.melody.common.reflection.ReflectionHelper;
+import com.wat.melody.core.internal.ClassBinder.Binding;
 
 /**
+ * <p>
+ * A thread-safe cache of {@link ClassBinder}.
+ * </p>
+ * 
+ * <p>
+ * The methods of a class are scanned and validated once, when its
+ * {@link ClassBinder} is first requested. The same {@link TaskFactoryCache} is
+ * shared by all {@link TaskFactory} (see {@link #getGlobalCache()}), so that
+ * sub-processing (e.g. call, foreach) doesn't scan classes again.
+ * </p>
  * 
  * @author Guillaume Cornet
  * 
  */
 public class TaskFactoryCache {
 
-	private Map<Class<?>, Map<String, Method>> _setCache;
-	private Map<Class<?>, Map<String, Method>> _textCache;
-	private Map<Class<?>, Map<String, Method>> _addCache;
-	private Map<Class<?>, Map<String, Method>> _createCache;
+	private static TaskFactoryCache _globalCache = new TaskFactoryCache();
 
-	public TaskFactoryCache() {
-		_setCache = new HashMap<Class<?>, Map<String, Method>>();
-		_textCache = new HashMap<Class<?>, Map<String, Method>>();
-		_addCache = new HashMap<Class<?>, Map<String, Method>>();
-		_createCache = new HashMap<Class<?>, Map<String, Method>>();
+	/**
+	 * @return the {@link TaskFactoryCache} shared by all {@link TaskFactory}.
+	 */
+	public static TaskFactoryCache getGlobalCache() {
+		return _globalCache;
 	}
 
-	public Method getSetMethod(Class<?> c, String attrName)
-			throws TaskFactoryException {
-		if (!contains(c)) {
-			put(c);
-		}
-		return _setCache.get(c).get(attrName.toUpperCase());
-	}
+	private static final MethodType SETTER_TYPE = MethodType.methodType(
+			void.class, Object.class, Object.class);
+	private static final MethodType CREATOR_TYPE = MethodType.methodType(
+			Object.class, Object.class);
+	private static final MethodType STRING_CONSTRUCTOR_TYPE = MethodType
+			.methodType(Object.class, String.class);
+	private static final MethodType NOARG_CONSTRUCTOR_TYPE = MethodType
+			.methodType(Object.class);
 
-	public Method getTextMethod(Class<?> c) throws TaskFactoryException {
-		if (!contains(c)) {
-			put(c);
-		}
-		return _textCache.get(c).get("t");
+	private ConcurrentMap<Class<?>, ClassBinder> _binders;
+
+	public TaskFactoryCache() {
+		_binders = new ConcurrentHashMap<Class<?>, ClassBinder>();
 	}
 
-	public Method getAddMethod(Class<?> c, String elmtName)
-			throws TaskFactoryException {
-		if (!contains(c)) {
-			put(c);
+	/**
+	 * <p>
+	 * Get the {@link ClassBinder} of the given class. If the given class was
+	 * not previously scanned, it is scanned, validated and put in this cache.
+	 * </p>
+	 * 
+	 * @param c
+	 *            is the class to bind.
+	 * 
+	 * @return the {@link ClassBinder} of the given class.
+	 * 
+	 * @throws TaskFactoryException
+	 *             if a method of the given class which is decorated by an
+	 *             {@link Attribute}, a {@link TextContent} or a
+	 *             {@link NestedElement} annotation doesn't respect
+	 *             specifications.
+	 */
+	ClassBinder getBinder(Class<?> c) throws TaskFactoryException {
+		ClassBinder binder = _binders.get(c);
+		if (binder != null) {
+			return binder;
 		}
-		return _addCache.get(c).get(elmtName.toUpperCase());
+		/*
+		 * Concurrent threads may scan the same class. The first binder put
+		 * wins, so that all threads use the same.
+		 */
+		binder = bind(c);
+		ClassBinder previous = _binders.putIfAbsent(c, binder);
+		return previous != null ? previous : binder;
 	}
 
-	public Method getCreateMethod(Class<?> c, String elmtName)
-			throws TaskFactoryException {
-		if (!contains(c)) {
-			put(c);
-		}
-		return _createCache.get(c).get(elmtName.toUpperCase());
+	public int size() {
+		return _binders.size();
 	}
 
-	private boolean contains(Class<?> c) {
-		return _setCache.containsKey(c);
+	public void clear() {
+		_binders.clear();
 	}
 
-	private void put(Class<?> c) throws TaskFactoryException {
-		Map<String, Method> setEntry = _setCache.get(c);
-		if (setEntry == null) {
-			_setCache.put(c, setEntry = new HashMap<String, Method>());
-		}
-		Map<String, Method> textEntry = _textCache.get(c);
-		if (textEntry == null) {
-			_textCache.put(c, textEntry = new HashMap<String, Method>());
-		}
-		Map<String, Method> addEntry = _addCache.get(c);
-		if (addEntry == null) {
-			_addCache.put(c, addEntry = new HashMap<String, Method>());
-		}
-		Map<String, Method> createEntry = _createCache.get(c);
-		if (createEntry == null) {
-			_createCache.put(c, createEntry = new HashMap<String, Method>());
-		}
+	private ClassBinder bind(Class<?> c) throws TaskFactoryException {
+		ClassBinder binder = new ClassBinder();
+		Map<String, Binding> addEntry = binder.getAdders();
+		Map<String, Binding> createEntry = binder.getCreators();
 		for (Method m : c.getMethods()) {
 			Attribute a = ReflectionHelper.getAnnotation(m, Attribute.class);
 			if (a != null) {
 				validateSetMethod(c, a, m);
-				if (setEntry.containsKey(a.name().toUpperCase())) {
+				String key = a.name().toUpperCase();
+				if (binder.containsSetter(key)) {
+					throw new TaskFactoryException(Msg.bind(
+							Messages.TaskFactoryEx_ATTR_DUPLICATE, key, binder
+									.getSetter(key).getMethod(), m,
+							Attribute.class.getCanonicalName()));
+				}
+				Binding b = bindSetter(m);
+				if (b == null) {
 					throw new TaskFactoryException(Msg.bind(
-							Messages.TaskFactoryEx_ATTR_DUPLICATE, a.name()
-									.toUpperCase(), setEntry.get(a.name()
-									.toUpperCase()), m, Attribute.class
-									.getCanonicalName()));
+							Messages.TaskFactoryEx_ATTR_SPEC_CONFLICT,
+							m.getName(), c.getCanonicalName(), a.name()));
+				}
+				binder.putSetter(key, b);
+				if (a.mandatory()) {
+					binder.getMandatoryAttributes().add(a.name());
 				}
-				setEntry.put(a.name().toUpperCase(), m);
 				continue;
 			}
 			TextContent t = ReflectionHelper
 					.getAnnotation(m, TextContent.class);
 			if (t != null) {
 				validateTextMethod(c, t, m);
-				if (textEntry.containsKey("t")) {
+				if (binder.getText() != null) {
 					throw new TaskFactoryException(Msg.bind(
-							Messages.TaskFactoryEx_TEXT_DUPLICATE,
-							textEntry.get("t"), m,
+							Messages.TaskFactoryEx_TEXT_DUPLICATE, binder
+									.getText().getMethod(), m,
 							TextContent.class.getCanonicalName()));
 				}
-				textEntry.put("t", m);
+				Binding b = bindSetter(m);
+				if (b == null) {
+					throw new TaskFactoryException(Msg.bind(
+							Messages.TaskFactoryEx_TEXT_SPEC_CONFLICT,
+							m.getName(), c.getCanonicalName()));
+				}
+				binder.setText(b, t.mandatory());
 				continue;
 			}
 			NestedElement e = ReflectionHelper.getAnnotation(m,
 					NestedElement.class);
-			if (e != null && e.type() == Type.ADD) {
+			if (e == null) {
+				continue;
+			}
+			if (e.mandatory()) {
+				binder.getMandatoryNestedElements().add(e.name());
+			}
+			if (e.type() == Type.ADD) {
 				validateAddMethod(c, e, m);
-				if (addEntry.containsKey(e.name().toUpperCase())) {
-					throw new TaskFactoryException(Msg.bind(
-							Messages.TaskFactoryEx_NE_DUPLICATE, e.name()
-									.toUpperCase(), addEntry.get(e.name()
-									.toUpperCase()), m, NestedElement.class
-									.getCanonicalName()));
-				}
-				if (createEntry.containsKey(e.name().toUpperCase())) {
+				validateNestedElementIsUnique(e, m, addEntry);
+				validateNestedElementIsUnique(e, m, createEntry);
+				Binding b = bindAdder(m);
+				if (b == null) {
 					throw new TaskFactoryException(Msg.bind(
-							Messages.TaskFactoryEx_NE_DUPLICATE, e.name()
-									.toUpperCase(), createEntry.get(e.name()
-									.toUpperCase()), m, NestedElement.class
-									.getCanonicalName()));
+							Messages.TaskFactoryEx_ADD_NE_SPEC_CONFLICT, m,
+							e.name()));
 				}
-				addEntry.put(e.name().toUpperCase(), m);
+				addEntry.put(e.name().toUpperCase(), b);
 				continue;
 			}
-			if (e != null && e.type() == Type.CREATE) {
+			if (e.type() == Type.CREATE) {
 				validateCreateMethod(c, e, m);
-				if (addEntry.containsKey(e.name().toUpperCase())) {
-					throw new TaskFactoryException(Msg.bind(
-							Messages.TaskFactoryEx_NE_DUPLICATE, e.name()
-									.toUpperCase(), addEntry.get(e.name()
-									.toUpperCase()), m, NestedElement.class
-									.getCanonicalName()));
-				}
-				if (createEntry.containsKey(e.name().toUpperCase())) {
+				validateNestedElementIsUnique(e, m, addEntry);
+				validateNestedElementIsUnique(e, m, createEntry);
+				Binding b = bindCreator(m);
+				if (b == null) {
 					throw new TaskFactoryException(Msg.bind(
-							Messages.TaskFactoryEx_NE_DUPLICATE, e.name()
-									.toUpperCase(), createEntry.get(e.name()
-									.toUpperCase()), m, NestedElement.class
-									.getCanonicalName()));
+							Messages.TaskFactoryEx_CREATE_NE_SPEC_CONFLICT, m,
+							e.name()));
 				}
-				createEntry.put(e.name().toUpperCase(), m);
+				createEntry.put(e.name().toUpperCase(), b);
 				continue;
 			}
 		}
+		binder.setUnexpectedAttributesAccepted(ReflectionHelper.implement(c,
+				IUnexpectedAttributes.class));
+		binder.setTaskContainer(ReflectionHelper.implement(c,
+				ITaskContainer.class));
+		binder.freeze();
+		return binder;
+	}
+
+	private void validateNestedElementIsUnique(NestedElement e, Method m,
+			Map<String, Binding> entry) throws TaskFactoryException {
+		Binding b = entry.get(e.name().toUpperCase());
+		if (b != null) {
+			throw new TaskFactoryException(Msg.bind(
+					Messages.TaskFactoryEx_NE_DUPLICATE, e.name().toUpperCase(),
+					b.getMethod(), m, NestedElement.class.getCanonicalName()));
+		}
+	}
+
+	/**
+	 * @return the binding of the given setter, or <tt>null</tt> if the given
+	 *         setter is not accessible.
+	 */
+	private Binding bindSetter(Method m) {
+		Class<?> param = m.getParameterTypes()[0];
+		MethodHandle ctor = null;
+		if (!param.isPrimitive() && !param.isEnum()) {
+			try {
+				ctor = MethodHandles
+						.publicLookup()
+						.findConstructor(param,
+								MethodType.methodType(void.class, String.class))
+						.asType(STRING_CONSTRUCTOR_TYPE);
+			} catch (NoSuchMethodException | IllegalAccessException Ex) {
+				/*
+				 * The parameter class only have a (String, array) constructor.
+				 * The error will be raised when setting the attribute.
+				 */
+			}
+		}
+		try {
+			return new Binding(m, MethodHandles.publicLookup().unreflect(m)
+					.asType(SETTER_TYPE), param, ctor,
+					ReflectionHelper.implement(param, IFileBased.class));
+		} catch (IllegalAccessException Ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the binding of the given add method, or <tt>null</tt> if the
+	 *         given add method or its argument's no-arg constructor is not
+	 *         accessible.
+	 */
+	private Binding bindAdder(Method m) {
+		Class<?> param = m.getParameterTypes()[0];
+		try {
+			return new Binding(m, MethodHandles.publicLookup().unreflect(m)
+					.asType(SETTER_TYPE), param, MethodHandles.publicLookup()
+					.findConstructor(param, MethodType.methodType(void.class))
+					.asType(NOARG_CONSTRUCTOR_TYPE), false);
+		} catch (NoSuchMethodException | IllegalAccessException Ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the binding of the given create method, or <tt>null</tt> if the
+	 *         given create method is not accessible.
+	 */
+	private Binding bindCreator(Method m) {
+		try {
+			return new Binding(m, MethodHandles.publicLookup().unreflect(m)
+					.asType(CREATOR_TYPE), null, null, false);
+		} catch (IllegalAccessException Ex) {
+			return null;
+		}
 	}
 
 	/**
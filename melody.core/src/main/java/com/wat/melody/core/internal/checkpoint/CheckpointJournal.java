@@ -0,0 +1,328 @@
+package com.wat.melody.core.internal.checkpoint;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wat.melody.common.properties.Property;
+import com.wat.melody.common.properties.PropertySet;
+
+/**
+ * <p>
+ * An append-only journal, which records the units of work (orders, foreach
+ * items, call refs) a processing and all its sub-processing successfully
+ * completed, so that a failed processing can be resumed without redoing them.
+ * </p>
+ * 
+ * <p>
+ * Each line of the journal is made of a kind, a key and a human-readable
+ * description of the unit. The key is a digest of the scope of the unit
+ * (which is the key of the sub-processing the unit belongs to, if any), of
+ * the location of the task which owns the unit, of the unit itself and of the
+ * properties the unit is processed with. The property <tt>UUID</tt>, which
+ * changes at each run, is not part of the key.
+ * </p>
+ * 
+ * <p>
+ * The effects of a unit of work on the Resources Descriptor are only persisted
+ * when the Resources Descriptor is stored, at the end of the processing. This
+ * is why a {@link #STORED} line is appended right after the Resources
+ * Descriptor is stored (see {@link #markStored()}). When resuming, only the
+ * units recorded before the last {@link #STORED} line are considered as done :
+ * the others may have modified a Resources Descriptor which was never stored.
+ * </p>
+ * 
+ * <p>
+ * Lines are buffered and the journal is flushed and synced to disk every
+ * {@link #SYNC_BATCH_SIZE} lines or {@link #SYNC_INTERVAL} milliseconds,
+ * whatever comes first, and each time a {@link #STORED} line is appended.
+ * </p>
+ * 
+ * <p>
+ * Units can be recorded by multiple threads simultaneously.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class CheckpointJournal {
+
+	private static Logger log = LoggerFactory
+			.getLogger(CheckpointJournal.class);
+
+	public static final String STORED = "STORED";
+
+	/**
+	 * Number of lines written before the journal is synced.
+	 */
+	public static final int SYNC_BATCH_SIZE = 64;
+
+	/**
+	 * Maximum amount of milliseconds a line can wait before being synced.
+	 */
+	public static final long SYNC_INTERVAL = 1000;
+
+	/**
+	 * The name of the property which is excluded from fingerprints.
+	 */
+	private static final String UUID = "UUID";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * @param scope
+	 *            is the scope of the unit of work.
+	 * @param location
+	 *            is the location of the task which owns the unit of work.
+	 * @param unit
+	 *            identifies the unit of work in this task.
+	 * @param ps
+	 *            is the {@link PropertySet} the unit of work is processed
+	 *            with.
+	 * 
+	 * @return the key of the given unit of work.
+	 */
+	public static String computeKey(String scope, String location,
+			String unit, PropertySet ps) {
+		MessageDigest md = newDigest();
+		update(md, scope);
+		update(md, location);
+		update(md, unit);
+		for (Property p : ps.values()) {
+			if (p.getName().getValue().equals(UUID)) {
+				continue;
+			}
+			update(md, p.getName().getValue());
+			update(md, p.getValue());
+		}
+		byte[] digest = md.digest();
+		char[] hex = new char[digest.length * 2];
+		for (int i = 0; i < digest.length; i++) {
+			hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+			hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+		}
+		return new String(hex);
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException Ex) {
+			throw new RuntimeException("Unexpected error while creating a "
+					+ "SHA-1 message digest. "
+					+ "Because every Java platform must support SHA-1, "
+					+ "such error cannot happened. "
+					+ "Source code has certainly been modified and "
+					+ "a bug have been introduced.", Ex);
+		}
+	}
+
+	private static void update(MessageDigest md, String s) {
+		md.update(String.valueOf(s).getBytes(UTF8));
+		// separator, so that ('ab','c') and ('a','bc') don't collide
+		md.update((byte) 0);
+	}
+
+	private String _path;
+	private Set<String> _completedUnits;
+	private FileOutputStream _out;
+	private BufferedWriter _writer;
+	private int _pendingLines;
+	private long _lastSync;
+
+	/**
+	 * <p>
+	 * Open the journal stored in the given file.
+	 * </p>
+	 * 
+	 * @param path
+	 *            is the path of the journal file.
+	 * @param resume
+	 *            is <tt>true</tt> if the processing resumes a previous
+	 *            processing. In this case, the units recorded in the journal
+	 *            before its last {@link #STORED} line are loaded and new units
+	 *            are appended. Otherwise, the journal is truncated.
+	 * 
+	 * @throws IOException
+	 *             if the journal file can't be read or written.
+	 */
+	public CheckpointJournal(String path, boolean resume) throws IOException {
+		if (path == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + String.class.getCanonicalName()
+					+ " (a file path).");
+		}
+		_path = path;
+		_completedUnits = new HashSet<String>();
+		Path file = Paths.get(path);
+		if (resume && Files.exists(file)) {
+			load(file);
+		} else if (resume) {
+			log.warn("Checkpoint journal '" + _path + "' doesn't exist : "
+					+ "the processing will start from the beginning.");
+		}
+		_out = new FileOutputStream(path, resume);
+		_writer = new BufferedWriter(new OutputStreamWriter(_out, UTF8));
+		if (resume) {
+			// terminates the last line, which may have been torn
+			_writer.newLine();
+		}
+		_pendingLines = 0;
+		_lastSync = System.nanoTime();
+	}
+
+	private void load(Path file) throws IOException {
+		Set<String> candidates = new HashSet<String>();
+		boolean stored = false;
+		int lineNumber = 0;
+		try (BufferedReader r = Files.newBufferedReader(file, UTF8)) {
+			String line;
+			while ((line = r.readLine()) != null) {
+				lineNumber++;
+				String[] fields = line.split(" ", 3);
+				if (fields[0].equals(STORED)) {
+					stored = true;
+					_completedUnits.addAll(candidates);
+					candidates.clear();
+				} else if (fields.length >= 2) {
+					candidates.add(fields[1]);
+				} else if (line.trim().length() != 0) {
+					// a torn line, because the previous run was killed
+					log.debug("Checkpoint journal '" + _path + "': line "
+							+ lineNumber + " ignored.");
+				}
+			}
+		}
+		if (!stored) {
+			// the previous run was killed before storing the resources
+			log.warn("Checkpoint journal '" + _path + "' doesn't contain any "
+					+ STORED + " line : the resources were never stored by "
+					+ "the previous processing, which will be entirely redone ("
+					+ candidates.size() + " unit(s) ignored).");
+			return;
+		}
+		log.info("Resuming from checkpoint journal '" + _path + "' : "
+				+ _completedUnits.size() + " unit(s) already done, "
+				+ candidates.size() + " unit(s) done after the last "
+				+ "store of the resources will be redone.");
+	}
+
+	public String getPath() {
+		return _path;
+	}
+
+	/**
+	 * @param key
+	 *            is the key of a unit of work (see
+	 *            {@link #computeKey(String, String, String, PropertySet)}).
+	 * 
+	 * @return <tt>true</tt> if the given unit of work was successfully
+	 *         completed by the resumed processing.
+	 */
+	public boolean isCompleted(String key) {
+		// never modified after construction
+		return _completedUnits.contains(key);
+	}
+
+	/**
+	 * <p>
+	 * Record that the given unit of work was successfully completed.
+	 * </p>
+	 * 
+	 * @param kind
+	 *            is the kind of unit, which is the name of the task which
+	 *            owns the unit (e.g. <tt>ORDER</tt>, <tt>FOREACH</tt>,
+	 *            <tt>CALL</tt>).
+	 * @param key
+	 *            is the key of the unit (see
+	 *            {@link #computeKey(String, String, String, PropertySet)}).
+	 * @param description
+	 *            is a human-readable description of the unit.
+	 */
+	public synchronized void record(String kind, String key,
+			String description) {
+		if (_writer == null) {
+			return;
+		}
+		try {
+			_writer.write(kind + " " + key + " "
+					+ description.replaceAll("[\r\n]", " "));
+			_writer.newLine();
+			long now = System.nanoTime();
+			if (++_pendingLines >= SYNC_BATCH_SIZE
+					|| TimeUnit.NANOSECONDS.toMillis(now - _lastSync) >= SYNC_INTERVAL) {
+				sync();
+			}
+		} catch (IOException Ex) {
+			log.warn("Fail to write in the checkpoint journal '" + _path
+					+ "'. The checkpoint journal is disabled.", Ex);
+			close();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Record that the Resources Descriptor was stored, which means that all
+	 * the units of work recorded so far can be trusted by a resumed
+	 * processing. The journal is synced to disk.
+	 * </p>
+	 */
+	public synchronized void markStored() {
+		if (_writer == null) {
+			return;
+		}
+		try {
+			_writer.write(STORED);
+			_writer.newLine();
+			sync();
+		} catch (IOException Ex) {
+			log.warn("Fail to write in the checkpoint journal '" + _path
+					+ "'. The checkpoint journal is disabled.", Ex);
+			close();
+		}
+	}
+
+	private void sync() throws IOException {
+		_writer.flush();
+		_out.getFD().sync();
+		_pendingLines = 0;
+		_lastSync = System.nanoTime();
+	}
+
+	/**
+	 * <p>
+	 * Flush and close the journal. Later records are ignored.
+	 * </p>
+	 */
+	public synchronized void close() {
+		if (_writer == null) {
+			return;
+		}
+		try {
+			_writer.close();
+		} catch (IOException Ex) {
+			log.warn("Fail to close the checkpoint journal '" + _path + "'.",
+					Ex);
+		} finally {
+			_writer = null;
+			_out = null;
+		}
+	}
+
+}
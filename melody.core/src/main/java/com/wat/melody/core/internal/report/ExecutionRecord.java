@@ -0,0 +1,221 @@
+package com.wat.melody.core.internal.report;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.wat.melody.api.event.State;
+import com.wat.melody.api.report.ITaskReport;
+import com.wat.melody.common.report.TaskMetric;
+import com.wat.melody.common.report.TaskMetrics;
+
+/**
+ * <p>
+ * The execution of a single task : when it started, how long it took, how much
+ * CPU it consumed, what it measured (see {@link TaskMetrics}), what it
+ * reported (see {@link com.wat.melody.api.ITaskContext#reportActivity}) and
+ * its final {@link State}.
+ * </p>
+ * 
+ * <p>
+ * Between {@link #start()} and {@link #finish(State)}, the {@link TaskMetrics}
+ * of this record is current for the thread which processes the task, and for
+ * all the threads it creates. When the task ends, its {@link TaskMetrics} are
+ * added to the {@link TaskMetrics} of its parent task : the metrics of a task
+ * include the metrics of its inner tasks. On the other hand, the CPU time is
+ * the CPU time consumed by the thread which processed the task only.
+ * </p>
+ * 
+ * <p>
+ * {@link #start()} and {@link #finish(State)} must be called by the same
+ * thread.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class ExecutionRecord {
+
+	private static final ThreadMXBean THREADS = ManagementFactory
+			.getThreadMXBean();
+	private static final boolean CPU_TIME_SUPPORTED = THREADS
+			.isCurrentThreadCpuTimeSupported()
+			&& THREADS.isThreadCpuTimeEnabled();
+
+	private String _taskName;
+	private String _orderName;
+	private String _location;
+	private long _startDate;
+	private long _startNanos;
+	private long _startCpuTime;
+	private long _wallTime;
+	private long _cpuTime;
+	private TaskMetrics _metrics;
+	private TaskMetrics _parentMetrics;
+	private State _state;
+	private List<ITaskReport> _reports;
+
+	/**
+	 * @param taskName
+	 *            is the name of the task.
+	 * @param orderName
+	 *            is the name of the order, if the task is an order, or
+	 *            <tt>null</tt>.
+	 * @param location
+	 *            is the location of the task in its Sequence Descriptor.
+	 */
+	public ExecutionRecord(String taskName, String orderName, String location) {
+		if (taskName == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + String.class.getCanonicalName()
+					+ " (a task name).");
+		}
+		_taskName = taskName;
+		_orderName = orderName;
+		_location = location;
+		_wallTime = -1;
+		_cpuTime = -1;
+		_metrics = new TaskMetrics();
+		_reports = Collections.synchronizedList(new ArrayList<ITaskReport>());
+	}
+
+	/**
+	 * <p>
+	 * Mark the beginning of the task, and make the {@link TaskMetrics} of this
+	 * record current for the calling thread.
+	 * </p>
+	 */
+	public void start() {
+		_startDate = System.currentTimeMillis();
+		_startNanos = System.nanoTime();
+		_startCpuTime = CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime()
+				: -1;
+		_parentMetrics = TaskMetrics.setCurrent(_metrics);
+	}
+
+	/**
+	 * <p>
+	 * Mark the end of the task, restore the {@link TaskMetrics} which was
+	 * current when {@link #start()} was called, and add the metrics of this
+	 * record to it.
+	 * </p>
+	 * 
+	 * @param state
+	 *            is the final {@link State} of the task.
+	 */
+	public void finish(State state) {
+		_wallTime = System.nanoTime() - _startNanos;
+		if (_startCpuTime != -1) {
+			_cpuTime = THREADS.getCurrentThreadCpuTime() - _startCpuTime;
+		}
+		_state = state;
+		TaskMetrics.setCurrent(_parentMetrics);
+		if (_parentMetrics != null) {
+			_parentMetrics.addAll(_metrics);
+		}
+		_parentMetrics = null;
+	}
+
+	/**
+	 * <p>
+	 * Attach the given {@link ITaskReport} to this record.
+	 * </p>
+	 * 
+	 * @param report
+	 *            is the {@link ITaskReport} to attach.
+	 */
+	public void addReport(ITaskReport report) {
+		if (report == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + ITaskReport.class.getCanonicalName()
+					+ ".");
+		}
+		_reports.add(report);
+	}
+
+	public String getTaskName() {
+		return _taskName;
+	}
+
+	/**
+	 * @return the name of the order, if the task is an order, or <tt>null</tt>.
+	 */
+	public String getOrderName() {
+		return _orderName;
+	}
+
+	public String getLocation() {
+		return _location;
+	}
+
+	/**
+	 * @return the date when the task started, in milliseconds since the epoch.
+	 */
+	public long getStartDate() {
+		return _startDate;
+	}
+
+	/**
+	 * @return the elapsed time of the task, in nanoseconds, or -1 if the task
+	 *         is not finished.
+	 */
+	public long getWallTime() {
+		return _wallTime;
+	}
+
+	/**
+	 * @return the CPU time consumed by the thread which processed the task, in
+	 *         nanoseconds, or -1 if the JVM doesn't support it or if the task
+	 *         is not finished.
+	 */
+	public long getCpuTime() {
+		return _cpuTime;
+	}
+
+	public long getMetric(TaskMetric metric) {
+		return _metrics.get(metric);
+	}
+
+	/**
+	 * @return the final {@link State} of the task, or <tt>null</tt> if the
+	 *         task is not finished.
+	 */
+	public State getState() {
+		return _state;
+	}
+
+	/**
+	 * @return a copy of the {@link ITaskReport} attached to this record.
+	 */
+	public List<ITaskReport> getReports() {
+		synchronized (_reports) {
+			return new ArrayList<ITaskReport>(_reports);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder("{ ");
+		str.append("task:");
+		str.append(getTaskName());
+		if (getOrderName() != null) {
+			str.append(", order:");
+			str.append(getOrderName());
+		}
+		str.append(", location:");
+		str.append(getLocation());
+		str.append(", wall-time:");
+		str.append(getWallTime());
+		str.append(", cpu-time:");
+		str.append(getCpuTime());
+		str.append(", metrics:");
+		str.append(_metrics);
+		str.append(", state:");
+		str.append(getState());
+		str.append(" }");
+		return str.toString();
+	}
+
+}
@@ -0,0 +1,439 @@
+package com.wat.melody.core.internal.report;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.wat.melody.api.event.State;
+import com.wat.melody.api.report.ITaskReport;
+import com.wat.melody.api.report.ITaskReportItem;
+import com.wat.melody.common.report.TaskMetric;
+
+/**
+ * <p>
+ * Collects the {@link ExecutionRecord} of all the tasks processed by a
+ * processing and by all its sub-processing, and writes them at the end of the
+ * processing.
+ * </p>
+ * 
+ * <p>
+ * The report is written in JSON (see {@link #write(String)}). It contains one
+ * entry per task, and one entry per order, which aggregates all the executions
+ * of this order. A human-readable summary of the slowest tasks and orders is
+ * also available (see {@link #getSummary(int)}).
+ * </p>
+ * 
+ * <p>
+ * Records can be added by multiple threads simultaneously.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class ProcessingReport {
+
+	public static final int DEFAULT_TOP_COUNT = 10;
+
+	private static final Comparator<ExecutionRecord> SLOWEST_FIRST = new Comparator<ExecutionRecord>() {
+
+		@Override
+		public int compare(ExecutionRecord r1, ExecutionRecord r2) {
+			return Long.compare(r2.getWallTime(), r1.getWallTime());
+		}
+
+	};
+
+	private static final Comparator<OrderStatistics> SLOWEST_ORDER_FIRST = new Comparator<OrderStatistics>() {
+
+		@Override
+		public int compare(OrderStatistics o1, OrderStatistics o2) {
+			return Long.compare(o2.getTotalWallTime(), o1.getTotalWallTime());
+		}
+
+	};
+
+	private long _startDate;
+	private Queue<ExecutionRecord> _records;
+
+	public ProcessingReport() {
+		_startDate = System.currentTimeMillis();
+		_records = new ConcurrentLinkedQueue<ExecutionRecord>();
+	}
+
+	/**
+	 * <p>
+	 * Create a new {@link ExecutionRecord}, and add it to this report.
+	 * </p>
+	 * 
+	 * @param taskName
+	 *            is the name of the task.
+	 * @param orderName
+	 *            is the name of the order, if the task is an order, or
+	 *            <tt>null</tt>.
+	 * @param location
+	 *            is the location of the task in its Sequence Descriptor.
+	 * 
+	 * @return the new {@link ExecutionRecord}, not started yet.
+	 */
+	public ExecutionRecord newRecord(String taskName, String orderName,
+			String location) {
+		ExecutionRecord record = new ExecutionRecord(taskName, orderName,
+				location);
+		_records.add(record);
+		return record;
+	}
+
+	/**
+	 * @return the date when this report was created, in milliseconds since the
+	 *         epoch.
+	 */
+	public long getStartDate() {
+		return _startDate;
+	}
+
+	/**
+	 * @return the number of {@link ExecutionRecord} in this report.
+	 */
+	public int size() {
+		return _records.size();
+	}
+
+	/**
+	 * @return the finished {@link ExecutionRecord} of this report, slowest
+	 *         first.
+	 */
+	private List<ExecutionRecord> getFinishedRecords() {
+		List<ExecutionRecord> records = new ArrayList<ExecutionRecord>();
+		for (ExecutionRecord record : _records) {
+			if (record.getState() != null) {
+				records.add(record);
+			}
+		}
+		Collections.sort(records, SLOWEST_FIRST);
+		return records;
+	}
+
+	/**
+	 * @return the statistics of each order, slowest first.
+	 */
+	private static List<OrderStatistics> getOrderStatistics(
+			List<ExecutionRecord> records) {
+		Map<String, OrderStatistics> orders = new LinkedHashMap<String, OrderStatistics>();
+		for (ExecutionRecord record : records) {
+			if (record.getOrderName() == null) {
+				continue;
+			}
+			String key = record.getOrderName() + " " + record.getLocation();
+			OrderStatistics stats = orders.get(key);
+			if (stats == null) {
+				stats = new OrderStatistics(record.getOrderName(),
+						record.getLocation());
+				orders.put(key, stats);
+			}
+			stats.add(record);
+		}
+		List<OrderStatistics> res = new ArrayList<OrderStatistics>(
+				orders.values());
+		Collections.sort(res, SLOWEST_ORDER_FIRST);
+		return res;
+	}
+
+	/**
+	 * <p>
+	 * Write this report in the given file, in JSON.
+	 * </p>
+	 * 
+	 * @param path
+	 *            is the path of the file to write. If the file exists, it is
+	 *            overwritten.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurred while writing the file.
+	 */
+	public void write(String path) throws IOException {
+		if (path == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + String.class.getCanonicalName()
+					+ " (a file path).");
+		}
+		List<ExecutionRecord> records = getFinishedRecords();
+		SimpleDateFormat df = new SimpleDateFormat(
+				"yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+		Path file = Paths.get(path);
+		try (BufferedWriter w = Files.newBufferedWriter(file,
+				Charset.forName("UTF-8"))) {
+			w.write("{\n  \"start\": ");
+			writeString(w, df.format(new Date(getStartDate())));
+			w.write(",\n  \"elapsed-ms\": ");
+			w.write(String.valueOf(System.currentTimeMillis() - getStartDate()));
+			w.write(",\n  \"tasks\": [");
+			String sep = "\n";
+			for (ExecutionRecord record : records) {
+				w.write(sep);
+				sep = ",\n";
+				writeRecord(w, record, df);
+			}
+			w.write("\n  ],\n  \"orders\": [");
+			sep = "\n";
+			for (OrderStatistics stats : getOrderStatistics(records)) {
+				w.write(sep);
+				sep = ",\n";
+				writeOrder(w, stats);
+			}
+			w.write("\n  ]\n}\n");
+		}
+	}
+
+	private static void writeRecord(BufferedWriter w, ExecutionRecord r,
+			SimpleDateFormat df) throws IOException {
+		w.write("    { \"task\": ");
+		writeString(w, r.getTaskName());
+		if (r.getOrderName() != null) {
+			w.write(", \"order\": ");
+			writeString(w, r.getOrderName());
+		}
+		w.write(", \"location\": ");
+		writeString(w, r.getLocation());
+		w.write(", \"start\": ");
+		writeString(w, df.format(new Date(r.getStartDate())));
+		w.write(", \"wall-time-ns\": ");
+		w.write(String.valueOf(r.getWallTime()));
+		w.write(", \"cpu-time-ns\": ");
+		w.write(String.valueOf(r.getCpuTime()));
+		w.write(", \"wait-time-ns\": ");
+		w.write(String.valueOf(r.getMetric(TaskMetric.WAIT_TIME)));
+		w.write(", \"bytes-transferred\": ");
+		w.write(String.valueOf(r.getMetric(TaskMetric.BYTES_TRANSFERRED)));
+		w.write(", \"retries\": ");
+		w.write(String.valueOf(r.getMetric(TaskMetric.RETRIES)));
+		w.write(", \"state\": ");
+		writeString(w, r.getState().toString());
+		List<ITaskReport> reports = r.getReports();
+		if (!reports.isEmpty()) {
+			w.write(", \"activity\": [");
+			String sep = " ";
+			for (ITaskReport report : reports) {
+				for (ITaskReportItem item : report.getTaskReportItems()) {
+					w.write(sep);
+					sep = ", ";
+					w.write("{ \"date\": ");
+					writeString(w, df.format(item.getReportItemDate()));
+					w.write(", \"type\": ");
+					writeString(w, item.getReportItemType().toString());
+					w.write(", \"message\": ");
+					writeString(w, item.getReportItemMessage());
+					w.write(" }");
+				}
+			}
+			w.write(" ]");
+		}
+		w.write(" }");
+	}
+
+	private static void writeOrder(BufferedWriter w, OrderStatistics stats)
+			throws IOException {
+		w.write("    { \"order\": ");
+		writeString(w, stats.getOrderName());
+		w.write(", \"location\": ");
+		writeString(w, stats.getLocation());
+		w.write(", \"count\": ");
+		w.write(String.valueOf(stats.getCount()));
+		w.write(", \"failures\": ");
+		w.write(String.valueOf(stats.getFailureCount()));
+		w.write(", \"total-wall-time-ns\": ");
+		w.write(String.valueOf(stats.getTotalWallTime()));
+		w.write(", \"max-wall-time-ns\": ");
+		w.write(String.valueOf(stats.getMaxWallTime()));
+		w.write(" }");
+	}
+
+	private static void writeString(BufferedWriter w, String s)
+			throws IOException {
+		if (s == null) {
+			w.write("null");
+			return;
+		}
+		w.write('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				w.write("\\\"");
+				break;
+			case '\\':
+				w.write("\\\\");
+				break;
+			case '\n':
+				w.write("\\n");
+				break;
+			case '\r':
+				w.write("\\r");
+				break;
+			case '\t':
+				w.write("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					w.write(String.format("\\u%04x", (int) c));
+				} else {
+					w.write(c);
+				}
+			}
+		}
+		w.write('"');
+	}
+
+	/**
+	 * <p>
+	 * Build a human-readable summary of this report, which lists the slowest
+	 * tasks and the slowest orders.
+	 * </p>
+	 * 
+	 * @param top
+	 *            is the maximum number of tasks and of orders to list.
+	 * 
+	 * @return a human-readable summary of this report.
+	 */
+	public String getSummary(int top) {
+		List<ExecutionRecord> records = getFinishedRecords();
+		List<OrderStatistics> orders = getOrderStatistics(records);
+		StringBuilder str = new StringBuilder();
+		str.append("Processed ");
+		str.append(records.size());
+		str.append(" task(s) in ");
+		str.append(System.currentTimeMillis() - getStartDate());
+		str.append(" ms.");
+		str.append("\nTop ");
+		str.append(Math.min(top, records.size()));
+		str.append(" slowest task(s):");
+		int i = 0;
+		for (ExecutionRecord r : records) {
+			if (i++ == top) {
+				break;
+			}
+			str.append("\n  ");
+			str.append(toMillis(r.getWallTime()));
+			str.append(" ms - ");
+			str.append(r.getTaskName());
+			if (r.getOrderName() != null) {
+				str.append(" '");
+				str.append(r.getOrderName());
+				str.append("'");
+			}
+			str.append(" [");
+			str.append(r.getState());
+			str.append("] ");
+			str.append(r.getLocation());
+			long wait = r.getMetric(TaskMetric.WAIT_TIME);
+			if (wait != 0) {
+				str.append(" (wait: ");
+				str.append(toMillis(wait));
+				str.append(" ms)");
+			}
+		}
+		str.append("\nTop ");
+		str.append(Math.min(top, orders.size()));
+		str.append(" slowest order(s):");
+		i = 0;
+		for (OrderStatistics o : orders) {
+			if (i++ == top) {
+				break;
+			}
+			str.append("\n  ");
+			str.append(toMillis(o.getTotalWallTime()));
+			str.append(" ms - '");
+			str.append(o.getOrderName());
+			str.append("' x");
+			str.append(o.getCount());
+			str.append(" (max: ");
+			str.append(toMillis(o.getMaxWallTime()));
+			str.append(" ms, failures: ");
+			str.append(o.getFailureCount());
+			str.append(") ");
+			str.append(o.getLocation());
+		}
+		return str.toString();
+	}
+
+	private static long toMillis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder("{ ");
+		str.append("records:");
+		str.append(size());
+		str.append(" }");
+		return str.toString();
+	}
+
+	/**
+	 * <p>
+	 * All the executions of the same order.
+	 * </p>
+	 */
+	private static class OrderStatistics {
+
+		private String _orderName;
+		private String _location;
+		private int _count;
+		private int _failures;
+		private long _totalWallTime;
+		private long _maxWallTime;
+
+		public OrderStatistics(String orderName, String location) {
+			_orderName = orderName;
+			_location = location;
+		}
+
+		public void add(ExecutionRecord record) {
+			_count++;
+			if (record.getState() != State.SUCCESS) {
+				_failures++;
+			}
+			_totalWallTime += record.getWallTime();
+			_maxWallTime = Math.max(_maxWallTime, record.getWallTime());
+		}
+
+		public String getOrderName() {
+			return _orderName;
+		}
+
+		public String getLocation() {
+			return _location;
+		}
+
+		public int getCount() {
+			return _count;
+		}
+
+		public int getFailureCount() {
+			return _failures;
+		}
+
+		public long getTotalWallTime() {
+			return _totalWallTime;
+		}
+
+		public long getMaxWallTime() {
+			return _maxWallTime;
+		}
+
+	}
+
+}
@@ -1,5 +1,7 @@
 package com.wat.melody.core.internal.report;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import com.wat.melody.api.report.ITaskReport;
@@ -12,14 +14,29 @@ import com.wat.melody.api.report.ITaskReportItem;
  */
 public class TaskReport implements ITaskReport {
 
-	public TaskReport() {
+	private Set<ITaskReportItem> _taskReportItems;
 
+	/**
+	 * @param reportItems
+	 *            are the items of this report. Can be <tt>null</tt>, which
+	 *            means the report is empty.
+	 */
+	public TaskReport(Set<ITaskReportItem> reportItems) {
+		_taskReportItems = new LinkedHashSet<ITaskReportItem>();
+		if (reportItems != null) {
+			_taskReportItems.addAll(reportItems);
+		}
+		_taskReportItems = Collections.unmodifiableSet(_taskReportItems);
 	}
 
 	@Override
 	public Set<ITaskReportItem> getTaskReportItems() {
-		// TODO Auto-generated method stub
-		return null;
+		return _taskReportItems;
+	}
+
+	@Override
+	public String toString() {
+		return _taskReportItems.toString();
 	}
 
 }
\ No newline at end of file
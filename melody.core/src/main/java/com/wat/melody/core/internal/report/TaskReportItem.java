@@ -12,27 +12,75 @@ import com.wat.melody.api.report.TaskReportItemType;
  */
 public class TaskReportItem implements ITaskReportItem {
 
+	private Date _date;
+	private TaskReportItemType _type;
+	private String _message;
+
 	public TaskReportItem(Date date, TaskReportItemType reportItemType,
 			String message) {
-
+		setReportItemDate(date);
+		setReportItemType(reportItemType);
+		setReportItemMessage(message);
 	}
 
 	@Override
 	public String getReportItemMessage() {
-		// TODO Auto-generated method stub
-		return null;
+		return _message;
+	}
+
+	private String setReportItemMessage(String message) {
+		if (message == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + String.class.getCanonicalName()
+					+ ".");
+		}
+		String previous = getReportItemMessage();
+		_message = message;
+		return previous;
 	}
 
 	@Override
 	public Date getReportItemDate() {
-		// TODO Auto-generated method stub
-		return null;
+		return _date;
+	}
+
+	private Date setReportItemDate(Date date) {
+		if (date == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + Date.class.getCanonicalName() + ".");
+		}
+		Date previous = getReportItemDate();
+		_date = date;
+		return previous;
 	}
 
 	@Override
 	public TaskReportItemType getReportItemType() {
-		// TODO Auto-generated method stub
-		return null;
+		return _type;
+	}
+
+	private TaskReportItemType setReportItemType(TaskReportItemType type) {
+		if (type == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid "
+					+ TaskReportItemType.class.getCanonicalName() + ".");
+		}
+		TaskReportItemType previous = getReportItemType();
+		_type = type;
+		return previous;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder("{ ");
+		str.append("date:");
+		str.append(getReportItemDate());
+		str.append(", type:");
+		str.append(getReportItemType());
+		str.append(", message:");
+		str.append(getReportItemMessage());
+		str.append(" }");
+		return str.toString();
 	}
 
 }
\ No newline at end of file
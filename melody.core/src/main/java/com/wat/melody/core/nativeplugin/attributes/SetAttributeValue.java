@@ -1,5 +1,7 @@
 package com.wat.melody.core.nativeplugin.attributes;
 
+import java.util.concurrent.locks.Lock;
+
 import javax.xml.xpath.XPathExpressionException;
 
 import org.w3c.dom.Attr;
@@ -69,9 +71,14 @@ public class SetAttributeValue implements ITask {
 	public void doProcessing() throws InterruptedException {
 		Melody.getContext().handleProcessorStateUpdates();
 
-		synchronized (getTargetElement().getOwnerDocument()) {
+		Lock lock = DocHelper.getReadWriteLock(
+				getTargetElement().getOwnerDocument()).writeLock();
+		lock.lock();
+		try {
 			getTargetElement().setAttribute(
 					getTargetAttributeName().getValue(), getNewValue());
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -3,7 +3,12 @@ package com.wat.melody.core.nativeplugin.call;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import com.wat.melody.api.IProcessorManager;
 import com.wat.melody.api.ITask;
@@ -15,6 +20,7 @@ import com.wat.melody.common.ex.ConsolidatedException;
 import com.wat.melody.common.ex.MelodyException;
 import com.wat.melody.common.ex.WrapperInterruptedException;
 import com.wat.melody.common.messages.Msg;
+import com.wat.melody.common.threads.ConcurrencyGovernor;
 import com.wat.melody.core.nativeplugin.call.exception.CallException;
 import com.wat.melody.core.nativeplugin.foreach.ForeachThread;
 
@@ -46,6 +52,26 @@ public class Call extends Ref implements ITask {
 	private ThreadGroup _threadGroup;
 	private ConsolidatedException _exceptions;
 
+	/**
+	 * Signaled each time a sub-ProcessorManager ends or a permit is released
+	 * in the {@link ConcurrencyGovernor}.
+	 */
+	private BlockingQueue<Object> _wakeUps;
+	private Runnable _wakeUp = new Runnable() {
+		@Override
+		public void run() {
+			_wakeUps.add(this);
+		}
+	};
+
+	private ConcurrencyGovernor _governor;
+	private Iterator<IProcessorManager> _pending;
+	private int _nextIndex;
+	// the sub-ProcessorManager which uses the slot of the current thread
+	private IProcessorManager _inheritor;
+	// the sub-ProcessorManagers which hold a permit
+	private Set<IProcessorManager> _permitHolders;
+
 	/**
 	 * <p>
 	 * Create a new {@link Call} object, which is especially designed to launch
@@ -59,6 +85,8 @@ public class Call extends Ref implements ITask {
 		markState(SUCCEED);
 		setThreadGroup(null);
 		setExceptions(new ConsolidatedException());
+		_permitHolders = new HashSet<IProcessorManager>();
+		_wakeUps = new LinkedBlockingQueue<Object>();
 	}
 
 	/**
@@ -185,17 +213,31 @@ public class Call extends Ref implements ITask {
 			// This allow the doProcessing method to be called multiple time
 			// (will certainly be useful someday)
 			setThreadGroup(null);
+			if (_governor != null) {
+				_governor.cancel(_wakeUp);
+			}
+			_wakeUps.clear();
+			for (int i = 0; i < _permitHolders.size(); i++) {
+				_governor.release();
+			}
+			_permitHolders.clear();
+			_inheritor = null;
+			_pending = null;
 		}
 	}
 
 	/**
 	 * <p>
-	 * Start all sub-ProcessorManager is this object <code>ThreadGroup</code>.
+	 * Start sub-ProcessorManagers is this object <code>ThreadGroup</code>.
 	 * </p>
 	 * <p>
 	 * <i> * Each order (defined neither in the 'orders' XML attribute of the
 	 * 'call' XML element, or in the 'orders' XML attribute of an 'ref' nested
 	 * element) is proceed in its own sub-ProcessorManager. <BR/>
+	 * * The first sub-ProcessorManager inherits the slot of the current
+	 * thread. Each additional sub-ProcessorManager is started as soon as a
+	 * permit can be acquired in the processing's {@link ConcurrencyGovernor}
+	 * (see {@link #startReadyProcessorManagers()}). <BR/>
 	 * </i>
 	 * </p>
 	 * 
@@ -214,10 +256,72 @@ public class Call extends Ref implements ITask {
 			throw Ex;
 		}
 
-		int index = 1;
-		for (IProcessorManager pm : getIProcessorManagers()) {
-			pm.startProcessing(getThreadGroup(), index++);
+		_governor = Melody.getContext().getProcessorManager()
+				.getConcurrencyGovernor();
+		_pending = getIProcessorManagers().iterator();
+		_nextIndex = 1;
+		startReadyProcessorManagers();
+	}
+
+	/**
+	 * <p>
+	 * Release the permits held by ended sub-ProcessorManagers, then start
+	 * pending sub-ProcessorManagers, as long as the slot of the current thread
+	 * is free or a permit can be acquired.
+	 * </p>
+	 * 
+	 * @return <tt>true</tt> if at least one sub-ProcessorManager is running or
+	 *         is waiting to be started.
+	 * 
+	 * @throws ProcessorManagerConfigurationException
+	 *             if a configuration issue made a sub-ProcessorManager to fail
+	 *             to start.
+	 */
+	private boolean startReadyProcessorManagers()
+			throws ProcessorManagerConfigurationException {
+		for (Iterator<IProcessorManager> it = _permitHolders.iterator(); it
+				.hasNext();) {
+			if (!it.next().isRunning()) {
+				it.remove();
+				_governor.release();
+			}
+		}
+		if (_inheritor != null && !_inheritor.isRunning()) {
+			_inheritor = null;
+		}
+		while (_pending.hasNext()) {
+			boolean holdsPermit = _inheritor != null;
+			if (holdsPermit && !_governor.tryAcquire(_wakeUp)) {
+				break;
+			}
+			IProcessorManager pm = _pending.next();
+			pm.addProcessingDoneCallback(_wakeUp);
+			try {
+				pm.startProcessing(getThreadGroup(), _nextIndex++);
+			} catch (ProcessorManagerConfigurationException
+					| RuntimeException Ex) {
+				if (holdsPermit) {
+					_governor.release();
+				}
+				throw Ex;
+			}
+			if (holdsPermit) {
+				_permitHolders.add(pm);
+			} else {
+				_inheritor = pm;
+			}
 		}
+		return _inheritor != null || !_permitHolders.isEmpty()
+				|| _pending.hasNext();
+	}
+
+	/**
+	 * <p>
+	 * Don't start the sub-ProcessorManagers which are not started yet.
+	 * </p>
+	 */
+	private void cancelPendingProcessorManagers() {
+		_pending = new ArrayList<IProcessorManager>().iterator();
 	}
 
 	/**
@@ -225,7 +329,10 @@ public class Call extends Ref implements ITask {
 	 * Wait for all sub-ProcessorManager to end.
 	 * </p>
 	 * <p>
-	 * <i> * Will propagate the pause to all sub-ProcessorManager. <BR/>
+	 * <i> * Doesn't poll : the current thread sleeps until a
+	 * sub-ProcessorManager ends or a permit is released. <BR/>
+	 * * The pause is propagated to all sub-ProcessorManager by the
+	 * ProcessorManager itself. <BR/>
 	 * * Will wait for all sub-ProcessorManager to stop if the processing is
 	 * stopped. <BR/>
 	 * </i>
@@ -234,44 +341,26 @@ public class Call extends Ref implements ITask {
 	private void waitForProcessingToBeDone() {
 		int nbTry = 2;
 		while (nbTry > 0) {
-			boolean running = false;
-			for (IProcessorManager pm : getIProcessorManagers()) {
-				if (pm.isRunning()) {
-					running = true;
-					break;
-				}
+			if (_pending == null || isFailed() || isInterrupted()) {
+				// an error occurred => don't start more sub-ProcessorManager
+				cancelPendingProcessorManagers();
+			}
+			boolean running;
+			try {
+				running = startReadyProcessorManagers();
+			} catch (ProcessorManagerConfigurationException
+					| RuntimeException Ex) {
+				getExceptions().addCause(Ex);
+				markState(FAILED);
+				continue;
 			}
 			if (!running) {
 				return;
 			}
-			if (Melody.getContext().getProcessorManager().isPauseRequested()) {
-				// if the processor is paused => propagate the pause to all
-				// sub-ProcessorManager
-				for (IProcessorManager pm : getIProcessorManagers()) {
-					pm.pauseProcessing();
-				}
-				// while the processor is paused => sleep
-				while (Melody.getContext().getProcessorManager()
-						.isPauseRequested()) {
-					try {
-						Thread.sleep(500);
-					} catch (InterruptedException Ex) {
-						markState(INTERRUPTED);
-						nbTry--;
-						break;
-					}
-				}
-				// if the pause ended and if it was not because of a stop =>
-				// resume all sub-ProcessorManager
-				if (!Melody.getContext().getProcessorManager()
-						.isStopRequested()) {
-					for (IProcessorManager pm : getIProcessorManagers()) {
-						pm.resumeProcessing();
-					}
-				}
-			}
 			try {
-				Thread.sleep(200);
+				_wakeUps.take();
+				// each wake up leads to a full scan => drop the others
+				_wakeUps.clear();
 			} catch (InterruptedException Ex) {
 				markState(INTERRUPTED);
 				nbTry--;
@@ -1,16 +1,21 @@
 package com.wat.melody.core.nativeplugin.foreach;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.xml.xpath.XPathExpressionException;
 
 import org.w3c.dom.Element;
 
+import com.wat.melody.api.IProcessorManager;
 import com.wat.melody.api.ITask;
 import com.wat.melody.api.ITaskContainer;
+import com.wat.melody.api.ITaskContext;
 import com.wat.melody.api.Melody;
 import com.wat.melody.api.annotation.Attribute;
 import com.wat.melody.common.ex.ConsolidatedException;
@@ -19,6 +24,9 @@ import com.wat.melody.common.messages.Msg;
 import com.wat.melody.common.properties.Property;
 import com.wat.melody.common.properties.PropertyName;
 import com.wat.melody.common.properties.PropertySet;
+import com.wat.melody.common.report.TaskMetric;
+import com.wat.melody.common.report.TaskMetrics;
+import com.wat.melody.common.threads.ConcurrencyGovernor;
 import com.wat.melody.common.xml.DocHelper;
 import com.wat.melody.core.nativeplugin.foreach.exception.ForeachException;
 
@@ -56,6 +64,12 @@ public class Foreach implements ITask, ITaskContainer {
 	public static final short INTERRUPTED = 2;
 	public static final short CRITICAL = 4;
 
+	/**
+	 * Signals, in the queue of ended {@link ForeachThread}, that a permit was
+	 * released in the {@link ConcurrencyGovernor}.
+	 */
+	private static final Object PERMIT_RELEASED = new Object();
+
 	private String _items = null;
 	private PropertyName _itemName = null;
 	private List<Element> _targets = null;
@@ -63,15 +77,28 @@ public class Foreach implements ITask, ITaskContainer {
 	private Set<Element> _innerTasks;
 
 	private short _state;
-	private ThreadGroup _threadGroup;
+	private String _threadsName;
+	private ITaskContext _branchContext;
 	private List<ForeachThread> _threadsList;
+	private BlockingQueue<Object> _doneThreads;
+	private ConcurrencyGovernor _governor;
+	private Runnable _permitReleased;
 	private ConsolidatedException _exceptions;
 
 	public Foreach() {
 		setInnerTasks(new LinkedHashSet<Element>());
 		markState(SUCCEED);
-		setThreadGroup(null);
+		setThreadsName(null);
 		setThreadsList(new ArrayList<ForeachThread>());
+		_doneThreads = new LinkedBlockingQueue<Object>();
+		_permitReleased = new Runnable() {
+
+			@Override
+			public void run() {
+				_doneThreads.add(PERMIT_RELEASED);
+			}
+
+		};
 		setExceptions(new ConsolidatedException());
 	}
 
@@ -121,6 +148,21 @@ public class Foreach implements ITask, ITaskContainer {
 	 * {@link ForeachThread}.
 	 * </p>
 	 * 
+	 * <p>
+	 * {@link ForeachThread}s are created lazily : a new one is created and
+	 * started as soon as a running one ends, so that no more than
+	 * {@link #getMaxPar()} {@link ForeachThread}s exist at the same time.
+	 * </p>
+	 * 
+	 * <p>
+	 * The first {@link ForeachThread} inherits the slot of the current thread,
+	 * which only waits. Each additional {@link ForeachThread} must acquire a
+	 * permit in the processing's {@link ConcurrencyGovernor} (see
+	 * {@link IProcessorManager#getConcurrencyGovernor()}), so that nested
+	 * foreach and call can't run more than
+	 * {@link IProcessorManager#getMaxSimultaneousStep()} steps simultaneously.
+	 * </p>
+	 * 
 	 * @throws ForeachException
 	 *             if an error occurred during processing.
 	 * @throws InterruptedException
@@ -131,10 +173,10 @@ public class Foreach implements ITask, ITaskContainer {
 	@Override
 	public void doProcessing() throws ForeachException, InterruptedException {
 		try {
-			setThreadGroup(new ThreadGroup(Thread.currentThread().getName()
-					+ ">" + FOREACH));
-			getThreadGroup().setDaemon(true);
-			initializeForeachThreads();
+			setThreadsName(Thread.currentThread().getName() + ">" + FOREACH);
+			// all threads share the same branch context, so that they belong
+			// to the same scope
+			_branchContext = Melody.getContext().createBranchContext();
 			try {
 				startForeachThreads();
 			} catch (InterruptedException Ex) {
@@ -152,61 +194,66 @@ public class Foreach implements ITask, ITaskContainer {
 		} finally {
 			// This allow the doProcessing method to be called multiple time
 			// (will certainly be useful someday)
-			setThreadGroup(null);
+			setThreadsName(null);
+			_branchContext = null;
+			if (_governor != null) {
+				_governor.cancel(_permitReleased);
+				_governor = null;
+			}
+			_doneThreads.clear();
 		}
 	}
 
 	/**
 	 * <p>
-	 * Create a {@link ForeachThread} for each target.
+	 * Create a {@link ForeachThread} for the given target.
 	 * </p>
 	 */
-	private void initializeForeachThreads() {
-		for (Element target : getTargets()) {
-			PropertySet ps = Melody.getContext().getProperties().clone();
-			// Add the property '<item-name>=<XPath position of currentItem>',
-			// so
-			// that '§[<item-name>]§' will be expanded with the item's XPath
-			// position
-			Property p = new Property(getItemName(),
-					DocHelper.getXPathPosition(target), null);
-			ps.put(p);
-			ForeachThread ft = new ForeachThread(this, ps);
-			if (!getThreadsList().add(ft)) {
-				throw new RuntimeException("Didn't managed to register "
-						+ "a new " + ForeachThread.class.getCanonicalName()
-						+ ".");
-			}
+	private ForeachThread createForeachThread(Element target,
+			boolean holdsPermit) {
+		PropertySet ps = Melody.getContext().getProperties().clone();
+		// Add the property '<item-name>=<XPath position of currentItem>',
+		// so
+		// that '§[<item-name>]§' will be expanded with the item's XPath
+		// position
+		Property p = new Property(getItemName(),
+				DocHelper.getXPathPosition(target), null);
+		ps.put(p);
+		ForeachThread ft = new ForeachThread(this, ps, holdsPermit,
+				getCheckpointUnit(target));
+		if (!getThreadsList().add(ft)) {
+			throw new RuntimeException("Didn't managed to register "
+					+ "a new " + ForeachThread.class.getCanonicalName() + ".");
 		}
+		return ft;
 	}
 
 	/**
 	 * <p>
-	 * Start all Threads, according to the maximum number of Thread this object
-	 * can run simultaneously (see {@link #getMaxPar()}).
+	 * Start a {@link ForeachThread} for each target, according to the maximum
+	 * number of Thread this object can run simultaneously (see
+	 * {@link #getMaxPar()}) and to the permits available in the processing's
+	 * {@link ConcurrencyGovernor}. A new {@link ForeachThread} is started as
+	 * soon as a running one signals its end (see
+	 * {@link #notifyProcessingIsDone(ForeachThread)}) or as soon as a permit is
+	 * released.
 	 * </p>
 	 * 
 	 * @throws InterruptedException
 	 *             if the processing was interrupted.
 	 */
 	private void startForeachThreads() throws InterruptedException {
-		if (getMaxPar() == 0) {
-			for (ForeachThread ft : getThreadsList()) {
-				try {
-					Melody.getContext().handleProcessorStateUpdates();
-				} catch (InterruptedException Ex) {
-					getExceptions().addCause(Ex);
-					throw Ex;
-				}
-				ft.startProcessing();
-			}
-			return;
-		}
-
-		int threadToLaunchID = getThreadsList().size();
-		List<ForeachThread> runningThreads = new ArrayList<ForeachThread>();
-
-		while (threadToLaunchID > 0 || runningThreads.size() > 0) {
+		int maxPar = getMaxPar();
+		_governor = Melody.getContext().getProcessorManager()
+				.getConcurrencyGovernor();
+		Iterator<Element> targets = getRemainingTargets().iterator();
+		int running = 0;
+		// true when a running thread uses the slot of the current thread
+		boolean slotInherited = false;
+		// when the governor refused a permit, or -1
+		long refusedSince = -1;
+
+		while (targets.hasNext() || running > 0) {
 			try {
 				Melody.getContext().handleProcessorStateUpdates();
 			} catch (InterruptedException Ex) {
@@ -214,23 +261,67 @@ public class Foreach implements ITask, ITaskContainer {
 				throw Ex;
 			}
 			// Start ready threads
-			while (threadToLaunchID > 0 && runningThreads.size() < getMaxPar()) {
-				ForeachThread ft = getThreadsList().get(--threadToLaunchID);
-				runningThreads.add(ft);
-				ft.startProcessing();
+			while (targets.hasNext() && (maxPar == 0 || running < maxPar)) {
+				boolean holdsPermit = false;
+				if (slotInherited) {
+					if (!_governor.tryAcquire(_permitReleased)) {
+						if (refusedSince == -1) {
+							refusedSince = System.nanoTime();
+						}
+						break;
+					}
+					holdsPermit = true;
+					if (refusedSince != -1) {
+						TaskMetrics.record(TaskMetric.WAIT_TIME,
+								System.nanoTime() - refusedSince);
+						refusedSince = -1;
+					}
+				}
+				try {
+					createForeachThread(targets.next(), holdsPermit)
+							.startProcessing();
+				} catch (Throwable Ex) {
+					if (holdsPermit) {
+						_governor.release();
+					}
+					throw Ex;
+				}
+				slotInherited |= !holdsPermit;
+				running++;
 			}
-			// Sleep a little
-			if (runningThreads.size() > 0)
-				runningThreads.get(0).waitTillProcessingIsDone(50);
-			// Remove ended threads
-			for (int i = runningThreads.size() - 1; i >= 0; i--) {
-				ForeachThread ft = runningThreads.get(i);
-				if (ft.getFinalState() != NEW && ft.getFinalState() != RUNNING)
-					runningThreads.remove(ft);
+			// Wait for at least one thread to end or one permit to be released
+			if (running > 0) {
+				Object o = _doneThreads.take();
+				do {
+					if (o == PERMIT_RELEASED) {
+						continue;
+					}
+					running--;
+					if (!((ForeachThread) o).holdsPermit()) {
+						slotInherited = false;
+					}
+				} while ((o = _doneThreads.poll()) != null);
 			}
 		}
 	}
 
+	/**
+	 * <p>
+	 * Signal that the given {@link ForeachThread} has finished its processing,
+	 * so that its slot can be given to the next target. If the given
+	 * {@link ForeachThread} holds a permit, the permit is released.
+	 * </p>
+	 * 
+	 * @param ft
+	 *            is the {@link ForeachThread} which ends.
+	 */
+	void notifyProcessingIsDone(ForeachThread ft) {
+		if (ft.holdsPermit()) {
+			_governor.release();
+		}
+		_doneThreads.add(ft);
+	}
+
 	/**
 	 * <p>
 	 * Wait for all threads to end.
@@ -362,6 +453,32 @@ public class Foreach implements ITask, ITaskContainer {
 		return _targets;
 	}
 
+	/**
+	 * @return the targets which were not successfully processed by the
+	 *         processing which is being resumed (see
+	 *         {@link ITaskContext#isCheckpointed(String)}).
+	 */
+	private List<Element> getRemainingTargets() {
+		List<Element> remaining = new ArrayList<Element>();
+		for (Element target : getTargets()) {
+			String unit = getCheckpointUnit(target);
+			if (!Melody.getContext().isCheckpointed(unit)) {
+				remaining.add(target);
+			}
+		}
+		return remaining;
+	}
+
+	/**
+	 * @return the unit of work which stands for the given target in the
+	 *         checkpoint journal. Targets are identified by their XPath
+	 *         position, because their DUNID changes each time the Resources
+	 *         Descriptor is loaded.
+	 */
+	private static String getCheckpointUnit(Element target) {
+		return "item:" + DocHelper.getXPathPosition(target);
+	}
+
 	private List<Element> setTargets(List<Element> targets) {
 		if (targets == null) {
 			throw new IllegalArgumentException("null: Not accepted. "
@@ -423,20 +540,28 @@ public class Foreach implements ITask, ITaskContainer {
 	}
 
 	/**
-	 * @return the {@link ThreadGroup} which holds all {@link ForeachThread}
-	 *         managed by this object.
+	 * @return the prefix of the name of all {@link ForeachThread} managed by
+	 *         this object.
 	 */
-	protected ThreadGroup getThreadGroup() {
-		return _threadGroup;
+	protected String getThreadsName() {
+		return _threadsName;
 	}
 
-	private ThreadGroup setThreadGroup(ThreadGroup tg) {
+	private String setThreadsName(String name) {
 		// Can be null
-		ThreadGroup previous = getThreadGroup();
-		_threadGroup = tg;
+		String previous = getThreadsName();
+		_threadsName = name;
 		return previous;
 	}
 
+	/**
+	 * @return the {@link ITaskContext} associated to all {@link ForeachThread}
+	 *         managed by this object.
+	 */
+	protected ITaskContext getBranchContext() {
+		return _branchContext;
+	}
+
 	/**
 	 * @return all the {@link ForeachThread} managed by this object.
 	 */
@@ -1,13 +1,13 @@
 package com.wat.melody.core.nativeplugin.foreach;
 
 import java.io.InterruptedIOException;
-import java.lang.Thread.State;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.w3c.dom.Element;
 
 import com.wat.melody.api.ITask;
 import com.wat.melody.api.Melody;
-import com.wat.melody.api.MelodyThread;
 import com.wat.melody.api.exception.TaskException;
 import com.wat.melody.common.ex.MelodyException;
 import com.wat.melody.common.properties.PropertySet;
@@ -24,8 +24,12 @@ public class ForeachThread implements Runnable {
 
 	private PropertySet _propertiesSet;
 	private Foreach _foreach;
-	private MelodyThread _thread;
+	private String _name;
+	private volatile boolean _started;
+	private CountDownLatch _done;
 	private Throwable _finalError;
+	private boolean _holdsPermit;
+	private String _checkpointUnit;
 
 	/**
 	 * <p>
@@ -38,7 +42,7 @@ public class ForeachThread implements Runnable {
 	 * <ul>
 	 * <li>The processing can be executed synchronously (see {@link #run()}) -
 	 * in the current thread - or asynchronously (see {@link #startProcessing()}
-	 * ) - in a dedicated thread - ;</li>
+	 * ) - in a thread of the processing's pool of threads - ;</li>
 	 * </ul>
 	 * </p>
 	 * 
@@ -58,14 +62,46 @@ public class ForeachThread implements Runnable {
 	 * @see {@link #startProcessing()}
 	 */
 	public ForeachThread(Foreach p, PropertySet ps) {
+		this(p, ps, false, null);
+	}
+
+	/**
+	 * <p>
+	 * Create a new {@link ForeachThread} object (see
+	 * {@link #ForeachThread(Foreach, PropertySet)}).
+	 * </p>
+	 * 
+	 * @param holdsPermit
+	 *            is <tt>true</tt> if a permit of the processing's
+	 *            {@link com.wat.melody.common.threads.ConcurrencyGovernor} was
+	 *            acquired for this object, or <tt>false</tt> if this object
+	 *            inherits the slot of the {@link Foreach}'s thread. The permit
+	 *            is released by the {@link Foreach} when this object signals
+	 *            its end.
+	 * @param checkpointUnit
+	 *            identifies the target in the checkpoint journal, which
+	 *            records the successful end of the processing (see
+	 *            {@link com.wat.melody.api.ITaskContext#checkpoint(String)}),
+	 *            or <tt>null</tt>.
+	 */
+	ForeachThread(Foreach p, PropertySet ps, boolean holdsPermit,
+			String checkpointUnit) {
+		_holdsPermit = holdsPermit;
+		_checkpointUnit = checkpointUnit;
 		setPropertiesSet(ps);
 		setForeach(p);
 		setFinalError(null);
-		setThread(Melody.createNewMelodyThread(p.getThreadGroup(), this, p
-				.getThreadGroup().getName()
-				+ "-"
-				+ (p.getThreadsList().size() + 1)));
-		getThread().pushContext(Melody.getContext());
+		_name = p.getThreadsName() + "-" + (p.getThreadsList().size() + 1);
+		_done = new CountDownLatch(1);
+	}
+
+	/**
+	 * @return <tt>true</tt> if a permit of the processing's
+	 *         {@link com.wat.melody.common.threads.ConcurrencyGovernor} was
+	 *         acquired for this object.
+	 */
+	boolean holdsPermit() {
+		return _holdsPermit;
 	}
 
 	/**
@@ -99,9 +135,9 @@ public class ForeachThread implements Runnable {
 	 * @see {@link #startProcessing()}
 	 */
 	public short getFinalState() {
-		if (getThread().getState() == State.NEW) {
+		if (!_started) {
 			return Foreach.NEW;
-		} else if (getThread().getState() != State.TERMINATED) {
+		} else if (_done.getCount() != 0) {
 			return Foreach.RUNNING;
 		} else if (getFinalError() == null) {
 			return Foreach.SUCCEED;
@@ -118,14 +154,16 @@ public class ForeachThread implements Runnable {
 
 	/**
 	 * <p>
-	 * Start the processing in a dedicated thread.
+	 * Start the processing in a thread of the processing's pool of threads (see
+	 * {@link com.wat.melody.api.IProcessorManager#getTaskExecutor()}).
 	 * </p>
 	 * 
 	 * <p>
 	 * <ul>
-	 * <li>The dedicated thread is created in the {@link ForeachEach}'s thread
-	 * group, meaning that if the {@link ForeachEach}'s thread group is
-	 * interrupted, the dedicated thread will be interrupted too ;</li>
+	 * <li>The thread belongs to the processing's thread group, meaning that if
+	 * the processing is stopped, the thread will be interrupted too ;</li>
+	 * <li>While the processing runs, the thread is named after this object and
+	 * holds the branch context of the {@link Foreach} ;</li>
 	 * <li>The processing can only be started one time. Later call to this
 	 * method will raise an <tt>IllegalThreadStateException</tt> ;</li>
 	 * <li>After it has been started, call {@link #waitTillProcessingIsDone()}
@@ -140,8 +178,39 @@ public class ForeachThread implements Runnable {
 	 * @see {@link #waitTillProcessingIsDone(long)}
 	 * @see {@link #waitTillProcessingIsDone(long, int)}
 	 */
-	public void startProcessing() {
-		getThread().start();
+	public synchronized void startProcessing() {
+		if (_started) {
+			throw new IllegalThreadStateException(_name + " already started.");
+		}
+		Runnable r = Melody.propagateContext(getForeach().getBranchContext(),
+				new Runnable() {
+
+					@Override
+					public void run() {
+						runInPool();
+					}
+
+				});
+		_started = true;
+		try {
+			getForeach().getBranchContext().getProcessorManager()
+					.getTaskExecutor().execute(r);
+		} catch (RuntimeException Ex) {
+			_started = false;
+			throw Ex;
+		}
+	}
+
+	private void runInPool() {
+		Thread t = Thread.currentThread();
+		String name = t.getName();
+		t.setName(_name);
+		try {
+			run();
+		} finally {
+			t.setName(name);
+			_done.countDown();
+		}
 	}
 
 	/**
@@ -241,7 +310,22 @@ public class ForeachThread implements Runnable {
 	 */
 	public void waitTillProcessingIsDone(long millis, int nanos)
 			throws InterruptedException {
-		getThread().join(millis, nanos);
+		if (millis < 0) {
+			throw new IllegalArgumentException("timeout value is negative");
+		}
+		if (nanos < 0 || nanos > 999999) {
+			throw new IllegalArgumentException(
+					"nanosecond timeout value out of range");
+		}
+		if (!_started) {
+			return;
+		}
+		if (millis == 0 && nanos == 0) {
+			_done.await();
+		} else {
+			_done.await(TimeUnit.MILLISECONDS.toNanos(millis) + nanos,
+					TimeUnit.NANOSECONDS);
+		}
 	}
 
 	/**
@@ -255,6 +339,8 @@ public class ForeachThread implements Runnable {
 	 * {@link #startProcessing()} ;</li>
 	 * <li>As soon as it is finished, call {@link #getFinalState()} to know if
 	 * the processing is finished successfully or not ;</li>
+	 * <li>When finished, the parent {@link Foreach} is notified, so that it
+	 * can start the processing of the next target ;</li>
 	 * </ul>
 	 * </p>
 	 * 
@@ -266,8 +352,13 @@ public class ForeachThread implements Runnable {
 			for (Element n : getForeach().getInnerTasks()) {
 				Melody.getContext().processTask(n, getPropertiesSet());
 			}
+			if (_checkpointUnit != null) {
+				Melody.getContext().checkpoint(_checkpointUnit);
+			}
 		} catch (Throwable Ex) {
 			setFinalError(Ex);
+		} finally {
+			getForeach().notifyProcessingIsDone(this);
 		}
 	}
 
@@ -320,14 +411,6 @@ public class ForeachThread implements Runnable {
 		return _foreach = p;
 	}
 
-	private MelodyThread getThread() {
-		return _thread;
-	}
-
-	private MelodyThread setThread(MelodyThread t) {
-		return _thread = t;
-	}
-
 	/**
 	 * <p>
 	 * Get the exception that causes the processing to fail.
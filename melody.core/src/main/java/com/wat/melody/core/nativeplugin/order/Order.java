@@ -49,6 +49,11 @@ public class Order implements ITask, ITaskContainer, IFirstLevelTask {
 	 */
 	public static final String DESCRIPTION_ATTR = "description";
 
+	/**
+	 * The 'depends' XML attribute of the 'order' XML element
+	 */
+	public static final String DEPENDS_ATTR = "depends";
+
 	/**
 	 * <p>
 	 * Search the order whose name is equal to the given {@link OrderName}.
@@ -172,6 +177,7 @@ public class Order implements ITask, ITaskContainer, IFirstLevelTask {
 
 	private OrderName _orderName = null;
 	private String _description = null;
+	private OrderNameSet _depends = null;
 	private Set<Element> _innerTasks;
 
 	public Order() {
@@ -357,6 +363,43 @@ public class Order implements ITask, ITaskContainer, IFirstLevelTask {
 		return previous;
 	}
 
+	public OrderNameSet getDepends() {
+		return _depends;
+	}
+
+	/**
+	 * <p>
+	 * Set the orders this order depends on. When multiple orders are
+	 * processed, this order is started as soon as all the orders it depends on
+	 * finished successfully (see
+	 * {@link com.wat.melody.core.internal.OrderScheduler}).
+	 * </p>
+	 * 
+	 * <p>
+	 * The dependencies are verified (e.g. orders exist, no cycle) by the
+	 * 'sequence' XML element.
+	 * </p>
+	 * 
+	 * @param depends
+	 *            is the orders this order depends on.
+	 * 
+	 * @return the previous orders this order depends on.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given value is <tt>null</tt>.
+	 */
+	@Attribute(name = DEPENDS_ATTR)
+	public OrderNameSet setDepends(OrderNameSet depends) {
+		if (depends == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid "
+					+ OrderNameSet.class.getCanonicalName() + ".");
+		}
+		OrderNameSet previous = getDepends();
+		_depends = depends;
+		return previous;
+	}
+
 	/**
 	 * @return all inner-task (in their native {@link Element} format).
 	 */
@@ -6,7 +6,8 @@ public class Messages extends NLS {
 
 	private static final String BUNDLE_NAME = "com.wat.melody.core.nativeplugin.sequence.messages";
 
-	// currently, no messages are defined
+	public static String SequenceEx_CYCLIC_DEPENDENCIES;
+	public static String SequenceEx_UNKNOWN_DEPENDENCY;
 
 	static {
 		// initialize resource bundle
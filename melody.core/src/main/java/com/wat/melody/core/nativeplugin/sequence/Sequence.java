@@ -1,8 +1,11 @@
 package com.wat.melody.core.nativeplugin.sequence;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.w3c.dom.Element;
@@ -18,9 +21,15 @@ import com.wat.melody.api.exception.IllegalOrderException;
 import com.wat.melody.api.exception.TaskException;
 import com.wat.melody.common.files.WrapperFile;
 import com.wat.melody.common.files.exception.IllegalDirectoryException;
+import com.wat.melody.common.messages.Msg;
 import com.wat.melody.common.order.OrderName;
+import com.wat.melody.common.order.OrderNameSet;
+import com.wat.melody.common.order.exception.IllegalOrderNameException;
+import com.wat.melody.common.order.exception.IllegalOrderNameSetException;
 import com.wat.melody.common.properties.Property;
 import com.wat.melody.common.properties.PropertyName;
+import com.wat.melody.common.xml.exception.SimpleNodeRelatedException;
+import com.wat.melody.core.internal.OrderScheduler;
 import com.wat.melody.core.internal.SequenceDescriptor;
 import com.wat.melody.core.nativeplugin.order.Order;
 import com.wat.melody.core.nativeplugin.sequence.exception.SequenceException;
@@ -56,6 +65,8 @@ public class Sequence implements ITask, ITaskContainer, ITopLevelTask {
 	private OrderName _defaultOrder = null;
 	private String _description = null;
 	private Set<Element> _innerTasks;
+	// the orders each order depends on
+	private Map<OrderName, OrderNameSet> _dependencies;
 
 	public Sequence() {
 		setInnerTasks(new LinkedHashSet<Element>());
@@ -113,15 +124,76 @@ public class Sequence implements ITask, ITaskContainer, ITopLevelTask {
 		_innerTasks.add(n);
 	}
 
+	/**
+	 * <p>
+	 * Verify the dependencies declared between orders (see
+	 * {@link Order#DEPENDS_ATTR}) : each dependency must refer to an order
+	 * defined in the Sequence Descriptor, and dependencies must be acyclic.
+	 * </p>
+	 * 
+	 * @throws SequenceException
+	 *             if a dependency is not valid.
+	 */
 	@Override
-	public void validate() {
-		// almost nothing to do
+	public void validate() throws SequenceException {
+		Map<OrderName, Element> orders = new HashMap<OrderName, Element>();
+		Map<OrderName, OrderNameSet> deps;
+		deps = new LinkedHashMap<OrderName, OrderNameSet>();
+		for (Element n : getInnerTasks()) {
+			if (!isOrder(n)) {
+				continue;
+			}
+			try {
+				OrderName name = OrderName.parseString(n
+						.getAttribute(Order.NAME_ATTR));
+				orders.put(name, n);
+				if (n.hasAttribute(Order.DEPENDS_ATTR)) {
+					deps.put(name, OrderNameSet.parseOrderNameSet(n
+							.getAttribute(Order.DEPENDS_ATTR)));
+				}
+			} catch (IllegalOrderNameException
+					| IllegalOrderNameSetException Ex) {
+				throw new SequenceException(new SimpleNodeRelatedException(n,
+						Ex));
+			}
+		}
+		for (Map.Entry<OrderName, OrderNameSet> e : deps.entrySet()) {
+			for (OrderName dep : e.getValue()) {
+				if (!orders.containsKey(dep)) {
+					throw new SequenceException(new SimpleNodeRelatedException(
+							orders.get(e.getKey()), Msg.bind(
+									Messages.SequenceEx_UNKNOWN_DEPENDENCY,
+									dep, Order.DEPENDS_ATTR)));
+				}
+			}
+		}
+		List<OrderName> cycle = OrderScheduler.findCycle(deps);
+		if (cycle != null) {
+			StringBuilder str = new StringBuilder();
+			for (OrderName order : cycle) {
+				str.append(str.length() == 0 ? "" : " -> ");
+				str.append(order);
+			}
+			throw new SequenceException(new SimpleNodeRelatedException(
+					orders.get(cycle.get(0)), Msg.bind(
+							Messages.SequenceEx_CYCLIC_DEPENDENCIES, str,
+							Order.DEPENDS_ATTR)));
+		}
+		_dependencies = deps;
 	}
 
 	/**
 	 * <p>
-	 * Process all orders defined in the Sequence Descriptor orders's list, one
-	 * by one.
+	 * Process all orders defined in the Sequence Descriptor orders's list.
+	 * </p>
+	 * 
+	 * <p>
+	 * When none of these orders depends on another of these orders, they are
+	 * processed one by one, in the order they were requested. Otherwise, each
+	 * order is started as soon as all the orders it depends on finished, so
+	 * that independent orders are processed in parallel (see
+	 * {@link OrderScheduler}). Dependencies on orders which were not requested
+	 * are ignored.
 	 * </p>
 	 * 
 	 * @throws SequenceException
@@ -133,27 +205,68 @@ public class Sequence implements ITask, ITaskContainer, ITopLevelTask {
 	 */
 	@Override
 	public void doProcessing() throws SequenceException, InterruptedException {
+		OrderNameSet requested = Melody.getContext().getProcessorManager()
+				.getSequenceDescriptor().getOrderSet();
 		try {
-			for (int i = 0; i < Melody.getContext().getProcessorManager()
-					.getSequenceDescriptor().countOrders(); i++) {
-				processOrder(Melody.getContext().getProcessorManager()
-						.getSequenceDescriptor().getOrder(i));
+			if (hasDependencies(requested)) {
+				Map<OrderName, Element> orders;
+				orders = new LinkedHashMap<OrderName, Element>();
+				for (OrderName order : requested) {
+					Element n = findOrder(order);
+					if (n != null) {
+						orders.put(order, n);
+					}
+				}
+				new OrderScheduler(orders, _dependencies).process();
+				return;
+			}
+			for (OrderName order : requested) {
+				processOrder(order);
 			}
 		} catch (TaskException Ex) {
 			throw new SequenceException(Ex);
 		}
 	}
 
+	private boolean hasDependencies(List<OrderName> orders) {
+		if (_dependencies == null) {
+			return false;
+		}
+		for (OrderName order : orders) {
+			OrderNameSet deps = _dependencies.get(order);
+			if (deps == null) {
+				continue;
+			}
+			for (OrderName dep : deps) {
+				if (!dep.equals(order) && orders.contains(dep)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	private void processOrder(OrderName order) throws TaskException,
 			InterruptedException {
+		Element n = findOrder(order);
+		if (n != null) {
+			Melody.getContext().processTask(n);
+		}
+	}
+
+	private Element findOrder(OrderName order) {
 		for (Element n : getInnerTasks()) {
-			if (n.getNodeName().equalsIgnoreCase(Order.class.getSimpleName())
+			if (isOrder(n)
 					&& n.getAttributes().getNamedItem(Order.NAME_ATTR)
 							.getNodeValue().equals(order.getValue())) {
-				Melody.getContext().processTask(n);
-				return;
+				return n;
 			}
 		}
+		return null;
+	}
+
+	private static boolean isOrder(Element n) {
+		return n.getNodeName().equalsIgnoreCase(Order.class.getSimpleName());
 	}
 
 	public File getBaseDir() {
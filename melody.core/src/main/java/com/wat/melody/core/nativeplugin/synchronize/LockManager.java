@@ -1,21 +1,42 @@
 package com.wat.melody.core.nativeplugin.synchronize;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.wat.melody.api.Melody;
+import com.wat.melody.api.TaskScope;
 import com.wat.melody.common.ex.MelodyException;
 import com.wat.melody.common.ex.WrapperInterruptedException;
 import com.wat.melody.common.messages.Msg;
-import com.wat.melody.core.nativeplugin.synchronize.exception.IllegalLockIdException;
+import com.wat.melody.common.report.TaskMetric;
+import com.wat.melody.common.report.TaskMetrics;
 import com.wat.melody.core.nativeplugin.synchronize.types.LockId;
 import com.wat.melody.core.nativeplugin.synchronize.types.LockScope;
 import com.wat.melody.core.nativeplugin.synchronize.types.MaxPar;
 import com.wat.melody.core.nativeplugin.synchronize.types.Semaphore;
 
 /**
+ * <p>
+ * Manages the semaphores used by {@link Synchronize}.
+ * </p>
+ * 
+ * <p>
+ * Semaphores are indexed by their scope and their {@link LockId}, in a
+ * concurrent table. A semaphore is created when its first job arrives, and is
+ * removed from the table as soon as its last job leaves, so that the table only
+ * holds the semaphores which are in use.
+ * </p>
+ * 
+ * <p>
+ * Contention metrics are recorded for each processing and each {@link LockId}
+ * (see {@link #getStatistics(Object)}). They are held until the processing
+ * releases them (see {@link #releaseStatistics(Object)}).
+ * </p>
  * 
  * @author Guillaume Cornet
  * 
@@ -24,7 +45,10 @@ public abstract class LockManager {
 
 	private static Logger log = LoggerFactory.getLogger(LockManager.class);
 
-	private static Map<LockId, Semaphore> lockTableStates = new HashMap<LockId, Semaphore>();
+	private static ConcurrentMap<SemaphoreId, Semaphore> lockTableStates = new ConcurrentHashMap<SemaphoreId, Semaphore>();
+
+	// indexed by the global scope of each processing
+	private static ConcurrentMap<Object, ConcurrentMap<LockId, LockStatistics>> lockStatistics = new ConcurrentHashMap<Object, ConcurrentMap<LockId, LockStatistics>>();
 
 	/**
 	 * <p>
@@ -33,6 +57,7 @@ public abstract class LockManager {
 	 * <p>
 	 * When multiple calls to this method referenced the same semaphore, this
 	 * method guarantees that only {@link MaxPar} jobs will run simultaneously.
+	 * Jobs are started in their arrival order.
 	 * </p>
 	 * 
 	 * @param cb
@@ -44,8 +69,14 @@ public abstract class LockManager {
 	 *            job can run simultaneously.
 	 * @param scope
 	 *            is the family the semaphore belongs to.
-	 *            {@link LockScope#CURRENT} means ... {@link LockScope#CALL}
-	 *            means ... {@link LockScope#GLOBAL} means ...
+	 *            {@link LockScope#CURRENT} means the semaphore is shared by
+	 *            the jobs of the current thread and of its sibling threads
+	 *            (e.g. all the threads of the same foreach).
+	 *            {@link LockScope#CALL} means the semaphore is shared by the
+	 *            jobs of all the orders of the current call.
+	 *            {@link LockScope#GLOBAL} means the semaphore is shared by the
+	 *            jobs of the whole processing. Scopes are given by the current
+	 *            {@link com.wat.melody.api.ITaskContext}.
 	 * @param lockId
 	 *            identifies a semaphore in the given scope.
 	 * 
@@ -74,72 +105,200 @@ public abstract class LockManager {
 			maxPar = MaxPar.SEQUENTIAL;
 		}
 
-		LockId semaphoreId = getSemaphoreId(scope, lockId);
-		Semaphore semaphore = getSemaphore(semaphoreId);
-		synchronized (semaphore) {
-			while (semaphore.getRunningJobsCount() >= maxPar.getValue()) {
-				log.trace(Msg
-						.bind(Messages.LockMgmtMsg_BEGIN_WAIT, semaphoreId));
-				try {
-					semaphore.wait();
-				} catch (InterruptedException Ex) {
-					throw new WrapperInterruptedException("wait interrupted",
-							Ex);
-				}
-				log.trace(Messages.LockMgmtMsg_END_WAIT);
+		SemaphoreId semaphoreId = getSemaphoreId(scope, lockId);
+		LockStatistics stats = getStatistics(
+				Melody.getContext().getScope(TaskScope.GLOBAL), lockId);
+		Semaphore semaphore = retainSemaphore(semaphoreId);
+		try {
+			log.trace(Msg.bind(Messages.LockMgmtMsg_BEGIN_WAIT, semaphoreId));
+			long start = System.nanoTime();
+			int queueDepth;
+			try {
+				queueDepth = semaphore.acquire(maxPar.getValue());
+			} catch (InterruptedException Ex) {
+				throw new WrapperInterruptedException("wait interrupted", Ex);
 			}
-			semaphore.increaseRunningJobsCount();
-		}
+			long acquired = System.nanoTime();
+			stats.recordAcquisition(acquired - start, queueDepth);
+			TaskMetrics.record(TaskMetric.WAIT_TIME, acquired - start);
+			log.trace(Messages.LockMgmtMsg_END_WAIT);
 
-		try {
-			log.trace(Messages.LockMgmtMsg_BEGIN_JOB);
-			cb.doRun();
-		} finally {
-			log.trace(Msg.bind(Messages.LockMgmtMsg_END_JOB, semaphoreId));
-			synchronized (semaphore) {
-				semaphore.decreaseRunningJobsCount();
-				semaphore.notify();
+			try {
+				log.trace(Messages.LockMgmtMsg_BEGIN_JOB);
+				cb.doRun();
+			} finally {
+				log.trace(Msg.bind(Messages.LockMgmtMsg_END_JOB, semaphoreId));
+				semaphore.release();
+				stats.recordRelease(System.nanoTime() - acquired);
 			}
+		} finally {
+			disposeSemaphore(semaphoreId, semaphore);
 		}
 	}
 
-	private static LockId getSemaphoreId(LockScope scope, LockId lockId) {
-		String scopeId = null;
+	private static SemaphoreId getSemaphoreId(LockScope scope, LockId lockId) {
+		TaskScope taskScope;
 		switch (scope) {
 		case CURRENT:
-			scopeId = Thread.currentThread().getThreadGroup().getName();
+			taskScope = TaskScope.CURRENT;
 			break;
 		case CALL:
-			int ind = Thread.currentThread().getThreadGroup().getName()
-					.lastIndexOf(">call>PM-");
-			if (ind != -1) {
-				scopeId = Thread.currentThread().getThreadGroup().getName()
-						.substring(0, ind + ">call".length());
-				break;
-			}
-		case GLOBAL:
-			scopeId = "PM-main";
+			taskScope = TaskScope.CALL;
+			break;
+		default:
+			taskScope = TaskScope.GLOBAL;
 			break;
 		}
-		try {
-			return LockId.parseString(scopeId + ">" + lockId.getValue());
-		} catch (IllegalLockIdException Ex) {
-			throw new RuntimeException("Unexecpted error while creating "
-					+ "a lock id. "
-					+ "Since this default value is automatically created, "
-					+ "such error cannot happened. "
-					+ "Source code has certainly been modified and "
-					+ "a bug have been introduced.", Ex);
+		return new SemaphoreId(scope, Melody.getContext().getScope(taskScope),
+				lockId);
+	}
+
+	/**
+	 * <p>
+	 * Get the semaphore identified by the given id, and register a new user of
+	 * it. The semaphore is created if it doesn't exists.
+	 * </p>
+	 */
+	private static Semaphore retainSemaphore(SemaphoreId semaphoreId) {
+		while (true) {
+			Semaphore semaphore = lockTableStates.get(semaphoreId);
+			if (semaphore == null) {
+				semaphore = new Semaphore();
+				Semaphore previous = lockTableStates.putIfAbsent(semaphoreId,
+						semaphore);
+				if (previous != null) {
+					semaphore = previous;
+				}
+			}
+			if (semaphore.retain()) {
+				return semaphore;
+			}
+			// the semaphore was disposed meanwhile => retry
+			lockTableStates.remove(semaphoreId, semaphore);
 		}
 	}
 
-	private static synchronized Semaphore getSemaphore(LockId realLockId) {
-		Semaphore currentlyRunning = lockTableStates.get(realLockId);
-		if (currentlyRunning == null) {
-			currentlyRunning = new Semaphore();
-			lockTableStates.put(realLockId, currentlyRunning);
+	/**
+	 * <p>
+	 * Unregister a user of the given semaphore, and remove it from the table
+	 * if it has no more user.
+	 * </p>
+	 */
+	private static void disposeSemaphore(SemaphoreId semaphoreId,
+			Semaphore semaphore) {
+		if (semaphore.dispose()) {
+			lockTableStates.remove(semaphoreId, semaphore);
 		}
-		return currentlyRunning;
+	}
+
+	private static LockStatistics getStatistics(Object processing,
+			LockId lockId) {
+		ConcurrentMap<LockId, LockStatistics> table = lockStatistics
+				.get(processing);
+		if (table == null) {
+			table = new ConcurrentHashMap<LockId, LockStatistics>();
+			ConcurrentMap<LockId, LockStatistics> previous = lockStatistics
+					.putIfAbsent(processing, table);
+			if (previous != null) {
+				table = previous;
+			}
+		}
+		LockStatistics stats = table.get(lockId);
+		if (stats == null) {
+			stats = new LockStatistics();
+			LockStatistics previous = table.putIfAbsent(lockId, stats);
+			if (previous != null) {
+				stats = previous;
+			}
+		}
+		return stats;
+	}
+
+	/**
+	 * @param processing
+	 *            is the object which identifies the {@link TaskScope#GLOBAL}
+	 *            scope of a processing.
+	 * 
+	 * @return the contention metrics of each {@link LockId} of the given
+	 *         processing.
+	 */
+	public static Map<LockId, LockStatistics> getStatistics(Object processing) {
+		Map<LockId, LockStatistics> table = lockStatistics.get(processing);
+		if (table == null) {
+			return Collections.emptyMap();
+		}
+		return Collections.unmodifiableMap(table);
+	}
+
+	/**
+	 * <p>
+	 * Forget the contention metrics of the given processing. Must be called
+	 * when the processing is done.
+	 * </p>
+	 * 
+	 * @param processing
+	 *            is the object which identifies the {@link TaskScope#GLOBAL}
+	 *            scope of a processing.
+	 * 
+	 * @return the contention metrics of each {@link LockId} of the given
+	 *         processing.
+	 */
+	public static Map<LockId, LockStatistics> releaseStatistics(
+			Object processing) {
+		Map<LockId, LockStatistics> table = lockStatistics.remove(processing);
+		if (table == null) {
+			return Collections.emptyMap();
+		}
+		return Collections.unmodifiableMap(table);
+	}
+
+	/**
+	 * @return the number of semaphores which are currently in use.
+	 */
+	public static int size() {
+		return lockTableStates.size();
+	}
+
+	/**
+	 * <p>
+	 * Identifies a semaphore : a scope and a {@link LockId}. Scopes are
+	 * compared by reference.
+	 * </p>
+	 */
+	private static class SemaphoreId {
+
+		private LockScope _scopeName;
+		private Object _scope;
+		private LockId _lockId;
+
+		public SemaphoreId(LockScope scopeName, Object scope, LockId lockId) {
+			_scopeName = scopeName;
+			_scope = scope;
+			_lockId = lockId;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(_scope) * 31 + _lockId.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object anObject) {
+			if (this == anObject) {
+				return true;
+			}
+			if (anObject instanceof SemaphoreId) {
+				SemaphoreId id = (SemaphoreId) anObject;
+				return _scope == id._scope && _lockId.equals(id._lockId);
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return _scopeName.toString().toLowerCase() + ">" + _lockId;
+		}
+
 	}
 
 }
\ No newline at end of file
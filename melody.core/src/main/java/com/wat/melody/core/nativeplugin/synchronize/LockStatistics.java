@@ -0,0 +1,128 @@
+package com.wat.melody.core.nativeplugin.synchronize;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Contention metrics of all the semaphores which share the same
+ * {@link com.wat.melody.core.nativeplugin.synchronize.types.LockId},
+ * whatever their scope.
+ * </p>
+ * 
+ * @author Guillaume Cornet
+ * 
+ */
+public class LockStatistics {
+
+	private AtomicLong _acquisitions = new AtomicLong();
+	private AtomicLong _contentions = new AtomicLong();
+	private AtomicLong _totalWaitTime = new AtomicLong();
+	private AtomicLong _maxWaitTime = new AtomicLong();
+	private AtomicLong _totalHoldTime = new AtomicLong();
+	private AtomicLong _maxHoldTime = new AtomicLong();
+	private AtomicLong _maxQueueDepth = new AtomicLong();
+
+	/**
+	 * @param waitTime
+	 *            is the time the job waited for a free place, in nanoseconds.
+	 * @param queueDepth
+	 *            is the number of waiting jobs, including the job, when the
+	 *            job started to wait, or 0 if the job didn't wait.
+	 */
+	void recordAcquisition(long waitTime, int queueDepth) {
+		_acquisitions.incrementAndGet();
+		if (queueDepth != 0) {
+			_contentions.incrementAndGet();
+		}
+		_totalWaitTime.addAndGet(waitTime);
+		max(_maxWaitTime, waitTime);
+		max(_maxQueueDepth, queueDepth);
+	}
+
+	/**
+	 * @param holdTime
+	 *            is the time the job ran, in nanoseconds.
+	 */
+	void recordRelease(long holdTime) {
+		_totalHoldTime.addAndGet(holdTime);
+		max(_maxHoldTime, holdTime);
+	}
+
+	private static void max(AtomicLong max, long value) {
+		long current;
+		while (value > (current = max.get())) {
+			if (max.compareAndSet(current, value)) {
+				return;
+			}
+		}
+	}
+
+	public long getAcquisitionCount() {
+		return _acquisitions.get();
+	}
+
+	/**
+	 * @return the number of jobs which had to wait for a free place.
+	 */
+	public long getContentionCount() {
+		return _contentions.get();
+	}
+
+	/**
+	 * @return the total time jobs waited for a free place, in milliseconds.
+	 */
+	public long getTotalWaitTime() {
+		return TimeUnit.NANOSECONDS.toMillis(_totalWaitTime.get());
+	}
+
+	/**
+	 * @return the longest time a job waited for a free place, in milliseconds.
+	 */
+	public long getMaxWaitTime() {
+		return TimeUnit.NANOSECONDS.toMillis(_maxWaitTime.get());
+	}
+
+	/**
+	 * @return the total time jobs ran, in milliseconds.
+	 */
+	public long getTotalHoldTime() {
+		return TimeUnit.NANOSECONDS.toMillis(_totalHoldTime.get());
+	}
+
+	/**
+	 * @return the longest time a job ran, in milliseconds.
+	 */
+	public long getMaxHoldTime() {
+		return TimeUnit.NANOSECONDS.toMillis(_maxHoldTime.get());
+	}
+
+	/**
+	 * @return the highest number of waiting jobs.
+	 */
+	public long getMaxQueueDepth() {
+		return _maxQueueDepth.get();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder("{ ");
+		str.append("acquisitions:");
+		str.append(getAcquisitionCount());
+		str.append(", contentions:");
+		str.append(getContentionCount());
+		str.append(", total-wait-time:");
+		str.append(getTotalWaitTime());
+		str.append("ms, max-wait-time:");
+		str.append(getMaxWaitTime());
+		str.append("ms, total-hold-time:");
+		str.append(getTotalHoldTime());
+		str.append("ms, max-hold-time:");
+		str.append(getMaxHoldTime());
+		str.append("ms, max-queue-depth:");
+		str.append(getMaxQueueDepth());
+		str.append(" }");
+		return str.toString();
+	}
+
+}
\ No newline at end of file
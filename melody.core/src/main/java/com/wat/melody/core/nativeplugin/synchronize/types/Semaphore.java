@@ -1,28 +1,175 @@
 package com.wat.melody.core.nativeplugin.synchronize.types;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
+ * <p>
+ * A fair semaphore : jobs are allowed to run in their arrival order (FIFO).
+ * </p>
+ * 
+ * <p>
+ * Each job gives its own maximum number of simultaneous jobs when it acquires
+ * a place (see {@link #acquire(int)}). A job waits until it is the first
+ * waiting job and the number of running jobs is lower than its own maximum.
+ * When a job ends, only the first waiting job is woken up.
+ * </p>
+ * 
+ * <p>
+ * A {@link Semaphore} also counts its users (see {@link #retain()} and
+ * {@link #dispose()}), so that it can be removed from a table of semaphores
+ * once idle.
+ * </p>
  * 
  * @author Guillaume Cornet
  * 
  */
 public class Semaphore {
 
+	private ReentrantLock _lock;
+	private Deque<Waiter> _waiters;
 	private int _runningJobs;
+	/**
+	 * The number of users of this object, or -1 once this object is disposed.
+	 */
+	private AtomicInteger _users;
 
 	public Semaphore() {
+		_lock = new ReentrantLock();
+		_waiters = new ArrayDeque<Waiter>();
 		_runningJobs = 0;
+		_users = new AtomicInteger(0);
+	}
+
+	/**
+	 * <p>
+	 * Register a new user of this object.
+	 * </p>
+	 * 
+	 * @return <tt>true</tt> if the new user was registered, or <tt>false</tt>
+	 *         if this object is disposed, and must no more be used.
+	 */
+	public boolean retain() {
+		while (true) {
+			int users = _users.get();
+			if (users < 0) {
+				return false;
+			}
+			if (_users.compareAndSet(users, users + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Unregister a user of this object.
+	 * </p>
+	 * 
+	 * @return <tt>true</tt> if there is no more user, in which case this object
+	 *         is disposed, and must be removed from its table of semaphores.
+	 */
+	public boolean dispose() {
+		return _users.decrementAndGet() == 0 && _users.compareAndSet(0, -1);
 	}
 
 	public int getRunningJobsCount() {
-		return _runningJobs;
+		_lock.lock();
+		try {
+			return _runningJobs;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Wait for a free place in this semaphore.
+	 * </p>
+	 * 
+	 * @param maxPar
+	 *            is the maximum number of jobs which can run simultaneously,
+	 *            including the caller.
+	 * 
+	 * @return the number of waiting jobs, including the caller, when the caller
+	 *         started to wait, or 0 if the caller didn't wait.
+	 * 
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting. In this
+	 *             case, no place was acquired.
+	 */
+	public int acquire(int maxPar) throws InterruptedException {
+		_lock.lock();
+		try {
+			if (_waiters.isEmpty() && _runningJobs < maxPar) {
+				_runningJobs++;
+				return 0;
+			}
+			Waiter w = new Waiter(maxPar, _lock.newCondition());
+			_waiters.addLast(w);
+			int queueDepth = _waiters.size();
+			try {
+				while (_waiters.peekFirst() != w || _runningJobs >= maxPar) {
+					w.getCondition().await();
+				}
+			} catch (InterruptedException Ex) {
+				_waiters.remove(w);
+				signalFirstWaiter();
+				throw Ex;
+			}
+			_waiters.removeFirst();
+			_runningJobs++;
+			// the next waiting job may have a higher maximum
+			signalFirstWaiter();
+			return queueDepth;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Free the place acquired by a job.
+	 * </p>
+	 */
+	public void release() {
+		_lock.lock();
+		try {
+			_runningJobs--;
+			signalFirstWaiter();
+		} finally {
+			_lock.unlock();
+		}
 	}
 
-	public synchronized void increaseRunningJobsCount() {
-		_runningJobs++;
+	private void signalFirstWaiter() {
+		Waiter w = _waiters.peekFirst();
+		if (w != null && _runningJobs < w.getMaxPar()) {
+			w.getCondition().signal();
+		}
 	}
 
-	public synchronized void decreaseRunningJobsCount() {
-		_runningJobs--;
+	private static class Waiter {
+
+		private int _maxPar;
+		private Condition _condition;
+
+		public Waiter(int maxPar, Condition condition) {
+			_maxPar = maxPar;
+			_condition = condition;
+		}
+
+		public int getMaxPar() {
+			return _maxPar;
+		}
+
+		public Condition getCondition() {
+			return _condition;
+		}
+
 	}
 
 }
\ No newline at end of file
@@ -1,5 +1,8 @@
 package com.wat.melody.plugin.ssh;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,6 +17,15 @@ import com.wat.melody.plugin.ssh.common.exception.SshException;
 import com.wat.melody.plugin.ssh.common.types.Exec;
 
 /**
+ * <p>
+ * Execute the commands defined by its nested elements on a remote system.
+ * </p>
+ * 
+ * <p>
+ * When more than one command is defined, they are batched in a single script,
+ * executed over a single channel : execution stops at the first command which
+ * fails, and the exit status of the task is the exit status of this command.
+ * </p>
  * 
  * @author Guillaume Cornet
  * 
@@ -50,7 +62,7 @@ public class Ssh extends AbstractSshManagedOperation {
 	 */
 	public static final String REQUIRETTY_ATTR = "requiretty";
 
-	private String _commandToExecute = "";
+	private List<String> _commands = new ArrayList<String>();
 	private String _description = "[exec ssh]";
 	private boolean _requiretty = false;
 
@@ -67,8 +79,14 @@ public class Ssh extends AbstractSshManagedOperation {
 	public void doProcessing() throws SshException, InterruptedException {
 		Melody.getContext().handleProcessorStateUpdates();
 
-		int exitStatus = execSshCommand(getCommandToExecute(), getRequiretty(),
-				getDescription());
+		int exitStatus;
+		if (getCommands().size() > 1) {
+			exitStatus = execSshCommands(getCommands(), getRequiretty(),
+					getDescription());
+		} else {
+			exitStatus = execSshCommand(getCommandToExecute(),
+					getRequiretty(), getDescription());
+		}
 		String recapMsg = getDescription() + " " + "[STATUS] ";
 		switch (exitStatus) {
 		case 0:
@@ -94,8 +112,20 @@ public class Ssh extends AbstractSshManagedOperation {
 		}
 	}
 
+	/**
+	 * @return the commands defined by the nested elements of this task, in
+	 *         their declaration order.
+	 */
+	public List<String> getCommands() {
+		return _commands;
+	}
+
 	public String getCommandToExecute() {
-		return _commandToExecute;
+		StringBuilder str = new StringBuilder();
+		for (String command : getCommands()) {
+			str.append(command);
+		}
+		return str.toString();
 	}
 
 	public String getDescription() {
@@ -130,7 +160,7 @@ public class Ssh extends AbstractSshManagedOperation {
 			throw new IllegalArgumentException("null: Not accpeted. "
 					+ "Must be a valid " + Exec.class.getCanonicalName() + ".");
 		}
-		_commandToExecute += is.getShellCommand();
+		_commands.add(is.getShellCommand());
 	}
 
 	@NestedElement(name = DECLARE_NE, type = Type.ADD, description = "The '"
@@ -144,8 +174,7 @@ public class Ssh extends AbstractSshManagedOperation {
 					+ "Must be a valid " + Property.class.getCanonicalName()
 					+ ".");
 		}
-		_commandToExecute += "declare " + p.getName() + "=" + p.getValue()
-				+ "\n";
+		_commands.add("declare " + p.getName() + "=" + p.getValue() + "\n");
 	}
 
 	@NestedElement(name = EXPORT_NE, type = Type.ADD, description = "The '"
@@ -159,8 +188,7 @@ public class Ssh extends AbstractSshManagedOperation {
 					+ "Must be a valid " + Property.class.getCanonicalName()
 					+ ".");
 		}
-		_commandToExecute += "export " + p.getName() + "=" + p.getValue()
-				+ "\n";
+		_commands.add("export " + p.getName() + "=" + p.getValue() + "\n");
 	}
 
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.wat.melody.plugin.ssh.common;
 
 import java.io.IOException;
+import java.util.List;
 
 import com.wat.melody.api.ITask;
 import com.wat.melody.api.Melody;
@@ -167,7 +168,12 @@ public abstract class AbstractSshOperation implements ITask {
 	public ISshSession openSession() throws SshException, InterruptedException {
 		ISshSession session = createSession();
 		try {
-			session.connect();
+			if (getSshPlugInConf().getSessionPoolEnable()) {
+				session = getSshPlugInConf().getSessionPool().borrow(session,
+						getChannelCount());
+			} else {
+				session.connect();
+			}
 		} catch (InvalidCredentialException Ex) {
 			if (getSshPlugInConf().getMgmtEnable() == false) {
 				throw new SshException(Msg.bind(Messages.SshEx_AUTH_FAIL,
@@ -196,6 +202,41 @@ public abstract class AbstractSshOperation implements ITask {
 		return session;
 	}
 
+	/**
+	 * <p>
+	 * Release the given session, previously opened with
+	 * {@link #openSession()}. If the session pool is enabled, the session is
+	 * given back to the pool. Otherwise, it is disconnected.
+	 * </p>
+	 * 
+	 * @param session
+	 *            is the session to release (can be <tt>null</tt>).
+	 * 
+	 * @throws SshException
+	 */
+	public void releaseSession(ISshSession session) throws SshException {
+		if (session == null) {
+			return;
+		}
+		if (getSshPlugInConf().getSessionPoolEnable()) {
+			getSshPlugInConf().getSessionPool().release(session,
+					getChannelCount());
+		} else {
+			session.disconnect();
+		}
+	}
+
+	/**
+	 * Can be override by subclasses which open more than one channel
+	 * simultaneously.
+	 * 
+	 * @return the maximum number of channels this operation will open
+	 *         simultaneously on the session.
+	 */
+	protected int getChannelCount() {
+		return 1;
+	}
+
 	/**
 	 * Can be override by subclasses to enhance behavior of {@link ISshSession}.
 	 */
@@ -221,9 +262,35 @@ public abstract class AbstractSshOperation implements ITask {
 		} catch (SshSessionException Ex) {
 			throw new SshException(Ex);
 		} finally {
-			if (session != null) {
-				session.disconnect();
-			}
+			releaseSession(session);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Execute the given commands one after the other, over a single channel.
+	 * Execution stops at the first command which fails.
+	 * </p>
+	 * 
+	 * @return zero if all commands succeed, or the exit status of the first
+	 *         command which fails.
+	 */
+	public int execSshCommands(List<String> commands, boolean requiretty,
+			String outputPrefix) throws SshException, InterruptedException {
+		ISshSession session = null;
+		try {
+			session = openSession();
+			LoggerOutputStream out = new LoggerOutputStream(outputPrefix
+					+ " [STDOUT]", LogThreshold.DEBUG);
+			LoggerOutputStream err = new LoggerOutputStream(outputPrefix
+					+ " [STDERR]", LogThreshold.ERROR);
+			return session.execRemoteCommands(commands, requiretty, out, err,
+					Melody.getContext().getProcessorManager()
+							.getHardKillTimeout());
+		} catch (SshSessionException Ex) {
+			throw new SshException(Ex);
+		} finally {
+			releaseSession(session);
 		}
 	}
 
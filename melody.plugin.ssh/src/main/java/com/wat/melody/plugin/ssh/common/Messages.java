@@ -9,6 +9,7 @@ public class Messages extends NLS {
 	public static String ConfEx_MISSING_DIRECTIVE;
 	public static String ConfEx_INVALID_DIRECTIVE;
 	public static String ConfEx_EMPTY_DIRECTIVE;
+	public static String ConfEx_INVALID_POSITIVE_INTEGER;
 
 	public static String BaseEx_MISSING_PASSWORD_OR_PK_ATTR;
 	public static String BaseEx_MISSING_PASSPHRASE_ATTR;
@@ -1,7 +1,11 @@
 package com.wat.melody.plugin.ssh.common;
 
+import java.io.Closeable;
 import java.io.File;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.wat.melody.api.IPlugInConfiguration;
 import com.wat.melody.api.Melody;
 import com.wat.melody.api.exception.PlugInConfigurationException;
@@ -26,6 +30,7 @@ import com.wat.melody.common.ssh.exception.KnownHostsRepositoryPathException;
 import com.wat.melody.common.ssh.impl.KnownHostsRepository;
 import com.wat.melody.common.ssh.impl.KnownHostsRepositoryPath;
 import com.wat.melody.common.ssh.impl.SshSessionConfiguration;
+import com.wat.melody.common.ssh.impl.SshSessionPool;
 import com.wat.melody.common.ssh.types.CompressionLevel;
 import com.wat.melody.common.ssh.types.CompressionType;
 import com.wat.melody.common.ssh.types.ConnectionRetry;
@@ -39,6 +44,7 @@ import com.wat.melody.common.ssh.types.exception.IllegalCompressionTypeException
 import com.wat.melody.common.ssh.types.exception.IllegalConnectionRetryException;
 import com.wat.melody.common.ssh.types.exception.IllegalProxyTypeException;
 import com.wat.melody.common.ssh.types.exception.IllegalServerAliveMaxCountException;
+import com.wat.melody.common.timeout.GenericTimeout;
 import com.wat.melody.common.timeout.exception.IllegalTimeoutException;
 import com.wat.melody.plugin.ssh.common.exception.SshPlugInConfigurationException;
 
@@ -48,7 +54,10 @@ import com.wat.melody.plugin.ssh.common.exception.SshPlugInConfigurationExceptio
  * 
  */
 public class SshPlugInConfiguration implements IPlugInConfiguration,
-		ISshSessionConfiguration {
+		ISshSessionConfiguration, Closeable {
+
+	private static Logger log = LoggerFactory
+			.getLogger(SshPlugInConfiguration.class);
 
 	public static SshPlugInConfiguration get()
 			throws PlugInConfigurationException {
@@ -75,6 +84,7 @@ public class SshPlugInConfiguration implements IPlugInConfiguration,
 	public static final String DEFAULT_KEYPAIR_REPO = ".ssh/";
 	public static final KeyPairSize DEFAULT_KEYPAIR_SIZE = createKeyPairSize(2048);
 	public static final boolean DEFAULT_MGMT_ENABLE = true;
+	public static final boolean DEFAULT_SESSION_POOL_ENABLE = true;
 
 	// MANDATORY CONFIGURATION DIRECTIVE
 
@@ -101,6 +111,11 @@ public class SshPlugInConfiguration implements IPlugInConfiguration,
 	public static final String MGMT_KEYPAIRNAME = "ssh.management.master.key";
 	public static final String MGMT_PASSWORD = "ssh.management.master.pass";
 
+	public static final String SESSION_POOL_ENABLE = "ssh.session.pool.enable";
+	public static final String SESSION_POOL_MAX_SESSIONS_PER_HOST = "ssh.session.pool.max-sessions-per-host";
+	public static final String SESSION_POOL_MAX_CHANNELS_PER_SESSION = "ssh.session.pool.max-channels-per-session";
+	public static final String SESSION_POOL_IDLE_TIMEOUT = "ssh.session.pool.idle-timeout";
+
 	private String _configurationFilePath;
 	private KeyPairRepositoryPath _keyPairRepo;
 	private KeyPairSize _keyPairSize = DEFAULT_KEYPAIR_SIZE;
@@ -109,6 +124,8 @@ public class SshPlugInConfiguration implements IPlugInConfiguration,
 	private String _mgmtLogin;
 	private KeyPairName _mgmtKeyPairName;
 	private String _mgmtPassword;
+	private boolean _sessionPoolEnable = DEFAULT_SESSION_POOL_ENABLE;
+	private SshSessionPool _sessionPool = new SshSessionPool();
 
 	public SshPlugInConfiguration() {
 		setSshSessionConfiguration(new SshSessionConfiguration());
@@ -149,6 +166,12 @@ public class SshPlugInConfiguration implements IPlugInConfiguration,
 		str.append(getKeyPairSize());
 		str.append(", management-enabled:");
 		str.append(getMgmtEnable());
+		str.append(", session-pool-enabled:");
+		str.append(getSessionPoolEnable());
+		if (getSessionPoolEnable()) {
+			str.append(", session-pool:");
+			str.append(getSessionPool());
+		}
 		str.append(" }");
 		return str.toString();
 	}
@@ -209,6 +232,11 @@ public class SshPlugInConfiguration implements IPlugInConfiguration,
 		loadMgmtMasterKey(ps);
 		loadMgmtMasterPass(ps);
 
+		loadSessionPoolEnable(ps);
+		loadSessionPoolMaxSessionsPerHost(ps);
+		loadSessionPoolMaxChannelsPerSession(ps);
+		loadSessionPoolIdleTimeout(ps);
+
 		validate();
 	}
 
@@ -435,6 +463,63 @@ public class SshPlugInConfiguration implements IPlugInConfiguration,
 		}
 	}
 
+	private void loadSessionPoolEnable(PropertySet ps)
+			throws SshPlugInConfigurationException {
+		if (!ps.containsKey(SESSION_POOL_ENABLE)) {
+			return;
+		}
+		try {
+			setSessionPoolEnable(ps.get(SESSION_POOL_ENABLE));
+		} catch (SshPlugInConfigurationException Ex) {
+			throw new SshPlugInConfigurationException(Msg.bind(
+					Messages.ConfEx_INVALID_DIRECTIVE, SESSION_POOL_ENABLE), Ex);
+		}
+	}
+
+	private void loadSessionPoolMaxSessionsPerHost(PropertySet ps)
+			throws SshPlugInConfigurationException {
+		if (!ps.containsKey(SESSION_POOL_MAX_SESSIONS_PER_HOST)) {
+			return;
+		}
+		try {
+			setSessionPoolMaxSessionsPerHost(ps
+					.get(SESSION_POOL_MAX_SESSIONS_PER_HOST));
+		} catch (SshPlugInConfigurationException Ex) {
+			throw new SshPlugInConfigurationException(Msg.bind(
+					Messages.ConfEx_INVALID_DIRECTIVE,
+					SESSION_POOL_MAX_SESSIONS_PER_HOST), Ex);
+		}
+	}
+
+	private void loadSessionPoolMaxChannelsPerSession(PropertySet ps)
+			throws SshPlugInConfigurationException {
+		if (!ps.containsKey(SESSION_POOL_MAX_CHANNELS_PER_SESSION)) {
+			return;
+		}
+		try {
+			setSessionPoolMaxChannelsPerSession(ps
+					.get(SESSION_POOL_MAX_CHANNELS_PER_SESSION));
+		} catch (SshPlugInConfigurationException Ex) {
+			throw new SshPlugInConfigurationException(Msg.bind(
+					Messages.ConfEx_INVALID_DIRECTIVE,
+					SESSION_POOL_MAX_CHANNELS_PER_SESSION), Ex);
+		}
+	}
+
+	private void loadSessionPoolIdleTimeout(PropertySet ps)
+			throws SshPlugInConfigurationException {
+		if (!ps.containsKey(SESSION_POOL_IDLE_TIMEOUT)) {
+			return;
+		}
+		try {
+			setSessionPoolIdleTimeout(ps.get(SESSION_POOL_IDLE_TIMEOUT));
+		} catch (SshPlugInConfigurationException Ex) {
+			throw new SshPlugInConfigurationException(Msg.bind(
+					Messages.ConfEx_INVALID_DIRECTIVE,
+					SESSION_POOL_IDLE_TIMEOUT), Ex);
+		}
+	}
+
 	private void validate() throws SshPlugInConfigurationException {
 		/*
 		 * TODO : try to connect to the proxy, if set.
@@ -876,4 +961,88 @@ public class SshPlugInConfiguration implements IPlugInConfiguration,
 		return previous;
 	}
 
+	public boolean getSessionPoolEnable() {
+		return _sessionPoolEnable;
+	}
+
+	public boolean setSessionPoolEnable(boolean val) {
+		boolean previous = getSessionPoolEnable();
+		_sessionPoolEnable = val;
+		return previous;
+	}
+
+	public boolean setSessionPoolEnable(String val)
+			throws SshPlugInConfigurationException {
+		try {
+			return setSessionPoolEnable(Bool.parseString(val));
+		} catch (IllegalBooleanException Ex) {
+			throw new SshPlugInConfigurationException(Ex);
+		}
+	}
+
+	/**
+	 * @return the pool of ssh sessions, shared by all ssh operations which
+	 *         use this configuration. Cannot be null.
+	 */
+	public synchronized SshSessionPool getSessionPool() {
+		return _sessionPool;
+	}
+
+	public int setSessionPoolMaxSessionsPerHost(String val)
+			throws SshPlugInConfigurationException {
+		return getSessionPool().setMaxSessionsPerHost(parsePositiveInteger(val));
+	}
+
+	public int setSessionPoolMaxChannelsPerSession(String val)
+			throws SshPlugInConfigurationException {
+		return getSessionPool().setMaxChannelsPerSession(
+				parsePositiveInteger(val));
+	}
+
+	public long setSessionPoolIdleTimeout(String val)
+			throws SshPlugInConfigurationException {
+		try {
+			return getSessionPool().setIdleTimeout(
+					GenericTimeout.parseString(val).getTimeoutInMillis());
+		} catch (IllegalTimeoutException Ex) {
+			throw new SshPlugInConfigurationException(Ex);
+		}
+	}
+
+	private static int parsePositiveInteger(String val)
+			throws SshPlugInConfigurationException {
+		if (val == null) {
+			throw new IllegalArgumentException("null: Not accepted. "
+					+ "Must be a valid " + String.class.getCanonicalName()
+					+ " (a positive integer).");
+		}
+		try {
+			int i = Integer.parseInt(val.trim());
+			if (i >= 1) {
+				return i;
+			}
+		} catch (NumberFormatException Ex) {
+		}
+		throw new SshPlugInConfigurationException(Msg.bind(
+				Messages.ConfEx_INVALID_POSITIVE_INTEGER, val));
+	}
+
+	/**
+	 * <p>
+	 * Disconnect all pooled ssh sessions. A new empty pool, with the same
+	 * settings, replaces the closed one, so that the processing can be started
+	 * again. Sessions still in use are disconnected when released.
+	 * </p>
+	 */
+	@Override
+	public synchronized void close() {
+		SshSessionPool pool = getSessionPool();
+		log.debug("Ssh session pool statistics: " + pool + ".");
+		_sessionPool = new SshSessionPool();
+		_sessionPool.setMaxSessionsPerHost(pool.getMaxSessionsPerHost());
+		_sessionPool.setMaxChannelsPerSession(pool.getMaxChannelsPerSession());
+		_sessionPool.setIdleTimeout(pool.getIdleTimeout());
+		pool.close();
+	}
+
 }
\ No newline at end of file
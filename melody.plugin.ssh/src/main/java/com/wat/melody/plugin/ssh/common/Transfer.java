@@ -68,15 +68,19 @@ public abstract class Transfer extends AbstractSshManagedOperation implements
 		} catch (SshSessionException Ex) {
 			throw new SshException(Ex);
 		} finally {
-			if (session != null) {
-				session.disconnect();
-			}
+			releaseSession(session);
 		}
 	}
 
 	public abstract void doTransfer(ISshSession session)
 			throws SshSessionException, InterruptedException;
 
+	@Override
+	protected int getChannelCount() {
+		// each transfer thread opens its own sftp channel
+		return getMaxPar();
+	}
+
 	@Override
 	public Path doTemplate(Path template, Path destination)
 			throws TemplatingException {